@@ -5,21 +5,22 @@
  */
 package it.unisa.sgbu.app;
 
-import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.CredenzialiCifrate;
+import it.unisa.sgbu.domain.RegistroCredenziali;
 import it.unisa.sgbu.domain.ValidatoreDati;
 import it.unisa.sgbu.gui.GUIController;
 import it.unisa.sgbu.gui.GUIView;
-import it.unisa.sgbu.io.AuditTrail;
+import it.unisa.sgbu.io.ArchivioDifferito;
+import it.unisa.sgbu.io.AuditTrailSegmentato;
 import it.unisa.sgbu.io.FileArchivio;
 import it.unisa.sgbu.io.FileAutenticatore;
+import it.unisa.sgbu.io.GiornaleMutazioni;
 import it.unisa.sgbu.io.IArchivioDati;
 import it.unisa.sgbu.io.IAutenticatore;
-import it.unisa.sgbu.io.ILogger;
+import it.unisa.sgbu.io.StoricoPrestiti;
 import it.unisa.sgbu.service.Anagrafica;
 import it.unisa.sgbu.service.Catalogo;
 import it.unisa.sgbu.service.RegistroPrestiti;
-import java.util.ArrayList;
-import java.util.List;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
@@ -29,20 +30,34 @@ import javafx.stage.Stage;
 public class Main extends Application {
 
     private GUIController controller;
+    private GUIView view;
     
     // Costanti di configurazione
     private static final String PATH_DATI = "dati"; // Cartella salvataggio
     private static final String FILE_CREDENZIALI = "credenziali.dat"; // File login
+    
+    // Con -Dsgbu.avvioSincrono=true l'archivio è caricato prima di mostrare il login
+    private static final boolean AVVIO_SINCRONO = Boolean.getBoolean("sgbu.avvioSincrono");
 
     @Override
     public void start(Stage primaryStage) {
         try {
-            // Creo l'archivio 
-            IArchivioDati archivio = new FileArchivio(PATH_DATI, null);
+            // Creo l'archivio: le scritture su disco avvengono in background, fuori dal thread della GUI
+            FileArchivio disco = new FileArchivio(PATH_DATI, null);
+            IArchivioDati archivio = new ArchivioDifferito(disco);
+            
+            // Password salvata come hash PBKDF2: il costo si regola con -Dsgbu.iterazioniPassword
+            int iterazioni = Integer.getInteger("sgbu.iterazioniPassword", CredenzialiCifrate.ITERAZIONI_DEFAULT);
+            
+            // Un file credenziali delle versioni precedenti (password in chiaro) viene cifrato subito
+            if (FileAutenticatore.migraFormatoPrecedente(disco, FILE_CREDENZIALI, iterazioni)) {
+                System.out.println("Credenziali convertite in formato cifrato");
+            }
             
             // Se il file credenziali non esiste, ne creo uno con dei dati
             if (!archivio.verificaEsistenzaFile(FILE_CREDENZIALI)) {
-                Credenziali mieCredenziali = new Credenziali("admin", "password");
+                RegistroCredenziali mieCredenziali = new RegistroCredenziali();
+                mieCredenziali.aggiungi("admin", "password", iterazioni);
                 archivio.salvaStato(mieCredenziali, FILE_CREDENZIALI);
                 System.out.println("Credenziali create: admin / password");
             }
@@ -50,34 +65,41 @@ public class Main extends Application {
             // Creo l'Autenticatore
             IAutenticatore autenticatore = new FileAutenticatore(FILE_CREDENZIALI, archivio);
             
-            ValidatoreDati validatore = new ValidatoreDati();
+            // Con -Dsgbu.checksumIsbn=true gli ISBN devono avere la cifra di controllo corretta
+            ValidatoreDati validatore = new ValidatoreDati(Boolean.getBoolean("sgbu.checksumIsbn"));
             
             // Creo istanze VUOTE, verranno riempite dal Controller all'avvio
             Catalogo catalogo = new Catalogo();
             Anagrafica anagrafica = new Anagrafica();
             RegistroPrestiti registro = new RegistroPrestiti(catalogo, anagrafica);
             
-            // Carico il LOG (Audit Trail)
-            Object logObj = archivio.caricaStato(AuditTrail.NOME_FILE_LOG);
-            List<String> logs;
-            if (logObj instanceof List) {
-                 logs = (List<String>) logObj;
-            } else {
-                 logs = new ArrayList<>(); // Se non esiste, lista vuota
-            }
-            ILogger logger = new AuditTrail(logs, archivio);            
+            // Creo il LOG (Audit Trail) a segmenti: ogni azione è accodata, non riscritta.
+            // Lo storico (e la migrazione del vecchio "audit_log.dat") è letto da avviaSistema()
+            AuditTrailSegmentato logger = new AuditTrailSegmentato(PATH_DATI);
             
-            controller = new GUIController(archivio, logger, autenticatore, catalogo, anagrafica, registro, validatore);
+            // Giornale delle mutazioni: ogni operazione è un record accodato, gli snapshot sono compattati in background
+            GiornaleMutazioni giornale = new GiornaleMutazioni(PATH_DATI, GiornaleMutazioni.SOGLIA_COMPATTAZIONE_DEFAULT, true);
             
-            // Avvio il sistema: qui avviene il caricamento vero e proprio dei dati
-            boolean avviato = controller.avviaSistema();
-            if (!avviato) {
-                System.err.println("Attenzione: Il sistema è stato avviato con dati vuoti o parziali.");
-            }
+            controller = new GUIController(archivio, logger, giornale, autenticatore, catalogo, anagrafica, registro, validatore);
             
-            GUIView view = new GUIView(controller, primaryStage);
+            // Storico dei prestiti restituiti: segmenti mensili, i mesi conclusi sono compressi
+            controller.setStoricoPrestiti(new StoricoPrestiti(PATH_DATI, true));
             
-            view.mostraFinestraLogin();
+            view = new GUIView(controller, primaryStage);
+            
+            if (AVVIO_SINCRONO) {
+                // Avvio il sistema: qui avviene il caricamento vero e proprio dei dati, in parallelo
+                boolean avviato = controller.avviaSistema();
+                if (!avviato) {
+                    System.err.println("Attenzione: Il sistema è stato avviato con dati vuoti o parziali.");
+                }
+                view.mostraFinestraLogin();
+            } else {
+                // Il login richiede solo le credenziali: la finestra appare subito
+                // e l'archivio viene caricato in background
+                view.mostraFinestraLogin();
+                view.avviaCaricamentoInBackground();
+            }
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -90,6 +112,9 @@ public class Main extends Application {
     public void stop() {
         if (controller != null) {
             System.out.println("Chiusura applicazione rilevata. Salvataggio dati in corso...");
+            if (view != null) {
+                view.attendiCaricamento(); // non salvare un archivio caricato a metà
+            }
             controller.chiudiSistema();
         }
     }
@@ -0,0 +1,110 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.app;
+
+import it.unisa.sgbu.domain.CredenzialiCifrate;
+import it.unisa.sgbu.domain.RegistroCredenziali;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.gui.GUIController;
+import it.unisa.sgbu.io.ArchivioDifferito;
+import it.unisa.sgbu.io.AuditTrailSegmentato;
+import it.unisa.sgbu.io.FileArchivio;
+import it.unisa.sgbu.io.FileAutenticatore;
+import it.unisa.sgbu.io.GiornaleMutazioni;
+import it.unisa.sgbu.io.IArchivioDati;
+import it.unisa.sgbu.io.IAutenticatore;
+import it.unisa.sgbu.io.StoricoPrestiti;
+import it.unisa.sgbu.server.ServerHttp;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.util.concurrent.Executor;
+
+/**
+ * @brief Punto di ingresso del server SGBU senza interfaccia grafica.
+ *
+ * Carica l'archivio come Main e lo espone alle postazioni di prestito tramite ServerHttp.
+ * Non apre finestre: non serve un display, solo le classi di base di JavaFX usate dal controller.
+ *
+ * Configurazione (proprietà di sistema):
+ * - sgbu.porta  (default 8080): porta TCP;
+ * - sgbu.thread (default: numero di processori x 2): lavoratori del pool;
+ * - sgbu.coda   (default 256): richieste in attesa prima della contropressione;
+ * - sgbu.checksumIsbn (default false): accetta solo ISBN con la cifra di controllo corretta;
+ * - sgbu.iterazioniPassword (default 600000): costo PBKDF2 della password admin, se il file credenziali viene creato o convertito dal formato in chiaro.
+ *
+ * @see ServerHttp
+ */
+public class MainServer {
+
+    // Costanti di configurazione
+    private static final String PATH_DATI = "dati"; // Cartella salvataggio
+    private static final String FILE_CREDENZIALI = "credenziali.dat"; // File login
+
+    public static void main(String[] args) throws Exception {
+        int porta = Integer.getInteger("sgbu.porta", 8080);
+        int thread = Integer.getInteger("sgbu.thread", Runtime.getRuntime().availableProcessors() * 2);
+        int coda = Integer.getInteger("sgbu.coda", 256);
+
+        FileArchivio disco = new FileArchivio(PATH_DATI, null);
+        IArchivioDati archivio = new ArchivioDifferito(disco);
+        
+        // Password salvata come hash PBKDF2: il costo si regola con -Dsgbu.iterazioniPassword
+        int iterazioni = Integer.getInteger("sgbu.iterazioniPassword", CredenzialiCifrate.ITERAZIONI_DEFAULT);
+        
+        // Un file credenziali delle versioni precedenti (password in chiaro) viene cifrato subito
+        if (FileAutenticatore.migraFormatoPrecedente(disco, FILE_CREDENZIALI, iterazioni)) {
+            System.out.println("Credenziali convertite in formato cifrato");
+        }
+
+        // Se il file credenziali non esiste, ne creo uno con dei dati
+        if (!archivio.verificaEsistenzaFile(FILE_CREDENZIALI)) {
+            RegistroCredenziali mieCredenziali = new RegistroCredenziali();
+            mieCredenziali.aggiungi("admin", "password", iterazioni);
+            archivio.salvaStato(mieCredenziali, FILE_CREDENZIALI);
+            System.out.println("Credenziali create: admin / password");
+        }
+
+        IAutenticatore autenticatore = new FileAutenticatore(FILE_CREDENZIALI, archivio);
+
+        Catalogo catalogo = new Catalogo();
+        Anagrafica anagrafica = new Anagrafica();
+        RegistroPrestiti registro = new RegistroPrestiti(catalogo, anagrafica);
+        AuditTrailSegmentato logger = new AuditTrailSegmentato(PATH_DATI);
+        GiornaleMutazioni giornale = new GiornaleMutazioni(PATH_DATI, GiornaleMutazioni.SOGLIA_COMPATTAZIONE_DEFAULT, true);
+
+        final GUIController controller = new GUIController(archivio, logger, giornale, autenticatore, catalogo, anagrafica, registro,
+                new ValidatoreDati(Boolean.getBoolean("sgbu.checksumIsbn")));
+        controller.setStoricoPrestiti(new StoricoPrestiti(PATH_DATI, true));
+
+        // Nessuna tabella da aggiornare: la lista dei log della GUI resta vuota
+        // (l'audit trail su disco è comunque completo)
+        controller.setEsecutoreGui(new Executor() {
+            @Override
+            public void execute(Runnable aggiornamento) {
+            }
+        });
+
+        if (!controller.avviaSistema()) {
+            System.err.println("Attenzione: Il sistema è stato avviato con dati vuoti o parziali.");
+        }
+
+        final ServerHttp server = new ServerHttp(controller, autenticatore);
+        server.avvia(porta, thread, coda);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                System.out.println("Arresto del server. Salvataggio dati in corso...");
+                server.ferma(5);
+                controller.chiudiSistema();
+            }
+        }, "sgbu-arresto"));
+
+        System.out.println("Server SGBU in ascolto sulla porta " + server.getPorta()
+                + " (" + thread + " thread, coda " + coda + ")");
+    }
+}
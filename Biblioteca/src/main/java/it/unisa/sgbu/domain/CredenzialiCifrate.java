@@ -0,0 +1,120 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.domain;
+
+import java.io.Serializable;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * @brief Credenziali di un operatore con la password memorizzata come hash PBKDF2 con sale.
+ * 
+ * La password non viene conservata: si salvano un sale casuale e l'hash
+ * PBKDF2-HMAC-SHA256 ottenuto con un numero di iterazioni (il costo) scelto alla creazione
+ * e salvato insieme all'hash, così che costi diversi possano convivere nello stesso file.
+ * La verifica confronta gli hash in tempo costante (MessageDigest.isEqual()).
+ * 
+ * @see RegistroCredenziali
+ */
+public class CredenzialiCifrate implements Serializable {
+    
+    private static final long serialVersionUID = 4183960528824136950L;
+    
+    /** Costo predefinito: la raccomandazione corrente per PBKDF2-HMAC-SHA256 (circa 0,2 s per verifica). */
+    public static final int ITERAZIONI_DEFAULT = 600_000;
+    
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int BYTE_SALE = 16;
+    private static final int BIT_HASH = 256;
+    private static final SecureRandom CASUALE = new SecureRandom();
+    
+    private final String user;
+    private final byte[] sale;
+    private final byte[] hash;
+    private final int iterazioni;
+    
+    
+    /**
+     * @brief Costruttore: calcola l'hash di una password con un sale nuovo.
+     * 
+     * @param[in] user L'identificativo dell'operatore.
+     * @param[in] password La password in chiaro (non viene conservata).
+     * @param[in] iterazioni Il costo di PBKDF2 (almeno 1).
+     * 
+     * @pre
+     * - user e password non sono null.
+     */
+    public CredenzialiCifrate(String user, String password, int iterazioni){
+        if (iterazioni < 1) throw new IllegalArgumentException("Iterazioni non valide: " + iterazioni);
+        this.user = user;
+        this.iterazioni = iterazioni;
+        this.sale = new byte[BYTE_SALE];
+        CASUALE.nextBytes(this.sale);
+        this.hash = deriva(password, sale, iterazioni);
+    }
+    
+    
+    /**
+     * @brief Converte credenziali in chiaro (formato delle versioni precedenti).
+     * 
+     * @param[in] c Le credenziali in chiaro.
+     * @param[in] iterazioni Il costo di PBKDF2.
+     * 
+     * @return Le credenziali equivalenti, con la password cifrata.
+     */
+    public static CredenzialiCifrate da(Credenziali c, int iterazioni){
+        return new CredenzialiCifrate(c.getUser(), c.getPassword(), iterazioni);
+    }
+    
+    
+    /**
+     * @brief Verifica una password.
+     * 
+     * Il costo è quello di un calcolo PBKDF2 con le iterazioni salvate, indipendentemente
+     * dal fatto che la password sia giusta o sbagliata.
+     * 
+     * @param[in] password La password da verificare.
+     * 
+     * @return true se la password corrisponde, false altrimenti (anche se null).
+     */
+    public boolean verifica(String password){
+        if (password == null) return false;
+        return MessageDigest.isEqual(hash, deriva(password, sale, iterazioni));
+    }
+    
+    
+    /**
+     * @brief Restituisce il nome utente.
+     * @return Una stringa contenente lo username.
+     */
+    public String getUser(){
+        return user;
+    }
+    
+    
+    /**
+     * @brief Restituisce il costo con cui è stato calcolato l'hash.
+     * @return Il numero di iterazioni di PBKDF2.
+     */
+    public int getIterazioni(){
+        return iterazioni;
+    }
+    
+    
+    private static byte[] deriva(String password, byte[] sale, int iterazioni){
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), sale, iterazioni, BIT_HASH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // PBKDF2WithHmacSHA256 è sempre disponibile da Java 8
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -8,6 +8,7 @@ package it.unisa.sgbu.domain;
 import java.io.Serializable;
 import java.time.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
         
 /**
  * @brief Rappresenta un libro all'interno del catalogo della biblioteca.
@@ -21,12 +22,17 @@ import java.util.List;
  */
 public class Libro implements Serializable{
     
+    private static final long serialVersionUID = 2214470174412294214L;
+    
     private final String isbn;
     private String titolo;
     private List<String> autore;
     private int anno;
     private int copieTotali;
-    private int copieDisponibili;
+    private volatile int copieDisponibili;   // aggiornato con compare-and-set (vedi riservaCopia())
+    
+    private static final AtomicIntegerFieldUpdater<Libro> DISPONIBILI =
+            AtomicIntegerFieldUpdater.newUpdater(Libro.class, "copieDisponibili");
     
     
     /**
@@ -60,6 +66,24 @@ public class Libro implements Serializable{
         this.copieTotali = copieTotali;
         this.copieDisponibili = copieTotali;
     }
+    
+    
+    /**
+     * @brief Costruttore di ripristino con disponibilità esplicita.
+     * 
+     * Usato durante il caricamento da archivio, quando il numero di copie
+     * disponibili riflette i prestiti in corso e non coincide con copieTotali.
+     * 
+     * @param[in] copieDisponibili Numero di copie attualmente disponibili.
+     * 
+     * @pre 0 <= copieDisponibili <= copieTotali.
+     * 
+     * @see Libro(String, String, List, int, int)
+     */
+    public Libro(String isbn, String titolo, List<String> autore, int anno, int copieTotali, int copieDisponibili){    
+        this(isbn, titolo, autore, anno, copieTotali);
+        this.copieDisponibili = copieDisponibili;
+    }
 
     
     /**
@@ -129,9 +153,11 @@ public class Libro implements Serializable{
      */
     public void incrementaDisponibilità(){
         //PRINCIPIO DI ROBUSTEZZA
-        if (copieDisponibili < copieTotali) {
-            this.copieDisponibili++;
-        }
+        int attuali;
+        do {
+            attuali = copieDisponibili;
+            if (attuali >= copieTotali) return;
+        } while (!DISPONIBILI.compareAndSet(this, attuali, attuali + 1));
     }
     
     
@@ -149,9 +175,27 @@ public class Libro implements Serializable{
      */
     public void decrementaDisponibilità(){
         //PRINCIPIO DI ROBUSTEZZA
-        if (copieDisponibili > 0) {
-            this.copieDisponibili--;
-        }
+        riservaCopia();
+    }
+    
+    
+    /**
+     * @brief Preleva una copia se disponibile, con un'unica operazione atomica.
+     * 
+     * Verifica e decremento avvengono insieme (compare-and-set): due postazioni
+     * che chiedono l'ultima copia nello stesso istante non possono ottenerla entrambe.
+     * 
+     * @return true se la copia è stata prelevata, false se non ce n'erano.
+     * 
+     * @post In caso di successo copieDisponibili è decrementato di 1.
+     */
+    public boolean riservaCopia(){
+        int attuali;
+        do {
+            attuali = copieDisponibili;
+            if (attuali <= 0) return false;
+        } while (!DISPONIBILI.compareAndSet(this, attuali, attuali - 1));
+        return true;
     }
     
     
@@ -20,9 +20,13 @@ import java.time.*;
  */
 public class Prestito implements Serializable{
     
+    private static final long serialVersionUID = 7214286814541284429L;
+    
     private final int idPrestito;
     private Libro libro;
     private Utente utente;
+    private String isbn;          // chiave persistente del libro
+    private String matricola;     // chiave persistente dell'utente
     private LocalDate dataInizio;
     private LocalDate dataPrevistaRestituzione;
     private LocalDate dataEffettivaRestituzione;
@@ -57,10 +61,32 @@ public class Prestito implements Serializable{
         this.idPrestito = idPrestito;
         this.libro = libro;
         this.utente = utente;
+        this.isbn = (libro != null) ? libro.getISBN() : null;
+        this.matricola = (utente != null) ? utente.getMatricola() : null;
         this.dataInizio = dataInizio;
         this.dataPrevistaRestituzione = dataPrevistaRestituzione;
         this.inRitardo = false;
     }
+    
+    
+    /**
+     * @brief Costruttore per riferimento, usato durante il caricamento da archivio.
+     * 
+     * Il prestito conosce solo le chiavi di libro e utente: i riferimenti agli oggetti
+     * vengono impostati in seguito da RegistroPrestiti.ricollega().
+     * 
+     * @param[in] isbn ISBN del libro prestato.
+     * @param[in] matricola Matricola dell'utente.
+     * 
+     * @post getLibro() e getUtente() restituiscono null fino al ricollegamento.
+     * 
+     * @see Prestito(int, Libro, Utente, LocalDate, LocalDate)
+     */
+    public Prestito(int idPrestito, String isbn, String matricola, LocalDate dataInizio, LocalDate dataPrevistaRestituzione){
+        this(idPrestito, (Libro) null, (Utente) null, dataInizio, dataPrevistaRestituzione);
+        this.isbn = isbn;
+        this.matricola = matricola;
+    }
 
     
     /**
@@ -89,6 +115,42 @@ public class Prestito implements Serializable{
         return utente;
     }
     
+    /**
+     * @brief Restituisce l'ISBN del libro prestato (chiave usata per la persistenza).
+     * @return L'ISBN, anche se il libro non è ancora stato ricollegato.
+     */
+    public String getIsbn() {
+        if (isbn == null && libro != null) {
+            return libro.getISBN(); // prestiti salvati dalle versioni precedenti
+        }
+        return isbn;
+    }
+    
+    
+    /**
+     * @brief Restituisce la matricola dell'utente (chiave usata per la persistenza).
+     * @return La matricola, anche se l'utente non è ancora stato ricollegato.
+     */
+    public String getMatricola() {
+        if (matricola == null && utente != null) {
+            return utente.getMatricola();
+        }
+        return matricola;
+    }
+    
+    
+    /**
+     * @brief Collega il prestito alle istanze canoniche di libro e utente.
+     * 
+     * @param[in] libro Il libro presente nel Catalogo.
+     * @param[in] utente L'utente presente nell'Anagrafica.
+     */
+    public void ricollega(Libro libro, Utente utente) {
+        this.libro = libro;
+        this.utente = utente;
+    }
+    
+    
     /**
      * @brief Restituisce la data di inizio del prestito.
      * @return Un oggetto LocalDate rappresentante la data di avvio.
@@ -116,6 +178,15 @@ public class Prestito implements Serializable{
         return dataEffettivaRestituzione;
     }
     
+    
+    /**
+     * @brief Indica se il prestito è stato segnato come restituito in ritardo.
+     * @return true se segnaRitardo() è stato invocato.
+     */
+    public boolean isInRitardo() {
+        return inRitardo;
+    }
+    
 
     /**
      * @brief Registra la restituzione del libro chiudendo il prestito.
@@ -0,0 +1,99 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.domain;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @brief Elenco degli operatori autorizzati (personale della biblioteca), per username.
+ * 
+ * È il contenuto del file delle credenziali: sostituisce il singolo oggetto Credenziali
+ * in chiaro delle versioni precedenti, che FileAutenticatore continua comunque a leggere.
+ * 
+ * @see CredenzialiCifrate
+ */
+public class RegistroCredenziali implements Serializable {
+    
+    private static final long serialVersionUID = -2870161337702518573L;
+    
+    private final Map<String, CredenzialiCifrate> account;
+    
+    
+    /**
+     * @brief Costruttore: registro vuoto.
+     */
+    public RegistroCredenziali(){
+        this.account = new HashMap<>();
+    }
+    
+    
+    /**
+     * @brief Aggiunge un operatore, o ne sostituisce le credenziali.
+     * 
+     * @param[in] c Le credenziali dell'operatore.
+     */
+    public void aggiungi(CredenzialiCifrate c){
+        account.put(c.getUser(), c);
+    }
+    
+    
+    /**
+     * @brief Aggiunge un operatore calcolando l'hash della sua password.
+     * 
+     * @param[in] user L'identificativo dell'operatore.
+     * @param[in] password La password in chiaro.
+     * @param[in] iterazioni Il costo di PBKDF2.
+     */
+    public void aggiungi(String user, String password, int iterazioni){
+        aggiungi(new CredenzialiCifrate(user, password, iterazioni));
+    }
+    
+    
+    /**
+     * @brief Rimuove un operatore.
+     * 
+     * @param[in] user L'identificativo dell'operatore.
+     * 
+     * @return true se l'operatore era registrato.
+     */
+    public boolean rimuovi(String user){
+        return account.remove(user) != null;
+    }
+    
+    
+    /**
+     * @brief Restituisce le credenziali di un operatore.
+     * 
+     * @param[in] user L'identificativo dell'operatore (con distinzione maiuscole/minuscole).
+     * 
+     * @return Le credenziali, oppure null se l'operatore non è registrato.
+     */
+    public CredenzialiCifrate get(String user){
+        return account.get(user);
+    }
+    
+    
+    /**
+     * @brief Restituisce tutte le credenziali registrate.
+     * @return Una vista non modificabile, senza ordinamento.
+     */
+    public Collection<CredenzialiCifrate> getAccount(){
+        return Collections.unmodifiableCollection(account.values());
+    }
+    
+    
+    /**
+     * @brief Restituisce il numero di operatori registrati.
+     * @return La dimensione del registro.
+     */
+    public int dimensione(){
+        return account.size();
+    }
+}
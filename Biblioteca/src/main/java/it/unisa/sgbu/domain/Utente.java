@@ -21,6 +21,8 @@ import java.util.*;
  */
 public class Utente implements Serializable {
     
+    private static final long serialVersionUID = -1931352431163891921L;
+    
     private final String matricola;
     private String nome;
     private String cognome;
@@ -94,16 +96,20 @@ public class Utente implements Serializable {
      * @brief Restituisce il numero attuale di prestiti in carico all'utente.
      * @return Un intero rappresentante la dimensione della lista prestitiAttivi.
      */
-    public int getNumeroPrestitiAttivi() {
+    public synchronized int getNumeroPrestitiAttivi() {
         return this.prestitiAttivi.size();
     }
     
     /**
      * @brief Restituisce la lista completa dei prestiti attualmente in carico all'utente.
-     * * @return La lista (List) di oggetti Prestito associati all'utente.
+     * 
+     * La lista è una copia: può essere scorsa mentre un'altra postazione
+     * registra prestiti o restituzioni per lo stesso utente.
+     * 
+     * @return La lista (List) di oggetti Prestito associati all'utente.
      */
-    public List<Prestito> getPrestitiAttivi() {
-        return prestitiAttivi;
+    public synchronized List<Prestito> getPrestitiAttivi() {
+        return new ArrayList<>(prestitiAttivi);
     }
     
     
@@ -122,7 +128,7 @@ public class Utente implements Serializable {
      * @post
      * - Il prestito viene aggiunto alla lista dei prestiti attivi dell'utente.
      */
-    public void aggiungiPrestito(Prestito p){
+    public synchronized void aggiungiPrestito(Prestito p){
         // Controllo di robustezza e rispetto delle precondizioni
         if (p != null && this.verificaLimite()) {
             this.prestitiAttivi.add(p);
@@ -144,7 +150,7 @@ public class Utente implements Serializable {
      * @post
      * - Il prestito viene rimosso dai prestiti attivi.
      */
-    public void rimuoviPrestito(Prestito p){
+    public synchronized void rimuoviPrestito(Prestito p){
         // Controllo di robustezza e rispetto delle precondizioni
         if (p != null && this.prestitiAttivi.contains(p)) {
             this.prestitiAttivi.remove(p);
@@ -161,7 +167,7 @@ public class Utente implements Serializable {
      * @return true se l'utente ha meno di 3 prestiti attivi (e quindi può prendere un 
      * altro libro), false se il limite (3) è stato raggiunto.
      */
-    public boolean verificaLimite(){
+    public synchronized boolean verificaLimite(){
         return this.prestitiAttivi.size() < 3;
     }
     
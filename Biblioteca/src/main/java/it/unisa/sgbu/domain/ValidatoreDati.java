@@ -5,7 +5,10 @@
  */
 package it.unisa.sgbu.domain;
 
-import java.time.Year;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
 
 /**
  * @brief Classe di utilità per la validazione sintattica e logica dei dati di input.
@@ -14,24 +17,78 @@ import java.time.Year;
  * "Dati e Formato Dati [DF]" . 
  * Viene utilizzata dai flussi di registrazione e modifica per garantire
  * l'integrità dei dati prima della persistenza.
+ *
+ * I controlli scorrono i caratteri una sola volta, senza espressioni regolari né
+ * oggetti temporanei: validare non alloca memoria. La classe è priva di stato mutabile
+ * e può essere usata da più thread (es. nelle importazioni massive).
  */
 public class ValidatoreDati {
 
+    /**
+     * @brief Motivo per cui un dato non supera la validazione.
+     */
+    public enum Errore {
+        ISBN_FORMATO("ISBN non valido"),
+        ISBN_CHECKSUM("Cifra di controllo dell'ISBN errata"),
+        TITOLO_MANCANTE("Titolo mancante"),
+        ANNO_NON_VALIDO("Anno di pubblicazione non valido"),
+        MATRICOLA_NON_VALIDA("Matricola non valida"),
+        EMAIL_NON_VALIDA("Email non valida"),
+        NOME_NON_VALIDO("Nome non valido"),
+        COGNOME_NON_VALIDO("Cognome non valido");
+
+        private final String messaggio;
+
+        Errore(String messaggio) {
+            this.messaggio = messaggio;
+        }
+
+        /** @return La descrizione dell'errore, per log e rapporti. */
+        public String getMessaggio() {
+            return messaggio;
+        }
+    }
+
+
+    private final boolean verificaChecksum;
+
+    // Anno corrente e istante (ms) in cui finisce: ricalcolati solo a Capodanno
+    private static volatile int annoCorrente;
+    private static volatile long fineAnnoCorrente;
+
+
+    /**
+     * @brief Costruttore: l'ISBN è verificato solo nel formato (13-17 cifre o trattini).
+     */
+    public ValidatoreDati() {
+        this(false);
+    }
+
+    
+    /**
+     * @brief Costruttore.
+     * 
+     * @param[in] verificaChecksum true per accettare solo ISBN-10 o ISBN-13 con la cifra
+     *            di controllo corretta. Da attivare con un catalogo già conforme: gli ISBN
+     *            esistenti che non la rispettano non supererebbero più validaISBN().
+     */
+    public ValidatoreDati(boolean verificaChecksum) {
+        this.verificaChecksum = verificaChecksum;
+    }
+
     
     /**
      * @brief Verifica il formato del codice ISBN.
      * 
      * Controlla che la stringa fornita sia un identificativo valido secondo le relative specifiche.
+     * Con la verifica del checksum attiva sono accettati ISBN-10 e ISBN-13, con o senza trattini.
      * 
      * @param[in] isbn La stringa rappresentante il codice ISBN.
      * 
      * @return true se il formato è valido, false altrimenti.
      */
     public boolean validaISBN(String isbn){
-        // Controlla che non sia null
-        // Controlla che contenga solo numeri (0-9) o trattini (-)
-        // Controlla che la lunghezza totale sia tra 13 e 17 caratteri
-        return isbn != null && isbn.matches("^[0-9-]{13,17}$");
+        return erroreISBN(isbn) == null;
     }
 
     
@@ -47,7 +104,11 @@ public class ValidatoreDati {
      * @return true se la matricola è numerica e di 10 cifre, false altrimenti.
      */
     public boolean validaMatricola(String matricola){
-        return matricola != null && matricola.matches("^\\d{10}$");
+        if (matricola == null || matricola.length() != 10) return false;
+        for (int i = 0; i < 10; i++) {
+            if (!cifra(matricola.charAt(i))) return false;
+        }
+        return true;
     }
 
     
@@ -55,16 +116,47 @@ public class ValidatoreDati {
      * @brief Verifica il formato dell'indirizzo email.
      * 
      * Controlla che l'email rispetti il formato standard (es. utente@dominio.it)
-     * come richiesto dal requisito dei Dati e Formati e verificato nel relativo flusso.
+     * come richiesto dal requisito dei Dati e Formati e verificato nel relativo flusso:
+     * una parte locale di lettere, cifre e ._%+-, poi un dominio di almeno due etichette
+     * alfanumeriche, l'ultima di sole lettere e lunga almeno 2.
      * 
      * @param[in] email L'indirizzo email da validare.
      * 
      * @return true se il formato è valido, false altrimenti.
      */
     public boolean validaEmail(String email){
-        return email != null && email.matches("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9]+(?:\\.[a-zA-Z0-9]+)*\\.[a-zA-Z]{2,}$");
+        if (email == null) return false;
+        int n = email.length();
+
+        int i = 0;
+        for (; i < n; i++) {
+            char c = email.charAt(i);
+            if (c == '@') break;
+            if (!alfanumerico(c) && c != '.' && c != '_' && c != '%' && c != '+' && c != '-') return false;
+        }
+        if (i == 0 || i == n) return false;
+
+        // Dominio: etichette alfanumeriche non vuote separate da '.'
+        int punti = 0;
+        int lunghezza = 0;
+        boolean soloLettere = true;
+        for (int j = i + 1; j < n; j++) {
+            char c = email.charAt(j);
+            if (c == '.') {
+                if (lunghezza == 0) return false;
+                punti++;
+                lunghezza = 0;
+                soloLettere = true;
+            } else if (alfanumerico(c)) {
+                lunghezza++;
+                soloLettere &= !cifra(c);
+            } else {
+                return false;
+            }
+        }
+        return punti > 0 && lunghezza >= 2 && soloLettere;
     }
-    
+
     
     /**
      * @brief Verifica la validità dell'anno di pubblicazione.
@@ -78,11 +170,10 @@ public class ValidatoreDati {
      * @return true se 0 <= anno <= anno corrente, false altrimenti.
      */
     public boolean validaAnnoPubblicazione(int anno){
-        int annoCorrente = Year.now().getValue();
         // L'anno deve essere positivo e non nel futuro
-        return anno >= 0 && anno <= annoCorrente;
+        return anno >= 0 && anno <= annoCorrente();
     }
-    
+
     
     /**
      * @brief Verifica il formato di Nome e Cognome.
@@ -97,9 +188,271 @@ public class ValidatoreDati {
      * @return true se entrambi contengono solo caratteri alfabetici, false altrimenti.
      */
     public boolean validaNomeCognome(String nome, String cognome){
-        if (nome == null || cognome == null) return false;
-        
         // Verifica che contengano solo lettere, spazi o apostrofi
-        return nome.matches("^[a-zA-Z\\s']+$") && cognome.matches("^[a-zA-Z\\s']+$");
+        return nomeValido(nome) && nomeValido(cognome);
+    }
+
+    
+    /**
+     * @brief Valida tutti i campi di un libro (come richiesto per l'aggiunta al catalogo).
+     * 
+     * @param[in] l Il libro da validare.
+     * 
+     * @return Il primo errore trovato (ISBN, titolo, anno), oppure null se il libro è valido.
+     */
+    public Errore validaLibro(Libro l){
+        Errore e = erroreISBN(l.getISBN());
+        if (e != null) return e;
+        if (l.getTitolo() == null || l.getTitolo().isEmpty()) return Errore.TITOLO_MANCANTE;
+        if (!validaAnnoPubblicazione(l.getAnno())) return Errore.ANNO_NON_VALIDO;
+        return null;
+    }
+
+    
+    /**
+     * @brief Valida tutti i campi di un utente.
+     * 
+     * @param[in] u L'utente da validare.
+     * 
+     * @return Il primo errore trovato (matricola, email, nome, cognome), oppure null se l'utente è valido.
+     */
+    public Errore validaUtente(Utente u){
+        if (!validaMatricola(u.getMatricola())) return Errore.MATRICOLA_NON_VALIDA;
+        if (!validaEmail(u.getEmail())) return Errore.EMAIL_NON_VALIDA;
+        if (!nomeValido(u.getNome())) return Errore.NOME_NON_VALIDO;
+        if (!nomeValido(u.getCognome())) return Errore.COGNOME_NON_VALIDO;
+        return null;
+    }
+
+    
+    /**
+     * @brief Valida un blocco di libri.
+     * 
+     * @param[in] libri I libri da validare.
+     * 
+     * @return Per ogni posizione l'errore trovato, oppure null se il libro è valido.
+     * 
+     * @see validaLibro(Libro)
+     */
+    public Errore[] validaLibri(List<Libro> libri){
+        Errore[] esiti = new Errore[libri.size()];
+        for (int i = 0; i < esiti.length; i++) {
+            esiti[i] = validaLibro(libri.get(i));
+        }
+        return esiti;
+    }
+
+    
+    /**
+     * @brief Valida un blocco di utenti.
+     * 
+     * @param[in] utenti Gli utenti da validare.
+     * 
+     * @return Per ogni posizione l'errore trovato, oppure null se l'utente è valido.
+     * 
+     * @see validaUtente(Utente)
+     */
+    public Errore[] validaUtenti(List<Utente> utenti){
+        Errore[] esiti = new Errore[utenti.size()];
+        for (int i = 0; i < esiti.length; i++) {
+            esiti[i] = validaUtente(utenti.get(i));
+        }
+        return esiti;
+    }
+
+    
+    /**
+     * @brief Verifica che un codice sia un ISBN-10 o ISBN-13 con la cifra di controllo corretta.
+     * 
+     * I trattini sono ignorati; nell'ISBN-10 l'ultima cifra può essere 'X' (vale 10).
+     * 
+     * @param[in] isbn Il codice da verificare.
+     * 
+     * @return true se il codice è un ISBN corretto.
+     */
+    public static boolean checksumISBN(CharSequence isbn){
+        return isbn != null && analizzaISBN(isbn) == null;
+    }
+
+    
+    /**
+     * @brief Restituisce la forma canonica di un ISBN: le sole cifre, senza trattini.
+     * 
+     * Es. "978-0-13-468599-1" diventa "9780134685991", "0-13-468599-x" diventa "013468599X".
+     * 
+     * @param[in] isbn Il codice da normalizzare.
+     * 
+     * @return Il codice canonico, oppure null se non è un ISBN-10 o ISBN-13 corretto.
+     */
+    public static String canonicoISBN(String isbn){
+        if (!checksumISBN(isbn)) return null;
+        char[] cifre = new char[13];
+        int n = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c != '-') cifre[n++] = (c == 'x') ? 'X' : c;
+        }
+        return new String(cifre, 0, n);
+    }
+
+
+    /**
+     * @brief Restituisce la matricola come numero: le sue 10 cifre in un long.
+     * 
+     * La lunghezza è fissa, quindi la conversione è reversibile anche con zeri iniziali
+     * (es. "0612700009" ha chiave 612700009 e nessun'altra matricola valida ha la stessa).
+     * 
+     * @param[in] matricola La matricola.
+     * 
+     * @return La chiave (da 0 a 10^10 - 1), oppure -1 se la matricola non è di 10 cifre.
+     * 
+     * @see validaMatricola(String)
+     */
+    public static long chiaveMatricola(CharSequence matricola){
+        if (matricola == null || matricola.length() != 10) return -1;
+        
+        long valore = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = matricola.charAt(i);
+            if (!cifra(c)) return -1;
+            valore = valore * 10 + (c - '0');
+        }
+        return valore;
+    }
+    
+    
+    /**
+     * @brief Restituisce la chiave numerica canonica di un ISBN: le 13 cifre dell'ISBN-13 come long.
+     * 
+     * I trattini sono ignorati. Un codice di 13 cifre è convertito così com'è (la cifra di
+     * controllo non è verificata: la chiave serve a riconoscere lo stesso codice scritto in
+     * modi diversi); un ISBN-10 corretto diventa l'ISBN-13 equivalente, con prefisso 978.
+     * Es. "978-0-13-468599-1", "9780134685991" e "0-13-468599-7" hanno la stessa chiave.
+     * 
+     * @param[in] isbn Il codice.
+     * 
+     * @return La chiave (da 0 a 10^13 - 1), oppure -1 se il codice non ha una forma canonica.
+     */
+    public static long chiaveISBN(CharSequence isbn){
+        if (isbn == null || isbn.length() > 17) return -1;
+        
+        long valore = 0;
+        int cifre = 0;
+        boolean x = false;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-') continue;
+            if (cifra(c) && cifre < 13 && !x) {
+                valore = valore * 10 + (c - '0');
+                cifre++;
+            } else if ((c == 'X' || c == 'x') && cifre == 9) {
+                cifre++;   // la X finale è verificata da analizzaISBN()
+                x = true;
+            } else {
+                return -1;
+            }
+        }
+        if (cifre == 13) return valore;
+        if (cifre != 10 || analizzaISBN(isbn) != null) return -1;
+        
+        // ISBN-10: le prime 9 cifre, precedute da 978 e seguite dalla nuova cifra di controllo
+        char ultimo = isbn.charAt(isbn.length() - 1);
+        long base = 978_000_000_000L + ((ultimo == 'X' || ultimo == 'x') ? valore : valore / 10);
+        int somma = 0;
+        long resto = base;
+        for (int k = 0; k < 12; k++) {
+            int d = (int) (resto % 10);
+            somma += ((k & 1) == 0) ? 3 * d : d;   // la k-esima da destra ha posizione 11-k: peso 3 se dispari
+            resto /= 10;
+        }
+        return base * 10 + (10 - somma % 10) % 10;
+    }
+    
+    
+    // --- IMPLEMENTAZIONE ---
+
+    private Errore erroreISBN(String isbn){
+        if (isbn == null) return Errore.ISBN_FORMATO;
+        if (verificaChecksum) return analizzaISBN(isbn);
+
+        // Formato base: da 13 a 17 caratteri tra cifre e trattini
+        int n = isbn.length();
+        if (n < 13 || n > 17) return Errore.ISBN_FORMATO;
+        for (int i = 0; i < n; i++) {
+            char c = isbn.charAt(i);
+            if (!cifra(c) && c != '-') return Errore.ISBN_FORMATO;
+        }
+        return null;
+    }
+
+
+    // Calcola in una passata i checksum ISBN-13 (pesi 1,3) e ISBN-10 (pesi 10..1)
+    private static Errore analizzaISBN(CharSequence isbn){
+        int n = isbn.length();
+        if (n > 17) return Errore.ISBN_FORMATO;
+
+        int cifre = 0;
+        int somma13 = 0;
+        int somma10 = 0;
+        for (int i = 0; i < n; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-') continue;
+            int valore;
+            if (cifra(c)) {
+                valore = c - '0';
+            } else if ((c == 'X' || c == 'x') && cifre == 9 && i == n - 1) {
+                valore = 10;
+            } else {
+                return Errore.ISBN_FORMATO;
+            }
+            if (cifre == 13) return Errore.ISBN_FORMATO;
+            somma13 += ((cifre & 1) == 0) ? valore : 3 * valore;
+            somma10 += (10 - cifre) * valore;
+            cifre++;
+        }
+
+        if (cifre == 13) return (somma13 % 10 == 0) ? null : Errore.ISBN_CHECKSUM;
+        if (cifre == 10) return (somma10 % 11 == 0) ? null : Errore.ISBN_CHECKSUM;
+        return Errore.ISBN_FORMATO;
+    }
+
+
+    private static boolean nomeValido(String s){
+        if (s == null || s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!lettera(c) && c != '\'' && c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean cifra(char c){
+        return c >= '0' && c <= '9';
+    }
+
+
+    private static boolean lettera(char c){
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+
+    private static boolean alfanumerico(char c){
+        return lettera(c) || cifra(c);
+    }
+
+
+    private static int annoCorrente(){
+        long ora = System.currentTimeMillis();
+        // fineAnnoCorrente è scritto dopo annoCorrente: se è aggiornato, lo è anche l'anno
+        if (ora >= fineAnnoCorrente) {
+            ZoneId zona = ZoneId.systemDefault();
+            int anno = Instant.ofEpochMilli(ora).atZone(zona).getYear();
+            annoCorrente = anno;
+            fineAnnoCorrente = LocalDate.of(anno + 1, 1, 1).atStartOfDay(zona).toInstant().toEpochMilli();
+        }
+        return annoCorrente;
     }
 }
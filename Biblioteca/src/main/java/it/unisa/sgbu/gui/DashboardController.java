@@ -281,10 +281,7 @@ public class DashboardController {
         }
 
         if (sistema != null && tablePrestiti != null) {
-            List<Prestito> prestitiAttivi = sistema.ottieniReportPrestiti().stream()
-                .filter(p -> p.getUtente().getMatricola().equals(utenteSelezionato.getMatricola()))
-                .filter(p -> p.getDataEffettivaRestituzione() == null)
-                .collect(Collectors.toList());
+            List<Prestito> prestitiAttivi = sistema.ottieniPrestitiAttiviUtente(utenteSelezionato.getMatricola());
 
             tablePrestiti.getItems().setAll(prestitiAttivi);
             
@@ -10,8 +10,18 @@ import it.unisa.sgbu.service.*;
 import it.unisa.sgbu.domain.*;
 import javafx.collections.FXCollections; // NECESSARIO PER LA GUI
 import javafx.collections.ObservableList; // NECESSARIO PER LA GUI
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @brief Controller principale del sistema.
@@ -29,6 +39,8 @@ public class GUIController {
     
     private IArchivioDati archivio;
     private ILogger logger;
+    private GiornaleMutazioni giornale;
+    private StoricoPrestiti storico;
     private IAutenticatore autenticatore;
     private ValidatoreDati valida;
 
@@ -40,10 +52,19 @@ public class GUIController {
     // Lista osservabile per aggiornare la tabella dei log in tempo reale
     private ObservableList<String> observableLog; 
     
+    // Thread su cui modificare observableLog (di default il thread chiamante)
+    private Executor esecutoreGui = Runnable::run;
+    
+    // Riceve (sul thread della GUI) gli errori da mostrare all'operatore
+    private Consumer<String> gestoreErrori;
+    
     // Nomi dei file di persistenza
     private static final String FILE_LIBRI = "libri.dat";
     private static final String FILE_UTENTI = "utenti.dat";
     private static final String FILE_PRESTITI = "prestiti.dat";
+    
+    // Aggiunte per record del giornale durante un'importazione (un record non supera 16 MB)
+    private static final int VOCI_PER_RECORD = 2000;
 
     
     /**
@@ -58,11 +79,28 @@ public class GUIController {
      * @param[in] valida Componente utility per la validazione dei formati.
      * 
      * @post
-     * - I log esistenti vengono caricati dal file.
-     * - Viene creata una ObservableList invertita (dal più recente al più vecchio) per la GUI.
+     * - Viene creata la ObservableList dei log per la GUI, popolata da avviaSistema()
+     *   con lo storico invertito (dal più recente al più vecchio).
      */
     public GUIController(IArchivioDati archivio, ILogger logger, IAutenticatore autenticatore, Catalogo catalogo, Anagrafica anagrafica, RegistroPrestiti registro, ValidatoreDati valida){
+        this(archivio, logger, null, autenticatore, catalogo, anagrafica, registro, valida);
+    }
+    
+    
+    /**
+     * @brief Costruttore con giornale delle mutazioni.
+     * 
+     * Con il giornale attivo ogni operazione (libri, utenti, prestiti, restituzioni) viene
+     * accodata come record compatto invece di riscrivere gli snapshot completi;
+     * gli snapshot sono aggiornati dal compattatore in background e alla chiusura.
+     * 
+     * @param[in] giornale Il giornale delle mutazioni (null per disattivarlo).
+     * 
+     * @see GUIController(IArchivioDati, ILogger, IAutenticatore, Catalogo, Anagrafica, RegistroPrestiti, ValidatoreDati)
+     */
+    public GUIController(IArchivioDati archivio, ILogger logger, GiornaleMutazioni giornale, IAutenticatore autenticatore, Catalogo catalogo, Anagrafica anagrafica, RegistroPrestiti registro, ValidatoreDati valida){
         this.archivio = archivio;
+        this.giornale = giornale;
         this.logger = logger;
         this.autenticatore = autenticatore;
         this.catalogo = catalogo;
@@ -71,8 +109,17 @@ public class GUIController {
         this.valida = valida;
         
         
-        List<String> logsDalFile = logger.visualizzaLog();
-        
+        // Lo storico dei log è letto da avviaSistema(), in parallelo con gli archivi
+        this.observableLog = FXCollections.observableArrayList();
+    }
+    
+    
+    /**
+     * @brief Popola la lista dei log per la GUI, dal più recente al più vecchio.
+     * 
+     * @param[in] logsDalFile Lo storico letto dal logger (può essere null).
+     */
+    private void mostraStoricoLog(List<String> logsDalFile) {
         // Crea una NUOVA lista temporanea copiando i dati (per non toccare l'originale del logger)
         List<String> logsPerGui = new ArrayList<>();
         if (logsDalFile != null) {
@@ -82,8 +129,8 @@ public class GUIController {
         // Inverti la copia
         Collections.reverse(logsPerGui);
         
-        // Inizializza la lista osservabile della GUI con la lista invertita
-        this.observableLog = FXCollections.observableArrayList(logsPerGui);
+        // Aggiorna la lista osservabile della GUI con la lista invertita
+        esecutoreGui.execute(() -> observableLog.setAll(logsPerGui));
     }
     
     /**
@@ -104,7 +151,244 @@ public class GUIController {
         
         // Frontend: Aggiunge in CIMA (indice 0) per visualizzare l'ultimo evento in alto
         if (observableLog != null) {
-            observableLog.add(0, messaggio);
+            esecutoreGui.execute(() -> observableLog.add(0, messaggio));
+        }
+    }
+    
+    
+    /**
+     * @brief Variante di scriviLog() per i messaggi di un'operazione multipla.
+     * 
+     * Il backend riceve tutti i messaggi con un solo salvataggio; la GUI viene
+     * aggiornata con un solo passaggio sul proprio thread.
+     * 
+     * @param[in] messaggi I messaggi, in ordine cronologico.
+     */
+    private void scriviLog(List<String> messaggi) {
+        logger.registraAzioni(messaggi);
+        
+        if (observableLog != null) {
+            final List<String> inCima = new ArrayList<>(messaggi);
+            Collections.reverse(inCima);
+            esecutoreGui.execute(() -> observableLog.addAll(0, inCima));
+        }
+    }
+    
+    
+    /**
+     * @brief Imposta il thread su cui aggiornare la lista dei log della GUI.
+     * 
+     * Necessario quando avviaSistema() viene eseguito in background mentre la GUI è attiva:
+     * in quel caso la lista va modificata solo dal thread JavaFX (es. Platform::runLater).
+     * 
+     * @param[in] esecutoreGui L'esecutore degli aggiornamenti della lista.
+     */
+    public void setEsecutoreGui(Executor esecutoreGui) {
+        this.esecutoreGui = esecutoreGui;
+    }
+    
+    
+    /**
+     * @brief Imposta chi mostra all'operatore gli errori non legati a un'operazione specifica.
+     * 
+     * Es. una modifica già applicata che non è stato possibile rendere persistente.
+     * Il gestore è invocato tramite l'esecutore della GUI.
+     * 
+     * @param[in] gestoreErrori Il gestore dei messaggi di errore (null per solo log).
+     */
+    public void setGestoreErrori(Consumer<String> gestoreErrori) {
+        this.gestoreErrori = gestoreErrori;
+    }
+    
+    
+    /**
+     * @brief Imposta lo storico su disco in cui spostare i prestiti restituiti.
+     * 
+     * Va invocato prima di avviaSistema(). Senza storico i prestiti chiusi
+     * restano nel registro e nel file "prestiti.dat".
+     * 
+     * @param[in] storico Lo storico dei prestiti chiusi (null per disattivarlo).
+     */
+    public void setStoricoPrestiti(StoricoPrestiti storico) {
+        this.storico = storico;
+    }
+
+    
+    /**
+     * @brief Registra una mutazione nel giornale e, se necessario, avvia la compattazione.
+     * 
+     * Se il giornale non è scrivibile, la mutazione (già applicata in memoria) è resa
+     * persistente subito con uno snapshot completo dello stato, prima di confermare
+     * l'operazione; l'operatore viene avvisato in ogni caso.
+     * 
+     * @param[in] m La mutazione appena applicata con successo allo stato in memoria.
+     */
+    private void registraMutazione(Mutazione m) {
+        if (giornale == null) return;
+        
+        if (!giornale.registra(m)) {
+            scriviLog("ATTENZIONE: scrittura sul giornale fallita per " + m + ". Salvataggio completo dell'archivio.");
+            if (salvaSnapshotCompleto()) {
+                segnalaErrore(MessaggiInterfaccia.AVVISO_GIORNALE_NON_SCRITTO);
+            } else {
+                scriviLog("ERRORE: modifica non salvata su disco: " + m);
+                segnalaErrore(MessaggiInterfaccia.ERRORE_MODIFICA_NON_SALVATA);
+            }
+            return;
+        }
+        
+        if (giornale.richiedeCompattazione()) {
+            giornale.compatta(new GiornaleMutazioni.Compattatore() {
+                @Override
+                public List<String> compatta(long finoAGenerazione) {
+                    return compattaSnapshot(finoAGenerazione);
+                }
+            });
+        }
+    }
+    
+    
+    /**
+     * @brief Salva lo stato in memoria come nuovo snapshot e scarta il giornale che esso copre.
+     * 
+     * Come in chiudiSistema(): lo snapshot comprende anche le mutazioni che il giornale non
+     * ha registrato.
+     * 
+     * @pre
+     * - Nessun'altra modifica è applicata mentre lo snapshot viene scritto (scrittore unico:
+     *   il thread della GUI, oppure il lock delle scritture di ServerHttp). Altrimenti una
+     *   modifica registrata nella generazione successiva e già compresa nello snapshot verrebbe
+     *   rieseguita all'avvio: la riesecuzione non è idempotente (es. un prestito aperto e
+     *   restituito nel frattempo sarebbe ricreato e chiuso una seconda volta nello storico).
+     * 
+     * @return true se lo snapshot è stato scritto e pubblicato.
+     */
+    private boolean salvaSnapshotCompleto() {
+        giornale.attendiCompattazione();
+        long fino = giornale.ruota();
+        List<String> nomi = salvaSnapshotNuovi(catalogo, anagrafica, registro);
+        return nomi != null && giornale.pubblicaSnapshot(fino, nomi);
+    }
+    
+    
+    /**
+     * @brief Inoltra un messaggio di errore al gestore della GUI, se impostato.
+     * 
+     * @param[in] messaggio Il messaggio da mostrare all'operatore.
+     */
+    private void segnalaErrore(final String messaggio) {
+        final Consumer<String> gestore = gestoreErrori;
+        if (gestore != null) {
+            esecutoreGui.execute(() -> gestore.accept(messaggio));
+        }
+    }
+    
+    
+    /**
+     * @brief Ripiega il giornale in un nuovo snapshot (eseguito dal thread del compattatore).
+     * 
+     * Non tocca lo stato in memoria usato dalla GUI: ricarica l'ultimo snapshot da disco
+     * in istanze private, riesegue le mutazioni fino alla generazione indicata e salva
+     * il risultato nei file ".nuovo", che il giornale provvede poi a pubblicare.
+     * 
+     * @param[in] finoAGenerazione Ultima generazione del giornale da includere.
+     * 
+     * @return I nomi degli snapshot scritti, oppure null se il salvataggio è fallito.
+     */
+    private List<String> compattaSnapshot(long finoAGenerazione) {
+        Object catObj = archivio.caricaStato(FILE_LIBRI);
+        Object anagObj = archivio.caricaStato(FILE_UTENTI);
+        Object regObj = archivio.caricaStato(FILE_PRESTITI);
+        
+        final Catalogo c = (catObj instanceof Catalogo) ? (Catalogo) catObj : new Catalogo();
+        final Anagrafica a = (anagObj instanceof Anagrafica) ? (Anagrafica) anagObj : new Anagrafica();
+        final RegistroPrestiti r = (regObj instanceof RegistroPrestiti) ? (RegistroPrestiti) regObj : new RegistroPrestiti(c, a);
+        r.setCatalogo(c);
+        r.setAnagrafica(a);
+        r.setStorico(storico);
+        r.ricollega();
+        
+        giornale.riproduci(giornale.getGenerazioneCompattata(), finoAGenerazione, new Consumer<Mutazione>() {
+            @Override
+            public void accept(Mutazione m) {
+                applicaMutazione(m, c, a, r);
+            }
+        });
+        
+        // Le restituzioni sono già nello storico (archiviate dalla GUI): non vengono duplicate
+        r.archiviaChiusi();
+        return salvaSnapshotNuovi(c, a, r);
+    }
+    
+    
+    /**
+     * @brief Salva i tre snapshot con suffisso ".nuovo", pronti per la pubblicazione.
+     * @return I nomi degli snapshot salvati, oppure null se almeno un salvataggio fallisce.
+     */
+    private List<String> salvaSnapshotNuovi(Catalogo c, Anagrafica a, RegistroPrestiti r) {
+        String suffisso = GiornaleMutazioni.SUFFISSO_SNAPSHOT_NUOVO;
+        boolean ok = archivio.salvaStato(c, FILE_LIBRI + suffisso)
+                  && archivio.salvaStato(a, FILE_UTENTI + suffisso)
+                  && archivio.salvaStato(r, FILE_PRESTITI + suffisso);
+        // La pubblicazione richiede che i file siano davvero su disco
+        ok = ok && attendiScritture();
+        return ok ? Arrays.asList(FILE_LIBRI, FILE_UTENTI, FILE_PRESTITI) : null;
+    }
+    
+    
+    /**
+     * @brief Attende che i salvataggi accodati siano scritti (solo con archivio a scrittura differita).
+     * @return true se tutte le scritture sono andate a buon fine.
+     */
+    private boolean attendiScritture() {
+        if (archivio instanceof ArchivioDifferito) {
+            return ((ArchivioDifferito) archivio).awaitDurable();
+        }
+        return true;
+    }
+    
+    
+    /**
+     * @brief Applica una mutazione del giornale ai servizi di dominio indicati.
+     * 
+     * Usato sia all'avvio (sullo stato della GUI) sia dal compattatore (su istanze private).
+     * Gli inserimenti sono già stati accettati quando sono stati registrati: come per i file salvati
+     * non sono sottoposti ai vincoli introdotti dopo (unicità di email e di ISBN canonico).
+     */
+    private static void applicaMutazione(Mutazione m, Catalogo c, Anagrafica a, RegistroPrestiti r) {
+        switch (m.getTipo()) {
+            case AGGIUNTA_LIBRO:
+                c.caricaLibro(m.getLibro());
+                break;
+            case MODIFICA_LIBRO:
+                c.modificaLibro(m.getChiave(), m.getLibro());
+                break;
+            case RIMOZIONE_LIBRO:
+                c.rimuoviLibro(m.getChiave());
+                break;
+            case AGGIUNTA_UTENTE:
+                a.caricaUtente(m.getUtente());
+                break;
+            case MODIFICA_UTENTE:
+                a.modificaUtente(m.getChiave(), m.getUtente());
+                break;
+            case RIMOZIONE_UTENTE:
+                a.rimuoviUtente(m.getChiave());
+                break;
+            case PRESTITO:
+                r.ripristinaPrestito(m.getIdPrestito(), m.getIsbn(), m.getMatricola(), m.getDataInizio(), m.getDataPrevista());
+                break;
+            case RESTITUZIONE:
+                Prestito p = r.trovaPrestito(m.getIdPrestito());
+                if (p != null && p.getDataEffettivaRestituzione() == null) {
+                    r.registraRestituzione(m.getIdPrestito(), m.getDataEffettiva());
+                }
+                break;
+            case LOTTO:
+                for (Mutazione voce : m.getVoci()) {
+                    applicaMutazione(voce, c, a, r);
+                }
+                break;
         }
     }
 
@@ -112,45 +396,154 @@ public class GUIController {
     /**
      * @brief Avvia il sistema caricando i dati persistenti.
      * 
+     * I tre archivi e lo storico dei log sono letti in parallelo (CaricatoreParallelo);
+     * il ricollegamento dei prestiti e la riesecuzione del giornale avvengono dopo,
+     * quando tutti i caricamenti sono conclusi. I messaggi dell'avvio vengono registrati
+     * al termine, insieme ai tempi di ogni fase.
+     * 
      * @post
      * - I file "libri.dat", "utenti.dat", "prestiti.dat" vengono deserializzati.
      * - Le dipendenze circolari (Registro -> Catalogo/Anagrafica) vengono risolte.
+     * - La lista dei log per la GUI contiene lo storico.
      * - In caso di errore, l'eccezione viene catturata e loggata.
      * 
      * @return true se il caricamento ha successo, false altrimenti.
      */
     public boolean avviaSistema(){
+        return avviaSistema(null);
+    }
+    
+    
+    /**
+     * @brief Avvia il sistema notificando l'avanzamento del caricamento.
+     * 
+     * Pensato per l'esecuzione in background mentre è già visibile la finestra di login.
+     * 
+     * @param[in] avanzamento Riceve la frazione completata (0..1) e la descrizione
+     *            dell'ultima fase conclusa; invocato dal thread che esegue l'avvio (può essere null).
+     * 
+     * @return true se il caricamento ha successo, false altrimenti.
+     * 
+     * @see avviaSistema()
+     */
+    public boolean avviaSistema(BiConsumer<Double, String> avanzamento){
+        int fasiTotali = (giornale != null) ? 7 : 5;
+        int fasi = 0;
+        CaricatoreParallelo caricatore = new CaricatoreParallelo(CaricatoreParallelo.THREAD_DEFAULT);
+        List<String> messaggi = new ArrayList<>();
+        messaggi.add("--- AVVIO SISTEMA ---");
+        boolean esito;
+        
+        // Storico dei log (con l'eventuale migrazione del vecchio "audit_log.dat")
+        Future<List<String>> storicoLog = caricatore.avvia(AuditTrail.NOME_FILE_LOG, new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                if (logger instanceof AuditTrailSegmentato) {
+                    ((AuditTrailSegmentato) logger).importaDaArchivio(archivio);
+                }
+                return logger.visualizzaLog();
+            }
+        });
+        
         try {
-            scriviLog("--- AVVIO SISTEMA ---");
+            // Completa un'eventuale pubblicazione di snapshot interrotta da un crash
+            long inizio = System.nanoTime();
+            if (giornale != null) {
+                giornale.recupera();
+                caricatore.registraFase("recupero giornale", inizio);
+                notifica(avanzamento, ++fasi, fasiTotali, "Giornale verificato");
+            }
 
-            // Carica CATALOGO
-            Object catObj = archivio.caricaStato(FILE_LIBRI);
+            // Caricamento in parallelo di CATALOGO, ANAGRAFICA e REGISTRO PRESTITI
+            Future<Object> catFuturo = caricatore.carica(archivio, FILE_LIBRI);
+            Future<Object> anagFuturo = caricatore.carica(archivio, FILE_UTENTI);
+            Future<Object> regFuturo = caricatore.carica(archivio, FILE_PRESTITI);
+            
+            Object catObj = caricatore.attendi(catFuturo);
             if (catObj instanceof Catalogo) {
                 this.catalogo = (Catalogo) catObj;
             }
+            notifica(avanzamento, ++fasi, fasiTotali, "Catalogo caricato");
 
-            // Carica ANAGRAFICA
-            Object anagObj = archivio.caricaStato(FILE_UTENTI);
+            Object anagObj = caricatore.attendi(anagFuturo);
             if (anagObj instanceof Anagrafica) {
                 this.anagrafica = (Anagrafica) anagObj;
             }
+            notifica(avanzamento, ++fasi, fasiTotali, "Utenti caricati");
 
-            // Carica REGISTRO PRESTITI
-            Object regObj = archivio.caricaStato(FILE_PRESTITI);
+            Object regObj = caricatore.attendi(regFuturo);
             if (regObj instanceof RegistroPrestiti) {
                 this.registro = (RegistroPrestiti) regObj;
             }
+            notifica(avanzamento, ++fasi, fasiTotali, "Prestiti caricati");
 
             // RICOLLEGAMENTO DIPENDENZE
+            inizio = System.nanoTime();
             this.registro.setCatalogo(this.catalogo);
             this.registro.setAnagrafica(this.anagrafica);
+            this.registro.setStorico(this.storico);
+            
+            // I prestiti sono salvati per ISBN/matricola: li punto alle istanze caricate
+            int nonRisolti = this.registro.ricollega();
+            if (nonRisolti > 0) {
+                messaggi.add("Prestiti con libro o utente non più presenti: " + nonRisolti);
+            }
+            caricatore.registraFase("ricollegamento", inizio);
+            notifica(avanzamento, ++fasi, fasiTotali, "Prestiti collegati");
+            
+            // Riesecuzione delle operazioni successive all'ultimo snapshot
+            if (giornale != null) {
+                inizio = System.nanoTime();
+                int rieseguite = giornale.riproduci(new Consumer<Mutazione>() {
+                    @Override
+                    public void accept(Mutazione m) {
+                        applicaMutazione(m, catalogo, anagrafica, registro);
+                    }
+                });
+                catalogo.segnalaEquivalentiCaricati();
+                caricatore.registraFase("riesecuzione giornale", inizio);
+                notifica(avanzamento, ++fasi, fasiTotali, "Operazioni recenti ripristinate");
+                if (rieseguite > 0) {
+                    messaggi.add("Ripristinate " + rieseguite + " operazioni dal giornale.");
+                }
+            }
+            
+            // Prestiti chiusi rimasti nel registro (es. archivi delle versioni precedenti)
+            inizio = System.nanoTime();
+            int archiviati = this.registro.archiviaChiusi();
+            if (archiviati > 0) {
+                caricatore.registraFase("archiviazione storico", inizio);
+                messaggi.add("Spostati nello storico " + archiviati + " prestiti chiusi.");
+            }
 
-            scriviLog("Dati caricati correttamente.");
-            return true;
+            messaggi.add("Dati caricati correttamente.");
+            esito = true;
         } catch (Exception e) {
             e.printStackTrace();
-            scriviLog("Errore durante il caricamento dati: " + e.getMessage());
-            return false;
+            messaggi.add("Errore durante il caricamento dati: " + e.getMessage());
+            esito = false;
+        }
+        
+        try {
+            mostraStoricoLog(caricatore.attendi(storicoLog));
+        } catch (Exception e) {
+            messaggi.add("Storico dei log non disponibile: " + e.getMessage());
+        }
+        notifica(avanzamento, fasiTotali, fasiTotali, "Storico log caricato");
+        caricatore.chiudi();
+        
+        // Registrati solo ora, per non mescolarli allo storico letto in parallelo
+        messaggi.add(caricatore.riepilogo());
+        for (String messaggio : messaggi) {
+            scriviLog(messaggio);
+        }
+        return esito;
+    }
+    
+    
+    private static void notifica(BiConsumer<Double, String> avanzamento, int fatte, int totali, String fase) {
+        if (avanzamento != null) {
+            avanzamento.accept((double) fatte / totali, fase);
         }
     }
     
@@ -159,7 +552,10 @@ public class GUIController {
      * @brief Esegue la procedura di shutdown sicuro del sistema.
      * 
      * @post
-     * - Lo stato corrente di Catalogo, Anagrafica e Registro viene serializzato su file.
+     * - Lo stato corrente di Catalogo, Anagrafica e Registro viene serializzato su file
+     *   (con archivio a scrittura differita: la coda è svuotata e il writer arrestato).
+     * - Con il giornale attivo, lo snapshot ripiega tutte le mutazioni e il giornale viene svuotato.
+     * - Lo storico dei prestiti viene chiuso, comprimendo i mesi conclusi.
      * - Il buffer dei log viene scaricato su file di testo.
      * 
      * @return true se il salvataggio ha successo, false altrimenti.
@@ -168,12 +564,38 @@ public class GUIController {
         try {
             scriviLog("--- CHIUSURA SISTEMA ---");
 
-            archivio.salvaStato(catalogo, FILE_LIBRI);
-            archivio.salvaStato(anagrafica, FILE_UTENTI);
-            archivio.salvaStato(registro, FILE_PRESTITI);
+            if (giornale != null) {
+                // Lo snapshot finale copre tutto il giornale: attendo il compattatore e lo pubblico
+                giornale.attendiCompattazione();
+                long fino = giornale.ruota();
+                List<String> nomi = salvaSnapshotNuovi(catalogo, anagrafica, registro);
+                if (nomi != null) {
+                    giornale.pubblicaSnapshot(fino, nomi);
+                }
+                giornale.chiudi();
+            } else {
+                archivio.salvaStato(catalogo, FILE_LIBRI);
+                archivio.salvaStato(anagrafica, FILE_UTENTI);
+                archivio.salvaStato(registro, FILE_PRESTITI);
+            }
+            
+            // Svuota la coda dell'archivio a scrittura differita prima di uscire
+            if (archivio instanceof ArchivioDifferito) {
+                ArchivioDifferito differito = (ArchivioDifferito) archivio;
+                if (!differito.chiudi()) {
+                    scriviLog("ATTENZIONE: alcuni salvataggi non sono stati scritti su disco.");
+                }
+                scriviLog(differito.riepilogo());
+            }
             
-            // Salva il Log completo su file
-            archivio.salvaStato(logger.visualizzaLog(), AuditTrail.NOME_FILE_LOG);
+            // Lo snapshot finale è pubblicato: i mesi conclusi dello storico possono essere compressi
+            if (storico != null) {
+                storico.comprimiMesiChiusi(YearMonth.now());
+                storico.chiudi();
+            }
+            
+            // Rende persistente il Log (per i segmenti append-only è un semplice fsync)
+            logger.salvaLog();
 
             return true;
         } catch (Exception e) {
@@ -203,13 +625,12 @@ public class GUIController {
     public boolean aggiungiUtente(Utente u){
         if (u == null) return false;
         
-        if (!valida.validaMatricola(u.getMatricola())) return false;
-        if (!valida.validaEmail(u.getEmail())) return false;
-        if (!valida.validaNomeCognome(u.getNome(), u.getCognome())) return false;
+        if (valida.validaUtente(u) != null) return false;
         
         boolean esito = anagrafica.aggiungiUtente(u);
         
         if (esito){
+            registraMutazione(Mutazione.aggiuntaUtente(u));
             scriviLog("Aggiunto nuovo utente: " + u.getMatricola());
         }
         else{
@@ -235,9 +656,7 @@ public class GUIController {
     public boolean modificaUtente(String matrOriginale, Utente uNuovo){
         if (matrOriginale == null || uNuovo == null) return false;
         
-        if (!valida.validaMatricola(uNuovo.getMatricola())) return false;
-        if (!valida.validaEmail(uNuovo.getEmail())) return false;
-        if (!valida.validaNomeCognome(uNuovo.getNome(), uNuovo.getCognome())) return false;
+        if (valida.validaUtente(uNuovo) != null) return false;
         
         // Se la matricola è cambiata, verifico che non ci siano prestiti sulla vecchia
         if (!matrOriginale.equals(uNuovo.getMatricola())) {
@@ -250,6 +669,7 @@ public class GUIController {
         boolean esito = anagrafica.modificaUtente(matrOriginale, uNuovo);
         
         if (esito){
+            registraMutazione(Mutazione.modificaUtente(matrOriginale, uNuovo));
             scriviLog("Modificato utente: " + matrOriginale);
         }
         return esito;
@@ -280,6 +700,7 @@ public class GUIController {
         boolean esito = anagrafica.rimuoviUtente(matr);
         
         if (esito){
+            registraMutazione(Mutazione.rimozioneUtente(matr));
             scriviLog("Rimosso utente: " + matr);
         }
         return esito;
@@ -309,6 +730,21 @@ public class GUIController {
     }
     
     
+    /**
+     * @brief Restituisce una pagina dell'anagrafica ordinata per Cognome.
+     * 
+     * @param[in] inizio Posizione del primo utente (da 0).
+     * @param[in] quanti Numero massimo di utenti.
+     * 
+     * @return Lista di al più "quanti" utenti.
+     * 
+     * @see Anagrafica#visualizzaPagina(int, int)
+     */
+    public List<Utente> ottieniPaginaAnagrafica(int inizio, int quanti){
+        return anagrafica.visualizzaPagina(inizio, quanti);
+    }
+    
+    
     /**
      * @brief Aggiunge un nuovo libro al catalogo.
      * 
@@ -324,13 +760,12 @@ public class GUIController {
     public boolean aggiungiLibro(Libro l){
         if (l == null) return false;
         
-        if (!valida.validaISBN(l.getISBN())) return false;
-        if (!valida.validaAnnoPubblicazione(l.getAnno())) return false;
-        if (l.getTitolo() == null || l.getTitolo().isEmpty()) return false;
+        if (valida.validaLibro(l) != null) return false;
         
         boolean esito = catalogo.aggiungiLibro(l);
         
         if (esito){
+            registraMutazione(Mutazione.aggiuntaLibro(l));
             scriviLog("Aggiunto libro: " + l.getISBN());
         }
         else{
@@ -341,6 +776,136 @@ public class GUIController {
     }
     
     
+    /**
+     * @brief Importa in blocco i libri di un file CSV.
+     * 
+     * Le righe sono validate in parallelo e inserite a blocchi (vedi ImportatoreLibri);
+     * invece di un record di log per libro, l'audit trail riceve un solo riepilogo.
+     * Con il giornale ogni blocco inserito diventa un lotto di al più VOCI_PER_RECORD
+     * aggiunte; senza giornale il catalogo è salvato una sola volta alla fine.
+     * 
+     * @param[in] sorgente Il testo CSV (isbn;titolo;autori;anno;copie).
+     * @param[in] scarti Destinazione del rapporto delle righe rifiutate (può essere null).
+     * 
+     * @return Il riepilogo dell'importazione.
+     * 
+     * @throws IOException se la lettura si interrompe: i blocchi già inseriti restano
+     *         nel catalogo (e nel giornale) e l'interruzione è registrata nel log.
+     */
+    public RiepilogoImportazione importaLibri(Reader sorgente, Writer scarti) throws IOException {
+        return importa(new ImportatoreLibri(catalogo, valida), sorgente, scarti, catalogo, FILE_LIBRI);
+    }
+    
+    
+    /**
+     * @brief Importa in blocco gli utenti del CSV delle immatricolazioni.
+     * 
+     * Ogni riga inserisce un nuovo utente o aggiorna quello con la stessa matricola
+     * (vedi ImportatoreUtenti); le righe identiche ai dati registrati non producono modifiche.
+     * Giornale e audit trail sono gestiti come in importaLibri().
+     * 
+     * @param[in] sorgente Il testo CSV (matricola;nome;cognome;email).
+     * @param[in] scarti Destinazione del rapporto delle righe rifiutate (può essere null).
+     * 
+     * @return Il riepilogo dell'importazione.
+     * 
+     * @throws IOException se la lettura si interrompe: i blocchi già applicati restano
+     *         nell'anagrafica (e nel giornale) e l'interruzione è registrata nel log.
+     */
+    public RiepilogoImportazione importaUtenti(Reader sorgente, Writer scarti) throws IOException {
+        return importa(new ImportatoreUtenti(anagrafica, valida), sorgente, scarti, anagrafica, FILE_UTENTI);
+    }
+    
+    
+    /**
+     * @brief Esporta in streaming i libri del catalogo (vedi Esportatore).
+     * 
+     * @param[in] out La destinazione (svuotata, non chiusa).
+     * @param[in] formato CSV o JSON Lines.
+     * @param[in] filtro Condizione sui libri (null = tutti), es. Esportatore.LIBRI_NON_DISPONIBILI.
+     * 
+     * @return Il numero di libri scritti.
+     * 
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaLibri(Writer out, Esportatore.Formato formato, Predicate<? super Libro> filtro) throws IOException {
+        long inizio = System.nanoTime();
+        long scritti = new Esportatore(catalogo, anagrafica, registro).esportaLibri(out, formato, filtro);
+        scriviLog(riepilogoEsportazione("libri", scritti, inizio));
+        return scritti;
+    }
+    
+    
+    /**
+     * @brief Esporta in streaming gli utenti dell'anagrafica (vedi Esportatore).
+     * 
+     * @param[in] out La destinazione (svuotata, non chiusa).
+     * @param[in] formato CSV o JSON Lines.
+     * @param[in] filtro Condizione sugli utenti (null = tutti).
+     * 
+     * @return Il numero di utenti scritti.
+     * 
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaUtenti(Writer out, Esportatore.Formato formato, Predicate<? super Utente> filtro) throws IOException {
+        long inizio = System.nanoTime();
+        long scritti = new Esportatore(catalogo, anagrafica, registro).esportaUtenti(out, formato, filtro);
+        scriviLog(riepilogoEsportazione("utenti", scritti, inizio));
+        return scritti;
+    }
+    
+    
+    /**
+     * @brief Esporta in streaming i prestiti in corso e lo storico (vedi Esportatore).
+     * 
+     * @param[in] out La destinazione (svuotata, non chiusa).
+     * @param[in] formato CSV o JSON Lines.
+     * @param[in] filtro Condizione sui prestiti (null = tutti), es. Esportatore.PRESTITI_IN_RITARDO.
+     * 
+     * @return Il numero di prestiti scritti.
+     * 
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaPrestiti(Writer out, Esportatore.Formato formato, Predicate<? super Prestito> filtro) throws IOException {
+        long inizio = System.nanoTime();
+        long scritti = new Esportatore(catalogo, anagrafica, registro).esportaPrestiti(out, formato, filtro);
+        scriviLog(riepilogoEsportazione("prestiti", scritti, inizio));
+        return scritti;
+    }
+    
+    
+    private static String riepilogoEsportazione(String oggetto, long scritti, long inizio) {
+        return String.format("ESPORTAZIONE %s: %,d righe in %,d ms", oggetto, scritti, (System.nanoTime() - inizio) / 1_000_000);
+    }
+    
+    
+    private RiepilogoImportazione importa(ImportatoreCsv<?> importatore, Reader sorgente, Writer scarti,
+                                          Object stato, String file) throws IOException {
+        final long[] applicate = new long[1];
+        try {
+            RiepilogoImportazione riepilogo = importatore.importa(sorgente, scarti, new Consumer<List<Mutazione>>() {
+                @Override
+                public void accept(List<Mutazione> blocco) {
+                    applicate[0] += blocco.size();
+                    for (int da = 0; da < blocco.size(); da += VOCI_PER_RECORD) {
+                        List<Mutazione> voci = new ArrayList<>(blocco.subList(da, Math.min(blocco.size(), da + VOCI_PER_RECORD)));
+                        registraMutazione(Mutazione.lotto(voci));
+                    }
+                }
+            });
+            scriviLog(riepilogo.toString());
+            return riepilogo;
+        } catch (IOException | RuntimeException e) {
+            scriviLog("IMPORTAZIONE " + importatore.getOggetto() + " INTERROTTA dopo " + applicate[0] + " righe applicate: " + e.getMessage());
+            throw e;
+        } finally {
+            if (giornale == null && applicate[0] > 0) {
+                archivio.salvaStato(stato, file);
+            }
+        }
+    }
+    
+    
     /**
      * @brief Modifica i dati di un libro esistente.
      * 
@@ -359,19 +924,15 @@ public class GUIController {
         if (!valida.validaAnnoPubblicazione(lNuovo.getAnno())) return false;
         
         // Se l'ISBN è cambiato, verifico che il vecchio libro non sia in prestito
-        if (!isbnOriginale.equals(lNuovo.getISBN())) {
-            List<Prestito> attivi = registro.getPrestitiAttivi();
-            for(Prestito p : attivi){
-                if(p.getLibro().getISBN().equals(isbnOriginale)){
-                    scriviLog("Modifica LIBRO fallita: " + isbnOriginale + " è in prestito. Impossibile cambiare ISBN.");
-                    return false;
-                }
-            }
+        if (!isbnOriginale.equals(lNuovo.getISBN()) && registro.haPrestitiAttiviLibro(isbnOriginale)) {
+            scriviLog("Modifica LIBRO fallita: " + isbnOriginale + " è in prestito. Impossibile cambiare ISBN.");
+            return false;
         }
         
         boolean esito = catalogo.modificaLibro(isbnOriginale, lNuovo);
         
         if (esito){
+            registraMutazione(Mutazione.modificaLibro(isbnOriginale, lNuovo));
             scriviLog("Modificato libro: " + isbnOriginale);
         }
         return esito;
@@ -391,17 +952,15 @@ public class GUIController {
     public boolean rimuoviLibro(String isbn){
         if (!valida.validaISBN(isbn)) return false;
         
-        List<Prestito> attivi = registro.getPrestitiAttivi();
-        for(Prestito p : attivi){
-            if(p.getLibro().getISBN().equals(isbn)){
-                scriviLog("Rimozione libro " + isbn + " BLOCCATA: è attualmente in prestito.");
-                return false;
-            }
+        if (registro.haPrestitiAttiviLibro(isbn)) {
+            scriviLog("Rimozione libro " + isbn + " BLOCCATA: è attualmente in prestito.");
+            return false;
         }
         
         boolean esito = catalogo.rimuoviLibro(isbn);
         
         if (esito){
+            registraMutazione(Mutazione.rimozioneLibro(isbn));
             scriviLog("Rimosso libro: " + isbn);
         }
         return esito;
@@ -429,6 +988,21 @@ public class GUIController {
     public List<Libro> ottieniCatalogoOrdinato(){
         return catalogo.visualizzaOrdinata();
     }
+    
+    
+    /**
+     * @brief Restituisce una pagina del catalogo ordinato per Titolo.
+     * 
+     * @param[in] inizio Posizione del primo libro (da 0).
+     * @param[in] quanti Numero massimo di libri.
+     * 
+     * @return Lista di al più "quanti" libri.
+     * 
+     * @see Catalogo#visualizzaPagina(int, int)
+     */
+    public List<Libro> ottieniPaginaCatalogo(int inizio, int quanti){
+        return catalogo.visualizzaPagina(inizio, quanti);
+    }
 
     
     /**
@@ -446,7 +1020,7 @@ public class GUIController {
      * @post
      * - Crea un oggetto Prestito.
      * - Decrementa le copie disponibili del libro.
-     * - Salva lo stato del catalogo su file.
+     * - Registra il prestito nel giornale (senza giornale: salva lo stato del catalogo su file).
      * 
      * @return true se il prestito è registrato con successo.
      */
@@ -456,9 +1030,12 @@ public class GUIController {
         }
         
         Prestito p = registro.registraPrestito(isbn, matricola, dataPrevistaRestituzione);
-        archivio.salvaStato(catalogo, FILE_LIBRI);
+        if (giornale == null) {
+            archivio.salvaStato(catalogo, FILE_LIBRI);
+        }
         
         if (p != null) {
+            registraMutazione(Mutazione.prestito(p));
             scriviLog("NUOVO PRESTITO: ID " + p.getIdPrestito() + " | Libro: " + isbn + " | Utente: " + matricola);
             return true;
         } else {
@@ -477,7 +1054,7 @@ public class GUIController {
      * @post
      * - Aggiorna la data di restituzione nel prestito.
      * - Incrementa le copie disponibili del libro.
-     * - Aggiorna il file del catalogo.
+     * - Registra la restituzione nel giornale (senza giornale: aggiorna il file del catalogo).
      * 
      * @return true se la restituzione è registrata, false se ID non trovato o già chiuso.
      */
@@ -485,16 +1062,117 @@ public class GUIController {
         boolean esito = registro.registraRestituzione(idPrestito, dataEffettivaRestituzione);
         
         if (esito) {
+            registraMutazione(Mutazione.restituzione(idPrestito, dataEffettivaRestituzione));
             scriviLog("RESTITUZIONE REGISTRATA: ID " + idPrestito);
         } else {
             scriviLog("Errore Restituzione: Prestito ID " + idPrestito + " non trovato.");
         }
         
-        archivio.salvaStato(catalogo, FILE_LIBRI);
+        if (giornale == null) {
+            archivio.salvaStato(catalogo, FILE_LIBRI);
+        }
         return esito;
     }
     
     
+    /**
+     * @brief Registra i prestiti di un "carrello" al banco, tutti o nessuno.
+     * 
+     * Il formato di ogni voce è validato prima di interrogare il registro; il lotto
+     * applicato produce un solo record nel giornale (senza giornale: un solo salvataggio
+     * del catalogo) e un solo accesso all'audit trail.
+     * 
+     * @param[in] richieste Le voci del lotto (ISBN, matricola, scadenza).
+     * 
+     * @return L'esito voce per voce; isApplicato() indica se i prestiti sono stati creati.
+     * 
+     * @see RegistroPrestiti#registraPrestiti(List, EsitoLotto)
+     */
+    public EsitoLotto gestisciPrestiti(List<RichiestaPrestito> richieste){
+        EsitoLotto esito = new EsitoLotto(richieste.size());
+        for (int i = 0; i < richieste.size(); i++) {
+            RichiestaPrestito r = richieste.get(i);
+            if (r == null || !valida.validaISBN(r.getIsbn()) || !valida.validaMatricola(r.getMatricola())) {
+                esito.rifiuta(i, EsitoVoce.DATI_NON_VALIDI);
+            }
+        }
+        
+        registro.registraPrestiti(richieste, esito);
+        
+        List<String> messaggi = new ArrayList<>();
+        if (esito.isApplicato()) {
+            List<Mutazione> voci = new ArrayList<>();
+            for (Prestito p : esito.getPrestiti()) {
+                voci.add(Mutazione.prestito(p));
+                messaggi.add("NUOVO PRESTITO: ID " + p.getIdPrestito() + " | Libro: " + p.getIsbn() + " | Utente: " + p.getMatricola());
+            }
+            salvaLotto(voci);
+        } else {
+            messaggi.add("Prestito multiplo RIFIUTATO (" + richieste.size() + " voci): " + descriviRifiuti(esito, richieste));
+        }
+        scriviLog(messaggi);
+        return esito;
+    }
+    
+    
+    /**
+     * @brief Registra più restituzioni con la stessa data, tutte o nessuna.
+     * 
+     * @param[in] idPrestiti Gli ID dei prestiti riconsegnati.
+     * @param[in] dataEffettivaRestituzione Data in cui avviene la riconsegna.
+     * 
+     * @return L'esito voce per voce; isApplicato() indica se i prestiti sono stati chiusi.
+     * 
+     * @see RegistroPrestiti#registraRestituzioni(List, LocalDate)
+     */
+    public EsitoLotto gestisciRestituzioni(List<Integer> idPrestiti, LocalDate dataEffettivaRestituzione){
+        EsitoLotto esito = registro.registraRestituzioni(idPrestiti, dataEffettivaRestituzione);
+        
+        List<String> messaggi = new ArrayList<>();
+        if (esito.isApplicato()) {
+            List<Mutazione> voci = new ArrayList<>();
+            for (Prestito p : esito.getPrestiti()) {
+                voci.add(Mutazione.restituzione(p.getIdPrestito(), dataEffettivaRestituzione));
+                messaggi.add("RESTITUZIONE REGISTRATA: ID " + p.getIdPrestito());
+            }
+            salvaLotto(voci);
+        } else {
+            messaggi.add("Restituzione multipla RIFIUTATA (" + idPrestiti.size() + " voci): " + descriviRifiuti(esito, idPrestiti));
+        }
+        scriviLog(messaggi);
+        return esito;
+    }
+    
+    
+    /**
+     * @brief Rende persistente un lotto già applicato in memoria.
+     * 
+     * Con il giornale le mutazioni diventano un unico record (rieseguito per intero o per nulla);
+     * senza giornale il catalogo viene salvato una sola volta.
+     */
+    private void salvaLotto(List<Mutazione> voci) {
+        if (voci.isEmpty()) return;
+        if (giornale == null) {
+            archivio.salvaStato(catalogo, FILE_LIBRI);
+        } else {
+            registraMutazione(Mutazione.lotto(voci));
+        }
+    }
+    
+    
+    // Elenco leggibile delle voci rifiutate, es. "#2 ISBN-9 -> MATR-1: COPIE_ESAURITE"
+    private static String descriviRifiuti(EsitoLotto esito, List<?> voci) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < esito.dimensione(); i++) {
+            EsitoVoce e = esito.getEsito(i);
+            if (e == EsitoVoce.ANNULLATO) continue;
+            if (sb.length() > 0) sb.append("; ");
+            sb.append('#').append(i + 1).append(' ').append(voci.get(i)).append(": ").append(e);
+        }
+        return sb.toString();
+    }
+    
+    
     /**
      * @brief Recupera la lista dei prestiti attivi nel sistema.
      * 
@@ -506,6 +1184,33 @@ public class GUIController {
     public List<Prestito> ottieniReportPrestiti(){
         return registro.getPrestitiAttivi();
     }
+    
+    
+    /**
+     * @brief Restituisce una pagina dei prestiti attivi, ordinati per scadenza.
+     * 
+     * @param[in] inizio Posizione del primo prestito (da 0).
+     * @param[in] quanti Numero massimo di prestiti.
+     * 
+     * @return Lista di al più "quanti" prestiti.
+     * 
+     * @see RegistroPrestiti#paginaPrestitiAttivi(int, int)
+     */
+    public List<Prestito> ottieniPaginaPrestiti(int inizio, int quanti){
+        return registro.paginaPrestitiAttivi(inizio, quanti);
+    }
+    
+    
+    /**
+     * @brief Recupera i prestiti attivi di un singolo utente.
+     * 
+     * @param[in] matricola Matricola dell'utente.
+     * 
+     * @return I prestiti non ancora conclusi dell'utente, ordinati per scadenza.
+     */
+    public List<Prestito> ottieniPrestitiAttiviUtente(String matricola){
+        return registro.getPrestitiAttiviUtente(matricola);
+    }
 
     
     /**
@@ -7,6 +7,9 @@ package it.unisa.sgbu.gui;
 
 import it.unisa.sgbu.domain.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -37,6 +40,12 @@ public class GUIView {
     private ObservableList<String> datiAuditTrail;
     
     private DashboardController dashboardController;
+    private LoginController loginController;
+    
+    // Caricamento dell'archivio in background (null se avviaSistema() è stato eseguito prima della GUI)
+    private Task<Boolean> caricamento;
+    private boolean datiPronti = true;
+    private boolean accessoEffettuato;
 
     
     /**
@@ -612,7 +621,7 @@ public class GUIView {
         grid.setPadding(new Insets(20, 150, 10, 10));
 
         ComboBox<String> comboCriterio = new ComboBox<>();
-        comboCriterio.getItems().addAll("Cognome", "Matricola");
+        comboCriterio.getItems().addAll("Cognome", "Matricola", "Email");
         comboCriterio.setValue("Cognome"); 
 
         TextField txtQuery = new TextField();
@@ -717,6 +726,21 @@ public class GUIView {
     }
     
     
+    /**
+     * @brief Mostra un messaggio di errore (Alert).
+     * 
+     * @param[in] msg Il messaggio da mostrare.
+     */
+    public void mostraErrore(String msg){
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("SGBU Errore");
+        alert.setHeaderText(null);
+        alert.setContentText(msg);
+        stilaPulsantiDialogo(alert);
+        alert.showAndWait();
+    }
+    
+    
     /**
      * @brief Carica e mostra la finestra di Login iniziale.
      * 
@@ -731,6 +755,10 @@ public class GUIView {
             Parent root = loader.load();
             LoginController controller = loader.getController();
             controller.setSistema(this.sistema, this);
+            this.loginController = controller;
+            if (!datiPronti) {
+                controller.mostraAvanzamento(caricamento);
+            }
             primaryStage.setScene(new Scene(root));
             primaryStage.setTitle("SGBU - Login");
             primaryStage.show();
@@ -740,6 +768,98 @@ public class GUIView {
     }
     
     
+    /**
+     * @brief Carica l'archivio in background mentre è visibile la finestra di login.
+     * 
+     * Il caricamento (GUIController.avviaSistema) avviene su un thread separato e il suo
+     * avanzamento è mostrato nella finestra di login. La Dashboard viene aperta quando
+     * sia il login sia il caricamento sono completati, in qualunque ordine avvengano.
+     * 
+     * @pre Va invocato dal thread JavaFX, prima o dopo mostraFinestraLogin().
+     * 
+     * @post
+     * - Gli aggiornamenti della lista dei log sono eseguiti sul thread JavaFX.
+     * - Gli errori di persistenza segnalati dal controller sono mostrati con mostraErrore().
+     */
+    public void avviaCaricamentoInBackground(){
+        sistema.setEsecutoreGui(Platform::runLater);
+        sistema.setGestoreErrori(this::mostraErrore);
+        datiPronti = false;
+        
+        caricamento = new Task<Boolean>() {
+            @Override
+            protected Boolean call() {
+                updateMessage("Caricamento archivio...");
+                return sistema.avviaSistema((frazione, fase) -> {
+                    updateProgress(frazione, 1.0);
+                    updateMessage(fase);
+                });
+            }
+        };
+        caricamento.setOnSucceeded(e -> caricamentoCompletato(caricamento.getValue()));
+        caricamento.setOnFailed(e -> {
+            caricamento.getException().printStackTrace();
+            caricamentoCompletato(false);
+        });
+        
+        if (loginController != null) {
+            loginController.mostraAvanzamento(caricamento);
+        }
+        
+        Thread t = new Thread(caricamento, "sgbu-avvio");
+        t.setDaemon(true);
+        t.start();
+    }
+    
+    
+    /**
+     * @brief Notifica che l'operatore si è autenticato.
+     * 
+     * Apre subito la Dashboard se i dati sono pronti, altrimenti la apre
+     * al termine del caricamento.
+     */
+    public void accessoEffettuato(){
+        accessoEffettuato = true;
+        if (datiPronti) {
+            avviaInterfaccia();
+        } else if (loginController != null) {
+            loginController.mostraAttesaCaricamento();
+        }
+    }
+    
+    
+    private void caricamentoCompletato(boolean avviato){
+        datiPronti = true;
+        if (!avviato) {
+            System.err.println("Attenzione: Il sistema è stato avviato con dati vuoti o parziali.");
+        }
+        if (loginController != null) {
+            loginController.nascondiAvanzamento();
+        }
+        if (accessoEffettuato) {
+            avviaInterfaccia();
+        }
+    }
+    
+    
+    /**
+     * @brief Attende la fine dell'eventuale caricamento in background.
+     * 
+     * Da invocare prima di chiudiSistema(): salvare durante il caricamento
+     * sovrascriverebbe l'archivio con dati incompleti.
+     */
+    public void attendiCaricamento(){
+        if (caricamento == null) return;
+        try {
+            caricamento.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Già segnalato da setOnFailed
+        }
+    }
+    
+    
     /**
      * @brief Mostra il log di sistema in una finestra separata.
      * 
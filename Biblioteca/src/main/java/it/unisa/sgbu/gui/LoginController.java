@@ -5,9 +5,12 @@
  */
 package it.unisa.sgbu.gui;
 
+import javafx.concurrent.Worker;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 
 
@@ -23,6 +26,9 @@ public class LoginController {
     @FXML private TextField txtUsername;
     @FXML private PasswordField txtPassword;
     @FXML private Label lblErrore;
+    @FXML private Button btnAccedi;
+    @FXML private ProgressBar barCaricamento;
+    @FXML private Label lblCaricamento;
 
     private GUIController sistema;
     private GUIView mainView;
@@ -57,7 +63,8 @@ public class LoginController {
      * 
      * @post 
      * - Se i campi sono vuoti: viene mostrato un messaggio di errore ("Inserisci username e password").
-     * - Se il login ha successo: viene invocato mainView.avviaInterfaccia() per mostrare la Dashboard.
+     * - Se il login ha successo: viene invocato mainView.accessoEffettuato(), che mostra la Dashboard
+     *   appena i dati sono caricati.
      * - Se il login fallisce: viene mostrato un messaggio di errore e il campo password viene pulito.
      */
     @FXML
@@ -72,11 +79,46 @@ public class LoginController {
         }
 
         if (sistema.gestisciLogin(user, pass)) {
-            mainView.avviaInterfaccia(); 
+            mainView.accessoEffettuato(); 
         } else {
             lblErrore.setText(MessaggiInterfaccia.CREDENZIALI_NON_VALIDE);
             lblErrore.setVisible(true);
             txtPassword.clear();
         }
     }
-}
\ No newline at end of file
+    
+    
+    /**
+     * @brief Mostra l'avanzamento del caricamento dell'archivio in background.
+     * 
+     * @param[in] caricamento Il task di caricamento, di cui vengono seguiti progresso e messaggio.
+     */
+    public void mostraAvanzamento(Worker<?> caricamento) {
+        barCaricamento.progressProperty().bind(caricamento.progressProperty());
+        lblCaricamento.textProperty().bind(caricamento.messageProperty());
+        barCaricamento.setVisible(true);
+        lblCaricamento.setVisible(true);
+    }
+    
+    
+    /**
+     * @brief Blocca il form dopo un login riuscito, in attesa che i dati siano pronti.
+     */
+    public void mostraAttesaCaricamento() {
+        txtUsername.setDisable(true);
+        txtPassword.setDisable(true);
+        btnAccedi.setDisable(true);
+        lblErrore.setVisible(false);
+    }
+    
+    
+    /**
+     * @brief Nasconde l'avanzamento al termine del caricamento.
+     */
+    public void nascondiAvanzamento() {
+        barCaricamento.progressProperty().unbind();
+        lblCaricamento.textProperty().unbind();
+        barCaricamento.setVisible(false);
+        lblCaricamento.setVisible(false);
+    }
+}
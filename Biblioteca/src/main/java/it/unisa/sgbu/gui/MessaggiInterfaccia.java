@@ -17,6 +17,10 @@ public class MessaggiInterfaccia {
     public static final String AVVISO_CARICAMENTO_FALLITO = "Caricamento Dati Fallito. Creazione Archivio Vuoto";
     public static final String ERRORE_GENERICO_SALVATAGGIO = "Impossibile completare l'operazione. Verificare i dati e riprovare.";
     public static final String CREDENZIALI_NON_VALIDE = "Le credenziali inserite non sono valide, riprova";
+    public static final String AVVISO_GIORNALE_NON_SCRITTO = "Impossibile scrivere il giornale delle modifiche: l'archivio è stato salvato per intero.\n"
+                        + "Verificare lo spazio e i permessi della cartella dei dati.";
+    public static final String ERRORE_MODIFICA_NON_SALVATA = "❌ L'ultima modifica NON è stata salvata su disco e andrebbe persa in caso di arresto anomalo.\n"
+                        + "Verificare lo spazio e i permessi della cartella dei dati.";
 
     // --- SEZIONE LIBRI ---
 
@@ -0,0 +1,375 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @brief Decoratore di IArchivioDati con scrittura differita (write-behind).
+ *
+ * salvaStato() non scrive su disco: accoda lo stato e ritorna subito, così il thread
+ * della GUI non resta bloccato sull'I/O. Un unico thread di scrittura in background
+ * salva gli stati accodati allo scadere di un intervallo, oppure su richiesta
+ * (flush(), awaitDurable(), chiudi()).
+ *
+ * Per ogni nome di file viene mantenuto solo l'ultimo stato in attesa: più salvataggi
+ * ravvicinati dello stesso file si riducono a una sola scrittura.
+ *
+ * L'oggetto è codificato in memoria al momento della chiamata, sul thread del chiamante
+ * (StatoCodificato): le modifiche successive, anche da altri thread, non entrano nel
+ * salvataggio già accodato, e il thread di scrittura non legge mai oggetti condivisi.
+ * Al thread della GUI resta il costo della codifica, non quello dell'I/O su disco.
+ */
+public class ArchivioDifferito implements IArchivioDati {
+
+    public static final long INTERVALLO_DEFAULT_MS = 1000;
+
+    private final IArchivioDati destinazione;
+    private final long intervalloMs;
+    private final ScheduledExecutorService scrittore;
+
+    // Stato in attesa per nome file (protetto da "this")
+    private Map<String, StatoCodificato> inAttesa = new LinkedHashMap<>();
+    private boolean svuotamentoProgrammato;
+
+    // Metriche
+    private int profonditaMassima;
+    private long salvataggiRichiesti;
+    private long salvataggiAccorpati;
+    private long scrittureEseguite;
+    private long scrittureFallite;
+    private long latenzaTotaleNs;
+    private long latenzaMassimaNs;
+
+    private final Runnable svuota = new Runnable() {
+        @Override
+        public void run() {
+            svuotaCoda();
+        }
+    };
+
+
+    /**
+     * @brief Costruttore con intervallo di scrittura di default.
+     *
+     * @param[in] destinazione L'archivio che esegue fisicamente le scritture.
+     */
+    public ArchivioDifferito(IArchivioDati destinazione) {
+        this(destinazione, INTERVALLO_DEFAULT_MS);
+    }
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] destinazione L'archivio che esegue fisicamente le scritture.
+     * @param[in] intervalloMs Ritardo massimo, in millisecondi, tra una richiesta e la scrittura.
+     */
+    public ArchivioDifferito(IArchivioDati destinazione, long intervalloMs) {
+        this.destinazione = destinazione;
+        this.intervalloMs = intervalloMs;
+        ScheduledThreadPoolExecutor esecutore = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sgbu-scrittore-archivio");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // Alla chiusura la coda è già stata scritta: lo svuotamento programmato non deve trattenere il thread
+        esecutore.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scrittore = esecutore;
+    }
+
+
+    /**
+     * @brief Accoda il salvataggio di un oggetto.
+     *
+     * Lo stato dell'oggetto è codificato subito; se per lo stesso file c'è già uno
+     * stato in attesa, viene sostituito.
+     *
+     * @param[in] dati L'oggetto da salvare.
+     * @param[in] nomeFile Il nome del file di destinazione.
+     *
+     * @return true se il salvataggio è stato accodato; l'esito della scrittura
+     *         è verificabile con awaitDurable(). false se l'oggetto non è codificabile.
+     */
+    @Override
+    public boolean salvaStato(Object dati, String nomeFile) {
+        if (dati == null || nomeFile == null) return false;
+        if (scrittore.isShutdown()) {
+            // Dopo chiudi() non c'è più il thread di scrittura: salvo direttamente
+            return destinazione.salvaStato(dati, nomeFile);
+        }
+
+        StatoCodificato stato;
+        try {
+            stato = StatoCodificato.codifica(dati);
+        } catch (IOException e) {
+            System.err.println("[ArchivioDifferito] Impossibile codificare " + nomeFile + ": " + e.getMessage());
+            return false;
+        }
+
+        boolean chiuso;
+        synchronized (this) {
+            chiuso = scrittore.isShutdown();
+            if (!chiuso) {
+                salvataggiRichiesti++;
+                if (inAttesa.put(nomeFile, stato) != null) {
+                    salvataggiAccorpati++;
+                }
+                profonditaMassima = Math.max(profonditaMassima, inAttesa.size());
+                programmaSvuotamento();
+            }
+        }
+        // Chiuso nel frattempo: salvo direttamente
+        return chiuso ? destinazione.salvaStato(dati, nomeFile) : true;
+    }
+
+
+    /**
+     * @brief Carica lo stato di un file, tenendo conto dei salvataggi non ancora scritti.
+     *
+     * @param[in] nomeFile Il nome del file da cui leggere.
+     *
+     * @return L'ultimo stato accodato per il file (una copia nuova), se presente; altrimenti quello su disco.
+     */
+    @Override
+    public Object caricaStato(String nomeFile) {
+        StatoCodificato stato;
+        synchronized (this) {
+            stato = inAttesa.get(nomeFile);
+        }
+        if (stato == null) return destinazione.caricaStato(nomeFile);
+        try {
+            return stato.decodifica();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("[ArchivioDifferito] Stato in attesa di " + nomeFile + " non leggibile: " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * @brief Verifica l'esistenza di un file, considerando anche i salvataggi in attesa.
+     */
+    @Override
+    public boolean verificaEsistenzaFile(String nomeFile) {
+        synchronized (this) {
+            if (inAttesa.containsKey(nomeFile)) return true;
+        }
+        return destinazione.verificaEsistenzaFile(nomeFile);
+    }
+
+
+    /**
+     * @brief Restituisce l'impronta del file su disco, o null se ha un salvataggio in attesa.
+     *
+     * Finché il salvataggio non è scritto il file su disco non cambia, ma caricaStato()
+     * restituisce già lo stato accodato: l'impronta non è quindi significativa.
+     */
+    @Override
+    public String impronta(String nomeFile) {
+        synchronized (this) {
+            if (inAttesa.containsKey(nomeFile)) return null;
+        }
+        return destinazione.impronta(nomeFile);
+    }
+
+
+    /**
+     * @brief Avvia subito la scrittura degli stati in attesa, senza attenderne la fine.
+     */
+    public void flush() {
+        if (!scrittore.isShutdown()) {
+            scrittore.execute(svuota);
+        }
+    }
+
+
+    /**
+     * @brief Scrive tutti gli stati in attesa e attende che siano su disco.
+     *
+     * Non va invocato dal thread di scrittura.
+     *
+     * @param[in] timeout Tempo massimo di attesa.
+     * @param[in] unita Unità di misura del timeout.
+     *
+     * @return true se tutti gli stati accodati prima della chiamata sono stati scritti
+     *         senza errori entro il timeout.
+     */
+    public boolean awaitDurable(long timeout, TimeUnit unita) {
+        long scadenza = System.nanoTime() + unita.toNanos(timeout);
+        long fallitePrima;
+        synchronized (this) {
+            fallitePrima = scrittureFallite;
+        }
+
+        try {
+            // Un giro anche a coda vuota: attende la fine di una scrittura già in corso
+            long residuo = scadenza - System.nanoTime();
+            if (residuo <= 0 || scrittore.isShutdown()) return false;
+            scrittore.submit(svuota).get(residuo, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            System.err.println("[ArchivioDifferito] Attesa scrittura interrotta: " + e.getMessage());
+            return false;
+        }
+
+        synchronized (this) {
+            return scrittureFallite == fallitePrima;
+        }
+    }
+
+
+    /**
+     * @brief Come awaitDurable(long, TimeUnit), senza limite di tempo.
+     */
+    public boolean awaitDurable() {
+        return awaitDurable(Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * @brief Scrive gli stati in attesa e arresta il thread di scrittura.
+     *
+     * I salvataggi successivi vengono eseguiti in modo sincrono. Lo svuotamento
+     * periodico ancora programmato viene annullato, senza attendere l'intervallo.
+     *
+     * @return true se tutte le scritture sono andate a buon fine.
+     */
+    public boolean chiudi() {
+        if (scrittore.isShutdown()) return true;
+        boolean esito = awaitDurable();
+        long fallitePrima;
+        synchronized (this) {
+            fallitePrima = scrittureFallite;
+            scrittore.shutdown();
+        }
+        try {
+            scrittore.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (scrittore.isTerminated()) {
+            // Stati accodati tra awaitDurable() e l'arresto: il thread di scrittura non c'è più
+            svuotaCoda();
+        }
+        synchronized (this) {
+            return esito && scrittureFallite == fallitePrima;
+        }
+    }
+
+
+    // --- METRICHE ---
+
+    /** @return Il numero di file con uno stato in attesa di scrittura. */
+    public synchronized int getProfonditaCoda() {
+        return inAttesa.size();
+    }
+
+    /** @return La profondità massima raggiunta dalla coda. */
+    public synchronized int getProfonditaMassima() {
+        return profonditaMassima;
+    }
+
+    /** @return Il numero di chiamate a salvaStato() accodate. */
+    public synchronized long getSalvataggiRichiesti() {
+        return salvataggiRichiesti;
+    }
+
+    /** @return Il numero di salvataggi sostituiti da uno più recente prima della scrittura. */
+    public synchronized long getSalvataggiAccorpati() {
+        return salvataggiAccorpati;
+    }
+
+    /** @return Il numero di scritture su disco completate con successo. */
+    public synchronized long getScrittureEseguite() {
+        return scrittureEseguite;
+    }
+
+    /** @return Il numero di scritture fallite definitivamente. */
+    public synchronized long getScrittureFallite() {
+        return scrittureFallite;
+    }
+
+    /** @return La durata media di una scrittura, in millisecondi. */
+    public synchronized double getLatenzaMediaMs() {
+        long n = scrittureEseguite + scrittureFallite;
+        return n == 0 ? 0 : latenzaTotaleNs / (double) n / 1_000_000;
+    }
+
+    /** @return La durata della scrittura più lenta, in millisecondi. */
+    public synchronized double getLatenzaMassimaMs() {
+        return latenzaMassimaNs / 1_000_000.0;
+    }
+
+    /**
+     * @brief Riepilogo leggibile delle metriche, adatto al log.
+     * @return Una stringa su una riga.
+     */
+    public synchronized String riepilogo() {
+        return String.format("Archivio differito: %d richieste, %d accorpate, %d scritture (%d fallite), "
+                + "coda attuale %d (max %d), latenza media %.1f ms (max %.1f ms)",
+                salvataggiRichiesti, salvataggiAccorpati, scrittureEseguite, scrittureFallite,
+                inAttesa.size(), profonditaMassima, getLatenzaMediaMs(), getLatenzaMassimaMs());
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    // Da invocare con il lock acquisito
+    private void programmaSvuotamento() {
+        if (!svuotamentoProgrammato && !scrittore.isShutdown()) {
+            svuotamentoProgrammato = true;
+            scrittore.schedule(svuota, intervalloMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    // Eseguito solo dal thread di scrittura (o da chiudi(), dopo il suo arresto)
+    private void svuotaCoda() {
+        Map<String, StatoCodificato> lotto;
+        synchronized (this) {
+            lotto = inAttesa;
+            inAttesa = new LinkedHashMap<>();
+            svuotamentoProgrammato = false;
+        }
+
+        for (Map.Entry<String, StatoCodificato> e : lotto.entrySet()) {
+            String nome = e.getKey();
+            StatoCodificato stato = e.getValue();
+
+            long inizio = System.nanoTime();
+            boolean ok;
+            try {
+                // FileArchivio scrive i byte già codificati; le altre destinazioni ricevono una copia privata
+                Object dati = (destinazione instanceof FileArchivio) ? stato : stato.decodifica();
+                ok = destinazione.salvaStato(dati, nome);
+            } catch (IOException | ClassNotFoundException | RuntimeException ex) {
+                ok = false;
+                System.err.println("[ArchivioDifferito] Scrittura di " + nome + " fallita: " + ex);
+            }
+            long durata = System.nanoTime() - inizio;
+
+            synchronized (this) {
+                latenzaTotaleNs += durata;
+                latenzaMassimaNs = Math.max(latenzaMassimaNs, durata);
+
+                if (ok) {
+                    scrittureEseguite++;
+                } else {
+                    scrittureFallite++;
+                }
+            }
+        }
+    }
+}
@@ -80,6 +80,27 @@ public class AuditTrail implements ILogger{
     }
     
     
+    /**
+     * @brief Registra più azioni con un unico salvataggio del log.
+     * 
+     * Tutti i record ricevono lo stesso timestamp; le azioni vuote sono ignorate.
+     * 
+     * @param[in] azioni Descrizioni delle operazioni, in ordine cronologico.
+     */
+    @Override
+    public void registraAzioni(List<String> azioni){
+        if (azioni == null || azioni.isEmpty()) return;
+        
+        String timestamp = LocalDateTime.now().format(FORMATTER);
+        for (String azione : azioni) {
+            if (azione == null || azione.isEmpty()) continue;
+            this.logRecords.add(String.format("[%s] %s", timestamp, azione));
+        }
+        
+        salvaLog();
+    }
+    
+    
     /**
      * @brief Carica lo storico dei log dall'archivio.
      * 
@@ -117,7 +138,8 @@ public class AuditTrail implements ILogger{
      */
     @Override
     public void salvaLog(){
-        archivio.salvaStato(this.logRecords, NOME_FILE_LOG);
+        // Copia: con un archivio a scrittura differita la lista verrebbe serializzata più tardi
+        archivio.salvaStato(new ArrayList<>(this.logRecords), NOME_FILE_LOG);
     }
     
     
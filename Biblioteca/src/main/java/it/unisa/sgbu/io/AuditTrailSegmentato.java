@@ -0,0 +1,360 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * @brief Audit Trail su file di segmento in sola aggiunta (append-only).
+ *
+ * Implementazione alternativa di ILogger pensata per archivi di grandi dimensioni.
+ * A differenza di AuditTrail, che riscrive l'intero file "audit_log.dat" ad ogni azione,
+ * questa classe accoda ogni record al segmento corrente con una sola scrittura:
+ * il costo di registraAzione() resta costante al crescere dello storico.
+ *
+ * I record sono salvati come righe di testo UTF-8 in file del tipo
+ * "audit-AAAAMMGG-NNNN.log" all'interno della cartella "audit".
+ * Il segmento viene chiuso e ne viene aperto uno nuovo quando cambia il giorno
+ * oppure quando supera la dimensione massima configurata.
+ * La lettura dello storico (caricaLog / visualizzaLog) scorre i segmenti in ordine.
+ */
+public class AuditTrailSegmentato implements ILogger {
+
+    public static final String CARTELLA_SEGMENTI = "audit";
+    public static final long DIMENSIONE_MASSIMA_DEFAULT = 4L * 1024 * 1024; // 4 MB per segmento
+
+    private static final String PREFISSO = "audit-";
+    private static final String ESTENSIONE = ".log";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FORMATO_GIORNO = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final File cartella;
+    private final long dimensioneMassima;
+
+    // Stato del segmento aperto in scrittura
+    private FileOutputStream segmentoCorrente;
+    private LocalDate giornoCorrente;
+    private int progressivo;
+    private long dimensioneCorrente;
+
+
+    /**
+     * @brief Costruttore con dimensione di segmento predefinita.
+     *
+     * @param[in] pathDati La cartella base dei dati (i segmenti sono creati nella sottocartella "audit").
+     */
+    public AuditTrailSegmentato(String pathDati) {
+        this(pathDati, DIMENSIONE_MASSIMA_DEFAULT);
+    }
+
+
+    /**
+     * @brief Costruttore completo.
+     *
+     * @param[in] pathDati La cartella base dei dati.
+     * @param[in] dimensioneMassima Dimensione in byte oltre la quale il segmento viene ruotato.
+     *
+     * @post
+     * - La cartella dei segmenti esiste (viene creata se assente).
+     */
+    public AuditTrailSegmentato(String pathDati, long dimensioneMassima) {
+        this.cartella = new File(pathDati, CARTELLA_SEGMENTI);
+        this.dimensioneMassima = dimensioneMassima > 0 ? dimensioneMassima : DIMENSIONE_MASSIMA_DEFAULT;
+
+        if (!cartella.exists()) {
+            cartella.mkdirs();
+        }
+    }
+
+
+    /**
+     * @brief Registra una specifica azione accodandola al segmento corrente.
+     *
+     * Il record viene formattato come in AuditTrail ("[timestamp] azione") e scritto
+     * con un'unica operazione di scrittura. Eventuali a capo nell'azione vengono
+     * sostituiti da spazi, in modo che ogni record occupi esattamente una riga.
+     *
+     * @param[in] azione Descrizione testuale dell'operazione effettuata.
+     *
+     * @post
+     * - Il record è accodato al segmento del giorno corrente (eventualmente ruotato).
+     * - In caso di errore I/O il flusso principale non viene interrotto.
+     */
+    @Override
+    public synchronized void registraAzione(String azione) {
+        if (azione == null || azione.isEmpty()) return;
+
+        LocalDateTime adesso = LocalDateTime.now();
+        String record = "[" + adesso.format(FORMATTER) + "] " + azione.replace('\r', ' ').replace('\n', ' ') + "\n";
+        byte[] dati = record.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            preparaSegmento(adesso.toLocalDate(), dati.length);
+            segmentoCorrente.write(dati);
+            dimensioneCorrente += dati.length;
+        } catch (IOException e) {
+            // Il logging è a bassa priorità: non blocco l'operatività
+            System.err.println("[AuditTrailSegmentato] Scrittura record fallita: " + e.getMessage());
+            chiudiSegmento();
+        }
+    }
+
+
+    /**
+     * @brief Accoda più record con una sola scrittura sul segmento corrente.
+     *
+     * I record condividono il timestamp. Se il lotto non entra nel segmento corrente
+     * se ne apre uno nuovo: un lotto non viene mai spezzato fra due segmenti.
+     *
+     * @param[in] azioni Le descrizioni degli eventi, in ordine cronologico.
+     */
+    @Override
+    public synchronized void registraAzioni(List<String> azioni) {
+        if (azioni == null || azioni.isEmpty()) return;
+
+        LocalDateTime adesso = LocalDateTime.now();
+        String prefisso = "[" + adesso.format(FORMATTER) + "] ";
+        StringBuilder sb = new StringBuilder();
+        for (String azione : azioni) {
+            if (azione == null || azione.isEmpty()) continue;
+            sb.append(prefisso).append(azione.replace('\r', ' ').replace('\n', ' ')).append('\n');
+        }
+        if (sb.length() == 0) return;
+        byte[] dati = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        try {
+            preparaSegmento(adesso.toLocalDate(), dati.length);
+            segmentoCorrente.write(dati);
+            dimensioneCorrente += dati.length;
+        } catch (IOException e) {
+            System.err.println("[AuditTrailSegmentato] Scrittura lotto fallita: " + e.getMessage());
+            chiudiSegmento();
+        }
+    }
+
+
+    /**
+     * @brief Carica lo storico completo scorrendo tutti i segmenti in ordine cronologico.
+     *
+     * @return Lista dei record di log (vuota se non esistono segmenti).
+     */
+    @Override
+    public List<String> caricaLog() {
+        final List<String> records = new ArrayList<>();
+        scorriLog(new Consumer<String>() {
+            @Override
+            public void accept(String r) {
+                records.add(r);
+            }
+        });
+        return records;
+    }
+
+
+    /**
+     * @brief Forza la scrittura su disco del segmento corrente.
+     *
+     * I record sono già consegnati al sistema operativo ad ogni registraAzione():
+     * questo metodo richiede in più la sincronizzazione fisica (fsync) del segmento aperto.
+     */
+    @Override
+    public synchronized void salvaLog() {
+        if (segmentoCorrente == null) return;
+        try {
+            segmentoCorrente.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("[AuditTrailSegmentato] Sincronizzazione segmento fallita: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * @brief Restituisce lo storico dei log per la visualizzazione.
+     *
+     * Non esiste una copia in memoria: la lista è ricostruita leggendo i segmenti.
+     *
+     * @return La lista dei record di log.
+     */
+    @Override
+    public List<String> visualizzaLog() {
+        return caricaLog();
+    }
+
+
+    /**
+     * @brief Scorre in streaming tutti i record presenti nei segmenti.
+     *
+     * Permette di elaborare lo storico senza materializzarlo interamente in memoria.
+     *
+     * @param[in] consumatore Funzione invocata per ogni record, in ordine cronologico.
+     */
+    public void scorriLog(Consumer<String> consumatore) {
+        for (File segmento : elencaSegmenti()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segmento), StandardCharsets.UTF_8))) {
+                String riga;
+                while ((riga = reader.readLine()) != null) {
+                    if (!riga.isEmpty()) {
+                        consumatore.accept(riga);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("[AuditTrailSegmentato] Lettura segmento " + segmento.getName() + " fallita: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * @brief Importa lo storico dal vecchio file "audit_log.dat" (formato AuditTrail).
+     *
+     * La migrazione avviene una sola volta: se esistono già dei segmenti il metodo non fa nulla.
+     * I record importati sono già formattati e vengono accodati così come sono.
+     *
+     * @param[in] archivio L'archivio da cui leggere il file legacy.
+     *
+     * @return Il numero di record importati.
+     */
+    public synchronized int importaDaArchivio(IArchivioDati archivio) {
+        if (archivio == null || !elencaSegmenti().isEmpty()) return 0;
+        if (!archivio.verificaEsistenzaFile(AuditTrail.NOME_FILE_LOG)) return 0;
+
+        Object caricato = archivio.caricaStato(AuditTrail.NOME_FILE_LOG);
+        if (!(caricato instanceof List)) return 0;
+
+        int importati = 0;
+        try {
+            for (Object o : (List<?>) caricato) {
+                if (!(o instanceof String) || ((String) o).isEmpty()) continue;
+                byte[] dati = (((String) o).replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+                preparaSegmento(LocalDate.now(), dati.length);
+                segmentoCorrente.write(dati);
+                dimensioneCorrente += dati.length;
+                importati++;
+            }
+        } catch (IOException e) {
+            System.err.println("[AuditTrailSegmentato] Importazione log legacy interrotta: " + e.getMessage());
+        }
+        return importati;
+    }
+
+
+    /**
+     * @brief Chiude il segmento aperto in scrittura.
+     */
+    public synchronized void chiudi() {
+        salvaLog();
+        chiudiSegmento();
+    }
+
+
+    /**
+     * @brief Restituisce i file di segmento presenti, in ordine cronologico.
+     * @return Lista dei segmenti ordinata per nome (giorno e progressivo).
+     */
+    public List<File> elencaSegmenti() {
+        File[] files = cartella.listFiles();
+        List<File> segmenti = new ArrayList<>();
+        if (files == null) return segmenti;
+
+        for (File f : files) {
+            if (f.isFile() && f.getName().startsWith(PREFISSO) && f.getName().endsWith(ESTENSIONE)) {
+                segmenti.add(f);
+            }
+        }
+        Collections.sort(segmenti, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return f1.getName().compareTo(f2.getName());
+            }
+        });
+        return segmenti;
+    }
+
+
+    /**
+     * @brief Garantisce che il segmento aperto possa accogliere un nuovo record.
+     *
+     * Ruota il segmento se è cambiato il giorno o se la dimensione massima verrebbe superata.
+     * Alla prima scrittura riprende l'ultimo segmento del giorno, se ancora capiente.
+     */
+    private void preparaSegmento(LocalDate oggi, int lunghezzaRecord) throws IOException {
+        if (segmentoCorrente != null && oggi.equals(giornoCorrente)
+                && (dimensioneCorrente == 0 || dimensioneCorrente + lunghezzaRecord <= dimensioneMassima)) {
+            return;
+        }
+
+        if (segmentoCorrente == null || !oggi.equals(giornoCorrente)) {
+            // Prima apertura (o cambio giorno): riprendo dall'ultimo progressivo esistente
+            chiudiSegmento();
+            giornoCorrente = oggi;
+            progressivo = ultimoProgressivo(oggi);
+            File ultimo = fileSegmento(oggi, progressivo);
+            if (progressivo > 0 && ultimo.length() + lunghezzaRecord <= dimensioneMassima) {
+                apriSegmento(ultimo);
+                return;
+            }
+        } else {
+            chiudiSegmento();
+        }
+
+        progressivo++;
+        apriSegmento(fileSegmento(oggi, progressivo));
+    }
+
+
+    private void apriSegmento(File f) throws IOException {
+        segmentoCorrente = new FileOutputStream(f, true);
+        dimensioneCorrente = f.length();
+    }
+
+
+    private void chiudiSegmento() {
+        if (segmentoCorrente != null) {
+            try {
+                segmentoCorrente.close();
+            } catch (IOException e) {
+                System.err.println("[AuditTrailSegmentato] Chiusura segmento fallita: " + e.getMessage());
+            }
+            segmentoCorrente = null;
+        }
+    }
+
+
+    private File fileSegmento(LocalDate giorno, int numero) {
+        return new File(cartella, String.format("%s%s-%04d%s", PREFISSO, giorno.format(FORMATO_GIORNO), numero, ESTENSIONE));
+    }
+
+
+    private int ultimoProgressivo(LocalDate giorno) {
+        String prefissoGiorno = PREFISSO + giorno.format(FORMATO_GIORNO) + "-";
+        int massimo = 0;
+        String[] nomi = cartella.list();
+        if (nomi == null) return 0;
+
+        for (String nome : nomi) {
+            if (nome.startsWith(prefissoGiorno) && nome.endsWith(ESTENSIONE)) {
+                try {
+                    int n = Integer.parseInt(nome.substring(prefissoGiorno.length(), nome.length() - ESTENSIONE.length()));
+                    massimo = Math.max(massimo, n);
+                } catch (NumberFormatException e) {
+                    // Nome non conforme: ignorato
+                }
+            }
+        }
+        return massimo;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @brief Esegue in parallelo le fasi di caricamento dell'avvio e ne misura la durata.
+ *
+ * I file indipendenti tra loro (catalogo, utenti, prestiti, log) vengono letti
+ * contemporaneamente su un piccolo pool di thread; il chiamante attende i risultati
+ * con attendi() e completa le fasi dipendenti (es. il ricollegamento dei prestiti).
+ *
+ * La durata di ogni fase, parallela o sequenziale, è registrata per capire quale
+ * file domina il tempo di avvio (vedi riepilogo()).
+ */
+public class CaricatoreParallelo {
+
+    public static final int THREAD_DEFAULT = 4;
+
+    private final ExecutorService esecutore;
+    private final long inizioNs;
+
+    // Durata per fase in millisecondi, nell'ordine di avvio (-1 = in corso)
+    private final Map<String, Long> tempiMs = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] numeroThread Numero massimo di fasi eseguite contemporaneamente.
+     */
+    public CaricatoreParallelo(int numeroThread) {
+        final AtomicInteger contatore = new AtomicInteger();
+        this.esecutore = Executors.newFixedThreadPool(Math.max(1, numeroThread), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sgbu-caricamento-" + contatore.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.inizioNs = System.nanoTime();
+    }
+
+
+    /**
+     * @brief Avvia una fase in background.
+     *
+     * @param[in] fase Nome della fase, usato nelle misure.
+     * @param[in] compito Il lavoro da eseguire.
+     *
+     * @return Il Future del risultato, da attendere con attendi().
+     */
+    public <T> Future<T> avvia(final String fase, final Callable<T> compito) {
+        tempiMs.put(fase, -1L);
+        return esecutore.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long inizio = System.nanoTime();
+                try {
+                    return compito.call();
+                } finally {
+                    registraFase(fase, inizio);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * @brief Avvia il caricamento di un file dall'archivio; la fase prende il nome del file.
+     *
+     * @param[in] archivio L'archivio da cui leggere.
+     * @param[in] nomeFile Il nome del file.
+     *
+     * @return Il Future dell'oggetto caricato (null se il caricamento fallisce).
+     */
+    public Future<Object> carica(final IArchivioDati archivio, final String nomeFile) {
+        return avvia(nomeFile, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return archivio.caricaStato(nomeFile);
+            }
+        });
+    }
+
+
+    /**
+     * @brief Attende il risultato di una fase.
+     *
+     * @param[in] risultato Il Future restituito da avvia() o carica().
+     *
+     * @return Il valore prodotto dalla fase.
+     *
+     * @throws Exception L'eccezione originale sollevata dalla fase.
+     */
+    public <T> T attendi(Future<T> risultato) throws Exception {
+        try {
+            return risultato.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception) throw (Exception) causa;
+            if (causa instanceof Error) throw (Error) causa;
+            throw e;
+        }
+    }
+
+
+    /**
+     * @brief Registra la durata di una fase eseguita dal chiamante.
+     *
+     * @param[in] fase Nome della fase.
+     * @param[in] inizioNs Istante di inizio, da System.nanoTime().
+     */
+    public void registraFase(String fase, long inizioNs) {
+        tempiMs.put(fase, (System.nanoTime() - inizioNs) / 1_000_000);
+    }
+
+
+    /**
+     * @brief Restituisce la durata delle fasi in millisecondi, nell'ordine di avvio.
+     * @return Copia della mappa fase -> millisecondi (-1 per le fasi non concluse).
+     */
+    public Map<String, Long> getTempi() {
+        synchronized (tempiMs) {
+            return new LinkedHashMap<>(tempiMs);
+        }
+    }
+
+
+    /**
+     * @brief Restituisce il tempo trascorso dalla creazione del caricatore.
+     * @return Millisecondi dall'inizio dell'avvio.
+     */
+    public long getTempoTotaleMs() {
+        return (System.nanoTime() - inizioNs) / 1_000_000;
+    }
+
+
+    /**
+     * @brief Riepilogo delle misure, adatto al log.
+     * @return Es. "Tempi di avvio: libri.dat 120 ms, utenti.dat 35 ms, ... (totale 130 ms, più lenta: libri.dat)".
+     */
+    public String riepilogo() {
+        StringBuilder sb = new StringBuilder("Tempi di avvio: ");
+        String piuLenta = null;
+        long massimo = -1;
+        boolean primo = true;
+
+        for (Map.Entry<String, Long> e : getTempi().entrySet()) {
+            if (!primo) sb.append(", ");
+            primo = false;
+            sb.append(e.getKey()).append(' ');
+            sb.append(e.getValue() < 0 ? "in corso" : e.getValue() + " ms");
+            if (e.getValue() > massimo) {
+                massimo = e.getValue();
+                piuLenta = e.getKey();
+            }
+        }
+        sb.append(" (totale ").append(getTempoTotaleMs()).append(" ms");
+        if (piuLenta != null) sb.append(", più lenta: ").append(piuLenta);
+        return sb.append(')').toString();
+    }
+
+
+    /**
+     * @brief Arresta il pool di thread; le fasi in corso vengono completate.
+     */
+    public void chiudi() {
+        esecutore.shutdown();
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief Formato binario compatto e versionato per Catalogo, Anagrafica e RegistroPrestiti.
+ *
+ * Sostituisce la serializzazione Java di default, che scrive i descrittori delle classi
+ * e percorre il grafo via riflessione. Ogni classe di dominio ha una coppia esplicita
+ * scrivi/leggi; i valori sono codificati come:
+ * - interi: varint (LEB128), con codifica zigzag per quelli con segno;
+ * - stringhe: lunghezza varint seguita dai byte UTF-8;
+ * - date: byte di presenza seguito dal giorno epoch in varint.
+ *
+ * Stringhe, liste e riferimenti che possono essere null sono scritti con un offset di 1 (0 = null).
+ *
+ * Struttura del file: [MAGIC int][VERSIONE byte][TIPO byte][contenuto].
+ *
+ * Versioni:
+ * - 1: i prestiti copiavano in tabelle interne i libri e gli utenti referenziati.
+ * - 2: i prestiti sono salvati per riferimento (ISBN, matricola) e ricollegati
+ *      alle istanze canoniche da RegistroPrestiti.ricollega() dopo il caricamento.
+ * - 3: il registro salva anche il prossimo ID della sequenza dei prestiti
+ *      (nelle versioni precedenti viene ricalcolato come ID massimo + 1).
+ * - 4: il registro salva anche il contatore delle chiusure, che numera i prestiti
+ *      spostati nello StoricoPrestiti; il file contiene solo i prestiti in corso
+ *      e quelli chiusi non ancora archiviati.
+ *
+ * La scrittura usa sempre la versione corrente; la lettura accetta anche le precedenti.
+ */
+public final class CodecBinario {
+
+    /** @brief Firma iniziale del formato ("SGBU"). */
+    public static final int MAGIC = 0x53474255;
+
+    /** @brief Versione corrente del formato. */
+    public static final int VERSIONE = 4;
+
+    private static final int TIPO_CATALOGO = 1;
+    private static final int TIPO_ANAGRAFICA = 2;
+    private static final int TIPO_REGISTRO = 3;
+
+    private static final int FLAG_RITARDO = 1;
+
+
+    private CodecBinario() {
+    }
+
+
+    /**
+     * @brief Indica se l'oggetto può essere salvato nel formato binario.
+     *
+     * @param[in] dati L'oggetto da salvare.
+     *
+     * @return true per Catalogo, Anagrafica e RegistroPrestiti.
+     */
+    public static boolean supporta(Object dati) {
+        return dati instanceof Catalogo || dati instanceof Anagrafica || dati instanceof RegistroPrestiti;
+    }
+
+
+    /**
+     * @brief Scrive l'oggetto (intestazione compresa) sullo stream indicato.
+     *
+     * Lo stream non viene chiuso; il chiamante dovrebbe fornirne uno bufferizzato.
+     *
+     * @param[in] dati L'oggetto da salvare (vedi supporta()).
+     * @param[in] out Lo stream di destinazione.
+     *
+     * @throws IOException in caso di errore di scrittura o tipo non supportato.
+     */
+    public static void scrivi(Object dati, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC);
+        dos.writeByte(VERSIONE);
+
+        if (dati instanceof Catalogo) {
+            dos.writeByte(TIPO_CATALOGO);
+            scriviCatalogo(dos, (Catalogo) dati);
+        } else if (dati instanceof Anagrafica) {
+            dos.writeByte(TIPO_ANAGRAFICA);
+            scriviAnagrafica(dos, (Anagrafica) dati);
+        } else if (dati instanceof RegistroPrestiti) {
+            dos.writeByte(TIPO_REGISTRO);
+            scriviRegistro(dos, (RegistroPrestiti) dati);
+        } else {
+            throw new IOException("Tipo non supportato dal formato binario: " + (dati == null ? "null" : dati.getClass().getName()));
+        }
+        dos.flush();
+    }
+
+
+    /**
+     * @brief Legge un oggetto (intestazione compresa) dallo stream indicato.
+     *
+     * La lettura avviene tramite un buffer interno non sincronizzato: lo stream
+     * può quindi essere consumato oltre la fine del contenuto.
+     *
+     * @param[in] in Lo stream sorgente, posizionato sulla firma MAGIC.
+     *
+     * @return Il Catalogo, l'Anagrafica o il RegistroPrestiti letto.
+     *
+     * @throws IOException se il file è troncato, la firma non corrisponde o la versione non è supportata.
+     */
+    public static Object leggi(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(new IngressoBufferizzato(in));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Firma del formato binario non valida");
+        }
+        int versione = dis.readUnsignedByte();
+        if (versione < 1 || versione > VERSIONE) {
+            throw new IOException("Versione del formato binario non supportata: " + versione);
+        }
+
+        int tipo = dis.readUnsignedByte();
+        switch (tipo) {
+            case TIPO_CATALOGO:
+                return leggiCatalogo(dis);
+            case TIPO_ANAGRAFICA:
+                return versione == 1 ? leggiAnagraficaV1(dis) : leggiAnagrafica(dis);
+            case TIPO_REGISTRO:
+                return versione == 1 ? leggiRegistroV1(dis) : leggiRegistro(dis, versione);
+            default:
+                throw new IOException("Tipo di contenuto sconosciuto: " + tipo);
+        }
+    }
+
+
+    // --- CONTENITORI ---
+
+    private static void scriviCatalogo(DataOutput out, Catalogo c) throws IOException {
+        List<Libro> libri = c.istantanea();
+        scriviVarInt(out, libri.size());
+        for (Libro l : libri) {
+            scriviLibro(out, l);
+        }
+    }
+
+    private static Catalogo leggiCatalogo(DataInput in) throws IOException {
+        Catalogo c = new Catalogo();
+        int n = leggiVarInt(in);
+        for (int i = 0; i < n; i++) {
+            c.caricaLibro(leggiLibro(in));
+        }
+        c.segnalaEquivalentiCaricati();
+        return c;
+    }
+
+
+    // Solo dati anagrafici: i prestiti in corso sono ricostruiti da RegistroPrestiti.ricollega()
+    private static void scriviAnagrafica(DataOutput out, Anagrafica a) throws IOException {
+        List<Utente> utenti = a.istantanea();
+        scriviVarInt(out, utenti.size());
+        for (Utente u : utenti) {
+            scriviUtente(out, u);
+        }
+    }
+
+    private static Anagrafica leggiAnagrafica(DataInput in) throws IOException {
+        Anagrafica a = new Anagrafica();
+        int n = leggiVarInt(in);
+        for (int i = 0; i < n; i++) {
+            a.caricaUtente(leggiUtente(in));
+        }
+        return a;
+    }
+
+
+    // Prestiti per riferimento (ISBN, matricola): nessuna copia di libri e utenti
+    private static void scriviRegistro(DataOutput out, RegistroPrestiti r) throws IOException {
+        RegistroPrestiti.Istantanea istantanea = r.istantanea();
+        scriviVarInt(out, istantanea.getProssimoId());
+        scriviVarLongConSegno(out, istantanea.getChiusure());
+        List<Prestito> prestiti = istantanea.getPrestiti();
+        scriviVarInt(out, prestiti.size());
+        for (Prestito p : prestiti) {
+            scriviPrestito(out, p);
+        }
+    }
+
+    private static RegistroPrestiti leggiRegistro(DataInput in, int versione) throws IOException {
+        // Catalogo e Anagrafica sono transient: verranno iniettati dal Controller, che poi invoca ricollega()
+        RegistroPrestiti r = new RegistroPrestiti(null, null);
+        int prossimoId = versione >= 3 ? leggiVarInt(in) : 0;
+        long chiusure = versione >= 4 ? leggiVarLongConSegno(in) : 0;
+        int n = leggiVarInt(in);
+        for (int i = 0; i < n; i++) {
+            r.importaPrestito(leggiPrestito(in));
+        }
+        r.setProssimoId(prossimoId);
+        r.setChiusure(chiusure);
+        return r;
+    }
+
+
+    // --- VERSIONE 1 (solo lettura) ---
+    // Libri e utenti referenziati dai prestiti erano copiati in tabelle interne al file.
+
+    private static Anagrafica leggiAnagraficaV1(DataInput in) throws IOException {
+        Libro[] libri = leggiTabellaLibri(in);
+
+        Anagrafica a = new Anagrafica();
+        int n = leggiVarInt(in);
+        for (int i = 0; i < n; i++) {
+            Utente u = leggiUtente(in);
+            int k = leggiVarInt(in);
+            Utente[] proprietario = {u};
+            for (int j = 0; j < k; j++) {
+                u.aggiungiPrestito(leggiPrestitoV1(in, libri, proprietario));
+            }
+            a.caricaUtente(u);
+        }
+        return a;
+    }
+
+    private static RegistroPrestiti leggiRegistroV1(DataInput in) throws IOException {
+        Libro[] libri = leggiTabellaLibri(in);
+        Utente[] utenti = new Utente[leggiVarInt(in)];
+        for (int i = 0; i < utenti.length; i++) {
+            utenti[i] = leggiUtente(in);
+        }
+
+        RegistroPrestiti r = new RegistroPrestiti(null, null);
+        Prestito[] prestiti = new Prestito[leggiVarInt(in)];
+        for (int i = 0; i < prestiti.length; i++) {
+            prestiti[i] = leggiPrestitoV1(in, libri, utenti);
+            r.importaPrestito(prestiti[i]);
+        }
+
+        // Collegamenti utente -> prestiti in corso (ricostruiti comunque da ricollega())
+        for (Utente u : utenti) {
+            int k = leggiVarInt(in);
+            for (int j = 0; j < k; j++) {
+                leggiVarInt(in);
+            }
+        }
+        return r;
+    }
+
+    private static Libro[] leggiTabellaLibri(DataInput in) throws IOException {
+        Libro[] libri = new Libro[leggiVarInt(in)];
+        for (int i = 0; i < libri.length; i++) {
+            libri[i] = leggiLibro(in);
+        }
+        return libri;
+    }
+
+    private static Prestito leggiPrestitoV1(DataInput in, Libro[] libri, Utente[] utenti) throws IOException {
+        int id = leggiVarIntConSegno(in);
+        Libro libro = risolvi(libri, leggiVarInt(in));
+        Utente utente = risolvi(utenti, leggiVarInt(in));
+        Prestito p = new Prestito(id, libro, utente, leggiData(in), leggiData(in));
+        leggiChiusura(in, p);
+        return p;
+    }
+
+
+    // --- CLASSI DI DOMINIO ---
+
+    /**
+     * @brief Scrive un libro: ISBN, titolo, autori, anno, copie totali e disponibili.
+     */
+    public static void scriviLibro(DataOutput out, Libro l) throws IOException {
+        scriviStringa(out, l.getISBN());
+        scriviStringa(out, l.getTitolo());
+        List<String> autori = l.getAutore();
+        if (autori == null) {
+            scriviVarInt(out, 0);
+        } else {
+            scriviVarInt(out, autori.size() + 1);
+            for (String a : autori) {
+                scriviStringa(out, a);
+            }
+        }
+        scriviVarIntConSegno(out, l.getAnno());
+        scriviVarIntConSegno(out, l.getCopieTotali());
+        scriviVarIntConSegno(out, l.getCopieDisponibili());
+    }
+
+    /**
+     * @brief Legge un libro scritto con scriviLibro().
+     */
+    public static Libro leggiLibro(DataInput in) throws IOException {
+        String isbn = leggiStringa(in);
+        String titolo = leggiStringa(in);
+        List<String> autori = null;
+        int n = leggiVarInt(in);
+        if (n > 0) {
+            autori = new ArrayList<>(n - 1);
+            for (int i = 0; i < n - 1; i++) {
+                autori.add(leggiStringa(in));
+            }
+        }
+        int anno = leggiVarIntConSegno(in);
+        int copieTotali = leggiVarIntConSegno(in);
+        int copieDisponibili = leggiVarIntConSegno(in);
+        return new Libro(isbn, titolo, autori, anno, copieTotali, copieDisponibili);
+    }
+
+
+    /**
+     * @brief Scrive i dati anagrafici di un utente (i prestiti sono gestiti dal contenitore).
+     */
+    public static void scriviUtente(DataOutput out, Utente u) throws IOException {
+        scriviStringa(out, u.getMatricola());
+        scriviStringa(out, u.getNome());
+        scriviStringa(out, u.getCognome());
+        scriviStringa(out, u.getEmail());
+    }
+
+    /**
+     * @brief Legge un utente scritto con scriviUtente(), con lista prestiti vuota.
+     */
+    public static Utente leggiUtente(DataInput in) throws IOException {
+        return new Utente(leggiStringa(in), leggiStringa(in), leggiStringa(in), leggiStringa(in));
+    }
+
+
+    /**
+     * @brief Scrive un prestito per riferimento: ID, ISBN, matricola, date e stato di ritardo.
+     */
+    public static void scriviPrestito(DataOutput out, Prestito p) throws IOException {
+        scriviVarIntConSegno(out, p.getIdPrestito());
+        scriviStringa(out, p.getIsbn());
+        scriviStringa(out, p.getMatricola());
+        scriviData(out, p.getDataInizio());
+        scriviData(out, p.getDataPrevistaRestituzione());
+        scriviData(out, p.getDataEffettivaRestituzione());
+        out.writeByte(p.isInRitardo() ? FLAG_RITARDO : 0);
+    }
+
+    /**
+     * @brief Legge un prestito scritto con scriviPrestito(), ancora da ricollegare.
+     */
+    public static Prestito leggiPrestito(DataInput in) throws IOException {
+        int id = leggiVarIntConSegno(in);
+        String isbn = leggiStringa(in);
+        String matricola = leggiStringa(in);
+        Prestito p = new Prestito(id, isbn, matricola, leggiData(in), leggiData(in));
+        leggiChiusura(in, p);
+        return p;
+    }
+
+    // Data effettiva di restituzione e flag di ritardo, comuni a tutte le versioni
+    private static void leggiChiusura(DataInput in, Prestito p) throws IOException {
+        LocalDate effettiva = leggiData(in);
+        int flag = in.readUnsignedByte();
+        if (effettiva != null) {
+            p.chiudiPrestito(effettiva);
+        }
+        if ((flag & FLAG_RITARDO) != 0) {
+            p.segnaRitardo();
+        }
+    }
+
+
+    // --- PRIMITIVE ---
+
+    /**
+     * @brief Scrive un intero non negativo in formato varint (7 bit per byte).
+     */
+    public static void scriviVarInt(DataOutput out, int valore) throws IOException {
+        while ((valore & ~0x7F) != 0) {
+            out.writeByte((valore & 0x7F) | 0x80);
+            valore >>>= 7;
+        }
+        out.writeByte(valore);
+    }
+
+    /**
+     * @brief Legge un intero scritto con scriviVarInt().
+     */
+    public static int leggiVarInt(DataInput in) throws IOException {
+        int valore = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            valore |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return valore;
+        }
+        throw new IOException("Varint malformato");
+    }
+
+    /**
+     * @brief Scrive un intero con segno (codifica zigzag + varint).
+     */
+    public static void scriviVarIntConSegno(DataOutput out, int valore) throws IOException {
+        scriviVarInt(out, (valore << 1) ^ (valore >> 31));
+    }
+
+    /**
+     * @brief Legge un intero scritto con scriviVarIntConSegno().
+     */
+    public static int leggiVarIntConSegno(DataInput in) throws IOException {
+        int v = leggiVarInt(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * @brief Scrive un long con segno (codifica zigzag + varint).
+     */
+    public static void scriviVarLongConSegno(DataOutput out, long valore) throws IOException {
+        long v = (valore << 1) ^ (valore >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * @brief Legge un long scritto con scriviVarLongConSegno().
+     */
+    public static long leggiVarLongConSegno(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return (v >>> 1) ^ -(v & 1);
+        }
+        throw new IOException("Varlong malformato");
+    }
+
+    /**
+     * @brief Scrive una stringa come lunghezza varint (+1, 0 = null) seguita dai byte UTF-8.
+     */
+    public static void scriviStringa(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            scriviVarInt(out, 0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        scriviVarInt(out, b.length + 1);
+        out.write(b);
+    }
+
+    /**
+     * @brief Legge una stringa scritta con scriviStringa().
+     */
+    public static String leggiStringa(DataInput in) throws IOException {
+        int n = leggiVarInt(in);
+        if (n == 0) return null;
+        byte[] b = new byte[n - 1];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @brief Scrive una data come byte di presenza (0 = null) seguito dal giorno epoch (zigzag varint).
+     */
+    public static void scriviData(DataOutput out, LocalDate d) throws IOException {
+        if (d == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1);
+            scriviVarLongConSegno(out, d.toEpochDay());
+        }
+    }
+
+    /**
+     * @brief Legge una data scritta con scriviData().
+     */
+    public static LocalDate leggiData(DataInput in) throws IOException {
+        if (in.readUnsignedByte() == 0) return null;
+        return LocalDate.ofEpochDay(leggiVarLongConSegno(in));
+    }
+
+
+    /**
+     * @brief Buffer di lettura senza sincronizzazione.
+     *
+     * DataInputStream legge un byte alla volta: con BufferedInputStream ogni byte
+     * passerebbe per un metodo synchronized, che domina il tempo di decodifica.
+     */
+    private static final class IngressoBufferizzato extends InputStream {
+
+        private final InputStream sorgente;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int posizione;
+        private int limite;
+
+        IngressoBufferizzato(InputStream sorgente) {
+            this.sorgente = sorgente;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (posizione == limite && !riempi()) return -1;
+            return buffer[posizione++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (posizione == limite) {
+                // Richieste grandi: lettura diretta senza copia intermedia
+                if (len >= buffer.length) return sorgente.read(b, off, len);
+                if (!riempi()) return -1;
+            }
+            int n = Math.min(len, limite - posizione);
+            System.arraycopy(buffer, posizione, b, off, n);
+            posizione += n;
+            return n;
+        }
+
+        private boolean riempi() throws IOException {
+            int n = sorgente.read(buffer, 0, buffer.length);
+            if (n <= 0) return false;
+            posizione = 0;
+            limite = n;
+            return true;
+        }
+    }
+
+
+    // --- RIFERIMENTI (versione 1) ---
+
+    private static <T> T risolvi(T[] tabella, int riferimento) throws IOException {
+        if (riferimento == 0) return null;
+        if (riferimento > tabella.length) {
+            throw new IOException("Riferimento fuori tabella: " + riferimento);
+        }
+        return tabella[riferimento - 1];
+    }
+}
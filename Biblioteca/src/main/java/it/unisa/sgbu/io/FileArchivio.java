@@ -8,12 +8,27 @@ package it.unisa.sgbu.io;
 import it.unisa.sgbu.gui.MessaggiInterfaccia;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
 
 /**
  * @brief Implementazione concreta del meccanismo di persistenza su file.
@@ -22,9 +37,24 @@ import java.io.ObjectOutputStream;
  * garantire il salvataggio persistente e il ricaricamento dello stato dell'archivio
  * (Libri, Utenti, Prestiti), in conformità con il requisito di Interfaccia Software
  * Soddisfa le esigenze di un'applicazione stand-alone descritte nella sezione "Prospettive del prodotto".
+ * 
+ * Ogni salvataggio è atomico: il contenuto viene scritto su un file temporaneo,
+ * chiuso da una coda di controllo (lunghezza + CRC32), sincronizzato su disco e
+ * infine rinominato sul file di destinazione. La versione sostituita è conservata
+ * come "nome.bak" e viene usata automaticamente se il file principale risulta
+ * danneggiato.
  */
 public class FileArchivio implements IArchivioDati{
    
+    private static final int DIMENSIONE_BUFFER = 64 * 1024;
+    
+    /** Firma finale dei file dotati di coda di controllo ("SGBC"). */
+    public static final int MAGIC_CODA = 0x53474243;
+    /** Dimensione della coda: lunghezza (long) + CRC32 (int) + firma (int). */
+    public static final int DIMENSIONE_CODA = 16;
+    public static final String SUFFISSO_TEMPORANEO = ".tmp";
+    public static final String SUFFISSO_PRECEDENTE = ".bak";
+    
     private String pathDati;
     private ILogger logger;
     
@@ -54,12 +84,18 @@ public class FileArchivio implements IArchivioDati{
     /**
      * @brief Salva lo stato di un oggetto su file (Serializzazione).
      * 
+     * Catalogo, Anagrafica e RegistroPrestiti sono scritti nel formato binario compatto
+     * di CodecBinario; gli altri oggetti con la serializzazione Java standard.
+     * Uno StatoCodificato è scritto così com'è.
+     * 
      * Implementa la logica di salvataggio persistente richiesta dal caso d'uso
      * "Gestione persistenza dati" alla chiusura del sistema.
      * 
      * Deve rispettare rigorosamente il requisito di Tolleranza agli errori:
      * in caso di eccezione durante la scrittura, il metodo deve fallire in modo sicuro
-     * senza corrompere l'ultima versione stabile salvata su disco.
+     * senza corrompere l'ultima versione stabile salvata su disco. Per questo il file
+     * di destinazione viene sostituito solo dopo che il nuovo contenuto è completo e
+     * sincronizzato su disco.
      * 
      * @param[in] dati L'oggetto da serializzare (es. Catalogo, Anagrafica).
      * @param[in] nomeFile Il nome del file di destinazione.
@@ -71,22 +107,36 @@ public class FileArchivio implements IArchivioDati{
         if (dati == null || nomeFile == null || this.pathDati == null) return false;
         
         File fileDestinazione = new File(this.pathDati, nomeFile);
+        File fileTemporaneo = new File(this.pathDati, nomeFile + SUFFISSO_TEMPORANEO);
         
-        // Catena di Stream: File -> Buffer -> Object 
-        try (ObjectOutputStream oos = new ObjectOutputStream( new BufferedOutputStream(new FileOutputStream(fileDestinazione)))) {
-            
-            oos.writeObject(dati); // Serializza l'intero oggetto
+        try {
+            try (FileOutputStream fos = new FileOutputStream(fileTemporaneo)) {
+                UscitaControllata controllo = new UscitaControllata(fos);
+                OutputStream os = new BufferedOutputStream(controllo, DIMENSIONE_BUFFER);
+                
+                if (dati instanceof StatoCodificato) {
+                    ((StatoCodificato) dati).scrivi(os); // già codificato dal chiamante
+                    os.flush();
+                } else if (CodecBinario.supporta(dati)) {
+                    CodecBinario.scrivi(dati, os);
+                    os.flush();
+                } else {
+                    // Catena di Stream: File -> Buffer -> Object 
+                    ObjectOutputStream oos = new ObjectOutputStream(os);
+                    oos.writeObject(dati); // Serializza l'intero oggetto
+                    oos.flush();
+                }
+                
+                fos.write(codaDiControllo(controllo.getLunghezza(), controllo.getCrc()));
+                fos.getFD().sync();
+            }
+            pubblicaGenerazione(fileTemporaneo, fileDestinazione);
             return true;
             
         } catch (IOException e) {
+            fileTemporaneo.delete();
             String baseMsg = String.format(MessaggiInterfaccia.ERRORE_GENERICO_SALVATAGGIO, nomeFile);
-            String logMessage = baseMsg + " Dettagli: " + e.getMessage();
-            
-            if (logger != null) {
-                logger.registraAzione(logMessage);
-            } else {
-                System.err.println("[FileArchivio] " + logMessage);
-            }
+            segnala(baseMsg + " Dettagli: " + e.getMessage());
             
             return false;
         }
@@ -96,6 +146,14 @@ public class FileArchivio implements IArchivioDati{
     /**
      * @brief Carica lo stato di un oggetto da file (Deserializzazione).
      * 
+     * Il formato è riconosciuto dai primi byte: i file binari (firma CodecBinario.MAGIC)
+     * sono letti con CodecBinario, quelli salvati dalle versioni precedenti con
+     * ObjectInputStream e verranno riscritti in formato binario al salvataggio successivo.
+     * 
+     * Se il file ha la coda di controllo, il CRC32 viene verificato prima della lettura.
+     * Se il file è danneggiato (checksum errato, troncato, illeggibile) viene caricata
+     * la generazione precedente "nome.bak".
+     * 
      * Implementa la logica di caricamento dati all'avvio del sistema.
      * Secondo l'Assunzione n°2, si aspetta una struttura definita (es. file serializzati).
      * L'operazione deve essere ottimizzata per rispettare il requisito prestazionale,
@@ -103,35 +161,166 @@ public class FileArchivio implements IArchivioDati{
      * 
      * @param[in] nomeFile Il nome del file da cui leggere.
      * 
-     * @return L'oggetto deserializzato, oppure null se il caricamento fallisce.
+     * @return L'oggetto deserializzato, oppure null se nessuna generazione è leggibile.
      */
     @Override
     public Object caricaStato(String nomeFile){
         if (nomeFile == null || this.pathDati == null) return null;
         
         File fileSorgente = new File(this.pathDati, nomeFile);
+        File filePrecedente = new File(this.pathDati, nomeFile + SUFFISSO_PRECEDENTE);
         
-        if (!fileSorgente.exists()) return null;
+        if (fileSorgente.exists()) {
+            try {
+                return leggiGenerazione(fileSorgente);
+            } catch (IOException | ClassNotFoundException e) {
+                String baseMsg = String.format(MessaggiInterfaccia.AVVISO_CARICAMENTO_FALLITO, nomeFile);
+                segnala(baseMsg + " Dettagli: " + e.getMessage());
+            }
+        }
         
-        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileSorgente)))) {
-            
-            return ois.readObject();
-            
+        if (!filePrecedente.exists()) return null;
+        
+        try {
+            Object dati = leggiGenerazione(filePrecedente);
+            segnala("File " + nomeFile + " non leggibile: ripristinata la generazione precedente (" + filePrecedente.getName() + ").");
+            return dati;
         } catch (IOException | ClassNotFoundException e) {
-            String baseMsg = String.format(MessaggiInterfaccia.AVVISO_CARICAMENTO_FALLITO, nomeFile);
-            String logMessage = baseMsg + " Dettagli: " + e.getMessage();
-            
-            if (logger != null) {
-                logger.registraAzione(logMessage);
-            } else {
-                System.err.println("[FileArchivio] " + logMessage);
+            segnala("Anche la generazione precedente di " + nomeFile + " non è leggibile. Dettagli: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    
+    /**
+     * @brief Sostituisce un file con una nuova versione, conservando quella attuale come ".bak".
+     * 
+     * La versione attuale viene collegata (o, se il file system non lo consente, copiata)
+     * come "nome.bak"; il nuovo file è poi rinominato atomicamente sulla destinazione,
+     * che quindi esiste sempre in una versione completa.
+     * 
+     * @param[in] nuovo Il file con il contenuto nuovo, già sincronizzato su disco.
+     * @param[in] destinazione Il file da sostituire.
+     * 
+     * @throws IOException se la rinomina non riesce; la destinazione resta invariata.
+     */
+    static void pubblicaGenerazione(File nuovo, File destinazione) throws IOException {
+        Path dest = destinazione.toPath();
+        if (destinazione.exists()) {
+            Path precedente = new File(destinazione.getPath() + SUFFISSO_PRECEDENTE).toPath();
+            Files.deleteIfExists(precedente);
+            try {
+                Files.createLink(precedente, dest);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(dest, precedente, StandardCopyOption.REPLACE_EXISTING);
             }
+        }
+        
+        try {
+            Files.move(nuovo.toPath(), dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(nuovo.toPath(), dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+        sincronizzaCartella(destinazione.getAbsoluteFile().getParentFile());
+    }
+    
+    
+    // Rende persistente la rinomina; non tutti i sistemi consentono di aprire una cartella
+    private static void sincronizzaCartella(File cartella) {
+        if (cartella == null) return;
+        try (FileChannel canale = FileChannel.open(cartella.toPath(), StandardOpenOption.READ)) {
+            canale.force(true);
+        } catch (IOException e) {
+            // Ignorato: la rinomina è comunque avvenuta
+        }
+    }
+    
+    
+    /**
+     * Legge una singola generazione. Se il file ha la coda di controllo, il CRC viene
+     * verificato con una lettura sequenziale prima di decodificare il contenuto; i file
+     * senza coda (versioni precedenti) sono decodificati direttamente.
+     */
+    private static Object leggiGenerazione(File file) throws IOException, ClassNotFoundException {
+        long lunghezza = lunghezzaVerificata(file);
+        
+        try (InputStream is = new BufferedInputStream(new IngressoLimitato(new FileInputStream(file), lunghezza), DIMENSIONE_BUFFER)) {
             
-            return null;
+            if (iniziaConFirmaBinaria(is)) {
+                return CodecBinario.leggi(is);
+            }
+            return new ObjectInputStream(is).readObject();
+        }
+    }
+    
+    
+    // Restituisce la lunghezza del contenuto utile, dopo averne verificato il CRC
+    private static long lunghezzaVerificata(File file) throws IOException {
+        long totale = file.length();
+        long lunghezza;
+        int crcAtteso;
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (totale < DIMENSIONE_CODA) return totale;
+            raf.seek(totale - DIMENSIONE_CODA);
+            lunghezza = raf.readLong();
+            crcAtteso = raf.readInt();
+            if (raf.readInt() != MAGIC_CODA || lunghezza != totale - DIMENSIONE_CODA) {
+                return totale; // formato senza coda di controllo
+            }
+        }
+        
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[DIMENSIONE_BUFFER];
+        try (InputStream in = new FileInputStream(file)) {
+            long residuo = lunghezza;
+            while (residuo > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, residuo));
+                if (n < 0) throw new EOFException();
+                crc.update(buffer, 0, n);
+                residuo -= n;
+            }
+        }
+        if ((int) crc.getValue() != crcAtteso) {
+            throw new IOException("Checksum non valido in " + file.getName());
+        }
+        return lunghezza;
+    }
+    
+    
+    private static byte[] codaDiControllo(long lunghezza, int crc) {
+        byte[] coda = new byte[DIMENSIONE_CODA];
+        for (int i = 0; i < 8; i++) coda[i] = (byte) (lunghezza >>> (56 - 8 * i));
+        for (int i = 0; i < 4; i++) coda[8 + i] = (byte) (crc >>> (24 - 8 * i));
+        for (int i = 0; i < 4; i++) coda[12 + i] = (byte) (MAGIC_CODA >>> (24 - 8 * i));
+        return coda;
+    }
+    
+    
+    private void segnala(String messaggio) {
+        if (logger != null) {
+            logger.registraAzione(messaggio);
+        } else {
+            System.err.println("[FileArchivio] " + messaggio);
         }
     }
     
     
+    // Controlla la firma iniziale senza consumarla (lo stream deve supportare mark/reset)
+    private static boolean iniziaConFirmaBinaria(InputStream is) throws IOException {
+        is.mark(4);
+        DataInputStream dis = new DataInputStream(is);
+        int firma;
+        try {
+            firma = dis.readInt();
+        } catch (EOFException e) {
+            firma = 0;
+        }
+        is.reset();
+        return firma == CodecBinario.MAGIC;
+    }
+    
+    
     /**
      * @brief Verifica se un file di dati esiste nel percorso specificato.
      * 
@@ -148,4 +337,128 @@ public class FileArchivio implements IArchivioDati{
         File f = new File(this.pathDati, nomeFile);
         return f.exists() && f.isFile();
     }
+    
+    
+    /**
+     * @brief Elimina la generazione precedente ".bak" di un file.
+     * 
+     * Serve quando la versione sostituita non deve restare su disco, es. credenziali
+     * in chiaro appena riscritte in forma cifrata.
+     * 
+     * @param[in] nomeFile Il nome del file (senza suffisso).
+     * 
+     * @return true se la generazione precedente non esiste più.
+     */
+    public boolean eliminaGenerazionePrecedente(String nomeFile){
+        if (nomeFile == null || this.pathDati == null) return false;
+        File precedente = new File(this.pathDati, nomeFile + SUFFISSO_PRECEDENTE);
+        return !precedente.exists() || precedente.delete();
+    }
+    
+    
+    /**
+     * @brief Restituisce l'impronta di un file: data di modifica, dimensione e identità su disco.
+     * 
+     * Comprende anche la generazione precedente ".bak", che caricaStato() legge quando il file
+     * principale manca o è illeggibile. Un salvataggio rinomina sempre un file nuovo sulla
+     * destinazione, quindi cambia almeno l'identità (fileKey), anche a parità di data e dimensione.
+     * 
+     * @param[in] nomeFile Il nome del file.
+     * 
+     * @return L'impronta, oppure null se gli attributi non sono leggibili.
+     */
+    @Override
+    public String impronta(String nomeFile){
+        if (nomeFile == null || this.pathDati == null) return null;
+        try {
+            return attributi(new File(this.pathDati, nomeFile)) + "|"
+                    + attributi(new File(this.pathDati, nomeFile + SUFFISSO_PRECEDENTE));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    
+    private static String attributi(File f) throws IOException {
+        if (!f.exists()) return "-";
+        BasicFileAttributes a = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+        return a.lastModifiedTime().toMillis() + "/" + a.size() + "/" + a.fileKey();
+    }
+    
+    
+    // Calcola CRC32 e lunghezza di ciò che viene scritto (sotto al buffer, quindi a blocchi)
+    private static final class UscitaControllata extends FilterOutputStream {
+        private final CRC32 crc = new CRC32();
+        private long lunghezza;
+        
+        UscitaControllata(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            lunghezza++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            crc.update(b, off, len);
+            lunghezza += len;
+        }
+        
+        long getLunghezza() {
+            return lunghezza;
+        }
+        
+        int getCrc() {
+            return (int) crc.getValue();
+        }
+    }
+    
+    
+    // Espone solo i primi "limite" byte dello stream, escludendo la coda di controllo
+    private static final class IngressoLimitato extends FilterInputStream {
+        private long residuo;
+        
+        IngressoLimitato(InputStream in, long limite) {
+            super(in);
+            this.residuo = limite;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (residuo <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) residuo--;
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (residuo <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, residuo));
+            if (n > 0) residuo -= n;
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long saltati = in.skip(Math.min(n, residuo));
+            residuo -= saltati;
+            return saltati;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), residuo);
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
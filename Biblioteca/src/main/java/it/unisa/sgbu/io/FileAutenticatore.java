@@ -6,6 +6,13 @@
 package it.unisa.sgbu.io;
 
 import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.CredenzialiCifrate;
+import it.unisa.sgbu.domain.RegistroCredenziali;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @brief Implementazione del meccanismo di autenticazione basato su file.
@@ -14,11 +21,45 @@ import it.unisa.sgbu.domain.Credenziali;
  * supporto di memorizzazione persistente. Soddisfa il requisito Non Funzionale
  * di Sicurezza, garantendo che l'accesso alle funzionalità di gestione
  * sia limitato al solo personale autorizzato (Attore: Bibliotecario).
+ * 
+ * Il file contiene un RegistroCredenziali (più operatori, password come hash PBKDF2 con sale).
+ * Un file delle versioni precedenti, con un singolo oggetto Credenziali in chiaro, va convertito
+ * all'avvio con migraFormatoPrecedente(); finché non lo è, viene comunque accettato.
+ * Il file è letto una volta e tenuto in memoria; a ogni verifica se ne confronta l'impronta
+ * (IArchivioDati.impronta()) e lo si rilegge solo se è cambiato.
+ * 
+ * Verificare un hash PBKDF2 costa per scelta decine o centinaia di millisecondi, troppo per
+ * l'autenticazione HTTP Basic che si ripete a ogni richiesta. Dopo una verifica riuscita si
+ * ricorda quindi, per l'operatore, un digest SHA-256 della password con una chiave casuale
+ * tenuta solo in memoria: le verifiche successive della stessa password costano un digest.
+ * Queste voci sono scartate quando il file cambia. Password errate e operatori sconosciuti
+ * pagano sempre il costo completo di PBKDF2, così i tentativi di indovinare restano lenti
+ * e il tempo di risposta non rivela quali operatori esistono.
  */
 public class FileAutenticatore implements IAutenticatore{
     
     private final String credentialsFile;
     private final IArchivioDati archivioDati;
+    private final byte[] chiaveSessione = new byte[32];
+    
+    private volatile Stato stato;
+    private CredenzialiCifrate fittizie;   // per gli operatori sconosciuti, al costo più alto del registro
+    private long caricamenti;
+    
+    
+    // Contenuto del file in memoria, con i digest delle password già verificate
+    private static final class Stato {
+        final String impronta;
+        final RegistroCredenziali registro;   // null se il file manca o non è leggibile
+        final CredenzialiCifrate fittizie;
+        final ConcurrentHashMap<String, byte[]> verificate = new ConcurrentHashMap<>();
+        
+        Stato(String impronta, RegistroCredenziali registro, CredenzialiCifrate fittizie) {
+            this.impronta = impronta;
+            this.registro = registro;
+            this.fittizie = fittizie;
+        }
+    }
     
     
     /**
@@ -32,6 +73,7 @@ public class FileAutenticatore implements IAutenticatore{
     public FileAutenticatore(String credentialsFile, IArchivioDati archivioDati){
         this.credentialsFile = credentialsFile;
         this.archivioDati = archivioDati;
+        new SecureRandom().nextBytes(chiaveSessione);
     }
     
     
@@ -59,18 +101,127 @@ public class FileAutenticatore implements IAutenticatore{
         // Controllo robustezza input
         if (user == null || pass == null) return false;
         
-        // Carico l'oggetto dal file usando il servizio di I/O
-        Object dati = archivioDati.caricaStato(this.credentialsFile);
+        Stato s = statoAggiornato();
+        
+        // Se il file non esiste o è corrotto, l'autenticazione fallisce per sicurezza
+        if (s.registro == null) return false;
+        
+        CredenzialiCifrate salvate = s.registro.get(user);   // Confronto username (Case Sensitive)
+        if (salvate == null) {
+            s.fittizie.verifica(pass);   // stesso costo di un operatore esistente
+            return false;
+        }
+        
+        byte[] digest = digest(user, pass);
+        byte[] noto = s.verificate.get(user);
+        if (noto != null && MessageDigest.isEqual(noto, digest)) return true;
+        
+        if (!salvate.verifica(pass)) return false;
+        s.verificate.put(user, digest);
+        return true;
+    }
+    
+    
+    /**
+     * @brief Converte un file di credenziali in chiaro (versioni precedenti) in un RegistroCredenziali.
+     * 
+     * Da invocare all'avvio, prima di usare l'autenticatore. La password è riscritta come
+     * hash PBKDF2 e la generazione precedente ".bak", che la conterrebbe ancora in chiaro,
+     * viene eliminata. Un file già cifrato, mancante o illeggibile non viene toccato.
+     * 
+     * @param[in] archivio L'archivio su disco (le scritture devono essere immediate).
+     * @param[in] credentialsFile Il nome del file delle credenziali.
+     * @param[in] iterazioni Il costo di PBKDF2 per la password convertita.
+     * 
+     * @return true se il file è stato convertito.
+     * 
+     * @post
+     * - Se restituisce true, su disco non resta alcuna copia della password in chiaro.
+     */
+    public static boolean migraFormatoPrecedente(FileArchivio archivio, String credentialsFile, int iterazioni){
+        Object dati = archivio.caricaStato(credentialsFile);
+        if (!(dati instanceof Credenziali)) return false;
+        
+        Credenziali c = (Credenziali) dati;
+        if (c.getUser() == null || c.getPassword() == null) return false;
+        RegistroCredenziali registro = new RegistroCredenziali();
+        registro.aggiungi(CredenzialiCifrate.da(c, iterazioni));
         
-        // Verifico che il caricamento sia andato a buon fine e che il tipo sia giusto
-        if (dati != null && dati instanceof Credenziali) {
-            Credenziali credenzialiSalvate = (Credenziali) dati;
+        if (!archivio.salvaStato(registro, credentialsFile)) return false;
+        if (!archivio.eliminaGenerazionePrecedente(credentialsFile)) {
+            System.err.println("[FileAutenticatore] Impossibile eliminare la copia in chiaro di " + credentialsFile + FileArchivio.SUFFISSO_PRECEDENTE);
+        }
+        return true;
+    }
+    
+    
+    /**
+     * @brief Restituisce quante volte il file delle credenziali è stato letto.
+     * @return Il numero di caricamenti (riusciti o no) dalla creazione.
+     */
+    public synchronized long getCaricamenti(){
+        return caricamenti;
+    }
+    
+    
+    // --- IMPLEMENTAZIONE ---
+    
+    // Restituisce il contenuto in memoria, rileggendo il file se l'impronta è cambiata (o è ignota)
+    private Stato statoAggiornato(){
+        String impronta = archivioDati.impronta(credentialsFile);
+        Stato s = stato;
+        if (s != null && impronta != null && impronta.equals(s.impronta)) return s;
+        
+        synchronized (this) {
+            s = stato;
+            if (s != null && impronta != null && impronta.equals(s.impronta)) return s;
             
-            // Confronto (Case Sensitive)
-            return user.equals(credenzialiSalvate.getUser()) && pass.equals(credenzialiSalvate.getPassword());
+            // L'impronta è letta prima del file: se il file cambia nel frattempo, la verifica successiva lo rilegge
+            caricamenti++;
+            RegistroCredenziali registro = registro(archivioDati.caricaStato(this.credentialsFile));
+            // Anche un file mancante o illeggibile resta in memoria, fino alla prossima modifica
+            stato = new Stato(impronta, registro, (registro == null) ? null : fittiziePer(registro));
+            return stato;
         }
+    }
+    
+    
+    private static RegistroCredenziali registro(Object dati){
+        if (dati instanceof RegistroCredenziali) return (RegistroCredenziali) dati;
+        if (!(dati instanceof Credenziali)) return null;
         
-        // Se il file non esiste o è corrotto, l'autenticazione fallisce per sicurezza
-        return false;
+        // Formato precedente non ancora convertito (migraFormatoPrecedente()): la password
+        // è in chiaro sul file, un costo alto in memoria non aggiungerebbe protezione
+        Credenziali c = (Credenziali) dati;
+        if (c.getUser() == null || c.getPassword() == null) return null;
+        RegistroCredenziali registro = new RegistroCredenziali();
+        registro.aggiungi(CredenzialiCifrate.da(c, 1));
+        return registro;
+    }
+    
+    
+    // Credenziali fittizie con il costo più alto del registro, ricalcolate solo se il costo cambia
+    private CredenzialiCifrate fittiziePer(RegistroCredenziali registro){
+        int costo = 1;
+        for (CredenzialiCifrate c : registro.getAccount()) {
+            costo = Math.max(costo, c.getIterazioni());
+        }
+        if (fittizie == null || fittizie.getIterazioni() != costo) {
+            fittizie = new CredenzialiCifrate("", "", costo);
+        }
+        return fittizie;
+    }
+    
+    
+    private byte[] digest(String user, String pass){
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(chiaveSessione);
+            md.update(user.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            return md.digest(pass.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 è sempre disponibile
+        }
     }
 }
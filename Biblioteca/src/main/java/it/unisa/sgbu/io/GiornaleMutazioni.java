@@ -0,0 +1,521 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * @brief Giornale (write-ahead log) delle mutazioni dello stato di dominio.
+ *
+ * Ogni operazione che modifica Catalogo, Anagrafica o RegistroPrestiti viene accodata
+ * come piccolo record binario al segmento corrente del giornale. All'avvio lo stato
+ * si ricostruisce caricando l'ultimo snapshot (libri.dat, utenti.dat, prestiti.dat)
+ * e rieseguendo le mutazioni registrate dopo di esso.
+ *
+ * I segmenti sono numerati per generazione ("segmento-NNNNNNNNNN.wal"). Superata la soglia
+ * di record, un compattatore in background ripiega i segmenti chiusi in un nuovo snapshot
+ * e li elimina. La pubblicazione dello snapshot avviene in due fasi (file ".nuovo" + rinomina),
+ * tracciate nel file di stato, così che un crash a metà non lasci snapshot incoerenti tra loro.
+ *
+ * Formato del record: [lunghezza int][codice tipo byte][contenuto][CRC32 int].
+ * Un record troncato o con CRC errato (scrittura interrotta) termina la lettura del segmento.
+ */
+public class GiornaleMutazioni {
+
+    public static final String CARTELLA_GIORNALE = "giornale";
+    public static final String SUFFISSO_SNAPSHOT_NUOVO = ".nuovo";
+    public static final int SOGLIA_COMPATTAZIONE_DEFAULT = 1000;
+
+    private static final String PREFISSO = "segmento-";
+    private static final String ESTENSIONE = ".wal";
+    private static final String FILE_STATO = "stato";
+    private static final String STATO_COMPATTATO = "COMPATTATO";
+    private static final String STATO_PUBBLICAZIONE = "PUBBLICAZIONE";
+
+    /**
+     * @brief Strategia di compattazione invocata sul thread di background.
+     *
+     * L'implementazione deve ricostruire lo stato dall'ultimo snapshot, rieseguire le
+     * mutazioni fino alla generazione indicata (riproduci) e salvare il risultato nei file
+     * "nome + SUFFISSO_SNAPSHOT_NUOVO", restituendo i nomi degli snapshot da pubblicare.
+     */
+    public interface Compattatore {
+        List<String> compatta(long finoAGenerazione);
+    }
+
+    private final File cartellaDati;
+    private final File cartella;
+    private final int sogliaCompattazione;
+    private final boolean sincronizzaOgniRecord;
+    private final ExecutorService esecutore;
+
+    private FileOutputStream segmentoCorrente;
+    private long generazioneCorrente;
+    private long generazioneCompattata;
+    private int recordDallaRotazione;
+    private volatile boolean compattazioneInCorso;
+
+
+    /**
+     * @brief Costruttore del giornale.
+     *
+     * @param[in] pathDati Cartella base dei dati (snapshot); il giornale usa la sottocartella "giornale".
+     * @param[in] sogliaCompattazione Numero di record dopo il quale è richiesta la compattazione.
+     * @param[in] sincronizzaOgniRecord Se true ogni record è forzato su disco (fsync) prima di proseguire.
+     */
+    public GiornaleMutazioni(String pathDati, int sogliaCompattazione, boolean sincronizzaOgniRecord) {
+        this.cartellaDati = new File(pathDati);
+        this.cartella = new File(pathDati, CARTELLA_GIORNALE);
+        this.sogliaCompattazione = sogliaCompattazione > 0 ? sogliaCompattazione : SOGLIA_COMPATTAZIONE_DEFAULT;
+        this.sincronizzaOgniRecord = sincronizzaOgniRecord;
+        this.esecutore = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sgbu-compattatore-giornale");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        if (!cartella.exists()) {
+            cartella.mkdirs();
+        }
+    }
+
+
+    /**
+     * @brief Completa un'eventuale pubblicazione di snapshot interrotta e prepara la scrittura.
+     *
+     * Va invocato all'avvio, PRIMA di caricare gli snapshot: se l'ultimo crash è avvenuto
+     * durante una pubblicazione, le rinomine mancanti vengono completate.
+     * Le nuove mutazioni saranno scritte in una generazione successiva a tutte quelle esistenti.
+     */
+    public synchronized void recupera() {
+        String[] stato = leggiStato();
+        generazioneCompattata = Long.parseLong(stato[1]);
+
+        if (STATO_PUBBLICAZIONE.equals(stato[0])) {
+            List<String> nomi = new ArrayList<>();
+            for (int i = 2; i < stato.length; i++) nomi.add(stato[i]);
+            completaPubblicazione(generazioneCompattata, nomi);
+        }
+
+        long massima = generazioneCompattata;
+        for (long g : elencaGenerazioni()) {
+            massima = Math.max(massima, g);
+        }
+        chiudiSegmento();
+        generazioneCorrente = massima + 1;
+        recordDallaRotazione = 0;
+    }
+
+
+    /**
+     * @brief Accoda una mutazione al segmento corrente.
+     *
+     * @param[in] m La mutazione da registrare.
+     *
+     * @return true se il record è stato scritto, false in caso di errore I/O.
+     */
+    public synchronized boolean registra(Mutazione m) {
+        if (m == null) return false;
+        try {
+            byte[] record = codifica(m);
+            apriSegmentoSeNecessario();
+            segmentoCorrente.write(record);
+            if (sincronizzaOgniRecord) {
+                segmentoCorrente.getFD().sync();
+            }
+            recordDallaRotazione++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("[GiornaleMutazioni] Scrittura mutazione fallita: " + e.getMessage());
+            chiudiSegmento();
+            return false;
+        }
+    }
+
+
+    /**
+     * @brief Riesegue tutte le mutazioni non ancora compattate.
+     *
+     * @param[in] consumatore Funzione che applica ciascuna mutazione allo stato.
+     *
+     * @return Il numero di mutazioni rieseguite.
+     */
+    public int riproduci(Consumer<Mutazione> consumatore) {
+        long da;
+        synchronized (this) {
+            da = generazioneCompattata;
+        }
+        int n = riproduci(da, Long.MAX_VALUE, consumatore);
+        synchronized (this) {
+            recordDallaRotazione += n;
+        }
+        return n;
+    }
+
+
+    /**
+     * @brief Riesegue le mutazioni delle generazioni comprese in (da, a].
+     *
+     * @param[in] da Generazione esclusa (tipicamente l'ultima compattata).
+     * @param[in] a Ultima generazione inclusa.
+     * @param[in] consumatore Funzione che applica ciascuna mutazione.
+     *
+     * @return Il numero di mutazioni lette.
+     */
+    public int riproduci(long da, long a, Consumer<Mutazione> consumatore) {
+        int lette = 0;
+        for (long g : elencaGenerazioni()) {
+            if (g <= da || g > a) continue;
+            lette += leggiSegmento(fileSegmento(g), consumatore);
+        }
+        return lette;
+    }
+
+
+    /**
+     * @brief Indica se il numero di record accumulati richiede una compattazione.
+     * @return true se la soglia è superata e non c'è già una compattazione in corso.
+     */
+    public synchronized boolean richiedeCompattazione() {
+        return !compattazioneInCorso && recordDallaRotazione >= sogliaCompattazione;
+    }
+
+
+    /**
+     * @brief Avvia la compattazione in background.
+     *
+     * Il segmento corrente viene chiuso (le nuove mutazioni andranno nella generazione successiva);
+     * il compattatore ripiega in uno snapshot tutte le generazioni fino a quella chiusa.
+     *
+     * @param[in] compattatore La strategia che produce i nuovi snapshot.
+     */
+    public synchronized void compatta(final Compattatore compattatore) {
+        if (compattazioneInCorso || compattatore == null) return;
+        compattazioneInCorso = true;
+        final long fino = ruota();
+
+        esecutore.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<String> nomi = compattatore.compatta(fino);
+                    if (nomi != null) {
+                        pubblicaSnapshot(fino, nomi);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("[GiornaleMutazioni] Compattazione fallita: " + e.getMessage());
+                } finally {
+                    compattazioneInCorso = false;
+                }
+            }
+        });
+    }
+
+
+    /**
+     * @brief Attende il termine di un'eventuale compattazione in corso.
+     *
+     * Dopo chiudi() non c'è nulla da attendere: chiudi() ha già atteso il compattatore.
+     */
+    public void attendiCompattazione() {
+        if (esecutore.isShutdown()) return;
+        try {
+            esecutore.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Nessuna operazione: serve solo a svuotare la coda del compattatore
+                }
+            }).get();
+        } catch (RejectedExecutionException e) {
+            // Giornale chiuso da un altro thread nel frattempo: nulla da attendere
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[GiornaleMutazioni] Attesa compattazione interrotta");
+        } catch (ExecutionException e) {
+            System.err.println("[GiornaleMutazioni] Attesa compattazione fallita: " + e.getCause());
+        }
+    }
+
+
+    /**
+     * @brief Chiude il segmento corrente e apre una nuova generazione.
+     *
+     * @return La generazione appena chiusa (l'ultima coperta dallo snapshot che si sta per scrivere).
+     */
+    public synchronized long ruota() {
+        chiudiSegmento();
+        long chiusa = generazioneCorrente;
+        generazioneCorrente++;
+        recordDallaRotazione = 0;
+        return chiusa;
+    }
+
+
+    /**
+     * @brief Pubblica gli snapshot "nome.nuovo" e scarta i segmenti che essi rendono superflui.
+     *
+     * Fasi: (1) stato = PUBBLICAZIONE; (2) rinomina dei file ".nuovo"; (3) stato = COMPATTATO;
+     * (4) eliminazione dei segmenti fino alla generazione indicata.
+     *
+     * @param[in] finoAGenerazione Ultima generazione contenuta negli snapshot.
+     * @param[in] nomiFile Nomi (senza suffisso) degli snapshot da pubblicare.
+     *
+     * @return true se la pubblicazione è andata a buon fine.
+     */
+    public synchronized boolean pubblicaSnapshot(long finoAGenerazione, List<String> nomiFile) {
+        for (String nome : nomiFile) {
+            if (!new File(cartellaDati, nome + SUFFISSO_SNAPSHOT_NUOVO).exists()) {
+                System.err.println("[GiornaleMutazioni] Snapshot " + nome + SUFFISSO_SNAPSHOT_NUOVO + " mancante: pubblicazione annullata.");
+                return false;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(STATO_PUBBLICAZIONE).append(' ').append(finoAGenerazione);
+        for (String nome : nomiFile) sb.append(' ').append(nome);
+
+        if (!scriviStato(sb.toString())) return false;
+        return completaPubblicazione(finoAGenerazione, nomiFile);
+    }
+
+
+    /**
+     * @brief Arresta il compattatore e chiude il segmento corrente.
+     */
+    public void chiudi() {
+        attendiCompattazione();
+        esecutore.shutdown();
+        try {
+            esecutore.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            chiudiSegmento();
+        }
+    }
+
+
+    /**
+     * @brief Restituisce l'ultima generazione già ripiegata negli snapshot.
+     * @return Il numero di generazione compattata.
+     */
+    public synchronized long getGenerazioneCompattata() {
+        return generazioneCompattata;
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private boolean completaPubblicazione(long fino, List<String> nomi) {
+        for (String nome : nomi) {
+            File nuovo = new File(cartellaDati, nome + SUFFISSO_SNAPSHOT_NUOVO);
+            if (nuovo.exists()) {
+                try {
+                    FileArchivio.pubblicaGenerazione(nuovo, new File(cartellaDati, nome));
+                } catch (IOException e) {
+                    System.err.println("[GiornaleMutazioni] Pubblicazione di " + nome + " fallita: " + e.getMessage());
+                    return false;
+                }
+            }
+        }
+        if (!scriviStato(STATO_COMPATTATO + " " + fino)) return false;
+        generazioneCompattata = fino;
+
+        for (long g : elencaGenerazioni()) {
+            if (g <= fino) fileSegmento(g).delete();
+        }
+        return true;
+    }
+
+
+    private static byte[] codifica(Mutazione m) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); // segnaposto per la lunghezza
+        out.writeByte(m.getTipo().getCodice());
+        m.scrivi(out);
+        out.flush();
+
+        byte[] record = buffer.toByteArray();
+        int lunghezza = record.length - 4;
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, lunghezza);
+
+        byte[] completo = Arrays.copyOf(record, record.length + 4);
+        scriviInt(completo, 0, lunghezza);
+        scriviInt(completo, record.length, (int) crc.getValue());
+        return completo;
+    }
+
+
+    private int leggiSegmento(File segmento, Consumer<Mutazione> consumatore) {
+        int lette = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmento)))) {
+            while (true) {
+                int lunghezza;
+                try {
+                    lunghezza = in.readInt();
+                } catch (EOFException fine) {
+                    break;
+                }
+                if (lunghezza <= 0 || lunghezza > 16 * 1024 * 1024) {
+                    System.err.println("[GiornaleMutazioni] Record non valido in " + segmento.getName() + ": lettura interrotta.");
+                    break;
+                }
+                byte[] contenuto = new byte[lunghezza];
+                in.readFully(contenuto);
+                int atteso = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(contenuto, 0, lunghezza);
+                if ((int) crc.getValue() != atteso) {
+                    System.err.println("[GiornaleMutazioni] CRC errato in " + segmento.getName() + ": lettura interrotta.");
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(contenuto));
+                TipoMutazione tipo = TipoMutazione.daCodice(record.readUnsignedByte());
+                if (tipo == null) {
+                    System.err.println("[GiornaleMutazioni] Tipo sconosciuto in " + segmento.getName() + ": record ignorato.");
+                    continue;
+                }
+                consumatore.accept(Mutazione.leggi(tipo, record));
+                lette++;
+            }
+        } catch (EOFException e) {
+            // Coda troncata da una scrittura interrotta: i record precedenti restano validi
+            System.err.println("[GiornaleMutazioni] Record finale troncato in " + segmento.getName() + ".");
+        } catch (IOException e) {
+            System.err.println("[GiornaleMutazioni] Lettura " + segmento.getName() + " fallita: " + e.getMessage());
+        }
+        return lette;
+    }
+
+
+    private void apriSegmentoSeNecessario() throws IOException {
+        if (segmentoCorrente == null) {
+            if (generazioneCorrente == 0) {
+                recupera();
+            }
+            segmentoCorrente = new FileOutputStream(fileSegmento(generazioneCorrente), true);
+        }
+    }
+
+
+    private void chiudiSegmento() {
+        if (segmentoCorrente != null) {
+            try {
+                segmentoCorrente.close();
+            } catch (IOException e) {
+                System.err.println("[GiornaleMutazioni] Chiusura segmento fallita: " + e.getMessage());
+            }
+            segmentoCorrente = null;
+        }
+    }
+
+
+    private List<Long> elencaGenerazioni() {
+        List<Long> generazioni = new ArrayList<>();
+        String[] nomi = cartella.list();
+        if (nomi == null) return generazioni;
+
+        for (String nome : nomi) {
+            if (nome.startsWith(PREFISSO) && nome.endsWith(ESTENSIONE)) {
+                try {
+                    generazioni.add(Long.parseLong(nome.substring(PREFISSO.length(), nome.length() - ESTENSIONE.length())));
+                } catch (NumberFormatException e) {
+                    // Nome non conforme: ignorato
+                }
+            }
+        }
+        Collections.sort(generazioni);
+        return generazioni;
+    }
+
+
+    private File fileSegmento(long generazione) {
+        return new File(cartella, String.format("%s%010d%s", PREFISSO, generazione, ESTENSIONE));
+    }
+
+
+    private String[] leggiStato() {
+        File f = new File(cartella, FILE_STATO);
+        if (f.exists()) {
+            try {
+                String contenuto = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim();
+                String[] parti = contenuto.split(" ");
+                if (parti.length >= 2) {
+                    Long.parseLong(parti[1]);
+                    return parti;
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("[GiornaleMutazioni] File di stato illeggibile: " + e.getMessage());
+            }
+        }
+        return new String[]{STATO_COMPATTATO, "0"};
+    }
+
+
+    private boolean scriviStato(String contenuto) {
+        File tmp = new File(cartella, FILE_STATO + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(contenuto.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("[GiornaleMutazioni] Scrittura stato fallita: " + e.getMessage());
+            return false;
+        }
+        return rinomina(tmp, new File(cartella, FILE_STATO));
+    }
+
+
+    private static boolean rinomina(File da, File a) {
+        try {
+            try {
+                Files.move(da.toPath(), a.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(da.toPath(), a.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("[GiornaleMutazioni] Rinomina " + da.getName() + " fallita: " + e.getMessage());
+            return false;
+        }
+    }
+
+
+    private static void scriviInt(byte[] b, int pos, int v) {
+        b[pos] = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+    }
+}
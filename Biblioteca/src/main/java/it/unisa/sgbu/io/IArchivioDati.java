@@ -59,4 +59,22 @@ public interface IArchivioDati {
      * @return true se il file esiste, false altrimenti.
      */
     public boolean verificaEsistenzaFile(String nomeFile);
+    
+    
+    /**
+     * @brief Restituisce un'impronta dello stato di un file, per riconoscerne le modifiche.
+     * 
+     * Due impronte uguali indicano che caricaStato() restituirebbe lo stesso contenuto,
+     * quindi chi tiene in memoria i dati già letti può evitare di rileggerli.
+     * L'impronta non è legata al contenuto (non lo legge): tipicamente combina data di
+     * modifica e dimensione del file.
+     * 
+     * @param[in] nomeFile Il nome o percorso del file.
+     * 
+     * @return Un'impronta confrontabile con equals(), oppure null se l'archivio non sa
+     *         rilevare le modifiche (il chiamante deve allora ricaricare ogni volta).
+     */
+    public default String impronta(String nomeFile) {
+        return null;
+    }
 }
@@ -32,6 +32,16 @@ public interface ILogger {
     public void registraAzione(String azione);
     
     
+    /**
+     * @brief Registra in blocco le operazioni di un'unica transazione (es. prestiti multipli).
+     * 
+     * I record sono resi persistenti con un solo accesso all'archivio, anziché uno per azione.
+     * 
+     * @param[in] azioni Le descrizioni degli eventi, nell'ordine in cui sono avvenuti.
+     */
+    public void registraAzioni(List<String> azioni);
+    
+    
     /**
      * @brief Recupera lo storico delle operazioni registrate.
      * 
@@ -0,0 +1,166 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief Lettura in streaming di file CSV, una riga alla volta.
+ *
+ * Legge dal Reader con un buffer proprio, quindi la memoria occupata non dipende dalla
+ * dimensione del file. Segue le regole comuni dei CSV (RFC 4180):
+ * - i campi sono divisi dal separatore (di default ';', come nelle esportazioni di Excel in italiano);
+ * - un campo tra virgolette può contenere separatori e a capo; "" rappresenta una virgoletta;
+ * - le righe terminano con \n o \r\n; le righe vuote sono ignorate;
+ * - un eventuale BOM UTF-8 iniziale è scartato.
+ */
+public class LettoreCsv implements Closeable {
+
+    public static final char SEPARATORE_DEFAULT = ';';
+
+    private static final int FINE = -1;
+    private static final int NESSUNO = -2;
+
+    private final Reader in;
+    private final char separatore;
+    private final char[] buffer = new char[64 * 1024];
+    private int pos;
+    private int letti;
+    private int rimandato = NESSUNO;
+    private boolean inizio = true;
+
+    private final StringBuilder campo = new StringBuilder(64);
+    private long righeFisiche;
+    private long riga;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] in La sorgente del testo (non viene bufferizzata di nuovo).
+     * @param[in] separatore Il carattere che divide i campi.
+     */
+    public LettoreCsv(Reader in, char separatore) {
+        this.in = in;
+        this.separatore = separatore;
+    }
+
+
+    /**
+     * @brief Costruttore con il separatore predefinito ';'.
+     *
+     * @param[in] in La sorgente del testo.
+     */
+    public LettoreCsv(Reader in) {
+        this(in, SEPARATORE_DEFAULT);
+    }
+
+
+    /**
+     * @brief Legge la prossima riga.
+     *
+     * @return I campi della riga (almeno uno), oppure null a fine file.
+     *
+     * @throws IOException se la lettura fallisce o il file termina dentro un campo tra virgolette.
+     */
+    public List<String> leggiRiga() throws IOException {
+        int c = leggi();
+        while (c == '\n' || c == '\r') {
+            if (c == '\n') righeFisiche++;
+            c = leggi();
+        }
+        if (c == FINE) return null;
+
+        riga = righeFisiche + 1;
+        List<String> campi = new ArrayList<>(8);
+        campo.setLength(0);
+        boolean traVirgolette = false;
+        boolean citato = false;
+
+        while (true) {
+            if (traVirgolette) {
+                if (c == FINE) {
+                    throw new IOException("Virgolette non chiuse nel campo iniziato alla riga " + riga);
+                }
+                if (c == '"') {
+                    int dopo = leggi();
+                    if (dopo == '"') {
+                        campo.append('"');
+                    } else {
+                        traVirgolette = false;
+                        c = dopo;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') righeFisiche++;
+                    campo.append((char) c);
+                }
+            } else if (c == separatore) {
+                campi.add(campo.toString());
+                campo.setLength(0);
+                citato = false;
+            } else if (c == '"' && campo.length() == 0 && !citato) {
+                traVirgolette = true;
+                citato = true;
+            } else if (c == '\n' || c == '\r' || c == FINE) {
+                if (c == '\r') {
+                    int dopo = leggi();
+                    if (dopo != '\n') rimandato = dopo;
+                }
+                if (c != FINE) righeFisiche++;
+                campi.add(campo.toString());
+                return campi;
+            } else {
+                campo.append((char) c);
+            }
+            c = leggi();
+        }
+    }
+
+
+    /**
+     * @brief Restituisce il numero (da 1) della riga fisica in cui inizia l'ultima riga letta.
+     * @return Il numero di riga, utile per i messaggi di errore; 0 prima della prima lettura.
+     */
+    public long getRiga() {
+        return riga;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private int leggi() throws IOException {
+        if (rimandato != NESSUNO) {
+            int c = rimandato;
+            rimandato = NESSUNO;
+            return c;
+        }
+        if (pos == letti) {
+            letti = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (letti <= 0) {
+                letti = 0;
+                return FINE;
+            }
+            if (inizio) {
+                inizio = false;
+                if (buffer[0] == '\uFEFF') pos = 1; // BOM
+                if (pos == letti) return leggi();
+            }
+        }
+        return buffer[pos++];
+    }
+}
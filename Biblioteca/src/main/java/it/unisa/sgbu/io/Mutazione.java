@@ -0,0 +1,266 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @brief Singola operazione di modifica dello stato, così come registrata nel giornale.
+ *
+ * Una Mutazione descrive in forma compatta un'operazione già eseguita con successo
+ * (inserimento/modifica/rimozione di libri e utenti, prestito, restituzione),
+ * in modo da poterla rieseguire all'avvio sopra l'ultimo snapshot.
+ *
+ * Le istanze sono immutabili e si creano tramite i metodi factory statici.
+ */
+public final class Mutazione {
+
+    private final TipoMutazione tipo;
+    private final String chiave;          // ISBN o matricola originale (modifica/rimozione)
+    private final Libro libro;            // nuovi dati del libro (aggiunta/modifica)
+    private final Utente utente;          // nuovi dati dell'utente (aggiunta/modifica)
+    private final int idPrestito;
+    private final String isbn;
+    private final String matricola;
+    private final LocalDate dataInizio;
+    private final LocalDate dataPrevista;
+    private final LocalDate dataEffettiva;
+    private final List<Mutazione> voci;   // mutazioni contenute (solo lotto)
+
+
+    private Mutazione(TipoMutazione tipo, String chiave, Libro libro, Utente utente, int idPrestito,
+                      String isbn, String matricola, LocalDate dataInizio, LocalDate dataPrevista, LocalDate dataEffettiva) {
+        this(tipo, chiave, libro, utente, idPrestito, isbn, matricola, dataInizio, dataPrevista, dataEffettiva, null);
+    }
+
+
+    private Mutazione(TipoMutazione tipo, String chiave, Libro libro, Utente utente, int idPrestito,
+                      String isbn, String matricola, LocalDate dataInizio, LocalDate dataPrevista, LocalDate dataEffettiva,
+                      List<Mutazione> voci) {
+        this.tipo = tipo;
+        this.chiave = chiave;
+        this.libro = libro;
+        this.utente = utente;
+        this.idPrestito = idPrestito;
+        this.isbn = isbn;
+        this.matricola = matricola;
+        this.dataInizio = dataInizio;
+        this.dataPrevista = dataPrevista;
+        this.dataEffettiva = dataEffettiva;
+        this.voci = voci;
+    }
+
+
+    public static Mutazione aggiuntaLibro(Libro l) {
+        return new Mutazione(TipoMutazione.AGGIUNTA_LIBRO, l.getISBN(), l, null, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione modificaLibro(String isbnOriginale, Libro nuovo) {
+        return new Mutazione(TipoMutazione.MODIFICA_LIBRO, isbnOriginale, nuovo, null, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione rimozioneLibro(String isbn) {
+        return new Mutazione(TipoMutazione.RIMOZIONE_LIBRO, isbn, null, null, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione aggiuntaUtente(Utente u) {
+        return new Mutazione(TipoMutazione.AGGIUNTA_UTENTE, u.getMatricola(), null, u, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione modificaUtente(String matricolaOriginale, Utente nuovo) {
+        return new Mutazione(TipoMutazione.MODIFICA_UTENTE, matricolaOriginale, null, nuovo, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione rimozioneUtente(String matricola) {
+        return new Mutazione(TipoMutazione.RIMOZIONE_UTENTE, matricola, null, null, 0, null, null, null, null, null);
+    }
+
+    public static Mutazione prestito(Prestito p) {
+        return new Mutazione(TipoMutazione.PRESTITO, null, null, null, p.getIdPrestito(),
+                p.getIsbn(), p.getMatricola(), p.getDataInizio(), p.getDataPrevistaRestituzione(), null);
+    }
+
+    public static Mutazione restituzione(int idPrestito, LocalDate dataEffettiva) {
+        return new Mutazione(TipoMutazione.RESTITUZIONE, null, null, null, idPrestito, null, null, null, null, dataEffettiva);
+    }
+
+    /**
+     * @brief Raggruppa più mutazioni in un unico record del giornale.
+     *
+     * Il lotto è scritto e verificato (CRC) come un solo record: dopo un crash
+     * viene rieseguito per intero oppure scartato, mai a metà.
+     *
+     * @param[in] voci Le mutazioni del lotto, nell'ordine di applicazione (nessun lotto annidato).
+     */
+    public static Mutazione lotto(List<Mutazione> voci) {
+        return new Mutazione(TipoMutazione.LOTTO, null, null, null, 0, null, null, null, null, null,
+                Collections.unmodifiableList(new ArrayList<>(voci)));
+    }
+
+
+    public TipoMutazione getTipo() { return tipo; }
+
+    /** @return ISBN o matricola originale su cui agisce la mutazione. */
+    public String getChiave() { return chiave; }
+
+    public Libro getLibro() { return libro; }
+
+    public Utente getUtente() { return utente; }
+
+    public int getIdPrestito() { return idPrestito; }
+
+    public String getIsbn() { return isbn; }
+
+    public String getMatricola() { return matricola; }
+
+    public LocalDate getDataInizio() { return dataInizio; }
+
+    public LocalDate getDataPrevista() { return dataPrevista; }
+
+    public LocalDate getDataEffettiva() { return dataEffettiva; }
+
+    /** @return Le mutazioni contenute in un lotto (lista vuota per gli altri tipi). */
+    public List<Mutazione> getVoci() { return voci != null ? voci : Collections.<Mutazione>emptyList(); }
+
+
+    /**
+     * @brief Scrive il contenuto della mutazione (tipo escluso) in formato binario.
+     *
+     * Le date sono salvate come giorno epoch (long), le stringhe in UTF modificato.
+     *
+     * @param[in] out Lo stream di destinazione.
+     */
+    void scrivi(DataOutput out) throws IOException {
+        switch (tipo) {
+            case AGGIUNTA_LIBRO:
+            case MODIFICA_LIBRO:
+                out.writeUTF(testo(chiave));
+                out.writeUTF(testo(libro.getISBN()));
+                out.writeUTF(testo(libro.getTitolo()));
+                List<String> autori = libro.getAutore();
+                out.writeShort(autori == null ? 0 : autori.size());
+                if (autori != null) {
+                    for (String a : autori) out.writeUTF(testo(a));
+                }
+                out.writeInt(libro.getAnno());
+                out.writeInt(libro.getCopieTotali());
+                break;
+            case AGGIUNTA_UTENTE:
+            case MODIFICA_UTENTE:
+                out.writeUTF(testo(chiave));
+                out.writeUTF(testo(utente.getMatricola()));
+                out.writeUTF(testo(utente.getNome()));
+                out.writeUTF(testo(utente.getCognome()));
+                out.writeUTF(testo(utente.getEmail()));
+                break;
+            case RIMOZIONE_LIBRO:
+            case RIMOZIONE_UTENTE:
+                out.writeUTF(testo(chiave));
+                break;
+            case PRESTITO:
+                out.writeInt(idPrestito);
+                out.writeUTF(testo(isbn));
+                out.writeUTF(testo(matricola));
+                out.writeLong(dataInizio.toEpochDay());
+                out.writeLong(dataPrevista.toEpochDay());
+                break;
+            case RESTITUZIONE:
+                out.writeInt(idPrestito);
+                out.writeLong(dataEffettiva.toEpochDay());
+                break;
+            case LOTTO:
+                out.writeInt(voci.size());
+                for (Mutazione m : voci) {
+                    out.writeByte(m.tipo.getCodice());
+                    m.scrivi(out);
+                }
+                break;
+        }
+    }
+
+
+    /**
+     * @brief Ricostruisce una mutazione a partire dal suo tipo e dal contenuto binario.
+     *
+     * @param[in] tipo Il tipo letto dall'intestazione del record.
+     * @param[in] in Lo stream posizionato sul contenuto.
+     *
+     * @return La mutazione letta.
+     */
+    static Mutazione leggi(TipoMutazione tipo, DataInput in) throws IOException {
+        switch (tipo) {
+            case AGGIUNTA_LIBRO:
+            case MODIFICA_LIBRO: {
+                String chiave = in.readUTF();
+                String isbn = in.readUTF();
+                String titolo = in.readUTF();
+                int n = in.readUnsignedShort();
+                List<String> autori = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) autori.add(in.readUTF());
+                Libro l = new Libro(isbn, titolo, autori, in.readInt(), in.readInt());
+                return new Mutazione(tipo, chiave, l, null, 0, null, null, null, null, null);
+            }
+            case AGGIUNTA_UTENTE:
+            case MODIFICA_UTENTE: {
+                String chiave = in.readUTF();
+                Utente u = new Utente(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                return new Mutazione(tipo, chiave, null, u, 0, null, null, null, null, null);
+            }
+            case RIMOZIONE_LIBRO:
+            case RIMOZIONE_UTENTE:
+                return new Mutazione(tipo, in.readUTF(), null, null, 0, null, null, null, null, null);
+            case PRESTITO: {
+                int id = in.readInt();
+                String isbn = in.readUTF();
+                String matricola = in.readUTF();
+                LocalDate inizio = LocalDate.ofEpochDay(in.readLong());
+                LocalDate prevista = LocalDate.ofEpochDay(in.readLong());
+                return new Mutazione(tipo, null, null, null, id, isbn, matricola, inizio, prevista, null);
+            }
+            case RESTITUZIONE: {
+                int id = in.readInt();
+                return new Mutazione(tipo, null, null, null, id, null, null, null, null, LocalDate.ofEpochDay(in.readLong()));
+            }
+            case LOTTO: {
+                int n = in.readInt();
+                List<Mutazione> voci = new ArrayList<>(Math.min(Math.max(n, 0), 1024));
+                for (int i = 0; i < n; i++) {
+                    TipoMutazione t = TipoMutazione.daCodice(in.readUnsignedByte());
+                    if (t == null || t == TipoMutazione.LOTTO) {
+                        throw new IOException("Voce di lotto non valida");
+                    }
+                    voci.add(leggi(t, in));
+                }
+                return new Mutazione(tipo, null, null, null, 0, null, null, null, null, null,
+                        Collections.unmodifiableList(voci));
+            }
+            default:
+                throw new IOException("Tipo di mutazione non gestito: " + tipo);
+        }
+    }
+
+
+    // writeUTF non accetta null: i campi mancanti sono salvati come stringa vuota
+    private static String testo(String s) {
+        return s == null ? "" : s;
+    }
+
+
+    @Override
+    public String toString() {
+        if (voci != null) return tipo + " (" + voci.size() + " operazioni)";
+        return tipo + (chiave != null ? " " + chiave : "") + (idPrestito != 0 ? " ID " + idPrestito : "");
+    }
+}
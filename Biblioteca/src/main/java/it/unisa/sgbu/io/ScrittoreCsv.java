@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief Scrittura in streaming di file CSV, leggibili da LettoreCsv e dai fogli di calcolo.
+ *
+ * I campi che contengono il separatore, virgolette o a capo sono racchiusi tra virgolette
+ * (raddoppiando quelle interne); gli altri sono scritti così come sono. Le righe terminano con \n.
+ *
+ * @see LettoreCsv
+ */
+public class ScrittoreCsv implements Closeable, Flushable {
+
+    private final Writer out;
+    private final char separatore;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] out La destinazione del testo (conviene un BufferedWriter).
+     * @param[in] separatore Il carattere che divide i campi.
+     */
+    public ScrittoreCsv(Writer out, char separatore) {
+        this.out = out;
+        this.separatore = separatore;
+    }
+
+
+    /**
+     * @brief Costruttore con il separatore predefinito ';'.
+     *
+     * @param[in] out La destinazione del testo.
+     */
+    public ScrittoreCsv(Writer out) {
+        this(out, LettoreCsv.SEPARATORE_DEFAULT);
+    }
+
+
+    /**
+     * @brief Scrive una riga.
+     *
+     * @param[in] campi I campi, nell'ordine (null è scritto come campo vuoto).
+     *
+     * @throws IOException se la scrittura fallisce.
+     */
+    public void scriviRiga(List<String> campi) throws IOException {
+        for (int i = 0; i < campi.size(); i++) {
+            if (i > 0) out.write(separatore);
+            scriviCampo(campi.get(i));
+        }
+        out.write('\n');
+    }
+
+
+    /**
+     * @brief Scrive una riga.
+     *
+     * @param[in] campi I campi, nell'ordine.
+     *
+     * @throws IOException se la scrittura fallisce.
+     *
+     * @see scriviRiga(List)
+     */
+    public void scriviRiga(String... campi) throws IOException {
+        scriviRiga(Arrays.asList(campi));
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private void scriviCampo(String campo) throws IOException {
+        if (campo == null || campo.isEmpty()) return;
+
+        boolean virgolette = false;
+        for (int i = 0; i < campo.length() && !virgolette; i++) {
+            char c = campo.charAt(i);
+            virgolette = c == separatore || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!virgolette) {
+            out.write(campo);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            if (c == '"') out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
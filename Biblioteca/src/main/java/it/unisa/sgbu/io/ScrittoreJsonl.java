@@ -0,0 +1,122 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * @brief Scrittura in streaming di file JSON Lines: un oggetto JSON per riga, con campi fissi.
+ *
+ * I nomi dei campi sono dati una volta nel costruttore; ogni riga ne fornisce i valori
+ * nello stesso ordine, senza costruire mappe o stringhe intermedie.
+ * Numeri e booleani sono scritti come tali, le liste come array, null come null,
+ * ogni altro valore come stringa (toString()).
+ *
+ * @see ScrittoreCsv
+ */
+public class ScrittoreJsonl implements Closeable, Flushable {
+
+    private final Writer out;
+    private final String[] campi;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] out La destinazione del testo (conviene un BufferedWriter).
+     * @param[in] campi I nomi dei campi di ogni oggetto.
+     */
+    public ScrittoreJsonl(Writer out, String... campi) {
+        this.out = out;
+        this.campi = campi.clone();
+    }
+
+
+    /**
+     * @brief Scrive una riga.
+     *
+     * @param[in] valori I valori dei campi, nell'ordine del costruttore.
+     *
+     * @throws IOException se la scrittura fallisce.
+     * @throws IllegalArgumentException se il numero dei valori non coincide con quello dei campi.
+     */
+    public void scriviRiga(Object... valori) throws IOException {
+        if (valori.length != campi.length) {
+            throw new IllegalArgumentException("Attesi " + campi.length + " valori, ricevuti " + valori.length);
+        }
+        out.write('{');
+        for (int i = 0; i < campi.length; i++) {
+            if (i > 0) out.write(',');
+            scriviStringa(campi[i]);
+            out.write(':');
+            scriviValore(valori[i]);
+        }
+        out.write("}\n");
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private void scriviValore(Object v) throws IOException {
+        if (v == null) {
+            out.write("null");
+        } else if (v instanceof Number || v instanceof Boolean) {
+            out.write(v.toString());
+        } else if (v instanceof List) {
+            out.write('[');
+            boolean primo = true;
+            for (Object o : (List<?>) v) {
+                if (!primo) out.write(',');
+                primo = false;
+                scriviValore(o);
+            }
+            out.write(']');
+        } else {
+            scriviStringa(v.toString());
+        }
+    }
+
+
+    private void scriviStringa(String s) throws IOException {
+        out.write('"');
+        int inizio = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String sostituto;
+            switch (c) {
+                case '"':  sostituto = "\\\""; break;
+                case '\\': sostituto = "\\\\"; break;
+                case '\n': sostituto = "\\n"; break;
+                case '\r': sostituto = "\\r"; break;
+                case '\t': sostituto = "\\t"; break;
+                default:
+                    if (c >= 0x20) continue;
+                    sostituto = String.format("\\u%04x", (int) c);
+            }
+            out.write(s, inizio, i - inizio);
+            out.write(sostituto);
+            inizio = i + 1;
+        }
+        out.write(s, inizio, s.length() - inizio);
+        out.write('"');
+    }
+}
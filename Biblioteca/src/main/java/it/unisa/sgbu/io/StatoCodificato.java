@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * @brief Contenuto di un file già codificato in memoria, pronto per essere scritto.
+ *
+ * Cattura lo stato di un oggetto nel momento della creazione: le modifiche successive
+ * all'oggetto non lo alterano. Catalogo, Anagrafica e RegistroPrestiti sono codificati con
+ * CodecBinario (che li legge con i rispettivi lock, quindi senza modifiche a metà), gli altri
+ * oggetti con la serializzazione Java standard: è lo stesso contenuto che FileArchivio
+ * scriverebbe, prima della coda di controllo.
+ *
+ * @see ArchivioDifferito
+ */
+public final class StatoCodificato {
+
+    private final byte[] contenuto;
+
+
+    private StatoCodificato(byte[] contenuto) {
+        this.contenuto = contenuto;
+    }
+
+
+    /**
+     * @brief Codifica lo stato attuale di un oggetto.
+     *
+     * @param[in] dati L'oggetto da codificare.
+     *
+     * @return Il contenuto codificato.
+     *
+     * @throws IOException se l'oggetto non è serializzabile.
+     */
+    public static StatoCodificato codifica(Object dati) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (CodecBinario.supporta(dati)) {
+            CodecBinario.scrivi(dati, buffer);
+        } else {
+            ObjectOutputStream oos = new ObjectOutputStream(buffer);
+            oos.writeObject(dati);
+            oos.flush();
+        }
+        return new StatoCodificato(buffer.toByteArray());
+    }
+
+
+    /**
+     * @brief Ricostruisce un oggetto dal contenuto: ogni chiamata restituisce una copia nuova.
+     *
+     * @return L'oggetto decodificato.
+     *
+     * @throws IOException se il contenuto non è leggibile.
+     * @throws ClassNotFoundException se la classe serializzata non è disponibile.
+     */
+    public Object decodifica() throws IOException, ClassNotFoundException {
+        InputStream is = new ByteArrayInputStream(contenuto);
+        if (contenuto.length >= 4 && ((contenuto[0] & 0xFF) << 24 | (contenuto[1] & 0xFF) << 16
+                | (contenuto[2] & 0xFF) << 8 | (contenuto[3] & 0xFF)) == CodecBinario.MAGIC) {
+            return CodecBinario.leggi(is);
+        }
+        return new ObjectInputStream(is).readObject();
+    }
+
+
+    /**
+     * @brief Scrive il contenuto sullo stream indicato, senza chiuderlo.
+     *
+     * @param[in] out Lo stream di destinazione.
+     *
+     * @throws IOException in caso di errore di scrittura.
+     */
+    public void scrivi(OutputStream out) throws IOException {
+        out.write(contenuto);
+    }
+
+
+    /**
+     * @brief Restituisce la dimensione del contenuto.
+     * @return Il numero di byte.
+     */
+    public int dimensione() {
+        return contenuto.length;
+    }
+}
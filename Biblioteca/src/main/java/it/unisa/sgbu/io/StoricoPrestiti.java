@@ -0,0 +1,583 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Prestito;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @brief Storico dei prestiti chiusi, su file di segmento mensili in sola aggiunta.
+ *
+ * I prestiti restituiti escono dal RegistroPrestiti (e quindi da "prestiti.dat")
+ * e vengono accodati qui con una sola scrittura: lo snapshot e la memoria occupata
+ * dipendono solo dai prestiti in corso, non dagli anni di storico.
+ *
+ * Ogni prestito è una riga di testo UTF-8 nel segmento del mese della restituzione
+ * ("prestiti-AAAAMM.log" nella cartella "storico"), preceduta dal suo numero di
+ * sequenza: il RegistroPrestiti numera le chiusure in ordine, quindi un record
+ * già presente (es. riesecuzione del giornale dopo un crash) viene riconosciuto e ignorato.
+ *
+ * Con la compressione attiva, comprimiMesiChiusi() sposta i mesi conclusi in
+ * archivi GZIP ("prestiti-AAAAMM.log.gz"). La lettura avviene in streaming
+ * (scorri()), leggendo solo i segmenti dei mesi richiesti.
+ */
+public class StoricoPrestiti {
+
+    public static final String CARTELLA_STORICO = "storico";
+
+    private static final String PREFISSO = "prestiti-";
+    private static final String ESTENSIONE = ".log";
+    private static final String ESTENSIONE_COMPRESSA = ".log.gz";
+    private static final String SUFFISSO_TEMPORANEO = ".tmp";
+    private static final String FILE_SEQUENZA = "sequenza";
+    private static final DateTimeFormatter FORMATO_MESE = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final char SEPARATORE = '\t';
+    private static final int CODA_LETTA = 4096;   // byte letti dal fondo di un segmento per trovare l'ultimo record
+
+    private final File cartella;
+    private final boolean comprimi;
+
+    // Numero di sequenza più alto presente su disco
+    private long ultimaSequenza;
+
+    // Stato del segmento aperto in scrittura
+    private OutputStream segmentoCorrente;
+    private YearMonth meseCorrente;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] pathDati La cartella base dei dati (i segmenti sono creati nella sottocartella "storico").
+     * @param[in] comprimi true per comprimere i mesi conclusi con comprimiMesiChiusi().
+     *
+     * @post
+     * - La cartella dello storico esiste (viene creata se assente).
+     * - Una compressione interrotta da un crash è completata o annullata.
+     */
+    public StoricoPrestiti(String pathDati, boolean comprimi) {
+        this.cartella = new File(pathDati, CARTELLA_STORICO);
+        this.comprimi = comprimi;
+
+        if (!cartella.exists()) {
+            cartella.mkdirs();
+        }
+        recuperaCompressioni();
+        this.ultimaSequenza = leggiUltimaSequenza();
+    }
+
+
+    /**
+     * @brief Accoda un prestito chiuso al segmento del mese della restituzione.
+     *
+     * @param[in] sequenza Numero progressivo della chiusura (assegnato dal RegistroPrestiti).
+     * @param[in] p Il prestito chiuso.
+     *
+     * @return true se il record è su disco (anche se già presente in precedenza),
+     *         false se il prestito non è chiuso o la scrittura fallisce.
+     */
+    public synchronized boolean archivia(long sequenza, Prestito p) {
+        if (p == null || p.getDataEffettivaRestituzione() == null) return false;
+        if (sequenza <= ultimaSequenza) return true;   // già archiviato
+
+        byte[] dati = codifica(sequenza, p).getBytes(StandardCharsets.UTF_8);
+        try {
+            preparaSegmento(YearMonth.from(p.getDataEffettivaRestituzione()));
+            segmentoCorrente.write(dati);
+            ultimaSequenza = sequenza;
+            return true;
+        } catch (IOException e) {
+            System.err.println("[StoricoPrestiti] Archiviazione prestito " + p.getIdPrestito() + " fallita: " + e.getMessage());
+            chiudiSegmento();
+            return false;
+        }
+    }
+
+
+    /**
+     * @brief Accoda più prestiti chiusi, con numeri di sequenza consecutivi.
+     *
+     * I record consecutivi dello stesso mese sono scritti con un'unica operazione
+     * sul segmento. Come per archivia(), le sequenze già presenti vengono saltate.
+     *
+     * @param[in] primaSequenza Numero di chiusura del primo prestito della lista.
+     * @param[in] prestiti I prestiti chiusi, in ordine di chiusura.
+     *
+     * @return Il numero di prestiti iniziali della lista che risultano su disco: in caso
+     *         di errore i successivi non sono scritti e vanno ritentati.
+     */
+    public synchronized int archivia(long primaSequenza, List<Prestito> prestiti) {
+        StringBuilder blocco = new StringBuilder();
+        YearMonth meseBlocco = null;
+        int scritti = 0;   // prestiti in testa alla lista già su disco
+        int inBlocco = 0;  // prestiti successivi in attesa nel blocco
+
+        for (int i = 0; i < prestiti.size(); i++) {
+            Prestito p = prestiti.get(i);
+            if (p == null || p.getDataEffettivaRestituzione() == null) break;
+            long sequenza = primaSequenza + i;
+            if (sequenza <= ultimaSequenza) {
+                scritti++;
+                continue;
+            }
+
+            YearMonth mese = YearMonth.from(p.getDataEffettivaRestituzione());
+            if (meseBlocco != null && !mese.equals(meseBlocco)) {
+                if (!scriviBlocco(meseBlocco, blocco, sequenza - 1)) return scritti;
+                scritti += inBlocco;
+                inBlocco = 0;
+                blocco.setLength(0);
+            }
+            meseBlocco = mese;
+            blocco.append(codifica(sequenza, p));
+            inBlocco++;
+        }
+
+        if (inBlocco > 0 && scriviBlocco(meseBlocco, blocco, primaSequenza + scritti + inBlocco - 1)) {
+            scritti += inBlocco;
+        }
+        return scritti;
+    }
+
+
+    /**
+     * @brief Restituisce il numero di sequenza più alto archiviato.
+     * @return L'ultima sequenza (0 se lo storico è vuoto).
+     */
+    public synchronized long getUltimaSequenza() {
+        return ultimaSequenza;
+    }
+
+
+    /**
+     * @brief Scorre in streaming i prestiti restituiti in un intervallo di mesi.
+     *
+     * Sono letti solo i segmenti dei mesi richiesti; nessun elenco viene materializzato.
+     * I prestiti restituiti non sono collegati alle istanze di Libro e Utente (solo ISBN e matricola).
+     *
+     * @param[in] da Primo mese incluso (null = dall'inizio).
+     * @param[in] a Ultimo mese incluso (null = fino all'ultimo).
+     * @param[in] filtro Condizione sui prestiti (null = tutti).
+     * @param[in] consumatore Funzione invocata per ogni prestito, per mese e in ordine di archiviazione.
+     *
+     * @return Il numero di prestiti consegnati al consumatore.
+     */
+    public int scorri(YearMonth da, YearMonth a, Predicate<? super Prestito> filtro, Consumer<? super Prestito> consumatore) {
+        int consegnati = 0;
+        for (File segmento : elencaSegmenti()) {
+            YearMonth mese = meseDi(segmento);
+            if ((da != null && mese.isBefore(da)) || (a != null && mese.isAfter(a))) continue;
+
+            int illeggibili = 0;
+            try (BufferedReader reader = apriLettura(segmento)) {
+                String riga;
+                while ((riga = reader.readLine()) != null) {
+                    Prestito p = decodifica(riga);
+                    if (p == null) {
+                        if (!riga.isEmpty()) illeggibili++;
+                        continue;
+                    }
+                    if (filtro == null || filtro.test(p)) {
+                        consumatore.accept(p);
+                        consegnati++;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("[StoricoPrestiti] Lettura segmento " + segmento.getName() + " fallita: " + e.getMessage());
+            }
+            if (illeggibili > 0) {
+                System.err.println("[StoricoPrestiti] Record illeggibili ignorati in " + segmento.getName() + ": " + illeggibili);
+            }
+        }
+        return consegnati;
+    }
+
+
+    /**
+     * @brief Scorre in streaming l'intero storico.
+     *
+     * @param[in] consumatore Funzione invocata per ogni prestito.
+     *
+     * @return Il numero di prestiti letti.
+     *
+     * @see scorri(YearMonth, YearMonth, Predicate, Consumer)
+     */
+    public int scorri(Consumer<? super Prestito> consumatore) {
+        return scorri(null, null, null, consumatore);
+    }
+
+
+    /**
+     * @brief Comprime i segmenti dei mesi precedenti a quello indicato.
+     *
+     * Se per un mese esiste già un archivio compresso (es. una restituzione registrata
+     * in ritardo), il nuovo contenuto viene unito a quello esistente.
+     * Non fa nulla se la compressione è disattivata.
+     *
+     * @param[in] corrente Il mese in corso, che resta in chiaro.
+     *
+     * @return Il numero di mesi compressi.
+     */
+    public synchronized int comprimiMesiChiusi(YearMonth corrente) {
+        if (!comprimi) return 0;
+
+        int compressi = 0;
+        for (File segmento : elencaSegmenti()) {
+            YearMonth mese = meseDi(segmento);
+            if (!segmento.getName().endsWith(ESTENSIONE) || !mese.isBefore(corrente)) continue;
+            if (mese.equals(meseCorrente)) {
+                chiudiSegmento();
+            }
+            try {
+                comprimiMese(mese);
+                compressi++;
+            } catch (IOException e) {
+                System.err.println("[StoricoPrestiti] Compressione di " + segmento.getName() + " fallita: " + e.getMessage());
+            }
+        }
+        return compressi;
+    }
+
+
+    /**
+     * @brief Forza la scrittura su disco del segmento corrente (fsync).
+     */
+    public synchronized void salva() {
+        if (segmentoCorrente instanceof FileOutputStream) {
+            try {
+                ((FileOutputStream) segmentoCorrente).getFD().sync();
+            } catch (IOException e) {
+                System.err.println("[StoricoPrestiti] Sincronizzazione segmento fallita: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * @brief Chiude il segmento aperto in scrittura.
+     */
+    public synchronized void chiudi() {
+        salva();
+        chiudiSegmento();
+    }
+
+
+    /**
+     * @brief Restituisce i segmenti presenti, in ordine di mese.
+     *
+     * Per lo stesso mese l'archivio compresso precede il segmento in chiaro,
+     * che contiene le restituzioni registrate dopo la compressione.
+     *
+     * @return Lista dei file di segmento.
+     */
+    public List<File> elencaSegmenti() {
+        File[] files = cartella.listFiles();
+        List<File> segmenti = new ArrayList<>();
+        if (files == null) return segmenti;
+
+        for (File f : files) {
+            String nome = f.getName();
+            if (f.isFile() && nome.startsWith(PREFISSO) && (nome.endsWith(ESTENSIONE) || nome.endsWith(ESTENSIONE_COMPRESSA))
+                    && meseDi(f) != null) {
+                segmenti.add(f);
+            }
+        }
+        Collections.sort(segmenti, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                int c = meseDi(f1).compareTo(meseDi(f2));
+                if (c != 0) return c;
+                return Boolean.compare(f2.getName().endsWith(ESTENSIONE_COMPRESSA), f1.getName().endsWith(ESTENSIONE_COMPRESSA));
+            }
+        });
+        return segmenti;
+    }
+
+
+    // --- FORMATO DEI RECORD ---
+    // sequenza, id, ISBN, matricola, inizio, scadenza, restituzione, ritardo (R/-), separati da tabulazione
+
+    private static String codifica(long sequenza, Prestito p) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(sequenza).append(SEPARATORE).append(p.getIdPrestito()).append(SEPARATORE);
+        sb.append(pulisci(p.getIsbn())).append(SEPARATORE).append(pulisci(p.getMatricola())).append(SEPARATORE);
+        sb.append(data(p.getDataInizio())).append(SEPARATORE);
+        sb.append(data(p.getDataPrevistaRestituzione())).append(SEPARATORE);
+        sb.append(data(p.getDataEffettivaRestituzione())).append(SEPARATORE);
+        return sb.append(p.isInRitardo() ? 'R' : '-').append('\n').toString();
+    }
+
+
+    // Restituisce null per le righe non valide (es. l'ultima riga troncata da un crash)
+    private static Prestito decodifica(String riga) {
+        String[] campi = riga.split("\t", -1);
+        if (campi.length != 8 || campi[7].length() != 1) return null;
+        try {
+            Prestito p = new Prestito(Integer.parseInt(campi[1]), vuotoANull(campi[2]), vuotoANull(campi[3]),
+                    leggiData(campi[4]), leggiData(campi[5]));
+            LocalDate effettiva = leggiData(campi[6]);
+            if (effettiva == null) return null;
+            p.chiudiPrestito(effettiva);
+            if (campi[7].charAt(0) == 'R') {
+                p.segnaRitardo();
+            }
+            return p;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    private static long sequenzaDi(String riga) {
+        int fine = riga.indexOf(SEPARATORE);
+        if (fine <= 0 || decodifica(riga) == null) return -1;
+        return Long.parseLong(riga.substring(0, fine));
+    }
+
+
+    private static String pulisci(String s) {
+        return (s == null) ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String vuotoANull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static String data(LocalDate d) {
+        return (d == null) ? "" : d.toString();
+    }
+
+    private static LocalDate leggiData(String s) {
+        return s.isEmpty() ? null : LocalDate.parse(s);
+    }
+
+
+    // --- SEGMENTI ---
+
+    private void preparaSegmento(YearMonth mese) throws IOException {
+        if (segmentoCorrente != null && mese.equals(meseCorrente)) return;
+
+        chiudiSegmento();
+        File f = fileSegmento(mese, ESTENSIONE);
+        completaUltimaRiga(f);
+        segmentoCorrente = new FileOutputStream(f, true);
+        meseCorrente = mese;
+    }
+
+
+    // Scrive in un colpo solo i record di un mese; ultima = sequenza dell'ultimo record del blocco
+    private boolean scriviBlocco(YearMonth mese, StringBuilder blocco, long ultima) {
+        try {
+            preparaSegmento(mese);
+            segmentoCorrente.write(blocco.toString().getBytes(StandardCharsets.UTF_8));
+            ultimaSequenza = ultima;
+            return true;
+        } catch (IOException e) {
+            System.err.println("[StoricoPrestiti] Archiviazione nel segmento " + mese + " fallita: " + e.getMessage());
+            chiudiSegmento();
+            return false;
+        }
+    }
+
+
+    private void chiudiSegmento() {
+        if (segmentoCorrente != null) {
+            try {
+                segmentoCorrente.close();
+            } catch (IOException e) {
+                System.err.println("[StoricoPrestiti] Chiusura segmento fallita: " + e.getMessage());
+            }
+            segmentoCorrente = null;
+            meseCorrente = null;
+        }
+    }
+
+
+    // Una riga troncata da un crash non deve fondersi con il record successivo
+    private static void completaUltimaRiga(File f) throws IOException {
+        if (f.length() == 0) return;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(raf.length() - 1);
+            if (raf.read() != '\n') {
+                raf.write('\n');
+            }
+        }
+    }
+
+
+    private BufferedReader apriLettura(File segmento) throws IOException {
+        InputStream in = new FileInputStream(segmento);
+        if (segmento.getName().endsWith(ESTENSIONE_COMPRESSA)) {
+            try {
+                in = new GZIPInputStream(in, 64 * 1024);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+
+    private File fileSegmento(YearMonth mese, String estensione) {
+        return new File(cartella, PREFISSO + mese.format(FORMATO_MESE) + estensione);
+    }
+
+
+    private static YearMonth meseDi(File segmento) {
+        String nome = segmento.getName();
+        if (nome.length() < PREFISSO.length() + 6) return null;
+        try {
+            return YearMonth.parse(nome.substring(PREFISSO.length(), PREFISSO.length() + 6), FORMATO_MESE);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    // --- COMPRESSIONE ---
+
+    /**
+     * @brief Unisce archivio compresso e segmento in chiaro di un mese in un nuovo archivio.
+     *
+     * Ordine delle operazioni (sicuro rispetto a un crash):
+     * 1. scrittura e fsync di "prestiti-AAAAMM.log.gz.tmp";
+     * 2. aggiornamento del file "sequenza" (le sequenze compresse non si leggono più dalla coda dei segmenti);
+     * 3. cancellazione del segmento in chiaro;
+     * 4. rinomina atomica del temporaneo sull'archivio.
+     * Al riavvio, recuperaCompressioni() completa il passo 4 o scarta un temporaneo incompleto.
+     */
+    private void comprimiMese(YearMonth mese) throws IOException {
+        File chiaro = fileSegmento(mese, ESTENSIONE);
+        File compresso = fileSegmento(mese, ESTENSIONE_COMPRESSA);
+        File temporaneo = fileSegmento(mese, ESTENSIONE_COMPRESSA + SUFFISSO_TEMPORANEO);
+
+        try (FileOutputStream fos = new FileOutputStream(temporaneo)) {
+            GZIPOutputStream gz = new GZIPOutputStream(fos, 64 * 1024);
+            if (compresso.exists()) {
+                try (InputStream in = new GZIPInputStream(new FileInputStream(compresso), 64 * 1024)) {
+                    copia(in, gz);
+                }
+            }
+            try (InputStream in = new FileInputStream(chiaro)) {
+                copia(in, gz);
+            }
+            gz.finish();
+            fos.getFD().sync();
+        }
+
+        scriviSequenza(ultimaSequenza);
+        Files.delete(chiaro.toPath());
+        Files.move(temporaneo.toPath(), compresso.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private void recuperaCompressioni() {
+        File[] files = cartella.listFiles();
+        if (files == null) return;
+
+        String suffisso = ESTENSIONE_COMPRESSA + SUFFISSO_TEMPORANEO;
+        for (File temporaneo : files) {
+            String nome = temporaneo.getName();
+            if (!nome.startsWith(PREFISSO) || !nome.endsWith(suffisso)) continue;
+
+            String base = nome.substring(0, nome.length() - suffisso.length());
+            try {
+                if (new File(cartella, base + ESTENSIONE).exists()) {
+                    Files.delete(temporaneo.toPath());   // compressione non conclusa: il segmento in chiaro è intatto
+                } else {
+                    Files.move(temporaneo.toPath(), new File(cartella, base + ESTENSIONE_COMPRESSA).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                System.err.println("[StoricoPrestiti] Recupero compressione " + nome + " fallito: " + e.getMessage());
+            }
+        }
+    }
+
+
+    private static void copia(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int letti;
+        while ((letti = in.read(buffer)) != -1) {
+            out.write(buffer, 0, letti);
+        }
+    }
+
+
+    // --- SEQUENZA ---
+
+    // Massimo tra il file "sequenza" (mesi compressi) e l'ultimo record di ogni segmento in chiaro
+    private long leggiUltimaSequenza() {
+        long massimo = 0;
+        File f = new File(cartella, FILE_SEQUENZA);
+        if (f.exists()) {
+            try {
+                massimo = Long.parseLong(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("[StoricoPrestiti] File di sequenza illeggibile: " + e.getMessage());
+            }
+        }
+        for (File segmento : elencaSegmenti()) {
+            if (segmento.getName().endsWith(ESTENSIONE)) {
+                massimo = Math.max(massimo, sequenzaFinale(segmento));
+            }
+        }
+        return massimo;
+    }
+
+
+    // I record di un segmento sono in ordine di sequenza: basta leggere l'ultimo completo
+    private long sequenzaFinale(File segmento) {
+        try (RandomAccessFile raf = new RandomAccessFile(segmento, "r")) {
+            long lunghezza = raf.length();
+            long inizio = Math.max(0, lunghezza - CODA_LETTA);
+            byte[] coda = new byte[(int) (lunghezza - inizio)];
+            raf.seek(inizio);
+            raf.readFully(coda);
+
+            String[] righe = new String(coda, StandardCharsets.UTF_8).split("\n");
+            for (int i = righe.length - 1; i >= 0; i--) {
+                if (i == 0 && inizio > 0) break;   // probabilmente tagliata dalla finestra di lettura
+                long sequenza = sequenzaDi(righe[i]);
+                if (sequenza >= 0) return sequenza;
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("[StoricoPrestiti] Lettura coda di " + segmento.getName() + " fallita: " + e.getMessage());
+        }
+        return 0;
+    }
+
+
+    private void scriviSequenza(long sequenza) throws IOException {
+        File f = new File(cartella, FILE_SEQUENZA);
+        File temporaneo = new File(cartella, FILE_SEQUENZA + SUFFISSO_TEMPORANEO);
+        try (FileOutputStream fos = new FileOutputStream(temporaneo)) {
+            fos.write(Long.toString(sequenza).getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        Files.move(temporaneo.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
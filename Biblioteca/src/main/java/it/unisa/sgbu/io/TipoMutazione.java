@@ -0,0 +1,56 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+/**
+ * @brief Tipologie di operazione registrate nel giornale delle mutazioni.
+ *
+ * Ogni tipo è associato a un codice numerico stabile, scritto su disco
+ * come primo byte del record: l'ordine delle costanti può quindi cambiare
+ * senza invalidare i giornali già esistenti.
+ */
+public enum TipoMutazione {
+
+    AGGIUNTA_LIBRO(1),
+    MODIFICA_LIBRO(2),
+    RIMOZIONE_LIBRO(3),
+    AGGIUNTA_UTENTE(4),
+    MODIFICA_UTENTE(5),
+    RIMOZIONE_UTENTE(6),
+    PRESTITO(7),
+    RESTITUZIONE(8),
+    LOTTO(9);          // gruppo di mutazioni da applicare tutte o nessuna
+
+    private final int codice;
+
+    private TipoMutazione(int codice) {
+        this.codice = codice;
+    }
+
+
+    /**
+     * @brief Restituisce il codice persistente del tipo.
+     * @return Il codice numerico (1-255).
+     */
+    public int getCodice() {
+        return codice;
+    }
+
+
+    /**
+     * @brief Ricava il tipo a partire dal codice letto da disco.
+     *
+     * @param[in] codice Il codice numerico.
+     *
+     * @return Il tipo corrispondente, oppure null se il codice è sconosciuto.
+     */
+    public static TipoMutazione daCodice(int codice) {
+        for (TipoMutazione t : values()) {
+            if (t.codice == codice) return t;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief Lettura e scrittura minimale di JSON, senza librerie esterne.
+ *
+ * I valori sono rappresentati con i tipi standard di Java:
+ * - oggetto: Map<String, Object> (l'ordine delle chiavi è conservato);
+ * - array: List<Object>;
+ * - stringa: String; numero: Long se intero, altrimenti Double; booleano: Boolean; null: null.
+ *
+ * In scrittura sono accettati anche qualsiasi Collection e Number.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+
+    /**
+     * @brief Converte un valore in testo JSON.
+     *
+     * @param[in] valore Il valore (Map, Collection, String, Number, Boolean o null).
+     *
+     * @return Il testo JSON.
+     *
+     * @throws IllegalArgumentException se il valore contiene tipi non rappresentabili.
+     */
+    public static String scrivi(Object valore) {
+        StringBuilder sb = new StringBuilder(128);
+        scrivi(sb, valore);
+        return sb.toString();
+    }
+
+
+    /**
+     * @brief Interpreta un testo JSON.
+     *
+     * @param[in] testo Il testo da interpretare.
+     *
+     * @return Il valore letto.
+     *
+     * @throws IllegalArgumentException se il testo non è JSON valido.
+     */
+    public static Object leggi(String testo) {
+        Lettore l = new Lettore(testo);
+        l.spazi();
+        Object valore = l.valore();
+        l.spazi();
+        if (l.pos < testo.length()) {
+            throw l.errore("contenuto dopo la fine del valore");
+        }
+        return valore;
+    }
+
+
+    // --- SCRITTURA ---
+
+    private static void scrivi(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("null");
+        } else if (v instanceof String) {
+            stringa(sb, (String) v);
+        } else if (v instanceof Boolean || v instanceof Long || v instanceof Integer) {
+            sb.append(v);
+        } else if (v instanceof Number) {
+            double d = ((Number) v).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                sb.append("null");
+            } else {
+                sb.append(v);
+            }
+        } else if (v instanceof Map) {
+            sb.append('{');
+            boolean primo = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                if (!primo) sb.append(',');
+                primo = false;
+                stringa(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                scrivi(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (v instanceof Collection) {
+            sb.append('[');
+            boolean primo = true;
+            for (Object o : (Collection<?>) v) {
+                if (!primo) sb.append(',');
+                primo = false;
+                scrivi(sb, o);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Tipo non rappresentabile in JSON: " + v.getClass().getName());
+        }
+    }
+
+
+    private static void stringa(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+
+    // --- LETTURA ---
+
+    private static final class Lettore {
+        private final String testo;
+        private int pos;
+
+        Lettore(String testo) {
+            this.testo = testo;
+        }
+
+        Object valore() {
+            if (pos >= testo.length()) throw errore("fine inattesa");
+            char c = testo.charAt(pos);
+            switch (c) {
+                case '{': return oggetto();
+                case '[': return array();
+                case '"': return stringa();
+                case 't': return parola("true", Boolean.TRUE);
+                case 'f': return parola("false", Boolean.FALSE);
+                case 'n': return parola("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return numero();
+                    throw errore("carattere inatteso '" + c + "'");
+            }
+        }
+
+        Map<String, Object> oggetto() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            pos++; // {
+            spazi();
+            if (prossimo('}')) return m;
+            while (true) {
+                spazi();
+                if (pos >= testo.length() || testo.charAt(pos) != '"') throw errore("attesa una chiave");
+                String chiave = stringa();
+                spazi();
+                if (!prossimo(':')) throw errore("atteso ':'");
+                spazi();
+                m.put(chiave, valore());
+                spazi();
+                if (prossimo('}')) return m;
+                if (!prossimo(',')) throw errore("atteso ',' o '}'");
+            }
+        }
+
+        List<Object> array() {
+            List<Object> l = new ArrayList<>();
+            pos++; // [
+            spazi();
+            if (prossimo(']')) return l;
+            while (true) {
+                spazi();
+                l.add(valore());
+                spazi();
+                if (prossimo(']')) return l;
+                if (!prossimo(',')) throw errore("atteso ',' o ']'");
+            }
+        }
+
+        String stringa() {
+            StringBuilder sb = new StringBuilder();
+            pos++; // "
+            while (pos < testo.length()) {
+                char c = testo.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= testo.length()) break;
+                char e = testo.charAt(pos++);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > testo.length()) throw errore("sequenza \\u incompleta");
+                        try {
+                            sb.append((char) Integer.parseInt(testo.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw errore("sequenza \\u non valida");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw errore("escape non valido '\\" + e + "'");
+                }
+            }
+            throw errore("stringa non terminata");
+        }
+
+        Number numero() {
+            int inizio = pos;
+            boolean decimale = false;
+            if (testo.charAt(pos) == '-') pos++;
+            while (pos < testo.length()) {
+                char c = testo.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    pos++;
+                } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    decimale = true;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            String s = testo.substring(inizio, pos);
+            try {
+                return decimale ? (Number) Double.valueOf(s) : (Number) Long.valueOf(s);
+            } catch (NumberFormatException ex) {
+                throw errore("numero non valido '" + s + "'");
+            }
+        }
+
+        Object parola(String attesa, Object valore) {
+            if (!testo.startsWith(attesa, pos)) throw errore("atteso '" + attesa + "'");
+            pos += attesa.length();
+            return valore;
+        }
+
+        boolean prossimo(char c) {
+            if (pos < testo.length() && testo.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void spazi() {
+            while (pos < testo.length() && Character.isWhitespace(testo.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException errore(String messaggio) {
+            return new IllegalArgumentException("JSON non valido (posizione " + pos + "): " + messaggio);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.server;
+
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.gui.GUIController;
+import it.unisa.sgbu.io.IAutenticatore;
+import it.unisa.sgbu.service.EsitoLotto;
+import it.unisa.sgbu.service.EsitoVoce;
+import it.unisa.sgbu.service.RichiestaPrestito;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @brief API HTTP/JSON per più postazioni di prestito, senza interfaccia grafica.
+ *
+ * Espone le operazioni del GUIController su un server HTTP incorporato (com.sun.net.httpserver),
+ * così che più banchi possano lavorare sullo stesso catalogo. Tutte le risorse richiedono
+ * l'autenticazione HTTP Basic con le credenziali del Bibliotecario.
+ *
+ * Risorse:
+ * - GET  /api/libri?q=&campo=          ricerca (campo: Titolo, Autore, ISBN);
+ * - GET  /api/libri?inizio=&quanti=    pagina del catalogo ordinato per titolo;
+ * - GET  /api/utenti?q=&campo=         ricerca (campo: Cognome, Matricola, Email), oppure pagina;
+ * - POST /api/utenti                   {matricola, nome, cognome, email};
+ * - GET  /api/prestiti?matricola=      prestiti attivi di un utente, oppure pagina di tutti;
+ * - POST /api/prestiti                 {isbn, matricola, scadenza} oppure {voci: [...]}, tutti o nessuno;
+ * - POST /api/restituzioni             {id: n | [n, ...], data?}, tutte o nessuna.
+ *
+ * Le richieste sono eseguite da un pool di dimensione fissa con coda limitata: a coda piena
+ * la richiesta è eseguita dal thread che accetta le connessioni, che quindi smette di
+ * accettarne di nuove finché non si libera un lavoratore (contropressione invece di rifiuti).
+ * Le letture procedono in parallelo; le scritture sono serializzate perché il giornale
+ * deve registrare le mutazioni nello stesso ordine in cui sono applicate in memoria.
+ */
+public class ServerHttp {
+
+    public static final int PAGINA_DEFAULT = 50;
+    public static final int PAGINA_MASSIMA = 500;
+
+    private static final int CORPO_MASSIMO = 1 << 20; // 1 MB
+
+    private final GUIController controller;
+    private final IAutenticatore autenticatore;
+    private final Object scritture = new Object();
+
+    private HttpServer server;
+    private ThreadPoolExecutor lavoratori;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] controller Il controller già avviato (avviaSistema()) da esporre.
+     * @param[in] autenticatore Verifica delle credenziali HTTP Basic.
+     */
+    public ServerHttp(GUIController controller, IAutenticatore autenticatore) {
+        this.controller = controller;
+        this.autenticatore = autenticatore;
+    }
+
+
+    /**
+     * @brief Avvia il server.
+     *
+     * @param[in] porta Porta TCP (0 per sceglierne una libera, vedi getPorta()).
+     * @param[in] thread Numero di lavoratori che eseguono le richieste.
+     * @param[in] coda Richieste accettate in attesa di un lavoratore (e connessioni in attesa di accettazione).
+     *
+     * @throws IOException se la porta non è disponibile.
+     * @throws IllegalStateException se il server è già avviato.
+     */
+    public synchronized void avvia(int porta, int thread, int coda) throws IOException {
+        if (server != null) throw new IllegalStateException("Server già avviato");
+
+        final AtomicInteger contatore = new AtomicInteger();
+        lavoratori = new ThreadPoolExecutor(thread, thread, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(coda), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "sgbu-http-" + contatore.incrementAndGet());
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        // Intestazioni e corpo sono scritti separatamente: senza TCP_NODELAY l'algoritmo di Nagle
+        // e l'ACK ritardato del client aggiungono ~40 ms a ogni risposta su connessione keep-alive.
+        // Letta dal JDK alla prima creazione di un HttpServer: un valore esplicito non viene sovrascritto
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(porta), coda);
+        BasicAuthenticator basic = new BasicAuthenticator("SGBU") {
+            @Override
+            public boolean checkCredentials(String user, String pass) {
+                return autenticatore.verificaCredenziali(user, pass);
+            }
+        };
+        registra("/api/libri", new RisorsaLibri(), basic);
+        registra("/api/utenti", new RisorsaUtenti(), basic);
+        registra("/api/prestiti", new RisorsaPrestiti(), basic);
+        registra("/api/restituzioni", new RisorsaRestituzioni(), basic);
+
+        server.setExecutor(lavoratori);
+        server.start();
+    }
+
+
+    /**
+     * @brief Restituisce la porta su cui il server è in ascolto.
+     * @return La porta, oppure -1 se il server non è avviato.
+     */
+    public synchronized int getPorta() {
+        return (server == null) ? -1 : server.getAddress().getPort();
+    }
+
+
+    /**
+     * @brief Ferma il server, lasciando terminare le richieste in corso.
+     *
+     * @param[in] secondi Attesa massima per le richieste in corso.
+     *
+     * @post Nessuna nuova richiesta viene accettata; il controller non viene chiuso.
+     */
+    public synchronized void ferma(int secondi) {
+        if (server == null) return;
+        server.stop(secondi);
+        lavoratori.shutdown();
+        try {
+            lavoratori.awaitTermination(secondi, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        lavoratori = null;
+    }
+
+
+    private void registra(String percorso, HttpHandler gestore, BasicAuthenticator basic) {
+        HttpContext contesto = server.createContext(percorso, gestore);
+        contesto.setAuthenticator(basic);
+    }
+
+
+    // --- RISORSE ---
+
+    /**
+     * @brief Esito di una richiesta: codice HTTP e corpo da serializzare in JSON.
+     */
+    private static final class Risposta {
+        final int stato;
+        final Object corpo;
+
+        Risposta(int stato, Object corpo) {
+            this.stato = stato;
+            this.corpo = corpo;
+        }
+
+        static Risposta errore(int stato, String messaggio) {
+            return new Risposta(stato, Collections.singletonMap("errore", messaggio));
+        }
+    }
+
+
+    /**
+     * @brief Base delle risorse: lettura di parametri e corpo, gestione errori, scrittura JSON.
+     *
+     * Parametri o corpo non validi (IllegalArgumentException, date non interpretabili,
+     * tipi JSON inattesi) producono 400; qualsiasi altro errore 500.
+     */
+    private abstract static class Risorsa implements HttpHandler {
+
+        Risposta get(Map<String, String> parametri) {
+            return null;
+        }
+
+        Risposta post(Map<String, String> parametri, Object corpo) {
+            return null;
+        }
+
+        @Override
+        public void handle(HttpExchange scambio) throws IOException {
+            Risposta r;
+            try {
+                Map<String, String> parametri = parametri(scambio.getRequestURI().getRawQuery());
+                String metodo = scambio.getRequestMethod();
+                if ("GET".equals(metodo)) {
+                    r = get(parametri);
+                } else if ("POST".equals(metodo)) {
+                    String testo = leggiCorpo(scambio.getRequestBody());
+                    r = (testo == null)
+                            ? Risposta.errore(413, "Corpo della richiesta oltre " + CORPO_MASSIMO + " byte")
+                            : post(parametri, testo.trim().isEmpty() ? null : Json.leggi(testo));
+                } else {
+                    r = null;
+                }
+                if (r == null) {
+                    r = Risposta.errore(405, "Metodo " + metodo + " non ammesso");
+                }
+            } catch (IllegalArgumentException | DateTimeParseException | ClassCastException e) {
+                r = Risposta.errore(400, e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Errore nella richiesta " + scambio.getRequestURI() + ": " + e);
+                r = Risposta.errore(500, "Errore interno");
+            }
+
+            byte[] corpo = Json.scrivi(r.corpo).getBytes(StandardCharsets.UTF_8);
+            scambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            scambio.sendResponseHeaders(r.stato, corpo.length);
+            try (OutputStream out = scambio.getResponseBody()) {
+                out.write(corpo);
+            }
+        }
+    }
+
+
+    private final class RisorsaLibri extends Risorsa {
+        @Override
+        Risposta get(Map<String, String> parametri) {
+            List<Libro> libri;
+            if (parametri.containsKey("q")) {
+                libri = controller.cercaLibro(parametri.get("q"), testo(parametri, "campo", "Titolo"));
+            } else {
+                libri = controller.ottieniPaginaCatalogo(inizio(parametri), quanti(parametri));
+            }
+            List<Object> elenco = new ArrayList<>(libri.size());
+            for (Libro l : libri) elenco.add(libro(l));
+            return new Risposta(200, elenco);
+        }
+    }
+
+
+    private final class RisorsaUtenti extends Risorsa {
+        @Override
+        Risposta get(Map<String, String> parametri) {
+            List<Utente> utenti;
+            if (parametri.containsKey("q")) {
+                utenti = controller.cercaUtente(parametri.get("q"), testo(parametri, "campo", "Cognome"));
+            } else {
+                utenti = controller.ottieniPaginaAnagrafica(inizio(parametri), quanti(parametri));
+            }
+            List<Object> elenco = new ArrayList<>(utenti.size());
+            for (Utente u : utenti) elenco.add(utente(u));
+            return new Risposta(200, elenco);
+        }
+
+        @Override
+        Risposta post(Map<String, String> parametri, Object corpo) {
+            Map<String, Object> dati = oggetto(corpo);
+            Utente u = new Utente(campo(dati, "matricola"), campo(dati, "nome"), campo(dati, "cognome"), campo(dati, "email"));
+            boolean aggiunto;
+            synchronized (scritture) {
+                aggiunto = controller.aggiungiUtente(u);
+            }
+            if (aggiunto) return new Risposta(201, utente(u));
+
+            for (Utente esistente : controller.cercaUtente(u.getMatricola(), "Matricola")) {
+                if (esistente.getMatricola().equals(u.getMatricola())) {
+                    return Risposta.errore(409, "Matricola già registrata: " + u.getMatricola());
+                }
+            }
+            if (!controller.cercaUtente(u.getEmail(), "Email").isEmpty()) {
+                return Risposta.errore(409, "Email già registrata: " + u.getEmail());
+            }
+            return Risposta.errore(400, "Dati utente non validi");
+        }
+    }
+
+
+    private final class RisorsaPrestiti extends Risorsa {
+        @Override
+        Risposta get(Map<String, String> parametri) {
+            List<Prestito> prestiti;
+            String matricola = parametri.get("matricola");
+            if (matricola != null) {
+                prestiti = controller.ottieniPrestitiAttiviUtente(matricola);
+            } else {
+                prestiti = controller.ottieniPaginaPrestiti(inizio(parametri), quanti(parametri));
+            }
+            List<Object> elenco = new ArrayList<>(prestiti.size());
+            for (Prestito p : prestiti) elenco.add(prestito(p));
+            return new Risposta(200, elenco);
+        }
+
+        @Override
+        Risposta post(Map<String, String> parametri, Object corpo) {
+            Map<String, Object> dati = oggetto(corpo);
+            List<Object> voci = dati.containsKey("voci") ? lista(dati.get("voci")) : Collections.<Object>singletonList(dati);
+            if (voci.isEmpty()) throw new IllegalArgumentException("Nessuna voce nel lotto");
+
+            List<RichiestaPrestito> richieste = new ArrayList<>(voci.size());
+            for (Object v : voci) {
+                Map<String, Object> voce = oggetto(v);
+                richieste.add(new RichiestaPrestito(campo(voce, "isbn"), campo(voce, "matricola"),
+                        LocalDate.parse(campo(voce, "scadenza"))));
+            }
+            EsitoLotto esito;
+            synchronized (scritture) {
+                esito = controller.gestisciPrestiti(richieste);
+            }
+            return lotto(esito, 201);
+        }
+    }
+
+
+    private final class RisorsaRestituzioni extends Risorsa {
+        @Override
+        Risposta post(Map<String, String> parametri, Object corpo) {
+            Map<String, Object> dati = oggetto(corpo);
+            Object id = dati.get("id");
+            List<Object> voci = (id instanceof List) ? lista(id) : Collections.singletonList(id);
+            if (voci.isEmpty()) throw new IllegalArgumentException("Nessun prestito indicato");
+
+            List<Integer> idPrestiti = new ArrayList<>(voci.size());
+            for (Object v : voci) {
+                if (!(v instanceof Long)) throw new IllegalArgumentException("ID prestito non valido: " + v);
+                idPrestiti.add(((Long) v).intValue());
+            }
+            LocalDate data = dati.get("data") == null ? LocalDate.now() : LocalDate.parse(campo(dati, "data"));
+            EsitoLotto esito;
+            synchronized (scritture) {
+                esito = controller.gestisciRestituzioni(idPrestiti, data);
+            }
+            return lotto(esito, 200);
+        }
+    }
+
+
+    // --- CONVERSIONI ---
+
+    /**
+     * @brief Risposta di un'operazione "tutto o niente": i prestiti se applicata,
+     * altrimenti l'esito di ogni voce (400 se il rifiuto dipende dal formato dei dati, 409 altrimenti).
+     */
+    private static Risposta lotto(EsitoLotto esito, int statoApplicato) {
+        if (esito.isApplicato()) {
+            List<Object> prestiti = new ArrayList<>();
+            for (Prestito p : esito.getPrestiti()) prestiti.add(prestito(p));
+            return new Risposta(statoApplicato, prestiti);
+        }
+        int stato = 409;
+        List<Object> esiti = new ArrayList<>();
+        for (EsitoVoce e : esito.getEsiti()) {
+            if (e == EsitoVoce.DATI_NON_VALIDI) stato = 400;
+            esiti.add(e.name());
+        }
+        Map<String, Object> corpo = new LinkedHashMap<>();
+        corpo.put("errore", "Operazione rifiutata");
+        corpo.put("esiti", esiti);
+        return new Risposta(stato, corpo);
+    }
+
+
+    private static Map<String, Object> libro(Libro l) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("isbn", l.getISBN());
+        m.put("titolo", l.getTitolo());
+        m.put("autori", l.getAutore());
+        m.put("anno", l.getAnno());
+        m.put("copieTotali", l.getCopieTotali());
+        m.put("copieDisponibili", l.getCopieDisponibili());
+        return m;
+    }
+
+
+    private static Map<String, Object> utente(Utente u) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("matricola", u.getMatricola());
+        m.put("nome", u.getNome());
+        m.put("cognome", u.getCognome());
+        m.put("email", u.getEmail());
+        m.put("prestitiAttivi", u.getNumeroPrestitiAttivi());
+        return m;
+    }
+
+
+    private static Map<String, Object> prestito(Prestito p) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", p.getIdPrestito());
+        m.put("isbn", p.getIsbn());
+        m.put("matricola", p.getMatricola());
+        m.put("dataInizio", String.valueOf(p.getDataInizio()));
+        m.put("scadenza", String.valueOf(p.getDataPrevistaRestituzione()));
+        m.put("restituzione", p.getDataEffettivaRestituzione() == null ? null : p.getDataEffettivaRestituzione().toString());
+        return m;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> oggetto(Object valore) {
+        if (!(valore instanceof Map)) throw new IllegalArgumentException("Atteso un oggetto JSON");
+        return (Map<String, Object>) valore;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> lista(Object valore) {
+        if (!(valore instanceof List)) throw new IllegalArgumentException("Atteso un array JSON");
+        return (List<Object>) valore;
+    }
+
+
+    private static String campo(Map<String, Object> dati, String nome) {
+        Object v = dati.get(nome);
+        if (!(v instanceof String)) throw new IllegalArgumentException("Campo \"" + nome + "\" mancante o non testuale");
+        return (String) v;
+    }
+
+
+    private static String testo(Map<String, String> parametri, String nome, String predefinito) {
+        String v = parametri.get(nome);
+        return (v == null) ? predefinito : v;
+    }
+
+
+    private static int intero(Map<String, String> parametri, String nome, int predefinito) {
+        String v = parametri.get(nome);
+        if (v == null) return predefinito;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parametro \"" + nome + "\" non numerico: " + v);
+        }
+    }
+
+
+    private static int inizio(Map<String, String> parametri) {
+        return Math.max(0, intero(parametri, "inizio", 0));
+    }
+
+
+    private static int quanti(Map<String, String> parametri) {
+        return Math.max(0, Math.min(PAGINA_MASSIMA, intero(parametri, "quanti", PAGINA_DEFAULT)));
+    }
+
+
+    private static Map<String, String> parametri(String query) {
+        Map<String, String> m = new HashMap<>();
+        if (query == null || query.isEmpty()) return m;
+        try {
+            for (String coppia : query.split("&")) {
+                if (coppia.isEmpty()) continue;
+                int uguale = coppia.indexOf('=');
+                String nome = (uguale < 0) ? coppia : coppia.substring(0, uguale);
+                String valore = (uguale < 0) ? "" : coppia.substring(uguale + 1);
+                m.put(URLDecoder.decode(nome, "UTF-8"), URLDecoder.decode(valore, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // UTF-8 è sempre supportato
+        }
+        return m;
+    }
+
+
+    // Restituisce null se il corpo supera CORPO_MASSIMO
+    private static String leggiCorpo(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] blocco = new byte[8192];
+        int letti;
+        try {
+            while ((letti = in.read(blocco)) != -1) {
+                if (buffer.size() + letti > CORPO_MASSIMO) return null;
+                buffer.write(blocco, 0, letti);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * @brief Collezione ordinata con accesso per posizione (albero di statistiche d'ordine).
+ *
+ * Mantiene gli elementi ordinati secondo un comparatore, aggiornandosi a ogni inserimento
+ * e rimozione in O(log n) atteso. Ogni nodo conosce la dimensione del proprio sottoalbero,
+ * quindi la lettura di k elementi a partire da una posizione qualsiasi costa O(log n + k),
+ * senza copiare né riordinare l'intera collezione.
+ *
+ * Implementato come treap (albero binario di ricerca bilanciato da priorità casuali).
+ * Il comparatore deve essere un ordine totale: due elementi distinti non possono
+ * risultare uguali (es. a parità di titolo si confronta l'ISBN).
+ */
+public class AlberoOrdinato<T> {
+
+    private final Comparator<? super T> ordine;
+    private Nodo<T> radice;
+    private long seme = 0x2545F4914F6CDD1DL;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] ordine Il comparatore che definisce l'ordinamento (ordine totale).
+     */
+    public AlberoOrdinato(Comparator<? super T> ordine) {
+        this.ordine = ordine;
+    }
+
+
+    /**
+     * @brief Inserisce un elemento nella posizione dettata dall'ordinamento.
+     *
+     * @param[in] elemento L'elemento da inserire.
+     *
+     * @return true se inserito, false se un elemento equivalente era già presente.
+     */
+    public boolean aggiungi(T elemento) {
+        int prima = dimensione();
+        radice = inserisci(radice, elemento, prossimaPriorita());
+        return dimensione() > prima;
+    }
+
+
+    /**
+     * @brief Rimuove un elemento.
+     *
+     * @param[in] elemento L'elemento (o uno equivalente secondo il comparatore) da rimuovere.
+     *
+     * @return true se l'elemento era presente.
+     */
+    public boolean rimuovi(T elemento) {
+        int prima = dimensione();
+        radice = elimina(radice, elemento);
+        return dimensione() < prima;
+    }
+
+
+    /**
+     * @brief Restituisce il numero di elementi.
+     * @return La dimensione della collezione.
+     */
+    public int dimensione() {
+        return dimensione(radice);
+    }
+
+
+    /**
+     * @brief Restituisce l'elemento in una data posizione dell'ordinamento.
+     *
+     * @param[in] posizione Indice a partire da 0.
+     *
+     * @return L'elemento in quella posizione.
+     *
+     * @throws IndexOutOfBoundsException se la posizione non esiste.
+     */
+    public T get(int posizione) {
+        if (posizione < 0 || posizione >= dimensione()) {
+            throw new IndexOutOfBoundsException("Posizione: " + posizione + ", dimensione: " + dimensione());
+        }
+        Nodo<T> n = radice;
+        while (true) {
+            int sinistra = dimensione(n.sinistro);
+            if (posizione < sinistra) {
+                n = n.sinistro;
+            } else if (posizione == sinistra) {
+                return n.valore;
+            } else {
+                posizione -= sinistra + 1;
+                n = n.destro;
+            }
+        }
+    }
+
+
+    /**
+     * @brief Conta gli elementi che precedono un valore nell'ordinamento.
+     *
+     * Il valore non deve necessariamente essere presente: può essere una sonda
+     * costruita apposta (es. una data limite), così che pagina(0, rango(sonda))
+     * restituisca tutti gli elementi minori in O(log n + k).
+     *
+     * @param[in] elemento Il valore di confronto.
+     *
+     * @return Il numero di elementi strettamente minori.
+     */
+    public int rango(T elemento) {
+        int minori = 0;
+        Nodo<T> n = radice;
+        while (n != null) {
+            if (ordine.compare(elemento, n.valore) <= 0) {
+                n = n.sinistro;
+            } else {
+                minori += dimensione(n.sinistro) + 1;
+                n = n.destro;
+            }
+        }
+        return minori;
+    }
+
+
+    /**
+     * @brief Restituisce una pagina di elementi consecutivi, in ordine.
+     *
+     * @param[in] inizio Posizione del primo elemento (da 0).
+     * @param[in] quanti Numero massimo di elementi.
+     *
+     * @return Lista (nuova) di al più "quanti" elementi; vuota se inizio è oltre la fine.
+     */
+    public List<T> pagina(int inizio, int quanti) {
+        int totale = dimensione();
+        if (inizio < 0) inizio = 0;
+        int k = (int) Math.max(0, Math.min((long) quanti, (long) totale - inizio));
+        List<T> risultato = new ArrayList<>(k);
+        if (k == 0) return risultato;
+
+        // Discesa fino alla posizione "inizio": sulla pila restano i successori in attesa
+        Deque<Nodo<T>> pila = new ArrayDeque<>();
+        Nodo<T> n = radice;
+        int posizione = inizio;
+        while (n != null) {
+            int sinistra = dimensione(n.sinistro);
+            if (posizione < sinistra) {
+                pila.push(n);
+                n = n.sinistro;
+            } else if (posizione == sinistra) {
+                pila.push(n);
+                break;
+            } else {
+                posizione -= sinistra + 1;
+                n = n.destro;
+            }
+        }
+
+        // Visita simmetrica a partire dal nodo trovato
+        while (risultato.size() < k) {
+            Nodo<T> corrente = pila.pop();
+            risultato.add(corrente.valore);
+            for (Nodo<T> m = corrente.destro; m != null; m = m.sinistro) {
+                pila.push(m);
+            }
+        }
+        return risultato;
+    }
+
+
+    /**
+     * @brief Restituisce tutti gli elementi, in ordine.
+     * @return Lista (nuova) con tutti gli elementi.
+     */
+    public List<T> tutti() {
+        return pagina(0, dimensione());
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private Nodo<T> inserisci(Nodo<T> n, T elemento, int priorita) {
+        if (n == null) return new Nodo<>(elemento, priorita);
+
+        int c = ordine.compare(elemento, n.valore);
+        if (c == 0) return n; // già presente
+
+        if (c < 0) {
+            n.sinistro = inserisci(n.sinistro, elemento, priorita);
+            if (n.sinistro.priorita > n.priorita) n = ruotaDestra(n);
+        } else {
+            n.destro = inserisci(n.destro, elemento, priorita);
+            if (n.destro.priorita > n.priorita) n = ruotaSinistra(n);
+        }
+        aggiornaDimensione(n);
+        return n;
+    }
+
+
+    private Nodo<T> elimina(Nodo<T> n, T elemento) {
+        if (n == null) return null;
+
+        int c = ordine.compare(elemento, n.valore);
+        if (c < 0) {
+            n.sinistro = elimina(n.sinistro, elemento);
+        } else if (c > 0) {
+            n.destro = elimina(n.destro, elemento);
+        } else {
+            return unisci(n.sinistro, n.destro);
+        }
+        aggiornaDimensione(n);
+        return n;
+    }
+
+
+    // Unisce due treap in cui ogni elemento di a precede ogni elemento di b
+    private Nodo<T> unisci(Nodo<T> a, Nodo<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priorita > b.priorita) {
+            a.destro = unisci(a.destro, b);
+            aggiornaDimensione(a);
+            return a;
+        }
+        b.sinistro = unisci(a, b.sinistro);
+        aggiornaDimensione(b);
+        return b;
+    }
+
+
+    private Nodo<T> ruotaDestra(Nodo<T> n) {
+        Nodo<T> s = n.sinistro;
+        n.sinistro = s.destro;
+        s.destro = n;
+        aggiornaDimensione(n);
+        aggiornaDimensione(s);
+        return s;
+    }
+
+
+    private Nodo<T> ruotaSinistra(Nodo<T> n) {
+        Nodo<T> d = n.destro;
+        n.destro = d.sinistro;
+        d.sinistro = n;
+        aggiornaDimensione(n);
+        aggiornaDimensione(d);
+        return d;
+    }
+
+
+    private static int dimensione(Nodo<?> n) {
+        return (n == null) ? 0 : n.dimensione;
+    }
+
+
+    private static void aggiornaDimensione(Nodo<?> n) {
+        n.dimensione = 1 + dimensione(n.sinistro) + dimensione(n.destro);
+    }
+
+
+    // xorshift64: priorità pseudo-casuali
+    private int prossimaPriorita() {
+        seme ^= seme << 13;
+        seme ^= seme >>> 7;
+        seme ^= seme << 17;
+        return (int) (seme >>> 33);
+    }
+
+
+    private static final class Nodo<T> {
+        final T valore;
+        final int priorita;
+        int dimensione = 1;
+        Nodo<T> sinistro;
+        Nodo<T> destro;
+
+        Nodo(T valore, int priorita) {
+            this.valore = valore;
+            this.priorita = priorita;
+        }
+    }
+}
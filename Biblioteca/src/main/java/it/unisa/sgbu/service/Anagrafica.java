@@ -8,8 +8,15 @@ package it.unisa.sgbu.service;
 
 import it.unisa.sgbu.domain.*;
 import it.unisa.sgbu.io.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @brief Gestisce il registro (anagrafica) degli utenti della biblioteca.
@@ -17,11 +24,58 @@ import java.util.*;
  * Questa classe implementa le operazioni CRUD (Create, Read, Update, Delete)
  * sugli utenti, garantendo il rispetto dei vincoli di unicità e integrità referenziale
  * definiti nelle specifiche.
+ * 
+ * Come il Catalogo, può essere condivisa da più postazioni: letture per matricola e
+ * ricerche senza lock, modifiche serializzate, vista ordinata sotto lock di lettura.
+ * 
+ * Le matricole di 10 cifre sono indicizzate come long (ValidatoreDati.chiaveMatricola())
+ * in una mappa primitiva (MappaLunghi): getUtente(), chiamato a ogni prestito, non calcola
+ * l'hash di una String né crea oggetti. Le altre matricole restano in una mappa a parte.
+ * 
+ * Indici secondari, aggiornati a ogni modifica:
+ * - per email (senza distinzione maiuscole/minuscole): ricerca esatta e vincolo di unicità
+ *   dell'email su inserimento e modifica;
+ * - per cognome: la vista ordinata per cognome e nome, che confronta i caratteri senza
+ *   distinzione maiuscole/minuscole, risponde anche alle ricerche per prefisso e per intervallo.
  */
 public class Anagrafica implements Serializable{
     
-    //Mappa per accesso rapido O(1)
-    private Map<String, Utente> registroUtenti;
+    private static final long serialVersionUID = -1370514602045652732L;
+    
+    // Forma serializzata invariata: la mappa matricola -> Utente delle versioni precedenti
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("registroUtenti", Map.class)
+    };
+    
+    // Utenti per matricola numerica, accesso rapido O(1); letture senza lock, scritture sotto il lock di scrittura
+    private transient MappaLunghi<Utente> perMatricola;
+    
+    // Utenti con una matricola non di 10 cifre (es. dati precedenti alla validazione), per matricola testuale
+    private transient Map<String, Utente> altreMatricole;
+    
+    // Utenti per email normalizzata; con email ripetute nei dati salvati, il primo utente caricato
+    private transient Map<String, Utente> perEmail;
+    
+    // Vista ordinata per cognome e nome: non salvata, ricostruita al primo utilizzo
+    private transient volatile AlberoOrdinato<Utente> perCognome;
+    
+    // Scrittori in esclusiva; i lettori della vista ordinata in condivisione
+    private transient ReadWriteLock accesso;
+    
+    // Ordine di visualizzazione: cognome, nome (senza distinzione maiuscole/minuscole), infine matricola
+    private static final Comparator<Utente> ORDINE_COGNOME_NOME = new Comparator<Utente>() {
+        @Override
+        public int compare(Utente u1, Utente u2) {
+            int res = u1.getCognome().compareToIgnoreCase(u2.getCognome());
+            if (res == 0) {
+                res = u1.getNome().compareToIgnoreCase(u2.getNome());
+            }
+            if (res == 0) {
+                return u1.getMatricola().compareTo(u2.getMatricola());
+            }
+            return res;
+        }
+    };
     
     
     /**
@@ -29,7 +83,65 @@ public class Anagrafica implements Serializable{
      * Inizializza la struttura dati per contenere il registro degli utenti.
      */
     public Anagrafica(){
-        this.registroUtenti = new HashMap<>();
+        this.perMatricola = new MappaLunghi<>();
+        this.altreMatricole = new ConcurrentHashMap<>();
+        this.perEmail = new ConcurrentHashMap<>();
+        this.accesso = new ReentrantReadWriteLock();
+    }
+    
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Map<String, Utente> registroUtenti = new HashMap<>();
+        for (Utente u : getUtenti()) {
+            registroUtenti.put(u.getMatricola(), u);
+        }
+        out.putFields().put("registroUtenti", registroUtenti);
+        out.writeFields();
+    }
+    
+    
+    // Le anagrafiche salvate (anche dalle versioni precedenti) contengono una mappa matricola -> Utente
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        Map<?, ?> registroUtenti = (Map<?, ?>) in.readFields().get("registroUtenti", null);
+        perMatricola = new MappaLunghi<>((registroUtenti == null) ? 0 : registroUtenti.size());
+        altreMatricole = new ConcurrentHashMap<>();
+        perEmail = new ConcurrentHashMap<>();
+        accesso = new ReentrantReadWriteLock();
+        if (registroUtenti != null) {
+            for (Object u : registroUtenti.values()) {
+                caricaUtente((Utente) u);
+            }
+        }
+    }
+    
+    
+    /**
+     * @brief Inserisce un utente letto da un salvataggio.
+     * 
+     * Come aggiungiUtente(), ma senza il vincolo di unicità dell'email: i dati salvati prima
+     * dell'introduzione del vincolo possono contenere email ripetute, e nessun utente va perso.
+     * L'indice per email punta al primo utente caricato con quell'email.
+     * 
+     * @param[in] u L'utente letto.
+     * 
+     * @return true se l'utente è stato inserito, false se la matricola era già presente.
+     * 
+     * @see aggiungiUtente(Utente)
+     */
+    public boolean caricaUtente(Utente u){
+        if (u == null || u.getMatricola() == null) return false;
+        
+        accesso.writeLock().lock();
+        try {
+            if (!inserisci(u)) {
+                return false;
+            }
+            indicizzaEmail(u);
+            if (perCognome != null) perCognome.aggiungi(u);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
+        }
     }
     
     
@@ -37,30 +149,35 @@ public class Anagrafica implements Serializable{
      * @brief Aggiunge un nuovo utente all'anagrafica.
      * 
      * Implementa il "Flusso di registrazione nuovo utente".
-     * Verifica che la matricola non sia già presente nel sistema per soddisfare
-     * il vincolo di univocità.
+     * Verifica che la matricola e l'email (senza distinzione maiuscole/minuscole) non siano
+     * già presenti nel sistema per soddisfare il vincolo di univocità.
      * 
      * @param[in] u L'oggetto Utente da inserire.
      * 
-     * @return true se l'inserimento ha successo, false se la matricola esiste già.
+     * @return true se l'inserimento ha successo, false se la matricola o l'email esistono già.
      * 
      * @pre 
      * - L'oggetto u deve essere validato (formato matricola ed email).
-     * - La matricola non deve esistere nel registro.
+     * - La matricola e l'email non devono esistere nel registro.
      * 
      * @post
      * - L'utente è aggiunto al registro persistente.
      */
     public boolean aggiungiUtente(Utente u){
-        if (u == null) return false;
+        if (u == null || u.getMatricola() == null) return false;
         
-        // Verifica unicità matricola (la chiave della mappa)
-        if (registroUtenti.containsKey(u.getMatricola())) {
-            return false;
+        accesso.writeLock().lock();
+        try {
+            // Verifica unicità email, poi matricola (la chiave della mappa)
+            if (!emailLibera(u, null) || !inserisci(u)) {
+                return false;
+            }
+            indicizzaEmail(u);
+            if (perCognome != null) perCognome.aggiungi(u);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
         }
-        
-        registroUtenti.put(u.getMatricola(), u);
-        return true;
     }
     
     
@@ -83,15 +200,24 @@ public class Anagrafica implements Serializable{
      * - L'utente è rimosso dal sistema.
      */
     public boolean rimuoviUtente(String matricola){
-        if (matricola == null || !registroUtenti.containsKey(matricola)) {
+        if (matricola == null) {
             return false;
         }
         
         // Nota: Il controllo sui prestiti attivi deve essere fatto PRIMA di chiamare questo metodo
         // dal livello superiore (GUIController) usando RegistroPrestiti.haPrestitiAttivi().
         
-        registroUtenti.remove(matricola);
-        return true;
+        accesso.writeLock().lock();
+        try {
+            Utente rimosso = trova(matricola);
+            if (rimosso == null) return false;
+            togli(rimosso);
+            rimuoviEmail(rimosso);
+            if (perCognome != null) perCognome.rimuovi(rimosso);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
+        }
     }
     
     
@@ -99,8 +225,8 @@ public class Anagrafica implements Serializable{
      * @brief Modifica i dati di un utente esistente.
      * 
      * Implementa il "Flusso di modifica utente".
-     * Permette l'aggiornamento dei dati anagrafici. Se la modifica coinvolge la matricola,
-     * verifica nuovamente l'univocità.
+     * Permette l'aggiornamento dei dati anagrafici. Se la modifica coinvolge la matricola
+     * o l'email, ne verifica nuovamente l'univocità.
      * 
      * @param[in] matricola La matricola originale dell'utente da modificare.
      * @param[in] u L'oggetto Utente con i dati aggiornati.
@@ -108,26 +234,118 @@ public class Anagrafica implements Serializable{
      * @return true se la modifica ha successo, false altrimenti.
      */
     public boolean modificaUtente(String matricola, Utente u){
-        if (matricola == null || u == null) return false;
+        if (matricola == null || u == null || u.getMatricola() == null) return false;
         
-        if (!registroUtenti.containsKey(matricola)) {
-            return false;
+        accesso.writeLock().lock();
+        try {
+            Utente vecchio = trova(matricola);
+            if (vecchio == null || !emailLibera(u, vecchio)) {
+                return false;
+            }
+            
+            // Se la matricola cambia, devo verificare che la nuova non esista già
+            if (!matricola.equals(u.getMatricola())) {
+                // Metto la nuova entry e rimuovo la vecchia
+                if (!inserisci(u)) {
+                    return false; // La nuova matricola è già occupata
+                }
+                togli(vecchio);
+            } else {
+                // Aggiorno solo i dati (sovrascrivo), conservando i prestiti in corso
+                trasferisciPrestiti(vecchio, u);
+                sostituisci(u);
+            }
+            rimuoviEmail(vecchio);
+            indicizzaEmail(u);
+            
+            if (perCognome != null) {
+                perCognome.rimuovi(vecchio);
+                perCognome.aggiungi(u);
+            }
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
         }
+    }
+    
+    
+    /**
+     * @brief Esito dell'inserimento o aggiornamento di un utente in aggiornaUtenti().
+     */
+    public enum Aggiornamento {
+        /** Matricola nuova: l'utente è stato aggiunto. */
+        INSERITO,
+        /** Matricola esistente con dati diversi: l'utente è stato sostituito. */
+        AGGIORNATO,
+        /** Matricola esistente con gli stessi nome, cognome ed email: nessuna modifica. */
+        INVARIATO,
+        /** Email già usata da un altro utente: nessuna modifica. */
+        EMAIL_IN_USO
+    }
+
+
+    /**
+     * @brief Inserisce o aggiorna un blocco di utenti con una sola acquisizione del lock (importazione massiva).
+     * 
+     * Un utente la cui matricola è già registrata sostituisce quello esistente, che gli
+     * cede i prestiti in corso; se i dati coincidono non viene modificato nulla.
+     * Un utente con l'email di un altro utente non viene inserito né aggiornato.
+     * 
+     * @param[in] utenti Gli utenti da inserire o aggiornare, già validati.
+     * 
+     * @return L'esito per ogni posizione.
+     * 
+     * @see modificaUtente(String, Utente)
+     */
+    public Aggiornamento[] aggiornaUtenti(List<Utente> utenti){
+        Aggiornamento[] esiti = new Aggiornamento[utenti.size()];
         
-        // Se la matricola cambia, devo verificare che la nuova non esista già
-        if (!matricola.equals(u.getMatricola())) {
-            if (registroUtenti.containsKey(u.getMatricola())) {
-                return false; // La nuova matricola è già occupata
+        accesso.writeLock().lock();
+        try {
+            for (int i = 0; i < esiti.length; i++) {
+                Utente u = utenti.get(i);
+                Utente vecchio = trova(u.getMatricola());
+                if (vecchio != null && stessiDati(vecchio, u)) {
+                    esiti[i] = Aggiornamento.INVARIATO;
+                } else if (!emailLibera(u, vecchio)) {
+                    esiti[i] = Aggiornamento.EMAIL_IN_USO;
+                } else if (vecchio == null) {
+                    inserisci(u);
+                    indicizzaEmail(u);
+                    if (perCognome != null) perCognome.aggiungi(u);
+                    esiti[i] = Aggiornamento.INSERITO;
+                } else {
+                    trasferisciPrestiti(vecchio, u);
+                    sostituisci(u);
+                    rimuoviEmail(vecchio);
+                    indicizzaEmail(u);
+                    if (perCognome != null) {
+                        perCognome.rimuovi(vecchio);
+                        perCognome.aggiungi(u);
+                    }
+                    esiti[i] = Aggiornamento.AGGIORNATO;
+                }
             }
-            // Rimuovo la vecchia entry e metto la nuova
-            registroUtenti.remove(matricola);
-            registroUtenti.put(u.getMatricola(), u);
-        } else {
-            // Aggiorno solo i dati (sovrascrivo)
-            registroUtenti.put(matricola, u);
+            return esiti;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+    
+    
+    private static boolean stessiDati(Utente a, Utente b) {
+        return Objects.equals(a.getNome(), b.getNome()) && Objects.equals(a.getCognome(), b.getCognome())
+                && Objects.equals(a.getEmail(), b.getEmail());
+    }
+    
+    
+    // I prestiti in corso fanno riferimento all'istanza dell'utente: passano a quella nuova
+    private static void trasferisciPrestiti(Utente vecchio, Utente nuovo) {
+        if (vecchio == nuovo) return;
+        for (Prestito p : vecchio.getPrestitiAttivi()) {
+            nuovo.aggiungiPrestito(p);
+            p.ricollega(p.getLibro(), nuovo);
         }
-        
-        return true;
     }
     
     
@@ -135,14 +353,82 @@ public class Anagrafica implements Serializable{
      * @brief Recupera un singolo utente tramite matricola.
      * 
      * Metodo di utilità per l'accesso diretto ai dati di un utente,
-     * utilizzato nei vari flussi operativi.
+     * utilizzato nei vari flussi operativi (a ogni prestito): non acquisisce lock
+     * e non crea oggetti.
      * 
      * @param[in] matricola L'identificativo univoco.
      * 
      * @return L'oggetto Utente se trovato, altrimenti null.
      */
     public Utente getUtente(String matricola){
-        return registroUtenti.get(matricola);
+        return (matricola == null) ? null : trova(matricola);
+    }
+    
+    
+    /**
+     * @brief Recupera un utente tramite email, senza distinzione maiuscole/minuscole.
+     * 
+     * Non acquisisce lock: una ricerca nell'indice per email, senza scorrere l'anagrafica.
+     * 
+     * @param[in] email L'indirizzo email (gli spazi iniziali e finali sono ignorati).
+     * 
+     * @return L'utente con quell'email, altrimenti null.
+     */
+    public Utente getUtentePerEmail(String email){
+        String chiave = chiaveEmail(email);
+        return (chiave == null) ? null : perEmail.get(chiave);
+    }
+    
+    
+    /**
+     * @brief Restituisce una copia dell'elenco degli utenti, letta senza modifiche concorrenti.
+     * 
+     * Utilizzato per la persistenza: a differenza di getUtenti() la copia è presa con il lock
+     * in lettura, quindi nessun inserimento o rimozione può cadere a metà del salvataggio.
+     * 
+     * @return Lista degli utenti, senza ordinamento.
+     */
+    public List<Utente> istantanea(){
+        accesso.readLock().lock();
+        try {
+            return new ArrayList<>(getUtenti());
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce una vista non modificabile di tutti gli utenti, senza ordinamento.
+     * 
+     * Utilizzato per la persistenza, dove l'ordine non è rilevante.
+     * 
+     * @return La collezione degli utenti registrati.
+     */
+    public Collection<Utente> getUtenti(){
+        return new AbstractCollection<Utente>() {
+            @Override
+            public Iterator<Utente> iterator() {
+                final Iterator<Utente> numeriche = perMatricola.iterator();
+                final Iterator<Utente> altre = altreMatricole.values().iterator();
+                return new Iterator<Utente>() {
+                    @Override
+                    public boolean hasNext() {
+                        return numeriche.hasNext() || altre.hasNext();
+                    }
+
+                    @Override
+                    public Utente next() {
+                        return numeriche.hasNext() ? numeriche.next() : altre.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return perMatricola.dimensione() + altreMatricole.size();
+            }
+        };
     }
     
     
@@ -150,21 +436,29 @@ public class Anagrafica implements Serializable{
      * @brief Ricerca utenti in base a un criterio specifico.
      * 
      * Implementa la funzionalità di ricerca, permettendo di filtrare
-     * l'archivio per "Cognome" o "Matricola".
-     * Deve garantire tempi di risposta entro 2 secondi.
+     * l'archivio per "Cognome" o "Matricola" (testo contenuto) o per "Email" (indirizzo esatto).
+     * Deve garantire tempi di risposta entro 2 secondi: la ricerca per email usa l'indice,
+     * le altre scorrono l'anagrafica senza creare stringhe per ogni utente.
      * 
      * @param[in] query La stringa da cercare.
-     * @param[in] campo Il campo su cui cercare ("Cognome" o "Matricola").
+     * @param[in] campo Il campo su cui cercare ("Cognome", "Matricola" o "Email").
      * 
      * @return Una lista di utenti che soddisfano i criteri di ricerca.
      * 
+     * @see cercaCognomePrefisso(String)
      */
     public List<Utente> cercaUtente(String query, String campo){
         List<Utente> risultati = new ArrayList<>();
         
         if (query == null || campo == null) return risultati;
         
-        for (Utente u : registroUtenti.values()) {
+        if (campo.equalsIgnoreCase("Email")) {
+            Utente u = getUtentePerEmail(query);
+            if (u != null) risultati.add(u);
+            return risultati;
+        }
+        
+        for (Utente u : getUtenti()) {
             boolean trovato = false;
             
             if (campo.equalsIgnoreCase("Matricola")) {
@@ -172,7 +466,7 @@ public class Anagrafica implements Serializable{
                     trovato = true;
                 }
             } else if (campo.equalsIgnoreCase("Cognome")) {
-                if (u.getCognome().toLowerCase().contains(query.toLowerCase())){
+                if (contieneIgnorandoMaiuscole(u.getCognome(), query)){
                     trovato = true;
                 }
             }
@@ -185,29 +479,198 @@ public class Anagrafica implements Serializable{
     }
     
     
+    /**
+     * @brief Ricerca gli utenti il cui cognome inizia con un prefisso, senza distinzione maiuscole/minuscole.
+     * 
+     * Usa la vista ordinata per cognome: costa O(log n + risultati), senza scorrere l'anagrafica.
+     * 
+     * @param[in] prefisso L'inizio del cognome (es. "ros" per Rossi, Rossini, ...).
+     * 
+     * @return Lista degli utenti trovati, ordinata per cognome e nome.
+     */
+    public List<Utente> cercaCognomePrefisso(String prefisso){
+        if (prefisso == null) return new ArrayList<>();
+        return cercaCognomeIntervallo(prefisso, prefisso + Character.MAX_VALUE);
+    }
+    
+    
+    /**
+     * @brief Ricerca gli utenti con il cognome in un intervallo alfabetico, senza distinzione maiuscole/minuscole.
+     * 
+     * Usa la vista ordinata per cognome, come cercaCognomePrefisso(). Es. l'intervallo da "A" a "D"
+     * restituisce i cognomi che iniziano con A, B o C.
+     * 
+     * @param[in] da Il primo cognome dell'intervallo (incluso).
+     * @param[in] a Il cognome che chiude l'intervallo (escluso).
+     * 
+     * @return Lista degli utenti trovati, ordinata per cognome e nome; vuota se da non precede a.
+     */
+    public List<Utente> cercaCognomeIntervallo(String da, String a){
+        if (da == null || a == null) return new ArrayList<>();
+        
+        // Sonde con nome e matricola vuoti: precedono ogni utente con lo stesso cognome
+        Utente inizio = new Utente("", "", da, null);
+        Utente fine = new Utente("", "", a, null);
+        AlberoOrdinato<Utente> vista = vistaPerCognome();
+        accesso.readLock().lock();
+        try {
+            int primo = vista.rango(inizio);
+            return vista.pagina(primo, vista.rango(fine) - primo);
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
     /**
      * @brief Restituisce la lista completa degli utenti ordinata.
      * 
      * Implementa il requisito di visualizzazione, che richiede
      * l'ordinamento specifico per Cognome e Nome.
+     * L'ordinamento è mantenuto a ogni modifica dell'anagrafica: qui non si riordina.
      * 
      * @return Una lista di oggetti Utente ordinata per Cognome e poi Nome.
      */
     public List<Utente> visualizzaOrdinata(){
-        List<Utente> lista = new ArrayList<>(registroUtenti.values());
+        return visualizzaPagina(0, Integer.MAX_VALUE);
+    }
+    
+    
+    /**
+     * @brief Restituisce una pagina della lista ordinata per Cognome e Nome.
+     * 
+     * Costa O(log n + quanti), indipendentemente dal numero di utenti.
+     * 
+     * @param[in] inizio Posizione del primo utente (da 0).
+     * @param[in] quanti Numero massimo di utenti da restituire.
+     * 
+     * @return Lista di al più "quanti" utenti, vuota se inizio è oltre la fine.
+     * 
+     * @see visualizzaOrdinata()
+     */
+    public List<Utente> visualizzaPagina(int inizio, int quanti){
+        AlberoOrdinato<Utente> vista = vistaPerCognome();
+        accesso.readLock().lock();
+        try {
+            return vista.pagina(inizio, quanti);
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce i primi utenti in ordine di Cognome e Nome.
+     * 
+     * @param[in] quanti Numero massimo di utenti da restituire.
+     * 
+     * @return Lista dei primi "quanti" utenti.
+     */
+    public List<Utente> visualizzaPrimi(int quanti){
+        return visualizzaPagina(0, quanti);
+    }
+    
+    
+    // Costruisce la vista ordinata al primo utilizzo (es. dopo la deserializzazione).
+    // Da invocare senza il lock di lettura: la costruzione richiede quello di scrittura.
+    private AlberoOrdinato<Utente> vistaPerCognome(){
+        AlberoOrdinato<Utente> v = perCognome;
+        if (v != null) return v;
         
-        Collections.sort(lista, new Comparator<Utente>() {
-            @Override
-            public int compare(Utente u1, Utente u2) {
-                int res = u1.getCognome().compareToIgnoreCase(u2.getCognome());
-                if (res == 0) {
-                    return u1.getNome().compareToIgnoreCase(u2.getNome());
+        accesso.writeLock().lock();
+        try {
+            if (perCognome == null) {
+                AlberoOrdinato<Utente> nuova = new AlberoOrdinato<>(ORDINE_COGNOME_NOME);
+                for (Utente u : getUtenti()) {
+                    nuova.aggiungi(u);
                 }
-                return res;
+                perCognome = nuova;
             }
-        });
-        
-        return lista;
+            return perCognome;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+    
+    
+    // --- IMPLEMENTAZIONE ---
+    
+    // Come testo.toLowerCase().contains(parte.toLowerCase()), senza creare stringhe
+    private static boolean contieneIgnorandoMaiuscole(String testo, String parte){
+        if (parte.isEmpty()) return true;
+        char minuscola = Character.toLowerCase(parte.charAt(0));
+        char maiuscola = Character.toUpperCase(parte.charAt(0));
+        for (int i = 0, ultimo = testo.length() - parte.length(); i <= ultimo; i++) {
+            char c = testo.charAt(i);
+            if ((c == minuscola || c == maiuscola) && testo.regionMatches(true, i, parte, 0, parte.length())) return true;
+        }
+        return false;
+    }
+    
+    
+    // Chiave dell'indice per email: minuscole, senza spazi iniziali e finali (null se assente)
+    private static String chiaveEmail(String email){
+        if (email == null) return null;
+        String chiave = email.trim().toLowerCase(Locale.ROOT);
+        return chiave.isEmpty() ? null : chiave;
+    }
+    
+    
+    // L'email di u è libera se nessuno la usa, oppure se appartiene all'utente che u sostituisce
+    private boolean emailLibera(Utente u, Utente vecchio){
+        String chiave = chiaveEmail(u.getEmail());
+        if (chiave == null) return true;
+        Utente titolare = perEmail.get(chiave);
+        return titolare == null || titolare == vecchio
+                || (vecchio != null && chiave.equals(chiaveEmail(vecchio.getEmail())));
+    }
+    
+    
+    private void indicizzaEmail(Utente u){
+        String chiave = chiaveEmail(u.getEmail());
+        if (chiave != null) perEmail.putIfAbsent(chiave, u);
+    }
+    
+    
+    private void rimuoviEmail(Utente u){
+        String chiave = chiaveEmail(u.getEmail());
+        if (chiave != null) perEmail.remove(chiave, u);
+    }
+    
+    
+    private Utente trova(String matricola){
+        long c = ValidatoreDati.chiaveMatricola(matricola);
+        if (c >= 0) return perMatricola.get(c);
+        return altreMatricole.isEmpty() ? null : altreMatricole.get(matricola);
+    }
+    
+    
+    // Da invocare sotto il lock di scrittura; false se la matricola è già presente
+    private boolean inserisci(Utente u){
+        long c = ValidatoreDati.chiaveMatricola(u.getMatricola());
+        if (c < 0) return altreMatricole.putIfAbsent(u.getMatricola(), u) == null;
+        return perMatricola.putSeAssente(c, u) == null;
+    }
+    
+    
+    // Sostituisce l'utente registrato con la stessa matricola
+    private void sostituisci(Utente u){
+        long c = ValidatoreDati.chiaveMatricola(u.getMatricola());
+        if (c < 0) {
+            altreMatricole.put(u.getMatricola(), u);
+        } else {
+            perMatricola.put(c, u);
+        }
+    }
+    
+    
+    private void togli(Utente u){
+        long c = ValidatoreDati.chiaveMatricola(u.getMatricola());
+        if (c < 0) {
+            altreMatricole.remove(u.getMatricola());
+        } else {
+            perMatricola.rimuovi(c);
+        }
     }
    
 }
@@ -6,9 +6,17 @@
 package it.unisa.sgbu.service;
 
 import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.ValidatoreDati;
 import it.unisa.sgbu.io.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @brief Gestisce il catalogo dei libri della biblioteca.
@@ -16,17 +24,150 @@ import java.util.*;
  * Questa classe implementa le operazioni CRUD (Create, Read, Update, Delete)
  * sui libri e fornisce funzionalità di ricerca e ordinamento, come specificato
  * nel Caso d'Uso "Gestione catalogo libri".
+ * 
+ * Può essere condiviso da più postazioni: le letture per ISBN non acquisiscono lock
+ * (mappa concorrente), le modifiche sono serializzate e l'indice di ricerca e la vista
+ * ordinata sono letti sotto un lock di lettura, condiviso fra tutti i lettori.
+ * 
+ * I libri sono indicizzati per ISBN canonico (ValidatoreDati.chiaveISBN()): "978-88-...",
+ * "97888..." e l'ISBN-10 equivalente individuano lo stesso libro, e la chiave è un long
+ * in una mappa primitiva (MappaLunghi) invece di una String in una HashMap.
+ * I codici senza forma canonica restano in una mappa a parte, con la chiave testuale.
  */
 public class Catalogo implements Serializable {
     
-    private Map<String, Libro> registroLibri;
+    private static final long serialVersionUID = -4338927183087417665L;
+
+    // Blocchi di almeno questa dimensione (e oltre 1/4 del catalogo) scartano indice e vista invece di aggiornarli
+    private static final int BLOCCO_RICOSTRUZIONE = 1000;
+
+    // Forma serializzata invariata: la mappa ISBN -> Libro delle versioni precedenti
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("registroLibri", Map.class)
+    };
+
+    // Libri per chiave ISBN canonica; letture senza lock, scritture sotto il lock di scrittura
+    private transient MappaLunghi<Libro> perCodice;
+
+    // Libri con un codice senza forma canonica (es. dati precedenti alla validazione), per ISBN testuale
+    private transient Map<String, Libro> altriCodici;
+    
+    // Libri caricati con un ISBN equivalente a uno già presente, non ancora segnalati (sotto il lock di scrittura)
+    private transient int equivalentiCaricati;
+    
+    // Indice per la ricerca: non salvato, ricostruito alla prima ricerca dopo il caricamento
+    private transient volatile IndiceNGrammi indiceRicerca;
+    
+    // Vista ordinata per titolo: non salvata, ricostruita al primo utilizzo
+    private transient volatile AlberoOrdinato<Libro> perTitolo;
+    
+    // Scrittori in esclusiva; i lettori di indice e vista ordinata in condivisione
+    private transient ReadWriteLock accesso;
+    
+    // Ordine di visualizzazione: titolo senza distinzione maiuscole/minuscole, a parità l'ISBN
+    private static final Comparator<Libro> ORDINE_TITOLO = new Comparator<Libro>() {
+        @Override
+        public int compare(Libro l1, Libro l2) {
+            int res = l1.getTitolo().compareToIgnoreCase(l2.getTitolo());
+            if (res == 0) {
+                return l1.getISBN().compareTo(l2.getISBN());
+            }
+            return res;
+        }
+    };
     
     /**
      * @brief Costruttore della classe Catalogo.
      * Inizializza la collezione vuota.
      */
     public Catalogo(){
-        this.registroLibri = new HashMap<>();
+        this.perCodice = new MappaLunghi<>();
+        this.altriCodici = new ConcurrentHashMap<>();
+        this.accesso = new ReentrantReadWriteLock();
+    }
+    
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Map<String, Libro> registroLibri = new HashMap<>();
+        for (Libro l : getLibri()) {
+            registroLibri.put(l.getISBN(), l);
+        }
+        out.putFields().put("registroLibri", registroLibri);
+        out.writeFields();
+    }
+    
+    
+    // I cataloghi salvati (anche dalle versioni precedenti) contengono una mappa ISBN -> Libro
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        Map<?, ?> registroLibri = (Map<?, ?>) in.readFields().get("registroLibri", null);
+        perCodice = new MappaLunghi<>((registroLibri == null) ? 0 : registroLibri.size());
+        altriCodici = new ConcurrentHashMap<>();
+        accesso = new ReentrantReadWriteLock();
+        if (registroLibri != null) {
+            for (Object l : registroLibri.values()) {
+                caricaLibro((Libro) l);
+            }
+        }
+        segnalaEquivalentiCaricati();
+    }
+    
+    
+    /**
+     * @brief Inserisce un libro letto da un salvataggio.
+     * 
+     * Come aggiungiLibro(), ma un libro il cui ISBN è scritto diversamente da quello di un libro
+     * già presente con la stessa chiave canonica non viene perso: resta raggiungibile con il
+     * proprio ISBN testuale (i dati salvati prima della normalizzazione possono contenerne).
+     * Questi casi sono contati e riepilogati a fine caricamento da segnalaEquivalentiCaricati().
+     * 
+     * @param[in] l Il libro letto.
+     * 
+     * @return true se il libro è stato inserito, false se l'ISBN identico era già presente.
+     * 
+     * @see aggiungiLibro(Libro)
+     */
+    public boolean caricaLibro(Libro l){
+        if (l == null || l.getISBN() == null) return false;
+        
+        accesso.writeLock().lock();
+        try {
+            if (!inserisci(l)) {
+                Libro presente = trova(l.getISBN());
+                if (presente == null || presente.getISBN().equals(l.getISBN())) return false;
+                if (altriCodici.putIfAbsent(l.getISBN(), l) != null) return false;
+                equivalentiCaricati++;
+            }
+            if (indiceRicerca != null) indiceRicerca.aggiungi(l);
+            if (perTitolo != null) perTitolo.aggiungi(l);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Segnala in un'unica riga i libri caricati con un ISBN equivalente a uno già presente.
+     * 
+     * Da invocare al termine del caricamento di un salvataggio, dopo le chiamate a caricaLibro().
+     * 
+     * @return Il numero di libri segnalati (il conteggio viene azzerato).
+     * 
+     * @see caricaLibro(Libro)
+     */
+    public int segnalaEquivalentiCaricati(){
+        int n;
+        accesso.writeLock().lock();
+        try {
+            n = equivalentiCaricati;
+            equivalentiCaricati = 0;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+        if (n > 0) {
+            System.err.println("[Catalogo] " + n + " libri con ISBN equivalente a uno già presente: mantenuti con il codice originale");
+        }
+        return n;
     }
     
     
@@ -34,7 +175,8 @@ public class Catalogo implements Serializable {
      * @brief Aggiunge un nuovo libro al catalogo.
      * 
      * Implementa il "Flusso di registrazione nuovo libro".
-     * Verifica che l'ISBN non sia già presente per soddisfare il relativo vincolo.
+     * Verifica che l'ISBN non sia già presente per soddisfare il relativo vincolo
+     * (anche scritto in un'altra forma, es. con trattini o come ISBN-10).
      * 
      * @param[in] l L'oggetto Libro da inserire.
      * 
@@ -49,17 +191,61 @@ public class Catalogo implements Serializable {
      * - Il libro è aggiunto alla collezione persistente.
      */
     public boolean aggiungiLibro(Libro l){
-        if (l == null) return false;
+        if (l == null || l.getISBN() == null) return false;
         
-        // Vincolo unicità ISBN
-        if (registroLibri.containsKey(l.getISBN())) {
-            return false;
+        accesso.writeLock().lock();
+        try {
+            // Vincolo unicità ISBN
+            if (!inserisci(l)) {
+                return false;
+            }
+            if (indiceRicerca != null) indiceRicerca.aggiungi(l);
+            if (perTitolo != null) perTitolo.aggiungi(l);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
         }
-        
-        registroLibri.put(l.getISBN(), l);
-        return true;
     }
-    
+
+
+    /**
+     * @brief Aggiunge un blocco di libri con una sola acquisizione del lock (importazione massiva).
+     *
+     * Se il blocco è grande rispetto al catalogo, l'indice di ricerca e la vista ordinata
+     * non vengono aggiornati libro per libro ma scartati, e ricostruiti in un solo passaggio
+     * al primo utilizzo.
+     *
+     * @param[in] libri I libri da inserire, già validati.
+     *
+     * @return Per ogni posizione, true se il libro è stato inserito, false se l'ISBN era già presente
+     *         (nel catalogo o in una posizione precedente del blocco).
+     *
+     * @see aggiungiLibro(Libro)
+     */
+    public boolean[] aggiungiLibri(List<Libro> libri){
+        boolean[] inseriti = new boolean[libri.size()];
+
+        accesso.writeLock().lock();
+        try {
+            if (libri.size() >= BLOCCO_RICOSTRUZIONE && libri.size() * 4L > dimensione()) {
+                indiceRicerca = null;
+                perTitolo = null;
+            }
+            for (int i = 0; i < inseriti.length; i++) {
+                Libro l = libri.get(i);
+                if (l == null || l.getISBN() == null || !inserisci(l)) {
+                    continue;
+                }
+                inseriti[i] = true;
+                if (indiceRicerca != null) indiceRicerca.aggiungi(l);
+                if (perTitolo != null) perTitolo.aggiungi(l);
+            }
+            return inseriti;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+
     
     /**
      * @brief Rimuove un libro dal catalogo.
@@ -80,13 +266,22 @@ public class Catalogo implements Serializable {
      * - Il libro è rimosso dalla collezione.
      */
     public boolean rimuoviLibro(String isbn){
-        if (isbn == null || !registroLibri.containsKey(isbn)) {
+        if (isbn == null) {
             return false;
         }
         // La verifica dei prestiti attivi è demandata al Controller/RegistroPrestiti
         // prima di chiamare questo metodo.
-        registroLibri.remove(isbn);
-        return true;
+        accesso.writeLock().lock();
+        try {
+            Libro rimosso = trova(isbn);
+            if (rimosso == null) return false;
+            togli(rimosso);
+            if (indiceRicerca != null) indiceRicerca.rimuovi(rimosso.getISBN());
+            if (perTitolo != null) perTitolo.rimuovi(rimosso);
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
+        }
     }
     
     
@@ -103,26 +298,39 @@ public class Catalogo implements Serializable {
      * @return true se la modifica ha successo, false altrimenti.
      */
     public boolean modificaLibro(String isbn, Libro nl){
-        if (isbn == null || nl == null) return false;
+        if (isbn == null || nl == null || nl.getISBN() == null) return false;
         
-        if (!registroLibri.containsKey(isbn)) {
-            return false;
-        }
-        
-        // Se l'ISBN cambia, devo gestire la chiave nella mappa
-        if (!isbn.equals(nl.getISBN())) {
-            // Se il nuovo ISBN è già usato da un ALTRO libro -> Errore
-            if (registroLibri.containsKey(nl.getISBN())) {
+        accesso.writeLock().lock();
+        try {
+            Libro vecchio = trova(isbn);
+            if (vecchio == null) {
                 return false;
             }
-            // Rimuovo vecchio, aggiungo nuovo
-            registroLibri.remove(isbn);
-            registroLibri.put(nl.getISBN(), nl);
-        } else {
-            // Sostituzione semplice
-            registroLibri.put(isbn, nl);
+            
+            // Se l'ISBN cambia, devo gestire la chiave nella mappa
+            if (!stessoCodice(vecchio.getISBN(), nl.getISBN())) {
+                // Aggiungo il nuovo prima di rimuovere il vecchio: un lettore trova sempre uno dei due.
+                // Se il nuovo ISBN è già usato da un ALTRO libro -> Errore
+                if (!inserisci(nl)) {
+                    return false;
+                }
+                togli(vecchio);
+            } else {
+                // Sostituzione semplice (anche se cambia solo la grafia dell'ISBN)
+                sostituisci(vecchio, nl);
+            }
+            if (indiceRicerca != null) {
+                indiceRicerca.rimuovi(vecchio.getISBN());
+                indiceRicerca.aggiungi(nl);
+            }
+            if (perTitolo != null) {
+                perTitolo.rimuovi(vecchio);
+                perTitolo.aggiungi(nl);
+            }
+            return true;
+        } finally {
+            accesso.writeLock().unlock();
         }
-        return true;
     }
     
     
@@ -130,13 +338,66 @@ public class Catalogo implements Serializable {
      * @brief Recupera un libro tramite ISBN.
      * 
      * Metodo di accesso diretto utilizzato nei flussi di prestito e restituzione.
+     * Non acquisisce lock: costa il calcolo della chiave canonica e una ricerca nella mappa primitiva.
      * 
-     * @param[in] isbn Il codice identificativo.
+     * @param[in] isbn Il codice identificativo, in qualsiasi forma equivalente.
      * 
      * @return L'oggetto Libro se trovato, null altrimenti.
      */
     public Libro getLibro(String isbn){
-        return registroLibri.get(isbn);
+        return (isbn == null) ? null : trova(isbn);
+    }
+    
+    
+    /**
+     * @brief Restituisce una copia dell'elenco dei libri, letta senza modifiche concorrenti.
+     * 
+     * Utilizzato per la persistenza: a differenza di getLibri() la copia è presa con il lock
+     * in lettura, quindi nessun inserimento o rimozione può cadere a metà del salvataggio.
+     * 
+     * @return Lista dei libri, senza ordinamento.
+     */
+    public List<Libro> istantanea(){
+        accesso.readLock().lock();
+        try {
+            return new ArrayList<>(getLibri());
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce una vista non modificabile di tutti i libri, senza ordinamento.
+     * 
+     * Utilizzato per la persistenza, dove l'ordine non è rilevante.
+     * 
+     * @return La collezione dei libri del catalogo.
+     */
+    public Collection<Libro> getLibri(){
+        return new AbstractCollection<Libro>() {
+            @Override
+            public Iterator<Libro> iterator() {
+                final Iterator<Libro> canonici = perCodice.iterator();
+                final Iterator<Libro> altri = altriCodici.values().iterator();
+                return new Iterator<Libro>() {
+                    @Override
+                    public boolean hasNext() {
+                        return canonici.hasNext() || altri.hasNext();
+                    }
+
+                    @Override
+                    public Libro next() {
+                        return canonici.hasNext() ? canonici.next() : altri.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return dimensione();
+            }
+        };
     }
     
     
@@ -145,19 +406,51 @@ public class Catalogo implements Serializable {
      * 
      * Implementa la funzionalità di ricerca.
      * Permette di filtrare per Titolo, Autore o ISBN.
-     * Deve garantire tempi di risposta rapidi entro 2 secondi.
+     * Deve garantire tempi di risposta rapidi entro 2 secondi: la ricerca usa un
+     * indice a trigrammi (IndiceNGrammi) invece di scorrere l'intero catalogo.
      * 
      * @param[in] query La stringa da cercare.
      * @param[in] campo Il criterio di filtro ("Titolo", "Autore", "ISBN").
      * 
-     * @return Lista dei libri che corrispondono ai criteri.
+     * @return Lista dei libri che corrispondono ai criteri, nell'ordine di inserimento.
      */
     public List<Libro> ricerca(String query, String campo){
+        if (query == null || campo == null) return new ArrayList<>();
+        
+        IndiceNGrammi.Campo c;
+        if (campo.equalsIgnoreCase("Titolo")) {
+            c = IndiceNGrammi.Campo.TITOLO;
+        } else if (campo.equalsIgnoreCase("ISBN")) {
+            c = IndiceNGrammi.Campo.ISBN;
+        } else if (campo.equalsIgnoreCase("Autore")) {
+            c = IndiceNGrammi.Campo.AUTORE;
+        } else {
+            return new ArrayList<>();
+        }
+        
+        IndiceNGrammi indice = indice();
+        accesso.readLock().lock();
+        try {
+            return indice.cerca(query, c);
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Ricerca per scansione completa del catalogo (senza indice).
+     * 
+     * Stessa semantica di ricerca(); mantenuta come riferimento per test e benchmark.
+     * 
+     * @see ricerca(String, String)
+     */
+    List<Libro> ricercaLineare(String query, String campo){
         List<Libro> risultati = new ArrayList<>();
         
         if (query == null || campo == null) return risultati;
         
-        for (Libro l : registroLibri.values()) {
+        for (Libro l : getLibri()) {
             boolean trovato = false;
             
             if (campo.equalsIgnoreCase("Titolo")) {
@@ -187,26 +480,148 @@ public class Catalogo implements Serializable {
     }
     
     
+    // Costruisce l'indice al primo utilizzo (es. dopo la deserializzazione).
+    // Da invocare senza il lock di lettura: la costruzione richiede quello di scrittura.
+    private IndiceNGrammi indice(){
+        IndiceNGrammi i = indiceRicerca;
+        if (i != null) return i;
+        
+        accesso.writeLock().lock();
+        try {
+            if (indiceRicerca == null) {
+                IndiceNGrammi nuovo = new IndiceNGrammi();
+                for (Libro l : getLibri()) {
+                    nuovo.aggiungi(l);
+                }
+                indiceRicerca = nuovo;
+            }
+            return indiceRicerca;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+    
+    
     /**
      * @brief Restituisce la lista completa dei libri ordinata.
      * 
      * Implementa il requisito di visualizzazione, che impone specificamente
      * l'ordinamento alfabetico per Titolo.
      * Mostra per ciascun libro il numero di copie disponibili.
+     * L'ordinamento è mantenuto a ogni modifica del catalogo: qui non si riordina.
      * 
-     * @return Lista di libri ordinata per Titolo.
+     * @return Lista di libri ordinata per Titolo (a parità di titolo, per ISBN).
      */
     public List<Libro> visualizzaOrdinata(){
-        List<Libro> lista = new ArrayList<>(registroLibri.values());
+        return visualizzaPagina(0, Integer.MAX_VALUE);
+    }
+    
+    
+    /**
+     * @brief Restituisce una pagina della lista ordinata per Titolo.
+     * 
+     * Costa O(log n + quanti), indipendentemente dalla dimensione del catalogo.
+     * 
+     * @param[in] inizio Posizione del primo libro (da 0).
+     * @param[in] quanti Numero massimo di libri da restituire.
+     * 
+     * @return Lista di al più "quanti" libri, vuota se inizio è oltre la fine.
+     * 
+     * @see visualizzaOrdinata()
+     */
+    public List<Libro> visualizzaPagina(int inizio, int quanti){
+        AlberoOrdinato<Libro> vista = vistaPerTitolo();
+        accesso.readLock().lock();
+        try {
+            return vista.pagina(inizio, quanti);
+        } finally {
+            accesso.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce i primi libri in ordine di Titolo.
+     * 
+     * @param[in] quanti Numero massimo di libri da restituire.
+     * 
+     * @return Lista dei primi "quanti" libri.
+     */
+    public List<Libro> visualizzaPrimi(int quanti){
+        return visualizzaPagina(0, quanti);
+    }
+    
+    
+    // Costruisce la vista ordinata al primo utilizzo, come indice()
+    private AlberoOrdinato<Libro> vistaPerTitolo(){
+        AlberoOrdinato<Libro> v = perTitolo;
+        if (v != null) return v;
         
-        Collections.sort(lista, new Comparator<Libro>() {
-            @Override
-            public int compare(Libro l1, Libro l2) {
-                return l1.getTitolo().compareToIgnoreCase(l2.getTitolo());
+        accesso.writeLock().lock();
+        try {
+            if (perTitolo == null) {
+                AlberoOrdinato<Libro> nuova = new AlberoOrdinato<>(ORDINE_TITOLO);
+                for (Libro l : getLibri()) {
+                    nuova.aggiungi(l);
+                }
+                perTitolo = nuova;
             }
-        });
-        
-        return lista;
+            return perTitolo;
+        } finally {
+            accesso.writeLock().unlock();
+        }
+    }
+    
+    
+    // --- IMPLEMENTAZIONE ---
+    
+    private int dimensione(){
+        return perCodice.dimensione() + altriCodici.size();
+    }
+    
+    
+    private Libro trova(String isbn){
+        if (!altriCodici.isEmpty()) {
+            Libro l = altriCodici.get(isbn);
+            if (l != null) return l;
+        }
+        long c = ValidatoreDati.chiaveISBN(isbn);
+        return (c < 0) ? null : perCodice.get(c);
+    }
+    
+    
+    // Da invocare sotto il lock di scrittura; false se l'ISBN (in qualsiasi forma) è già presente
+    private boolean inserisci(Libro l){
+        String isbn = l.getISBN();
+        long c = ValidatoreDati.chiaveISBN(isbn);
+        if (c < 0) return altriCodici.putIfAbsent(isbn, l) == null;
+        if (altriCodici.containsKey(isbn)) return false;
+        return perCodice.putSeAssente(c, l) == null;
+    }
+    
+    
+    private void togli(Libro l){
+        if (altriCodici.remove(l.getISBN(), l)) return;
+        long c = ValidatoreDati.chiaveISBN(l.getISBN());
+        if (c >= 0 && perCodice.get(c) == l) perCodice.rimuovi(c);
+    }
+    
+    
+    // Sostituisce un libro con uno che ha lo stesso ISBN canonico (o la stessa stringa)
+    private void sostituisci(Libro vecchio, Libro nuovo){
+        if (altriCodici.get(vecchio.getISBN()) == vecchio) {
+            altriCodici.put(nuovo.getISBN(), nuovo);
+            if (!nuovo.getISBN().equals(vecchio.getISBN())) altriCodici.remove(vecchio.getISBN());
+        } else {
+            perCodice.put(ValidatoreDati.chiaveISBN(nuovo.getISBN()), nuovo);
+        }
+    }
+    
+    
+    private static boolean stessoCodice(String a, String b){
+        long ca = ValidatoreDati.chiaveISBN(a);
+        long cb = ValidatoreDati.chiaveISBN(b);
+        return (ca >= 0 || cb >= 0) ? ca == cb : a.equals(b);
     }
     
 }
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Prestito;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @brief Risultato di un prestito o di una restituzione multipla.
+ *
+ * Il lotto è applicato per intero oppure per nulla: se anche una sola voce
+ * viene rifiutata, le altre risultano ANNULLATO e lo stato non cambia.
+ * Per ogni voce riporta l'esito e, se applicata, il prestito interessato.
+ */
+public class EsitoLotto {
+
+    private final EsitoVoce[] esiti;
+    private final Prestito[] prestiti;
+    private boolean applicato;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] voci Numero di voci del lotto.
+     */
+    public EsitoLotto(int voci) {
+        this.esiti = new EsitoVoce[voci];
+        this.prestiti = new Prestito[voci];
+    }
+
+
+    /**
+     * @brief Segnala il rifiuto di una voce (es. dopo la validazione del formato).
+     *
+     * Il primo errore segnalato per una voce non viene sovrascritto.
+     *
+     * @param[in] voce Indice della voce (da 0).
+     * @param[in] esito Il motivo del rifiuto.
+     */
+    public void rifiuta(int voce, EsitoVoce esito) {
+        if (esiti[voce] == null) esiti[voce] = esito;
+    }
+
+
+    /**
+     * @brief Restituisce l'esito di una voce.
+     *
+     * @param[in] voce Indice della voce (da 0).
+     *
+     * @return L'esito, oppure null se la voce non è ancora stata valutata.
+     */
+    public EsitoVoce getEsito(int voce) {
+        return esiti[voce];
+    }
+
+
+    /**
+     * @brief Restituisce gli esiti di tutte le voci, nell'ordine della richiesta.
+     * @return Lista non modificabile degli esiti.
+     */
+    public List<EsitoVoce> getEsiti() {
+        return Collections.unmodifiableList(Arrays.asList(esiti.clone()));
+    }
+
+
+    /**
+     * @brief Restituisce il prestito creato o chiuso da una voce.
+     *
+     * @param[in] voce Indice della voce (da 0).
+     *
+     * @return Il prestito, oppure null se il lotto non è stato applicato.
+     */
+    public Prestito getPrestito(int voce) {
+        return prestiti[voce];
+    }
+
+
+    /**
+     * @brief Restituisce i prestiti interessati dal lotto, nell'ordine della richiesta.
+     * @return Lista (nuova), vuota se il lotto non è stato applicato.
+     */
+    public List<Prestito> getPrestiti() {
+        List<Prestito> risultato = new ArrayList<>();
+        if (!applicato) return risultato;
+        Collections.addAll(risultato, prestiti);
+        return risultato;
+    }
+
+
+    /**
+     * @brief Indica se il lotto è stato applicato.
+     * @return true se tutte le voci sono state eseguite.
+     */
+    public boolean isApplicato() {
+        return applicato;
+    }
+
+
+    /**
+     * @brief Restituisce il numero di voci del lotto.
+     * @return La dimensione del lotto.
+     */
+    public int dimensione() {
+        return esiti.length;
+    }
+
+
+    // Dopo la validazione: true se nessuna voce è stata rifiutata
+    boolean valido() {
+        for (EsitoVoce e : esiti) {
+            if (e != null && e != EsitoVoce.OK) return false;
+        }
+        return true;
+    }
+
+
+    // Lotto rifiutato: le voci valide risultano annullate
+    void annulla() {
+        for (int i = 0; i < esiti.length; i++) {
+            if (esiti[i] == null || esiti[i] == EsitoVoce.OK) esiti[i] = EsitoVoce.ANNULLATO;
+        }
+    }
+
+
+    void applica(int voce, Prestito p) {
+        esiti[voce] = EsitoVoce.OK;
+        prestiti[voce] = p;
+    }
+
+
+    void segnaApplicato() {
+        applicato = true;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+/**
+ * @brief Esito di una singola voce di un'operazione multipla (prestiti o restituzioni).
+ *
+ * @see EsitoLotto
+ */
+public enum EsitoVoce {
+
+    /** Voce eseguita. */
+    OK,
+    /** Formato dei dati non valido (ISBN, matricola o data mancanti o errati). */
+    DATI_NON_VALIDI,
+    LIBRO_INESISTENTE,
+    UTENTE_INESISTENTE,
+    /** Nessuna copia disponibile, contando anche le voci precedenti dello stesso lotto. */
+    COPIE_ESAURITE,
+    /** L'utente supererebbe il limite di prestiti attivi. */
+    LIMITE_UTENTE,
+    PRESTITO_INESISTENTE,
+    /** Prestito già chiuso, oppure presente due volte nello stesso lotto. */
+    GIA_RESTITUITO,
+    /** Voce valida, non eseguita perché un'altra voce del lotto è stata rifiutata. */
+    ANNULLATO
+}
@@ -0,0 +1,270 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.io.ScrittoreCsv;
+import it.unisa.sgbu.io.ScrittoreJsonl;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * @brief Esportazione in streaming di catalogo, anagrafica e prestiti in CSV o JSON Lines.
+ *
+ * Gli elementi sono scritti uno alla volta mentre si scorrono le collezioni, attraverso
+ * un buffer: non si costruiscono copie ordinate (visualizzaOrdinata()) né l'intero testo in
+ * memoria, quindi lo heap usato non cresce con la dimensione dei dati. Per lo stesso motivo
+ * l'ordine delle righe non è garantito, e un elemento modificato durante l'esportazione può
+ * comparire con i dati precedenti o con quelli nuovi.
+ *
+ * Le colonne di libri e utenti iniziano come quelle attese da ImportatoreLibri e
+ * ImportatoreUtenti, così un file CSV esportato può essere reimportato.
+ *
+ * Le righe sono scritte nel Writer ricevuto, che viene svuotato (flush) ma non chiuso.
+ */
+public class Esportatore {
+
+    /**
+     * @brief Formato del file prodotto.
+     */
+    public enum Formato {
+        /** Una riga di intestazione, poi campi separati da ';' (liste separate da '|'). */
+        CSV,
+        /** Un oggetto JSON per riga, con i nomi delle colonne come chiavi. */
+        JSONL
+    }
+
+    /** Solo i libri senza copie disponibili. */
+    public static final Predicate<Libro> LIBRI_NON_DISPONIBILI = new Predicate<Libro>() {
+        @Override
+        public boolean test(Libro l) {
+            return l.getCopieDisponibili() == 0;
+        }
+    };
+
+    /** Solo i prestiti non ancora restituiti. */
+    public static final Predicate<Prestito> PRESTITI_ATTIVI = new Predicate<Prestito>() {
+        @Override
+        public boolean test(Prestito p) {
+            return p.getDataEffettivaRestituzione() == null;
+        }
+    };
+
+    /** Solo i prestiti scaduti: in corso oltre la data prevista, o restituiti dopo. */
+    public static final Predicate<Prestito> PRESTITI_IN_RITARDO = new Predicate<Prestito>() {
+        @Override
+        public boolean test(Prestito p) {
+            return p.verificaRitardo();
+        }
+    };
+
+    public static final String[] COLONNE_LIBRI = {"isbn", "titolo", "autori", "anno", "copie", "disponibili"};
+    public static final String[] COLONNE_UTENTI = {"matricola", "nome", "cognome", "email", "prestiti"};
+    public static final String[] COLONNE_PRESTITI = {"id", "isbn", "matricola", "inizio", "scadenza", "restituzione", "ritardo"};
+
+    private static final int DIMENSIONE_BUFFER = 1 << 16;
+
+    private final Catalogo catalogo;
+    private final Anagrafica anagrafica;
+    private final RegistroPrestiti registro;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] catalogo Il catalogo da esportare.
+     * @param[in] anagrafica L'anagrafica da esportare.
+     * @param[in] registro Il registro dei prestiti (con l'eventuale storico su disco).
+     */
+    public Esportatore(Catalogo catalogo, Anagrafica anagrafica, RegistroPrestiti registro) {
+        this.catalogo = catalogo;
+        this.anagrafica = anagrafica;
+        this.registro = registro;
+    }
+
+
+    /**
+     * @brief Esporta i libri del catalogo.
+     *
+     * @param[in] out La destinazione.
+     * @param[in] formato Il formato del file.
+     * @param[in] filtro Condizione sui libri (null = tutti), es. LIBRI_NON_DISPONIBILI.
+     *
+     * @return Il numero di libri scritti.
+     *
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaLibri(Writer out, Formato formato, Predicate<? super Libro> filtro) throws IOException {
+        Righe righe = apri(out, formato, COLONNE_LIBRI);
+        long scritti = 0;
+        for (Libro l : catalogo.getLibri()) {
+            if (filtro != null && !filtro.test(l)) continue;
+            righe.scrivi(l.getISBN(), l.getTitolo(), l.getAutore(), l.getAnno(), l.getCopieTotali(), l.getCopieDisponibili());
+            scritti++;
+        }
+        righe.flush();
+        return scritti;
+    }
+
+
+    /**
+     * @brief Esporta gli utenti dell'anagrafica.
+     *
+     * @param[in] out La destinazione.
+     * @param[in] formato Il formato del file.
+     * @param[in] filtro Condizione sugli utenti (null = tutti).
+     *
+     * @return Il numero di utenti scritti.
+     *
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaUtenti(Writer out, Formato formato, Predicate<? super Utente> filtro) throws IOException {
+        Righe righe = apri(out, formato, COLONNE_UTENTI);
+        long scritti = 0;
+        for (Utente u : anagrafica.getUtenti()) {
+            if (filtro != null && !filtro.test(u)) continue;
+            righe.scrivi(u.getMatricola(), u.getNome(), u.getCognome(), u.getEmail(), u.getNumeroPrestitiAttivi());
+            scritti++;
+        }
+        righe.flush();
+        return scritti;
+    }
+
+
+    /**
+     * @brief Esporta i prestiti: prima quelli in corso, poi lo storico di quelli restituiti.
+     *
+     * I prestiti in corso sono letti dal registro (sono al più quante le copie in catalogo);
+     * lo storico è letto in streaming dai segmenti su disco (RegistroPrestiti.scorriStorico()).
+     *
+     * @param[in] out La destinazione.
+     * @param[in] formato Il formato del file.
+     * @param[in] filtro Condizione sui prestiti (null = tutti), es. PRESTITI_IN_RITARDO.
+     *
+     * @return Il numero di prestiti scritti.
+     *
+     * @throws IOException se la scrittura fallisce.
+     */
+    public long esportaPrestiti(Writer out, Formato formato, Predicate<? super Prestito> filtro) throws IOException {
+        final Righe righe = apri(out, formato, COLONNE_PRESTITI);
+        long scritti = 0;
+        for (Prestito p : registro.getPrestitiAttivi()) {
+            if (filtro != null && !filtro.test(p)) continue;
+            scriviPrestito(righe, p);
+            scritti++;
+        }
+        if (filtro == PRESTITI_ATTIVI) {
+            righe.flush();
+            return scritti;
+        }
+
+        try {
+            scritti += registro.scorriStorico(null, null, filtro, new Consumer<Prestito>() {
+                @Override
+                public void accept(Prestito p) {
+                    try {
+                        scriviPrestito(righe, p);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        righe.flush();
+        return scritti;
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private static void scriviPrestito(Righe righe, Prestito p) throws IOException {
+        righe.scrivi(p.getIdPrestito(), p.getIsbn(), p.getMatricola(), p.getDataInizio(),
+                p.getDataPrevistaRestituzione(), p.getDataEffettivaRestituzione(), p.verificaRitardo());
+    }
+
+
+    private static Righe apri(Writer out, Formato formato, String[] colonne) throws IOException {
+        Writer buffer = (out instanceof BufferedWriter) ? out : new BufferedWriter(out, DIMENSIONE_BUFFER);
+        if (formato == Formato.JSONL) {
+            return new RigheJsonl(new ScrittoreJsonl(buffer, colonne));
+        }
+        ScrittoreCsv csv = new ScrittoreCsv(buffer);
+        csv.scriviRiga(colonne);
+        return new RigheCsv(csv, colonne.length);
+    }
+
+
+    // Destinazione delle righe, indipendente dal formato
+    private interface Righe {
+        void scrivi(Object... valori) throws IOException;
+        void flush() throws IOException;
+    }
+
+
+    private static final class RigheJsonl implements Righe {
+        private final ScrittoreJsonl out;
+
+        RigheJsonl(ScrittoreJsonl out) {
+            this.out = out;
+        }
+
+        @Override
+        public void scrivi(Object... valori) throws IOException {
+            out.scriviRiga(valori);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+
+    private static final class RigheCsv implements Righe {
+        private final ScrittoreCsv out;
+        private final String[] campi;   // riusato a ogni riga
+
+        RigheCsv(ScrittoreCsv out, int colonne) {
+            this.out = out;
+            this.campi = new String[colonne];
+        }
+
+        @Override
+        public void scrivi(Object... valori) throws IOException {
+            for (int i = 0; i < valori.length; i++) {
+                campi[i] = testo(valori[i]);
+            }
+            out.scriviRiga(campi);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        private static String testo(Object v) {
+            if (v == null) return null;
+            if (v instanceof List) {
+                StringBuilder sb = new StringBuilder();
+                for (Object o : (List<?>) v) {
+                    if (sb.length() > 0) sb.append('|');
+                    sb.append(o);
+                }
+                return sb.toString();
+            }
+            return String.valueOf(v);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.io.LettoreCsv;
+import it.unisa.sgbu.io.Mutazione;
+import it.unisa.sgbu.io.ScrittoreCsv;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * @brief Schema comune delle importazioni massive da CSV (libri, utenti).
+ *
+ * Il file è letto in streaming a blocchi di righe: mentre un blocco viene validato in parallelo
+ * da un pool di thread, il successivo viene già letto. Gli elementi validi di ogni blocco sono
+ * poi applicati in un solo passaggio, nell'ordine del file, dalla sottoclasse; le righe rifiutate
+ * sono scritte nel file degli scarti con il numero di riga e il motivo.
+ * La memoria occupata dipende dalla dimensione del blocco, non da quella del file.
+ *
+ * Formato degli scarti: riga;motivo;campi originali.
+ *
+ * @param <T> Il tipo degli elementi creati dalle righe.
+ */
+public abstract class ImportatoreCsv<T> {
+
+    public static final int BLOCCO_DEFAULT = 10000;
+
+    private final String oggetto;
+    private final String primoCampoIntestazione;
+    private final int numeroThread;
+    private final int blocco;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] oggetto Cosa si importa (es. "libri"), per il riepilogo e i nomi dei thread.
+     * @param[in] primoCampoIntestazione Primo campo che identifica una riga di intestazione facoltativa.
+     * @param[in] numeroThread Thread dedicati alla validazione.
+     * @param[in] blocco Righe lette e validate per volta.
+     */
+    protected ImportatoreCsv(String oggetto, String primoCampoIntestazione, int numeroThread, int blocco) {
+        this.oggetto = oggetto;
+        this.primoCampoIntestazione = primoCampoIntestazione;
+        this.numeroThread = Math.max(1, numeroThread);
+        this.blocco = Math.max(1, blocco);
+    }
+
+
+    /**
+     * @brief Verifica il formato di una riga (invocato in parallelo: non deve modificare stato condiviso).
+     *
+     * @param[in] campi I campi della riga.
+     *
+     * @return Il motivo del rifiuto, oppure null se la riga è valida.
+     */
+    protected abstract String motivoRifiuto(List<String> campi);
+
+
+    /**
+     * @brief Crea l'elemento di una riga valida (invocato in parallelo).
+     *
+     * @param[in] campi I campi di una riga per cui motivoRifiuto() ha restituito null.
+     *
+     * @return L'elemento da applicare.
+     */
+    protected abstract T crea(List<String> campi);
+
+
+    /**
+     * @brief Applica gli elementi validi di un blocco, nell'ordine del file (invocato da un solo thread).
+     *
+     * @param[in] validi Gli elementi creati dalle righe valide del blocco.
+     * @param[in] righe Il numero di riga di ciascun elemento, per i messaggi.
+     * @param[out] modifiche Riceve una mutazione per ogni elemento applicato (nuovo o aggiornato).
+     *
+     * @return Per ogni elemento il motivo del rifiuto, oppure null se è stato applicato
+     *         o era già presente identico (invariato).
+     */
+    protected abstract String[] applica(List<T> validi, long[] righe, List<Mutazione> modifiche);
+
+
+    /** @return Cosa si importa (es. "libri"). */
+    public String getOggetto() {
+        return oggetto;
+    }
+
+
+    /**
+     * @brief Importa un file CSV.
+     *
+     * @param[in] sorgente Il testo CSV.
+     * @param[in] scarti Destinazione del rapporto delle righe rifiutate (null per non produrlo).
+     * @param[in] modifiche Riceve, blocco per blocco, le mutazioni applicate
+     *            (es. per registrarle nel giornale); può essere null.
+     *
+     * @return Il riepilogo dell'importazione.
+     *
+     * @throws IOException se la lettura o la scrittura degli scarti fallisce; i blocchi
+     *         precedenti restano applicati.
+     *
+     * @post Ogni riga di dati è stata applicata, riconosciuta invariata oppure riportata negli scarti.
+     */
+    public RiepilogoImportazione importa(Reader sorgente, Writer scarti, Consumer<List<Mutazione>> modifiche) throws IOException {
+        long inizio = System.nanoTime();
+        LettoreCsv csv = new LettoreCsv(sorgente);
+        ScrittoreCsv rapporto = (scarti == null) ? null : new ScrittoreCsv(scarti);
+        if (rapporto != null) rapporto.scriviRiga("riga", "motivo", "contenuto");
+
+        final AtomicInteger contatore = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(numeroThread, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sgbu-importazione-" + oggetto + "-" + contatore.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        long righe = 0, importate = 0, scartate = 0;
+        try {
+            Blocco corrente = leggiBlocco(csv, true);
+            while (corrente != null) {
+                List<Future<?>> validazione = corrente.valida(pool);
+                Blocco prossimo = leggiBlocco(csv, false); // lettura sovrapposta alla validazione
+                attendi(validazione);
+
+                List<Mutazione> applicate = new ArrayList<>();
+                scartate += corrente.applica(rapporto, applicate);
+                righe += corrente.dimensione;
+                importate += applicate.size();
+                if (modifiche != null && !applicate.isEmpty()) modifiche.accept(applicate);
+                corrente = prossimo;
+            }
+        } finally {
+            pool.shutdownNow();
+            if (rapporto != null) rapporto.flush();
+        }
+        return new RiepilogoImportazione(oggetto, righe, importate, scartate, System.nanoTime() - inizio);
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private Blocco leggiBlocco(LettoreCsv csv, boolean primo) throws IOException {
+        Blocco b = new Blocco(blocco);
+        List<String> campi;
+        while (b.dimensione < blocco && (campi = csv.leggiRiga()) != null) {
+            if (primo) {
+                primo = false;
+                if (campi.get(0).trim().equalsIgnoreCase(primoCampoIntestazione)) continue; // intestazione
+            }
+            b.righe.add(campi);
+            b.numeri[b.dimensione] = csv.getRiga();
+            b.dimensione++;
+        }
+        return (b.dimensione == 0) ? null : b;
+    }
+
+
+    private static void attendi(List<Future<?>> compiti) throws IOException {
+        try {
+            for (Future<?> f : compiti) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importazione interrotta", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) throw (RuntimeException) causa;
+            if (causa instanceof Error) throw (Error) causa;
+            throw new IOException(causa);
+        }
+    }
+
+
+    /**
+     * @brief Righe lette insieme e, dopo la validazione, l'elemento o il motivo del rifiuto di ciascuna.
+     *
+     * Ogni compito di validazione scrive solo nel proprio intervallo di posizioni;
+     * l'attesa dei Future rende visibili i risultati al thread che applica il blocco.
+     */
+    private final class Blocco {
+        final List<List<String>> righe;
+        final long[] numeri;
+        final Object[] elementi;
+        final String[] motivi;
+        int dimensione;
+
+        Blocco(int capacita) {
+            righe = new ArrayList<>(capacita);
+            numeri = new long[capacita];
+            elementi = new Object[capacita];
+            motivi = new String[capacita];
+        }
+
+        List<Future<?>> valida(ExecutorService pool) {
+            int parti = Math.min(numeroThread, dimensione);
+            int passo = (dimensione + parti - 1) / parti;
+            List<Future<?>> compiti = new ArrayList<>(parti);
+            for (int da = 0; da < dimensione; da += passo) {
+                final int inizio = da;
+                final int fine = Math.min(dimensione, da + passo);
+                compiti.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = inizio; i < fine; i++) {
+                            motivi[i] = motivoRifiuto(righe.get(i));
+                            if (motivi[i] == null) elementi[i] = crea(righe.get(i));
+                        }
+                    }
+                }));
+            }
+            return compiti;
+        }
+
+        // Restituisce il numero di righe scartate
+        @SuppressWarnings("unchecked")
+        int applica(ScrittoreCsv rapporto, List<Mutazione> applicate) throws IOException {
+            List<T> validi = new ArrayList<>(dimensione);
+            long[] numeriValidi = new long[dimensione];
+            for (int i = 0; i < dimensione; i++) {
+                if (elementi[i] != null) {
+                    numeriValidi[validi.size()] = numeri[i];
+                    validi.add((T) elementi[i]);
+                }
+            }
+            String[] esiti = ImportatoreCsv.this.applica(validi, numeriValidi, applicate);
+
+            int scartate = 0;
+            int k = 0;
+            for (int i = 0; i < dimensione; i++) {
+                String motivo = (elementi[i] != null) ? esiti[k++] : motivi[i];
+                if (motivo == null) continue;
+                scartate++;
+                if (rapporto != null) {
+                    List<String> riga = new ArrayList<>(righe.get(i).size() + 2);
+                    riga.add(Long.toString(numeri[i]));
+                    riga.add(motivo);
+                    riga.addAll(righe.get(i));
+                    rapporto.scriviRiga(riga);
+                }
+            }
+            return scartate;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.io.Mutazione;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief Importazione massiva di libri da CSV (es. esportazioni degli acquisti d'ateneo).
+ *
+ * I libri validi di ogni blocco sono inseriti nel Catalogo con una sola acquisizione
+ * del lock (Catalogo.aggiungiLibri()); un ISBN già presente, nel catalogo o in una
+ * riga precedente del file, è riportato negli scarti.
+ *
+ * Formato delle righe (separatore ';', intestazione facoltativa con primo campo "isbn"):
+ * isbn;titolo;autori separati da '|';anno;copie
+ *
+ * @see ImportatoreCsv
+ */
+public class ImportatoreLibri extends ImportatoreCsv<Libro> {
+
+    public static final int NUMERO_CAMPI = 5;
+
+    private final Catalogo catalogo;
+    private final ValidatoreDati valida;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] catalogo Il catalogo in cui inserire i libri.
+     * @param[in] valida Il validatore dei formati (usato in parallelo: deve essere privo di stato).
+     * @param[in] numeroThread Thread dedicati alla validazione.
+     * @param[in] blocco Righe lette e validate per volta.
+     */
+    public ImportatoreLibri(Catalogo catalogo, ValidatoreDati valida, int numeroThread, int blocco) {
+        super("libri", "isbn", numeroThread, blocco);
+        this.catalogo = catalogo;
+        this.valida = valida;
+    }
+
+
+    /**
+     * @brief Costruttore con un thread per processore e blocchi da BLOCCO_DEFAULT righe.
+     *
+     * @param[in] catalogo Il catalogo in cui inserire i libri.
+     * @param[in] valida Il validatore dei formati.
+     */
+    public ImportatoreLibri(Catalogo catalogo, ValidatoreDati valida) {
+        this(catalogo, valida, Runtime.getRuntime().availableProcessors(), BLOCCO_DEFAULT);
+    }
+
+
+    @Override
+    protected String motivoRifiuto(List<String> campi) {
+        if (campi.size() < NUMERO_CAMPI) return "Campi insufficienti (" + campi.size() + " su " + NUMERO_CAMPI + ")";
+        if (!valida.validaISBN(campi.get(0).trim())) return "ISBN non valido";
+        if (campi.get(1).trim().isEmpty()) return "Titolo mancante";
+        if (autori(campi.get(2)).isEmpty()) return "Autore mancante";
+
+        int anno;
+        try {
+            anno = Integer.parseInt(campi.get(3).trim());
+        } catch (NumberFormatException e) {
+            return "Anno non numerico";
+        }
+        if (!valida.validaAnnoPubblicazione(anno)) return "Anno di pubblicazione non valido";
+
+        try {
+            if (Integer.parseInt(campi.get(4).trim()) <= 0) return "Numero di copie non positivo";
+        } catch (NumberFormatException e) {
+            return "Numero di copie non numerico";
+        }
+        return null;
+    }
+
+
+    @Override
+    protected Libro crea(List<String> campi) {
+        return new Libro(campi.get(0).trim(), campi.get(1).trim(), autori(campi.get(2)),
+                Integer.parseInt(campi.get(3).trim()), Integer.parseInt(campi.get(4).trim()));
+    }
+
+
+    @Override
+    protected String[] applica(List<Libro> validi, long[] righe, List<Mutazione> modifiche) {
+        boolean[] inseriti = catalogo.aggiungiLibri(validi);
+        String[] esiti = new String[validi.size()];
+        for (int i = 0; i < esiti.length; i++) {
+            if (inseriti[i]) {
+                modifiche.add(Mutazione.aggiuntaLibro(validi.get(i)));
+            } else {
+                esiti[i] = "ISBN già presente";
+            }
+        }
+        return esiti;
+    }
+
+
+    private static List<String> autori(String campo) {
+        List<String> autori = new ArrayList<>(2);
+        for (String a : campo.split("\\|")) {
+            a = a.trim();
+            if (!a.isEmpty()) autori.add(a);
+        }
+        return autori;
+    }
+}
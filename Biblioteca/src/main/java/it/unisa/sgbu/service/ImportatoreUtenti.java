@@ -0,0 +1,160 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.io.Mutazione;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * @brief Importazione massiva degli utenti dal CSV delle immatricolazioni.
+ *
+ * Ogni riga inserisce un nuovo utente oppure aggiorna quello con la stessa matricola
+ * (Anagrafica.aggiornaUtenti(), un blocco per acquisizione del lock); una riga identica
+ * all'utente già registrato non produce modifiche. Sono scartate, oltre alle righe non valide:
+ * - una matricola ripetuta nel file (vale la prima occorrenza);
+ * - un'email ripetuta nel file, o già usata da un utente con un'altra matricola
+ *   (il confronto ignora maiuscole e minuscole).
+ *
+ * Per riconoscere i duplicati nel file l'importatore ricorda matricole ed email già viste: questa
+ * parte della memoria cresce con il numero di righe del file, non con la dimensione del blocco.
+ * Le email già registrate sono cercate nell'indice dell'anagrafica (Anagrafica.getUtentePerEmail()).
+ * Un'istanza esegue una sola importazione per volta.
+ *
+ * Formato delle righe (separatore ';', intestazione facoltativa con primo campo "matricola"):
+ * matricola;nome;cognome;email
+ *
+ * @see ImportatoreCsv
+ */
+public class ImportatoreUtenti extends ImportatoreCsv<Utente> {
+
+    public static final int NUMERO_CAMPI = 4;
+
+    private final Anagrafica anagrafica;
+    private final ValidatoreDati valida;
+
+    // Stato di un'importazione (usato solo dal thread che applica i blocchi)
+    private Map<String, Long> matricoleFile;     // matricola -> riga in cui compare nel file
+    private Map<String, Long> emailFile;         // email normalizzata -> riga in cui compare nel file
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] anagrafica L'anagrafica da aggiornare.
+     * @param[in] valida Il validatore dei formati (usato in parallelo: deve essere privo di stato).
+     * @param[in] numeroThread Thread dedicati alla validazione.
+     * @param[in] blocco Righe lette e validate per volta.
+     */
+    public ImportatoreUtenti(Anagrafica anagrafica, ValidatoreDati valida, int numeroThread, int blocco) {
+        super("utenti", "matricola", numeroThread, blocco);
+        this.anagrafica = anagrafica;
+        this.valida = valida;
+    }
+
+
+    /**
+     * @brief Costruttore con un thread per processore e blocchi da BLOCCO_DEFAULT righe.
+     *
+     * @param[in] anagrafica L'anagrafica da aggiornare.
+     * @param[in] valida Il validatore dei formati.
+     */
+    public ImportatoreUtenti(Anagrafica anagrafica, ValidatoreDati valida) {
+        this(anagrafica, valida, Runtime.getRuntime().availableProcessors(), BLOCCO_DEFAULT);
+    }
+
+
+    @Override
+    public synchronized RiepilogoImportazione importa(Reader sorgente, Writer scarti, Consumer<List<Mutazione>> modifiche) throws IOException {
+        matricoleFile = new HashMap<>();
+        emailFile = new HashMap<>();
+        try {
+            return super.importa(sorgente, scarti, modifiche);
+        } finally {
+            matricoleFile = null;
+            emailFile = null;
+        }
+    }
+
+
+    @Override
+    protected String motivoRifiuto(List<String> campi) {
+        if (campi.size() < NUMERO_CAMPI) return "Campi insufficienti (" + campi.size() + " su " + NUMERO_CAMPI + ")";
+        if (!valida.validaMatricola(campi.get(0).trim())) return "Matricola non valida";
+        if (!valida.validaNomeCognome(campi.get(1).trim(), campi.get(2).trim())) return "Nome o cognome non validi";
+        if (!valida.validaEmail(campi.get(3).trim())) return "Email non valida";
+        return null;
+    }
+
+
+    @Override
+    protected Utente crea(List<String> campi) {
+        return new Utente(campi.get(0).trim(), campi.get(1).trim(), campi.get(2).trim(), campi.get(3).trim());
+    }
+
+
+    @Override
+    protected String[] applica(List<Utente> validi, long[] righe, List<Mutazione> modifiche) {
+        String[] esiti = new String[validi.size()];
+        List<Utente> candidati = new ArrayList<>(validi.size());
+        int[] posizioni = new int[validi.size()];   // posizione in validi di ogni candidato
+
+        for (int i = 0; i < esiti.length; i++) {
+            Utente u = validi.get(i);
+            String email = normalizza(u.getEmail());
+            Long rigaMatricola = matricoleFile.get(u.getMatricola());
+            Long rigaEmail = emailFile.get(email);
+            Utente titolare = anagrafica.getUtentePerEmail(email);
+
+            if (rigaMatricola != null) {
+                esiti[i] = "Matricola ripetuta (riga " + rigaMatricola + ")";
+            } else if (rigaEmail != null) {
+                esiti[i] = "Email ripetuta (riga " + rigaEmail + ")";
+            } else if (titolare != null && !titolare.getMatricola().equals(u.getMatricola())) {
+                esiti[i] = "Email già usata dalla matricola " + titolare.getMatricola();
+            } else {
+                matricoleFile.put(u.getMatricola(), righe[i]);
+                emailFile.put(email, righe[i]);
+                posizioni[candidati.size()] = i;
+                candidati.add(u);
+            }
+        }
+
+        Anagrafica.Aggiornamento[] risultati = anagrafica.aggiornaUtenti(candidati);
+        for (int k = 0; k < risultati.length; k++) {
+            Utente u = candidati.get(k);
+            switch (risultati[k]) {
+                case INSERITO:
+                    modifiche.add(Mutazione.aggiuntaUtente(u));
+                    break;
+                case AGGIORNATO:
+                    modifiche.add(Mutazione.modificaUtente(u.getMatricola(), u));
+                    break;
+                case EMAIL_IN_USO:
+                    // Registrata nel frattempo da un'altra postazione
+                    esiti[posizioni[k]] = "Email già usata da un altro utente";
+                    break;
+                default:
+                    break; // invariato: nessuna modifica, nessuno scarto
+            }
+        }
+        return esiti;
+    }
+
+
+    private static String normalizza(String email) {
+        return (email == null) ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @brief Indice invertito a trigrammi per la ricerca per sottostringa nel Catalogo.
+ *
+ * Per ogni campo (titolo, autori, ISBN) l'indice associa a ciascun trigramma
+ * (sequenza di 3 caratteri consecutivi) la lista ordinata dei libri che lo contengono.
+ * Una query di almeno 3 caratteri viene risolta intersecando le liste dei suoi trigrammi
+ * e verificando con contains() i soli candidati rimasti; le query più corte scorrono
+ * i testi già normalizzati, senza allocazioni per libro.
+ *
+ * La semantica è quella della ricerca lineare di Catalogo: titolo e autori sono
+ * confrontati in minuscolo sull'intera stringa (spazi compresi, così una query può
+ * attraversare più parole), l'ISBN così com'è.
+ *
+ * L'indice è aggiornato in modo incrementale da aggiungi() e rimuovi().
+ * I risultati sono restituiti nell'ordine di inserimento.
+ */
+public class IndiceNGrammi {
+
+    /**
+     * @brief Campi interrogabili.
+     */
+    public enum Campo { TITOLO, AUTORE, ISBN }
+
+    private static final int N = 3;
+    private static final String[] NESSUN_AUTORE = new String[0];
+
+    // Tabella dei documenti: l'id è la posizione, crescente con l'inserimento
+    private Libro[] libri = new Libro[16];
+    private String[] titoli = new String[16];     // titoli in minuscolo
+    private String[][] autori = new String[16][]; // autori in minuscolo
+    private int prossimoId;
+    private int presenti;
+    private final Map<String, Integer> idPerIsbn = new HashMap<>();
+
+    // Liste dei documenti per trigramma, una tabella per campo
+    private final TabellaPosting postingTitolo = new TabellaPosting();
+    private final TabellaPosting postingAutore = new TabellaPosting();
+    private final TabellaPosting postingIsbn = new TabellaPosting();
+
+
+    /**
+     * @brief Indicizza un libro.
+     *
+     * @param[in] l Il libro da aggiungere; se il suo ISBN è già presente, la voce precedente è sostituita.
+     */
+    public void aggiungi(Libro l) {
+        if (l == null || l.getISBN() == null) return;
+        rimuovi(l.getISBN());
+
+        if (prossimoId == libri.length) {
+            if (presenti < libri.length / 2) {
+                compatta();
+            } else {
+                int capacita = libri.length * 2;
+                libri = Arrays.copyOf(libri, capacita);
+                titoli = Arrays.copyOf(titoli, capacita);
+                autori = Arrays.copyOf(autori, capacita);
+            }
+        }
+
+        int id = prossimoId++;
+        libri[id] = l;
+        titoli[id] = normalizza(l.getTitolo());
+        autori[id] = normalizzaAutori(l.getAutore());
+        idPerIsbn.put(l.getISBN(), id);
+        presenti++;
+
+        indicizza(id, true);
+    }
+
+
+    /**
+     * @brief Rimuove un libro dall'indice.
+     *
+     * @param[in] isbn L'ISBN del libro da rimuovere.
+     *
+     * @return true se il libro era indicizzato.
+     */
+    public boolean rimuovi(String isbn) {
+        Integer id = idPerIsbn.remove(isbn);
+        if (id == null) return false;
+
+        indicizza(id, false);
+        libri[id] = null;
+        titoli[id] = null;
+        autori[id] = null;
+        presenti--;
+        return true;
+    }
+
+
+    /**
+     * @brief Cerca i libri il cui campo contiene la stringa indicata.
+     *
+     * @param[in] query La sottostringa da cercare (senza distinzione maiuscole/minuscole per titolo e autore).
+     * @param[in] campo Il campo su cui cercare.
+     *
+     * @return I libri corrispondenti, nell'ordine di inserimento.
+     */
+    public List<Libro> cerca(String query, Campo campo) {
+        List<Libro> risultati = new ArrayList<>();
+        if (query == null || campo == null) return risultati;
+
+        String q = (campo == Campo.ISBN) ? query : query.toLowerCase();
+
+        if (q.length() < N) {
+            for (int id = 0; id < prossimoId; id++) {
+                if (libri[id] != null && corrisponde(id, q, campo)) {
+                    risultati.add(libri[id]);
+                }
+            }
+            return risultati;
+        }
+
+        TabellaPosting posting = postingPer(campo);
+        long[] trigrammi = trigrammiDistinti(q);
+        ListaId[] liste = new ListaId[trigrammi.length];
+        for (int i = 0; i < trigrammi.length; i++) {
+            liste[i] = posting.get(trigrammi[i]);
+            if (liste[i] == null) return risultati; // un trigramma assente: nessun risultato
+        }
+
+        // Parto dalla lista più corta e verifico l'appartenenza alle altre
+        int piuCorta = 0;
+        for (int i = 1; i < liste.length; i++) {
+            if (liste[i].dimensione < liste[piuCorta].dimensione) piuCorta = i;
+        }
+
+        ListaId base = liste[piuCorta];
+        for (int k = 0; k < base.dimensione; k++) {
+            int id = base.id[k];
+            boolean inTutte = true;
+            for (int i = 0; i < liste.length && inTutte; i++) {
+                if (i != piuCorta && !liste[i].contiene(id)) inTutte = false;
+            }
+            // I trigrammi sono condizione necessaria: la verifica finale conferma la sottostringa
+            if (inTutte && corrisponde(id, q, campo)) {
+                risultati.add(libri[id]);
+            }
+        }
+        return risultati;
+    }
+
+
+    /**
+     * @brief Restituisce il numero di libri indicizzati.
+     * @return Il numero di libri presenti.
+     */
+    public int dimensione() {
+        return presenti;
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private boolean corrisponde(int id, String q, Campo campo) {
+        switch (campo) {
+            case TITOLO:
+                return titoli[id].contains(q);
+            case ISBN:
+                return libri[id].getISBN().contains(q);
+            default:
+                for (String a : autori[id]) {
+                    if (a.contains(q)) return true;
+                }
+                return false;
+        }
+    }
+
+
+    private TabellaPosting postingPer(Campo campo) {
+        switch (campo) {
+            case TITOLO:
+                return postingTitolo;
+            case ISBN:
+                return postingIsbn;
+            default:
+                return postingAutore;
+        }
+    }
+
+
+    // Aggiunge (o toglie) l'id dalle liste di tutti i trigrammi del documento
+    private void indicizza(int id, boolean aggiungi) {
+        aggiorna(postingTitolo, trigrammiDistinti(titoli[id]), id, aggiungi);
+        aggiorna(postingIsbn, trigrammiDistinti(libri[id].getISBN()), id, aggiungi);
+        aggiorna(postingAutore, trigrammiDistinti(autori[id]), id, aggiungi);
+    }
+
+
+    private static void aggiorna(TabellaPosting posting, long[] trigrammi, int id, boolean aggiungi) {
+        for (long t : trigrammi) {
+            if (aggiungi) {
+                posting.getOCrea(t).aggiungi(id);
+                continue;
+            }
+            ListaId lista = posting.get(t);
+            if (lista != null) {
+                lista.rimuovi(id);
+                if (lista.dimensione == 0) posting.remove(t);
+            }
+        }
+    }
+
+
+    // Riassegna gli id in modo contiguo quando la tabella è piena di buchi
+    private void compatta() {
+        Libro[] vecchi = Arrays.copyOf(libri, prossimoId);
+        int n = prossimoId;
+
+        libri = new Libro[libri.length];
+        titoli = new String[libri.length];
+        autori = new String[libri.length][];
+        prossimoId = 0;
+        presenti = 0;
+        idPerIsbn.clear();
+        postingTitolo.clear();
+        postingAutore.clear();
+        postingIsbn.clear();
+
+        for (int i = 0; i < n; i++) {
+            if (vecchi[i] != null) aggiungi(vecchi[i]);
+        }
+    }
+
+
+    private static String normalizza(String s) {
+        return (s == null) ? "" : s.toLowerCase();
+    }
+
+
+    private static String[] normalizzaAutori(List<String> lista) {
+        if (lista == null || lista.isEmpty()) return NESSUN_AUTORE;
+        String[] a = new String[lista.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = normalizza(lista.get(i));
+        }
+        return a;
+    }
+
+
+    private static long[] trigrammiDistinti(String... testi) {
+        int totale = 0;
+        for (String s : testi) {
+            if (s != null && s.length() >= N) totale += s.length() - N + 1;
+        }
+        long[] t = new long[totale];
+        int k = 0;
+        for (String s : testi) {
+            if (s == null) continue;
+            for (int i = 0; i + N <= s.length(); i++) {
+                t[k++] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+            }
+        }
+
+        // Ordino ed elimino i duplicati sul posto
+        Arrays.sort(t);
+        int distinti = 0;
+        for (int i = 0; i < t.length; i++) {
+            if (i == 0 || t[i] != t[i - 1]) t[distinti++] = t[i];
+        }
+        return (distinti == t.length) ? t : Arrays.copyOf(t, distinti);
+    }
+
+
+    /**
+     * Mappa trigramma -> lista di id a indirizzamento aperto (scansione lineare),
+     * con chiavi primitive per evitare un Long per ogni trigramma. Una cella è libera
+     * quando la sua lista è null.
+     */
+    private static final class TabellaPosting {
+        long[] chiavi = new long[1024];
+        ListaId[] liste = new ListaId[1024];
+        int dimensione;
+
+        ListaId get(long chiave) {
+            int maschera = chiavi.length - 1;
+            for (int i = hash(chiave) & maschera; ; i = (i + 1) & maschera) {
+                if (chiavi[i] == chiave && liste[i] != null) return liste[i];
+                if (liste[i] == null) return null;
+            }
+        }
+
+        ListaId getOCrea(long chiave) {
+            int maschera = chiavi.length - 1;
+            int i = hash(chiave) & maschera;
+            while (liste[i] != null) {
+                if (chiavi[i] == chiave) return liste[i];
+                i = (i + 1) & maschera;
+            }
+            ListaId nuova = new ListaId();
+            chiavi[i] = chiave;
+            liste[i] = nuova;
+            if (++dimensione * 4 > chiavi.length * 3) raddoppia();
+            return nuova;
+        }
+
+        void remove(long chiave) {
+            int maschera = chiavi.length - 1;
+            int i = hash(chiave) & maschera;
+            while (liste[i] != null && chiavi[i] != chiave) i = (i + 1) & maschera;
+            if (liste[i] == null) return;
+
+            // Cancellazione con spostamento all'indietro: nessuna lapide
+            liste[i] = null;
+            dimensione--;
+            for (int j = (i + 1) & maschera; liste[j] != null; j = (j + 1) & maschera) {
+                int ideale = hash(chiavi[j]) & maschera;
+                boolean daSpostare = (i <= j) ? (ideale <= i || ideale > j) : (ideale <= i && ideale > j);
+                if (daSpostare) {
+                    chiavi[i] = chiavi[j];
+                    liste[i] = liste[j];
+                    liste[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(liste, null);
+            dimensione = 0;
+        }
+
+        private void raddoppia() {
+            long[] vecchieChiavi = chiavi;
+            ListaId[] vecchieListe = liste;
+            chiavi = new long[vecchieChiavi.length * 2];
+            liste = new ListaId[vecchieListe.length * 2];
+            int maschera = chiavi.length - 1;
+            for (int k = 0; k < vecchieChiavi.length; k++) {
+                if (vecchieListe[k] == null) continue;
+                int i = hash(vecchieChiavi[k]) & maschera;
+                while (liste[i] != null) i = (i + 1) & maschera;
+                chiavi[i] = vecchieChiavi[k];
+                liste[i] = vecchieListe[k];
+            }
+        }
+
+        private static int hash(long chiave) {
+            long h = chiave * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+
+    /**
+     * Lista ordinata di id. Gli inserimenti avvengono in coda (gli id sono crescenti),
+     * le rimozioni con ricerca binaria.
+     */
+    private static final class ListaId {
+        int[] id = new int[4];
+        int dimensione;
+
+        void aggiungi(int x) {
+            if (dimensione == id.length) id = Arrays.copyOf(id, dimensione * 2);
+            id[dimensione++] = x;
+        }
+
+        void rimuovi(int x) {
+            int pos = Arrays.binarySearch(id, 0, dimensione, x);
+            if (pos < 0) return;
+            System.arraycopy(id, pos + 1, id, pos, dimensione - pos - 1);
+            dimensione--;
+        }
+
+        boolean contiene(int x) {
+            return Arrays.binarySearch(id, 0, dimensione, x) >= 0;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+/**
+ * @brief Mappa hash con chiavi int primitive (senza boxing in Integer).
+ *
+ * Indirizzamento aperto con scansione lineare: chiavi e valori sono in due array
+ * paralleli, quindi una ricerca non alloca nulla e tocca in media una o due celle.
+ * La rimozione sposta all'indietro gli elementi successivi del gruppo, senza lasciare
+ * marcatori di cancellazione. La tabella raddoppia oltre il 50% di riempimento.
+ *
+ * Non è sincronizzata.
+ */
+public class MappaInteri<V> {
+
+    private static final int CAPACITA_MINIMA = 16;
+
+    private int[] chiavi;
+    private Object[] valori;   // null = cella libera
+    private int dimensione;
+    private int maschera;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] attesi Numero di elementi previsto (evita ridimensionamenti iniziali).
+     */
+    public MappaInteri(int attesi) {
+        int capacita = CAPACITA_MINIMA;
+        while (capacita < attesi * 2L && capacita < (1 << 30)) {
+            capacita <<= 1;
+        }
+        alloca(capacita);
+    }
+
+
+    /**
+     * @brief Costruttore con capacità predefinita.
+     */
+    public MappaInteri() {
+        this(0);
+    }
+
+
+    /**
+     * @brief Restituisce il valore associato a una chiave.
+     *
+     * @param[in] chiave La chiave.
+     *
+     * @return Il valore, oppure null se la chiave non è presente.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int chiave) {
+        for (int i = cella(chiave); valori[i] != null; i = (i + 1) & maschera) {
+            if (chiavi[i] == chiave) return (V) valori[i];
+        }
+        return null;
+    }
+
+
+    /**
+     * @brief Associa un valore a una chiave, sostituendo l'eventuale valore precedente.
+     *
+     * @param[in] chiave La chiave.
+     * @param[in] valore Il valore (non null).
+     *
+     * @return Il valore precedente, oppure null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int chiave, V valore) {
+        if (valore == null) throw new IllegalArgumentException("Valore null non ammesso");
+
+        int i = cella(chiave);
+        for (; valori[i] != null; i = (i + 1) & maschera) {
+            if (chiavi[i] == chiave) {
+                V precedente = (V) valori[i];
+                valori[i] = valore;
+                return precedente;
+            }
+        }
+        chiavi[i] = chiave;
+        valori[i] = valore;
+        if (++dimensione * 2 > chiavi.length) {
+            ridimensiona(chiavi.length << 1);
+        }
+        return null;
+    }
+
+
+    /**
+     * @brief Rimuove una chiave.
+     *
+     * @param[in] chiave La chiave.
+     *
+     * @return Il valore rimosso, oppure null se la chiave non era presente.
+     */
+    @SuppressWarnings("unchecked")
+    public V rimuovi(int chiave) {
+        int i = cella(chiave);
+        while (valori[i] != null && chiavi[i] != chiave) {
+            i = (i + 1) & maschera;
+        }
+        if (valori[i] == null) return null;
+
+        V rimosso = (V) valori[i];
+        // Spostamento all'indietro: gli elementi del gruppo restano raggiungibili
+        int libero = i;
+        for (int j = (i + 1) & maschera; valori[j] != null; j = (j + 1) & maschera) {
+            int ideale = cella(chiavi[j]);
+            if (((j - ideale) & maschera) >= ((j - libero) & maschera)) {
+                chiavi[libero] = chiavi[j];
+                valori[libero] = valori[j];
+                libero = j;
+            }
+        }
+        valori[libero] = null;
+        dimensione--;
+        return rimosso;
+    }
+
+
+    /**
+     * @brief Restituisce il numero di chiavi presenti.
+     * @return La dimensione della mappa.
+     */
+    public int dimensione() {
+        return dimensione;
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    private int cella(int chiave) {
+        int h = chiave * 0x9E3779B9;   // dispersione di Fibonacci: ID consecutivi non formano gruppi
+        return (h ^ (h >>> 16)) & maschera;
+    }
+
+
+    private void alloca(int capacita) {
+        chiavi = new int[capacita];
+        valori = new Object[capacita];
+        maschera = capacita - 1;
+    }
+
+
+    private void ridimensiona(int capacita) {
+        int[] vecchieChiavi = chiavi;
+        Object[] vecchiValori = valori;
+        alloca(capacita);
+        for (int k = 0; k < vecchieChiavi.length; k++) {
+            if (vecchiValori[k] == null) continue;
+            int i = cella(vecchieChiavi[k]);
+            while (valori[i] != null) {
+                i = (i + 1) & maschera;
+            }
+            chiavi[i] = vecchieChiavi[k];
+            valori[i] = vecchiValori[k];
+        }
+    }
+}
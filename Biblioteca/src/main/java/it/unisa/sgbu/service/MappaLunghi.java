@@ -0,0 +1,250 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @brief Mappa hash con chiavi long primitive, leggibile da più thread senza lock.
+ *
+ * Indirizzamento aperto con scansione lineare, come MappaInteri: una cella costa una chiave
+ * long e un riferimento, senza nodi né chiavi oggetto. A differenza di MappaInteri le letture
+ * (get() e l'iterazione) possono avvenire in concorrenza con uno scrittore:
+ * - ogni valore è pubblicato dopo la sua chiave (scrittura volatile della cella);
+ * - una cella non cambia mai chiave: la rimozione lascia un marcatore, riusato solo dalla
+ *   stessa chiave, e i marcatori spariscono quando la tabella viene ricostruita;
+ * - la ricostruzione prepara una nuova tabella e la pubblica con un'unica scrittura volatile.
+ *
+ * Le scritture (put(), putSeAssente(), rimuovi()) vanno serializzate dal chiamante.
+ * La tabella cresce oltre i 2/3 di celle occupate (valori o marcatori).
+ */
+public class MappaLunghi<V> implements Iterable<V> {
+
+    private static final int CAPACITA_MINIMA = 16;
+    private static final Object RIMOSSO = new Object();
+
+    private static final class Tabella {
+        final long[] chiavi;
+        final AtomicReferenceArray<Object> valori;   // null = cella mai usata
+        final int maschera;
+
+        Tabella(int capacita) {
+            chiavi = new long[capacita];
+            valori = new AtomicReferenceArray<>(capacita);
+            maschera = capacita - 1;
+        }
+    }
+
+    private volatile Tabella tabella;
+    private volatile int dimensione;
+    private int occupate;   // celle con un valore o un marcatore
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] attesi Numero di elementi previsto (evita ridimensionamenti iniziali).
+     */
+    public MappaLunghi(int attesi) {
+        tabella = new Tabella(capacitaPer(attesi));
+    }
+
+
+    /**
+     * @brief Costruttore con capacità predefinita.
+     */
+    public MappaLunghi() {
+        this(0);
+    }
+
+
+    /**
+     * @brief Restituisce il valore associato a una chiave.
+     *
+     * @param[in] chiave La chiave.
+     *
+     * @return Il valore, oppure null se la chiave non è presente.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long chiave) {
+        Tabella t = tabella;
+        for (int i = cella(chiave, t.maschera); ; i = (i + 1) & t.maschera) {
+            Object v = t.valori.get(i);
+            if (v == null) return null;
+            if (t.chiavi[i] == chiave) return (v == RIMOSSO) ? null : (V) v;
+        }
+    }
+
+
+    /**
+     * @brief Associa un valore a una chiave, sostituendo l'eventuale valore precedente.
+     *
+     * @param[in] chiave La chiave.
+     * @param[in] valore Il valore (non null).
+     *
+     * @return Il valore precedente, oppure null.
+     */
+    public V put(long chiave, V valore) {
+        return inserisci(chiave, valore, true);
+    }
+
+
+    /**
+     * @brief Associa un valore a una chiave solo se questa non è presente.
+     *
+     * @param[in] chiave La chiave.
+     * @param[in] valore Il valore (non null).
+     *
+     * @return Il valore già presente (la mappa non cambia), oppure null se il valore è stato inserito.
+     */
+    public V putSeAssente(long chiave, V valore) {
+        return inserisci(chiave, valore, false);
+    }
+
+
+    /**
+     * @brief Rimuove una chiave.
+     *
+     * @param[in] chiave La chiave.
+     *
+     * @return Il valore rimosso, oppure null se la chiave non era presente.
+     */
+    @SuppressWarnings("unchecked")
+    public V rimuovi(long chiave) {
+        Tabella t = tabella;
+        for (int i = cella(chiave, t.maschera); ; i = (i + 1) & t.maschera) {
+            Object v = t.valori.get(i);
+            if (v == null) return null;
+            if (t.chiavi[i] == chiave) {
+                if (v == RIMOSSO) return null;
+                t.valori.set(i, RIMOSSO);
+                dimensione--;
+                return (V) v;
+            }
+        }
+    }
+
+
+    /**
+     * @brief Restituisce il numero di chiavi presenti.
+     * @return La dimensione della mappa.
+     */
+    public int dimensione() {
+        return dimensione;
+    }
+
+
+    /**
+     * @brief Scorre i valori senza copiarli.
+     *
+     * L'iterazione è debolmente consistente: vede la tabella del momento in cui inizia,
+     * e può includere o no le modifiche concorrenti. Non supporta remove().
+     *
+     * @return Un iteratore sui valori, in ordine non specificato.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        final Tabella t = tabella;
+        return new Iterator<V>() {
+            private int i = -1;
+            private Object prossimo = avanza();
+
+            private Object avanza() {
+                while (++i < t.chiavi.length) {
+                    Object v = t.valori.get(i);
+                    if (v != null && v != RIMOSSO) return v;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return prossimo != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (prossimo == null) throw new NoSuchElementException();
+                Object v = prossimo;
+                prossimo = avanza();
+                return (V) v;
+            }
+        };
+    }
+
+
+    // --- IMPLEMENTAZIONE ---
+
+    @SuppressWarnings("unchecked")
+    private V inserisci(long chiave, V valore, boolean sostituisci) {
+        if (valore == null) throw new IllegalArgumentException("Valore null non ammesso");
+
+        Tabella t = tabella;
+        int i = cella(chiave, t.maschera);
+        for (Object v; (v = t.valori.get(i)) != null; i = (i + 1) & t.maschera) {
+            if (t.chiavi[i] != chiave) continue;
+            if (v == RIMOSSO) {
+                t.valori.set(i, valore);   // stessa chiave: la cella può tornare in uso
+                dimensione++;
+                return null;
+            }
+            if (sostituisci) t.valori.set(i, valore);
+            return (V) v;
+        }
+
+        if ((occupate + 1) * 3L > t.chiavi.length * 2L) {
+            t = ricostruisci(dimensione + 1);
+            i = cella(chiave, t.maschera);
+            while (t.valori.get(i) != null) {
+                i = (i + 1) & t.maschera;
+            }
+        }
+        t.chiavi[i] = chiave;
+        t.valori.set(i, valore);   // pubblica la chiave insieme al valore
+        occupate++;
+        dimensione++;
+        return null;
+    }
+
+
+    // Copia i soli valori presenti in una tabella nuova, poi la pubblica
+    private Tabella ricostruisci(int attesi) {
+        Tabella vecchia = tabella;
+        Tabella nuova = new Tabella(capacitaPer(Math.max(attesi, 1) * 3 / 2));
+        for (int k = 0; k < vecchia.chiavi.length; k++) {
+            Object v = vecchia.valori.get(k);
+            if (v == null || v == RIMOSSO) continue;
+            int i = cella(vecchia.chiavi[k], nuova.maschera);
+            while (nuova.valori.get(i) != null) {
+                i = (i + 1) & nuova.maschera;
+            }
+            nuova.chiavi[i] = vecchia.chiavi[k];
+            nuova.valori.lazySet(i, v);
+        }
+        occupate = dimensione;
+        tabella = nuova;
+        return nuova;
+    }
+
+
+    // Capacità (potenza di 2) che tiene "attesi" elementi sotto i 2/3 di riempimento
+    private static int capacitaPer(int attesi) {
+        int capacita = CAPACITA_MINIMA;
+        while (capacita * 2L < attesi * 3L && capacita < (1 << 30)) {
+            capacita <<= 1;
+        }
+        return capacita;
+    }
+
+
+    private static int cella(long chiave, int maschera) {
+        long h = chiave * 0x9E3779B97F4A7C15L;   // dispersione di Fibonacci: ISBN vicini non formano gruppi
+        return (int) (h ^ (h >>> 32)) & maschera;
+    }
+}
@@ -6,24 +6,101 @@
 package it.unisa.sgbu.service;
 
 import it.unisa.sgbu.domain.*;
+import it.unisa.sgbu.io.StoricoPrestiti;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @brief Gestore centrale delle operazioni di prestito e restituzione.
  * * Questa classe implementa la logica per la "Gestione prestiti" e coordina
  * i flussi operativi principali descritti nei relativi Business Flow.
+ * 
+ * In memoria (e nello snapshot "prestiti.dat") restano solo i prestiti in corso.
+ * Con uno StoricoPrestiti collegato, ogni prestito restituito viene spostato
+ * nello storico su disco; senza storico i prestiti chiusi restano nel registro.
+ * 
+ * Il registro può servire più postazioni contemporaneamente. Prestiti e restituzioni
+ * dello stesso utente sono serializzati da un lock a strisce per matricola (utenti diversi
+ * procedono in parallelo), le copie del libro sono prelevate con compare-and-set
+ * (Libro.riservaCopia()) e gli indici condivisi sono aggiornati sotto un lock di scrittura
+ * breve; le letture si condividono il lock di lettura.
+ * Ordine dei lock: striscia, poi stato (mai il contrario).
  */
 public class RegistroPrestiti implements Serializable {
     
-    private List<Prestito> prestitiAttivi;
-    private final int LimitePrestiti = 3;
+    private static final long serialVersionUID = 329135961283966685L;
+    
+    // Forma salvata invariata rispetto alle versioni precedenti (prestitiAttivi come lista)
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("prestitiAttivi", List.class),
+        new ObjectStreamField("LimitePrestiti", int.class),
+        new ObjectStreamField("prestitiChiusi", List.class),
+        new ObjectStreamField("chiusure", long.class),
+        new ObjectStreamField("prossimoId", int.class)
+    };
+    
+    // Prestiti in corso per ID, in ordine di inserimento: la restituzione li toglie in tempo costante
+    private transient Map<Integer, Prestito> prestitiAttivi;
+    private static final int LimitePrestiti = 3;
+    
+    // Prestiti chiusi non ancora spostati nello storico, in ordine di chiusura.
+    // Null nei registri salvati dalle versioni precedenti (vedi readObject()).
+    private List<Prestito> prestitiChiusi;
+    
+    // Numero di chiusure registrate da sempre: la chiusura n-esima ha sequenza n nello storico
+    private long chiusure;
+    
+    // Prossimo ID da assegnare: cresce sempre, anche se lo storico venisse compattato.
+    // Vale 0 nei registri salvati dalle versioni precedenti (ricalcolato da sequenza()).
+    private int prossimoId;
+    
+    // Indice ID -> prestito, ricostruito alla prima ricerca dopo il caricamento
+    private transient volatile MappaInteri<Prestito> perId;
+    
+    // Prestiti in corso ordinati per scadenza, ricostruiti al primo utilizzo dopo il caricamento
+    private transient volatile AlberoOrdinato<Prestito> perScadenza;
+    
+    // Prestiti in corso per ISBN e per matricola (pochi per chiave: copie del libro, limite dell'utente)
+    private transient volatile Map<String, List<Prestito>> perIsbn;
+    private transient volatile Map<String, List<Prestito>> perMatricola;
+    
+    // Concorrenza: stato = liste, indici e contatori; strisce = un lock per gruppo di matricole
+    private static final int STRISCE = 64;
+    private transient ReentrantReadWriteLock stato;
+    private transient ReentrantLock[] strisce;
+    private transient Object archiviazione;   // una sola archiviazione alla volta
+    
+    // Ordine per data prevista di restituzione (le date mancanti in fondo), a parità l'ID
+    private static final Comparator<Prestito> ORDINE_SCADENZA = new Comparator<Prestito>() {
+        @Override
+        public int compare(Prestito p1, Prestito p2) {
+            LocalDate d1 = p1.getDataPrevistaRestituzione();
+            LocalDate d2 = p2.getDataPrevistaRestituzione();
+            if (d1 != d2) {
+                if (d1 == null) return 1;
+                if (d2 == null) return -1;
+                int res = d1.compareTo(d2);
+                if (res != 0) return res;
+            }
+            return Integer.compare(p1.getIdPrestito(), p2.getIdPrestito());
+        }
+    };
     
     // TRANSIENT: Non vengono salvati nel file dei prestiti per evitare duplicati.
     // Verranno reimpostati (iniettati) dal Controller all'avvio.
     private transient Catalogo catalogo;
     private transient Anagrafica anagrafica;
+    private transient StoricoPrestiti storico;
     
     
     /**
@@ -32,7 +109,58 @@ public class RegistroPrestiti implements Serializable {
     public RegistroPrestiti(Catalogo catalogo, Anagrafica anagrafica){
         this.catalogo = catalogo;
         this.anagrafica = anagrafica;
-        this.prestitiAttivi = new ArrayList<>();
+        this.prestitiAttivi = new LinkedHashMap<>();
+        this.prestitiChiusi = new ArrayList<>();
+        inizializzaConcorrenza();
+    }
+    
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campi = out.putFields();
+        stato.readLock().lock();
+        try {
+            campi.put("prestitiAttivi", new ArrayList<>(prestitiAttivi.values()));
+            campi.put("LimitePrestiti", LimitePrestiti);
+            campi.put("prestitiChiusi", new ArrayList<>(prestitiChiusi));
+            campi.put("chiusure", chiusure);
+            campi.put("prossimoId", prossimoId);
+        } finally {
+            stato.readLock().unlock();
+        }
+        out.writeFields();
+    }
+    
+    
+    // Le versioni precedenti tenevano anche i prestiti chiusi in prestitiAttivi
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campi = in.readFields();
+        inizializzaConcorrenza();
+        prestitiAttivi = new LinkedHashMap<>();
+        prestitiChiusi = new ArrayList<>();
+        chiusure = campi.get("chiusure", 0L);
+        prossimoId = campi.get("prossimoId", 0);
+        List<?> chiusi = (List<?>) campi.get("prestitiChiusi", null);
+        if (chiusi != null) {
+            for (Object p : chiusi) {
+                prestitiChiusi.add((Prestito) p);
+            }
+        }
+        List<?> letti = (List<?>) campi.get("prestitiAttivi", null);
+        if (letti != null) {
+            for (Object p : letti) {
+                importaPrestito((Prestito) p);
+            }
+        }
+    }
+
+    // I lock sono transient: vanno creati sia dal costruttore sia dopo la deserializzazione
+    private void inizializzaConcorrenza() {
+        stato = new ReentrantReadWriteLock();
+        strisce = new ReentrantLock[STRISCE];
+        for (int i = 0; i < STRISCE; i++) {
+            strisce[i] = new ReentrantLock();
+        }
+        archiviazione = new Object();
     }
 
     public void setCatalogo(Catalogo catalogo) {
@@ -44,6 +172,20 @@ public class RegistroPrestiti implements Serializable {
     }
     
     
+    /**
+     * @brief Collega lo storico su disco in cui spostare i prestiti restituiti.
+     * 
+     * Lo storico è transient come Catalogo e Anagrafica: va reimpostato dopo ogni caricamento.
+     * I prestiti chiusi già presenti vengono spostati alla prima restituzione
+     * o con archiviaChiusi().
+     * 
+     * @param[in] storico Lo storico dei prestiti (null per tenere i prestiti chiusi in memoria).
+     */
+    public void setStorico(StoricoPrestiti storico) {
+        this.storico = storico;
+    }
+    
+    
     /**
      * @brief Esegue la registrazione di un nuovo prestito.
      */
@@ -63,23 +205,70 @@ public class RegistroPrestiti implements Serializable {
             return null;
         }
         
-        // Verifica Vincoli
-        if (!libro.isDisponibile()) {
-            return null; 
+        // Verifica Vincoli: limite e copia sono verificati e presi senza che un'altra
+        // postazione possa inserirsi fra il controllo e l'aggiornamento
+        ReentrantLock striscia = striscia(matr);
+        striscia.lock();
+        try {
+            if (!utente.verificaLimite()) {
+                return null;
+            }
+            
+            if (!libro.riservaCopia()) {
+                return null; 
+            }
+            
+            // Creazione Prestito
+            int nuovoId = sequenza(); // Generazione ID
+            return creaPrestito(nuovoId, libro, utente, LocalDate.now(), dataPrev);
+        } finally {
+            striscia.unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Ripristina un prestito già registrato in precedenza (riesecuzione del giornale).
+     * 
+     * A differenza di registraPrestito() conserva l'ID e la data di inizio originali.
+     * Se un prestito con lo stesso ID è già presente l'operazione viene ignorata.
+     * 
+     * @return Il prestito ripristinato, oppure null se libro/utente non esistono o l'ID è già presente.
+     */
+    public Prestito ripristinaPrestito(int idPrestito, String isbn, String matr, LocalDate dataInizio, LocalDate dataPrev){
+        if (catalogo == null || anagrafica == null || trovaPrestito(idPrestito) != null) {
+            return null;
         }
         
-        if (!utente.verificaLimite()) {
+        Libro libro = catalogo.getLibro(isbn);
+        Utente utente = anagrafica.getUtente(matr);
+        if (libro == null || utente == null) {
             return null;
         }
         
-        // Creazione Prestito
-        int nuovoId = prestitiAttivi.size() + 1; // Generazione ID
-        Prestito nuovoPrestito = new Prestito(nuovoId, libro, utente, LocalDate.now(), dataPrev);
+        ReentrantLock striscia = striscia(matr);
+        striscia.lock();
+        try {
+            libro.decrementaDisponibilità();
+            return creaPrestito(idPrestito, libro, utente, dataInizio, dataPrev);
+        } finally {
+            striscia.unlock();
+        }
+    }
+    
+    
+    // La copia del libro è già stata prelevata dal chiamante, che tiene la striscia dell'utente
+    private Prestito creaPrestito(int id, Libro libro, Utente utente, LocalDate dataInizio, LocalDate dataPrev){
+        Prestito nuovoPrestito = new Prestito(id, libro, utente, dataInizio, dataPrev);
         
         // Aggiornamento Stato
-        libro.decrementaDisponibilità();        
         utente.aggiungiPrestito(nuovoPrestito);    
-        this.prestitiAttivi.add(nuovoPrestito); 
+        stato.writeLock().lock();
+        try {
+            indicizza(nuovoPrestito);
+        } finally {
+            stato.writeLock().unlock();
+        }
         
         return nuovoPrestito;
     }
@@ -91,55 +280,336 @@ public class RegistroPrestiti implements Serializable {
     public boolean registraRestituzione(int idPrestito, LocalDate dataEff){
         
         Prestito prestito = trovaPrestito(idPrestito);
-        
-        if (prestito == null) {
+        if (prestito == null || dataEff == null) {
             return false;
         }
         
-        
-        Libro libroNelPrestito = prestito.getLibro();
-        
-       
-        Libro libroRealeNelCatalogo = catalogo.getLibro(libroNelPrestito.getISBN());
-        
-        
-        if (libroRealeNelCatalogo != null) {
-            libroRealeNelCatalogo.incrementaDisponibilità();
-        } else {
-
-            libroNelPrestito.incrementaDisponibilità();
+        ReentrantLock striscia = striscia(prestito.getMatricola());
+        striscia.lock();
+        try {
+            // Un prestito già chiuso non va restituito due volte (nemmeno da due postazioni insieme)
+            if (prestito.getDataEffettivaRestituzione() != null) {
+                return false;
+            }
+            chiudi(prestito, dataEff);
+        } finally {
+            striscia.unlock();
+        }
+        archiviaChiusi();
+        return true;
+    }
+    
+    
+    // Il chiamante tiene la striscia dell'utente del prestito
+    private void chiudi(Prestito prestito, LocalDate dataEff){
+        // Il libro è risolto per chiave: una modifica nel Catalogo può averne sostituito l'istanza
+        Libro libro = (catalogo != null) ? catalogo.getLibro(prestito.getIsbn()) : null;
+        if (libro == null) {
+            libro = prestito.getLibro();
+        }
+        if (libro != null) {
+            libro.incrementaDisponibilità();
         }
 
         Utente utente = prestito.getUtente();
         
         // Chiudo il prestito e rimuovo il link dall'utente
         prestito.chiudiPrestito(dataEff); 
-        utente.rimuoviPrestito(prestito);
+        if (utente != null) {
+            utente.rimuoviPrestito(prestito);
+        }
         
-        return true;
+        // Il prestito esce dai prestiti in corso e, se possibile, dalla memoria
+        stato.writeLock().lock();
+        try {
+            if (perScadenza != null) perScadenza.rimuovi(prestito);
+            if (perIsbn != null) rimuoviDa(perIsbn, chiaveIsbn(prestito.getIsbn()), prestito);
+            if (perMatricola != null) rimuoviDa(perMatricola, prestito.getMatricola(), prestito);
+            prestitiAttivi.remove(prestito.getIdPrestito(), prestito);
+            prestitiChiusi.add(prestito);
+            chiusure++;
+        } finally {
+            stato.writeLock().unlock();
+        }
     }
     
     
     /**
-     * @brief Restituisce l'elenco di tutti i prestiti attivi.
+     * @brief Registra in un'unica operazione i prestiti di un "carrello" al banco.
+     * 
+     * Tutte le voci sono verificate prima di modificare lo stato, tenendo conto anche
+     * delle voci precedenti dello stesso lotto (copie già impegnate, limite dell'utente).
+     * Se una voce non è valida nessun prestito viene creato.
+     * 
+     * @param[in] richieste Le voci del lotto.
+     * @param[in] esito Esito da completare, eventualmente con voci già rifiutate dal chiamante
+     *            (es. per formato non valido), oppure null.
+     * 
+     * @post
+     * - Se il lotto è valido: un prestito per voce, con ID consecutivi.
+     * - Altrimenti: stato invariato, voci valide segnate come ANNULLATO.
+     * 
+     * @return L'esito del lotto, voce per voce.
      */
-    public List<Prestito> getPrestitiAttivi(){
-        List<Prestito> attivi = new ArrayList<>();
+    public EsitoLotto registraPrestiti(List<RichiestaPrestito> richieste, EsitoLotto esito){
+        if (esito == null) esito = new EsitoLotto(richieste.size());
+        if (catalogo == null || anagrafica == null) {
+            System.err.println("ERRORE GRAVE: Dipendenze RegistroPrestiti non inizializzate!");
+            esito.annulla();
+            return esito;
+        }
         
-        for (Prestito p : this.prestitiAttivi) {
-            if (p.getDataEffettivaRestituzione() == null) {
-                attivi.add(p);
+        // Strisce di tutti gli utenti del lotto, prese in ordine fisso (nessuno stallo fra postazioni)
+        List<String> matricole = new ArrayList<>(richieste.size());
+        for (RichiestaPrestito r : richieste) {
+            if (r != null) matricole.add(r.getMatricola());
+        }
+        ReentrantLock[] bloccate = strisce(matricole);
+        blocca(bloccate);
+        try {
+            Libro[] libri = new Libro[richieste.size()];
+            Utente[] utenti = new Utente[richieste.size()];
+            Map<Libro, Integer> copieImpegnate = new HashMap<>();
+            Map<Utente, Integer> nuoviPerUtente = new HashMap<>();
+            
+            for (int i = 0; i < richieste.size(); i++) {
+                RichiestaPrestito r = richieste.get(i);
+                if (esito.getEsito(i) != null) continue;
+                if (r == null || r.getDataPrevista() == null) {
+                    esito.rifiuta(i, EsitoVoce.DATI_NON_VALIDI);
+                    continue;
+                }
+                
+                Libro libro = catalogo.getLibro(r.getIsbn());
+                Utente utente = anagrafica.getUtente(r.getMatricola());
+                if (libro == null) {
+                    esito.rifiuta(i, EsitoVoce.LIBRO_INESISTENTE);
+                    continue;
+                }
+                if (utente == null) {
+                    esito.rifiuta(i, EsitoVoce.UTENTE_INESISTENTE);
+                    continue;
+                }
+                
+                int impegnate = copieImpegnate.getOrDefault(libro, 0);
+                int nuovi = nuoviPerUtente.getOrDefault(utente, 0);
+                if (libro.getCopieDisponibili() - impegnate <= 0) {
+                    esito.rifiuta(i, EsitoVoce.COPIE_ESAURITE);
+                } else if (utente.getNumeroPrestitiAttivi() + nuovi >= LimitePrestiti) {
+                    esito.rifiuta(i, EsitoVoce.LIMITE_UTENTE);
+                } else {
+                    copieImpegnate.put(libro, impegnate + 1);
+                    nuoviPerUtente.put(utente, nuovi + 1);
+                    libri[i] = libro;
+                    utenti[i] = utente;
+                }
+            }
+            
+            if (!esito.valido()) {
+                esito.annulla();
+                return esito;
+            }
+            
+            // Le copie non sono protette dalle strisce: un'altra postazione può aver preso
+            // l'ultima dopo la verifica. In quel caso le copie già prese tornano disponibili.
+            int prese = 0;
+            while (prese < libri.length && libri[prese].riservaCopia()) {
+                prese++;
+            }
+            if (prese < libri.length) {
+                for (int i = 0; i < prese; i++) {
+                    libri[i].incrementaDisponibilità();
+                }
+                esito.rifiuta(prese, EsitoVoce.COPIE_ESAURITE);
+                esito.annulla();
+                return esito;
             }
+            
+            LocalDate oggi = LocalDate.now();
+            for (int i = 0; i < richieste.size(); i++) {
+                esito.applica(i, creaPrestito(sequenza(), libri[i], utenti[i], oggi, richieste.get(i).getDataPrevista()));
+            }
+            esito.segnaApplicato();
+            return esito;
+        } finally {
+            sblocca(bloccate);
+        }
+    }
+    
+    
+    /**
+     * @brief Registra in un'unica operazione più restituzioni.
+     * 
+     * Tutti gli ID sono verificati prima di chiudere qualsiasi prestito; un ID ripetuto
+     * nello stesso lotto è rifiutato come GIA_RESTITUITO. I prestiti chiusi sono spostati
+     * nello storico con un solo accodamento.
+     * 
+     * @param[in] idPrestiti Gli ID dei prestiti restituiti.
+     * @param[in] dataEff Data della riconsegna, comune a tutto il lotto.
+     * 
+     * @return L'esito del lotto, voce per voce.
+     */
+    public EsitoLotto registraRestituzioni(List<Integer> idPrestiti, LocalDate dataEff){
+        EsitoLotto esito = new EsitoLotto(idPrestiti.size());
+        Prestito[] prestiti = new Prestito[idPrestiti.size()];
+        List<String> matricole = new ArrayList<>(idPrestiti.size());
+        for (int i = 0; i < idPrestiti.size(); i++) {
+            Integer id = idPrestiti.get(i);
+            prestiti[i] = (id != null) ? trovaPrestito(id) : null;
+            if (prestiti[i] != null) matricole.add(prestiti[i].getMatricola());
         }
         
-        Collections.sort(attivi, new Comparator<Prestito>() {
-            @Override
-            public int compare(Prestito p1, Prestito p2) {
-                return p1.getDataPrevistaRestituzione().compareTo(p2.getDataPrevistaRestituzione());
+        ReentrantLock[] bloccate = strisce(matricole);
+        blocca(bloccate);
+        try {
+            MappaInteri<Prestito> visti = new MappaInteri<>(idPrestiti.size());
+            for (int i = 0; i < prestiti.length; i++) {
+                Prestito p = prestiti[i];
+                if (dataEff == null) {
+                    esito.rifiuta(i, EsitoVoce.DATI_NON_VALIDI);
+                } else if (p == null) {
+                    esito.rifiuta(i, EsitoVoce.PRESTITO_INESISTENTE);
+                } else if (p.getDataEffettivaRestituzione() != null || visti.put(p.getIdPrestito(), p) != null) {
+                    esito.rifiuta(i, EsitoVoce.GIA_RESTITUITO);
+                }
+            }
+            
+            if (!esito.valido()) {
+                esito.annulla();
+                return esito;
             }
-        });
+            
+            for (int i = 0; i < prestiti.length; i++) {
+                chiudi(prestiti[i], dataEff);
+                esito.applica(i, prestiti[i]);
+            }
+            esito.segnaApplicato();
+        } finally {
+            sblocca(bloccate);
+        }
+        archiviaChiusi();
+        return esito;
+    }
+    
+    
+    /**
+     * @brief Sposta nello storico su disco i prestiti chiusi ancora in memoria.
+     * 
+     * Ogni prestito è archiviato con il proprio numero di chiusura: ripetere l'operazione
+     * sugli stessi prestiti (es. dopo un crash prima dello snapshot) non crea duplicati.
+     * Se una scrittura fallisce, quel prestito e i successivi restano in memoria
+     * e saranno ritentati alla prossima occasione.
+     * 
+     * @return Il numero di prestiti spostati (0 se nessuno storico è collegato).
+     */
+    public int archiviaChiusi(){
+        if (storico == null) return 0;
         
-        return attivi;
+        // Solo chi archivia toglie prestiti dalla testa di prestitiChiusi: la scrittura
+        // su disco avviene fuori dal lock dello stato, senza bloccare le altre postazioni
+        synchronized (archiviazione) {
+            List<Prestito> daArchiviare;
+            long primaSequenza;
+            stato.readLock().lock();
+            try {
+                if (prestitiChiusi.isEmpty()) return 0;
+                daArchiviare = new ArrayList<>(prestitiChiusi);
+                primaSequenza = chiusure - prestitiChiusi.size() + 1;
+            } finally {
+                stato.readLock().unlock();
+            }
+            
+            int archiviati = storico.archivia(primaSequenza, daArchiviare);
+            
+            stato.writeLock().lock();
+            try {
+                List<Prestito> spostati = prestitiChiusi.subList(0, archiviati);
+                for (Prestito p : spostati) {
+                    if (indice().get(p.getIdPrestito()) == p) {
+                        indice().rimuovi(p.getIdPrestito());
+                    }
+                }
+                spostati.clear();
+            } finally {
+                stato.writeLock().unlock();
+            }
+            return archiviati;
+        }
+    }
+    
+    
+    /**
+     * @brief Scorre in streaming i prestiti restituiti in un intervallo di mesi.
+     * 
+     * Comprende sia lo storico su disco sia i prestiti chiusi ancora in memoria.
+     * 
+     * @param[in] da Primo mese di restituzione incluso (null = dall'inizio).
+     * @param[in] a Ultimo mese di restituzione incluso (null = fino all'ultimo).
+     * @param[in] filtro Condizione sui prestiti (null = tutti).
+     * @param[in] consumatore Funzione invocata per ogni prestito.
+     * 
+     * @return Il numero di prestiti consegnati al consumatore.
+     * 
+     * @see StoricoPrestiti#scorri(YearMonth, YearMonth, Predicate, Consumer)
+     */
+    public int scorriStorico(YearMonth da, YearMonth a, Predicate<? super Prestito> filtro, Consumer<? super Prestito> consumatore){
+        int consegnati = (storico != null) ? storico.scorri(da, a, filtro, consumatore) : 0;
+        
+        List<Prestito> chiusi;
+        stato.readLock().lock();
+        try {
+            chiusi = new ArrayList<>(prestitiChiusi);
+        } finally {
+            stato.readLock().unlock();
+        }
+        
+        for (Prestito p : chiusi) {
+            YearMonth mese = YearMonth.from(p.getDataEffettivaRestituzione());
+            if ((da != null && mese.isBefore(da)) || (a != null && mese.isAfter(a))) continue;
+            if (filtro == null || filtro.test(p)) {
+                consumatore.accept(p);
+                consegnati++;
+            }
+        }
+        return consegnati;
+    }
+    
+    
+    /**
+     * @brief Restituisce l'elenco di tutti i prestiti attivi.
+     * 
+     * I prestiti sono già ordinati per data prevista di restituzione (a parità, per ID):
+     * la lista è letta dall'indice delle scadenze, senza riordinare.
+     */
+    public List<Prestito> getPrestitiAttivi(){
+        stato.readLock().lock();
+        try {
+            return vistaPerScadenza().tutti();
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce una pagina dei prestiti attivi, ordinati per data prevista di restituzione.
+     * 
+     * Costa O(log n + quanti), indipendentemente dal numero di prestiti in corso.
+     * 
+     * @param[in] inizio Posizione del primo prestito (da 0).
+     * @param[in] quanti Numero massimo di prestiti da restituire.
+     * 
+     * @return Lista di al più "quanti" prestiti, vuota se inizio è oltre la fine.
+     * 
+     * @see getPrestitiAttivi()
+     */
+    public List<Prestito> paginaPrestitiAttivi(int inizio, int quanti){
+        stato.readLock().lock();
+        try {
+            return vistaPerScadenza().pagina(inizio, quanti);
+        } finally {
+            stato.readLock().unlock();
+        }
     }
     
     
@@ -157,40 +627,551 @@ public class RegistroPrestiti implements Serializable {
      * @brief Identifica e restituisce i prestiti in ritardo.
      */
     public List<Prestito> getPrestitiInRitardo(){
-        List<Prestito> inRitardo = new ArrayList<>();
+        return getPrestitiInRitardo(LocalDate.now());
+    }
+    
+    
+    /**
+     * @brief Restituisce i prestiti in corso la cui scadenza precede una data.
+     * 
+     * I prestiti in ritardo sono la testa dell'indice delle scadenze:
+     * costo O(log n + k), con k il numero di prestiti restituiti.
+     * 
+     * @param[in] data La data di riferimento (es. oggi).
+     * 
+     * @return I prestiti scaduti alla data, dal più vecchio.
+     */
+    public List<Prestito> getPrestitiInRitardo(LocalDate data){
+        stato.readLock().lock();
+        try {
+            AlberoOrdinato<Prestito> vista = vistaPerScadenza();
+            return vista.pagina(0, vista.rango(sondaScadenza(data)));
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Conta i prestiti in corso la cui scadenza precede una data, in O(log n).
+     * 
+     * @param[in] data La data di riferimento.
+     * 
+     * @return Il numero di prestiti in ritardo alla data.
+     */
+    public int contaPrestitiInRitardo(LocalDate data){
+        stato.readLock().lock();
+        try {
+            return vistaPerScadenza().rango(sondaScadenza(data));
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    // Prestito fittizio che precede tutti quelli con scadenza uguale o successiva alla data
+    private static Prestito sondaScadenza(LocalDate data){
+        return new Prestito(Integer.MIN_VALUE, (String) null, null, data, data);
+    }
+    
+    
+    /**
+     * @brief Restituisce i prestiti in corso di un utente, per matricola.
+     * 
+     * Letti dall'indice per matricola: il costo non dipende dal numero di prestiti del registro.
+     * 
+     * @param[in] matricola La matricola dell'utente.
+     * 
+     * @return Lista (nuova) dei prestiti in corso, ordinati per scadenza.
+     */
+    public List<Prestito> getPrestitiAttiviUtente(String matricola){
+        stato.readLock().lock();
+        try {
+            return ordinatiPerScadenza(vistaPerMatricola().get(matricola));
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce i prestiti in corso di un libro, per ISBN.
+     * 
+     * @param[in] isbn L'ISBN del libro, in qualsiasi forma equivalente (come Catalogo.getLibro()).
+     * 
+     * @return Lista (nuova) dei prestiti in corso, ordinati per scadenza.
+     */
+    public List<Prestito> getPrestitiAttiviLibro(String isbn){
+        stato.readLock().lock();
+        try {
+            return ordinatiPerScadenza(vistaPerIsbn().get(chiaveIsbn(isbn)));
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Verifica se un utente ha prestiti in corso.
+     */
+    public boolean haPrestitiAttivi(String matricola){
+        stato.readLock().lock();
+        try {
+            return vistaPerMatricola().containsKey(matricola);
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Verifica se un libro è attualmente in prestito, in tempo costante.
+     * 
+     * @param[in] isbn L'ISBN del libro.
+     * 
+     * @return true se almeno una copia del libro non è ancora stata restituita.
+     */
+    public boolean haPrestitiAttiviLibro(String isbn){
+        stato.readLock().lock();
+        try {
+            return vistaPerIsbn().containsKey(chiaveIsbn(isbn));
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Collega i prestiti caricati da archivio alle istanze di Catalogo e Anagrafica.
+     * 
+     * I prestiti sono salvati per riferimento (ISBN e matricola): dopo il caricamento
+     * ogni prestito viene puntato al libro e all'utente canonici, e le liste dei
+     * prestiti in corso degli utenti vengono ricostruite a partire dal registro.
+     * 
+     * @pre setCatalogo() e setAnagrafica() sono già stati invocati.
+     * 
+     * @post Esiste una sola istanza per ogni libro e utente referenziato.
+     * 
+     * @return Il numero di prestiti il cui libro o utente non è più presente.
+     */
+    public int ricollega(){
+        if (catalogo == null || anagrafica == null) return 0;
         
-        for (Prestito p : this.prestitiAttivi) {
-            if (p.getDataEffettivaRestituzione() == null && p.verificaRitardo()) {
-                inRitardo.add(p);
+        // Le liste degli utenti salvate dalle versioni precedenti contengono copie dei prestiti
+        for (Utente u : anagrafica.getUtenti()) {
+            for (Prestito p : u.getPrestitiAttivi()) {   // copia: la lista viene svuotata
+                u.rimuoviPrestito(p);
             }
         }
         
-        return inRitardo;
+        int nonRisolti = 0;
+        for (Prestito p : getStoricoPrestiti()) {
+            Libro libro = catalogo.getLibro(p.getIsbn());
+            Utente utente = anagrafica.getUtente(p.getMatricola());
+            if (libro == null || utente == null) {
+                nonRisolti++;   // es. prestito chiuso di un libro poi rimosso
+            }
+            p.ricollega(libro != null ? libro : p.getLibro(), utente != null ? utente : p.getUtente());
+            
+            if (utente != null && p.getDataEffettivaRestituzione() == null) {
+                utente.aggiungiPrestito(p);
+            }
+        }
+        return nonRisolti;
     }
     
     
     /**
-     * @brief Verifica se un utente ha prestiti in corso.
+     * @brief Restituisce i prestiti tenuti in memoria: quelli in corso, seguiti
+     * da quelli chiusi non ancora spostati nello storico (in ordine di chiusura).
+     * 
+     * Utilizzato per la persistenza.
+     * 
+     * @return Lista non modificabile dei prestiti del registro.
      */
-    public boolean haPrestitiAttivi(String matricola){
-        if (anagrafica == null) return false; // Controllo sicurezza
+    public List<Prestito> getStoricoPrestiti(){
+        stato.readLock().lock();
+        try {
+            List<Prestito> tutti = new ArrayList<>(prestitiAttivi.size() + prestitiChiusi.size());
+            tutti.addAll(prestitiAttivi.values());
+            tutti.addAll(prestitiChiusi);
+            return Collections.unmodifiableList(tutti);
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce lo stato da salvare, letto con un'unica acquisizione del lock.
+     * 
+     * Prestiti, prossimo ID e contatore delle chiusure sono coerenti tra loro: nessun prestito
+     * può essere aperto o chiuso fra la lettura dell'uno e quella degli altri.
+     * 
+     * @return L'istantanea del registro.
+     */
+    public Istantanea istantanea(){
+        stato.readLock().lock();
+        try {
+            List<Prestito> tutti = new ArrayList<>(prestitiAttivi.size() + prestitiChiusi.size());
+            tutti.addAll(prestitiAttivi.values());
+            tutti.addAll(prestitiChiusi);
+            int prossimo = (prossimoId != 0) ? prossimoId : massimoId() + 1;
+            return new Istantanea(Collections.unmodifiableList(tutti), prossimo, chiusure);
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Copia coerente del contenuto del registro, per la persistenza.
+     * 
+     * @see istantanea()
+     */
+    public static final class Istantanea {
+        private final List<Prestito> prestiti;
+        private final int prossimoId;
+        private final long chiusure;
+        
+        private Istantanea(List<Prestito> prestiti, int prossimoId, long chiusure) {
+            this.prestiti = prestiti;
+            this.prossimoId = prossimoId;
+            this.chiusure = chiusure;
+        }
+        
+        /** @return I prestiti in corso, seguiti da quelli chiusi ancora in memoria. */
+        public List<Prestito> getPrestiti() {
+            return prestiti;
+        }
+        
+        /** @return L'ID che verrà assegnato al prossimo prestito. */
+        public int getProssimoId() {
+            return prossimoId;
+        }
         
-        Utente u = anagrafica.getUtente(matricola);
-        if (u == null) return false;
-        return !u.getPrestitiAttivi().isEmpty();
+        /** @return Il numero di prestiti chiusi da sempre. */
+        public long getChiusure() {
+            return chiusure;
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce il numero di prestiti chiusi da sempre.
+     * 
+     * Utilizzato per la persistenza: numera le chiusure nello storico.
+     * 
+     * @return Il contatore delle chiusure.
+     */
+    public long getChiusure(){
+        stato.readLock().lock();
+        try {
+            return chiusure;
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Riporta il contatore delle chiusure al valore salvato in archivio.
+     * 
+     * Come la sequenza degli ID, il contatore non torna mai indietro.
+     * 
+     * @param[in] chiusure Il numero di prestiti chiusi da sempre.
+     */
+    public void setChiusure(long chiusure){
+        stato.writeLock().lock();
+        try {
+            if (chiusure > this.chiusure) {
+                this.chiusure = chiusure;
+            }
+        } finally {
+            stato.writeLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Inserisce nel registro un prestito già esistente, così come letto dall'archivio.
+     * 
+     * Non modifica né la disponibilità del libro né la lista dell'utente:
+     * lo stato è già quello salvato. I prestiti chiusi vanno importati in ordine di chiusura.
+     * 
+     * @param[in] p Il prestito da reinserire.
+     */
+    public void importaPrestito(Prestito p){
+        if (p == null) return;
+        
+        stato.writeLock().lock();
+        try {
+            if (p.getDataEffettivaRestituzione() == null) {
+                indicizza(p);
+            } else {
+                prestitiChiusi.add(p);
+                indicizzaId(p);
+                // Registri precedenti: le chiusure non erano contate
+                chiusure = Math.max(chiusure, prestitiChiusi.size());
+            }
+        } finally {
+            stato.writeLock().unlock();
+        }
     }
     
     
     /**
      * @brief Ricerca un prestito tramite il suo ID.
+     * 
+     * Accesso diretto tramite indice hash: il costo non dipende dalla dimensione dello storico.
      */
     public Prestito trovaPrestito(int idPrestito){
-        for(Prestito p : prestitiAttivi){
-            if(p.getIdPrestito() == idPrestito){
-                return p;
+        stato.readLock().lock();
+        try {
+            return indice().get(idPrestito);
+        } finally {
+            stato.readLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Restituisce l'ID che verrà assegnato al prossimo prestito, senza consumarlo.
+     * 
+     * Utilizzato per la persistenza.
+     * 
+     * @return Il prossimo ID della sequenza.
+     */
+    public int getProssimoId(){
+        stato.writeLock().lock();
+        try {
+            if (prossimoId == 0) {
+                prossimoId = massimoId() + 1;
+            }
+            return prossimoId;
+        } finally {
+            stato.writeLock().unlock();
+        }
+    }
+    
+    
+    /**
+     * @brief Riporta la sequenza degli ID al valore salvato in archivio.
+     * 
+     * La sequenza non torna mai indietro: un valore inferiore a quello corrente è ignorato.
+     * 
+     * @param[in] id Il prossimo ID da assegnare.
+     */
+    public void setProssimoId(int id){
+        stato.writeLock().lock();
+        try {
+            if (id > getProssimoId()) {
+                prossimoId = id;
             }
+        } finally {
+            stato.writeLock().unlock();
+        }
+    }
+    
+    
+    // Consuma il prossimo ID della sequenza
+    private int sequenza(){
+        stato.writeLock().lock();
+        try {
+            int id = getProssimoId();
+            prossimoId = id + 1;
+            return id;
+        } finally {
+            stato.writeLock().unlock();
+        }
+    }
+    
+    
+    // Aggiunge il prestito a quelli in corso e agli indici; un ID già in corso (dati corrotti) è scartato
+    private void indicizza(Prestito p){
+        if (prestitiAttivi.containsKey(p.getIdPrestito())) {
+            System.err.println("[RegistroPrestiti] Prestito " + p.getIdPrestito() + " già in corso: duplicato ignorato");
+            return;
+        }
+        prestitiAttivi.put(p.getIdPrestito(), p);
+        if (perScadenza != null) perScadenza.aggiungi(p);
+        if (perIsbn != null) aggiungiA(perIsbn, chiaveIsbn(p.getIsbn()), p);
+        if (perMatricola != null) aggiungiA(perMatricola, p.getMatricola(), p);
+        indicizzaId(p);
+    }
+    
+    
+    // Indicizza l'ID, mantenendo la sequenza oltre di esso
+    private void indicizzaId(Prestito p){
+        if (indice().get(p.getIdPrestito()) == null) {   // come la vecchia scansione: vince il primo
+            indice().put(p.getIdPrestito(), p);
+        }
+        if (p.getIdPrestito() >= getProssimoId()) {
+            prossimoId = p.getIdPrestito() + 1;
+        }
+    }
+    
+    
+    // Gli indici sono costruiti al primo utilizzo da chi tiene il lock dello stato (in lettura
+    // o in scrittura): il monitor evita che due lettori li costruiscano insieme
+    private MappaInteri<Prestito> indice(){
+        MappaInteri<Prestito> indice = perId;
+        if (indice != null) return indice;
+        synchronized (this) {
+            if (perId == null) {
+                MappaInteri<Prestito> m = new MappaInteri<>(prestitiAttivi.size() + prestitiChiusi.size());
+                for (Prestito p : prestitiAttivi.values()) {
+                    if (m.get(p.getIdPrestito()) == null) m.put(p.getIdPrestito(), p);
+                }
+                for (Prestito p : prestitiChiusi) {
+                    if (m.get(p.getIdPrestito()) == null) m.put(p.getIdPrestito(), p);
+                }
+                perId = m;
+            }
+            return perId;
+        }
+    }
+    
+    
+    private AlberoOrdinato<Prestito> vistaPerScadenza(){
+        AlberoOrdinato<Prestito> vista = perScadenza;
+        if (vista != null) return vista;
+        synchronized (this) {
+            if (perScadenza == null) {
+                AlberoOrdinato<Prestito> nuova = new AlberoOrdinato<>(ORDINE_SCADENZA);
+                for (Prestito p : prestitiAttivi.values()) {
+                    nuova.aggiungi(p);
+                }
+                perScadenza = nuova;
+            }
+            return perScadenza;
+        }
+    }
+    
+    
+    // Chiave della vista per ISBN: la forma canonica, così le grafie equivalenti coincidono
+    private static String chiaveIsbn(String isbn){
+        long c = ValidatoreDati.chiaveISBN(isbn);
+        return (c < 0) ? isbn : Long.toString(c);
+    }
+    
+    
+    private Map<String, List<Prestito>> vistaPerIsbn(){
+        Map<String, List<Prestito>> vista = perIsbn;
+        if (vista != null) return vista;
+        synchronized (this) {
+            if (perIsbn == null) {
+                Map<String, List<Prestito>> nuova = new HashMap<>();
+                for (Prestito p : prestitiAttivi.values()) {
+                    aggiungiA(nuova, chiaveIsbn(p.getIsbn()), p);
+                }
+                perIsbn = nuova;
+            }
+            return perIsbn;
+        }
+    }
+    
+    
+    private Map<String, List<Prestito>> vistaPerMatricola(){
+        Map<String, List<Prestito>> vista = perMatricola;
+        if (vista != null) return vista;
+        synchronized (this) {
+            if (perMatricola == null) {
+                Map<String, List<Prestito>> nuova = new HashMap<>();
+                for (Prestito p : prestitiAttivi.values()) {
+                    aggiungiA(nuova, p.getMatricola(), p);
+                }
+                perMatricola = nuova;
+            }
+            return perMatricola;
+        }
+    }
+    
+    
+    // Le chiavi restano nella mappa solo finché hanno prestiti: containsKey() equivale a "ha prestiti"
+    private static void aggiungiA(Map<String, List<Prestito>> indice, String chiave, Prestito p){
+        List<Prestito> lista = indice.get(chiave);
+        if (lista == null) {
+            lista = new ArrayList<>(2);
+            indice.put(chiave, lista);
+        }
+        lista.add(p);
+    }
+    
+    
+    private static void rimuoviDa(Map<String, List<Prestito>> indice, String chiave, Prestito p){
+        List<Prestito> lista = indice.get(chiave);
+        if (lista != null && lista.remove(p) && lista.isEmpty()) {
+            indice.remove(chiave);
+        }
+    }
+    
+    
+    private static List<Prestito> ordinatiPerScadenza(List<Prestito> prestiti){
+        if (prestiti == null) return new ArrayList<>();
+        List<Prestito> copia = new ArrayList<>(prestiti);
+        Collections.sort(copia, ORDINE_SCADENZA);
+        return copia;
+    }
+    
+    
+    private int massimoId(){
+        int massimo = 0;
+        for (Prestito p : prestitiAttivi.values()) {
+            massimo = Math.max(massimo, p.getIdPrestito());
+        }
+        for (Prestito p : prestitiChiusi) {
+            massimo = Math.max(massimo, p.getIdPrestito());
+        }
+        return massimo;
+    }
+    
+    
+    // --- CONCORRENZA ---
+    
+    // La stessa matricola cade sempre nella stessa striscia
+    private ReentrantLock striscia(String matricola){
+        return strisce[posizioneStriscia(matricola)];
+    }
+    
+    
+    private static int posizioneStriscia(String matricola){
+        int h = (matricola == null) ? 0 : matricola.hashCode();
+        return (h ^ (h >>> 16)) & (STRISCE - 1);
+    }
+    
+    
+    // Strisce distinte di più matricole, in ordine di posizione: chi ne prende più d'una
+    // le acquisisce sempre nello stesso ordine, quindi due lotti non si bloccano a vicenda
+    private ReentrantLock[] strisce(Collection<String> matricole){
+        boolean[] usate = new boolean[STRISCE];
+        int n = 0;
+        for (String m : matricole) {
+            int i = posizioneStriscia(m);
+            if (!usate[i]) {
+                usate[i] = true;
+                n++;
+            }
+        }
+        ReentrantLock[] risultato = new ReentrantLock[n];
+        for (int i = 0, k = 0; i < STRISCE; i++) {
+            if (usate[i]) risultato[k++] = strisce[i];
+        }
+        return risultato;
+    }
+    
+    
+    private static void blocca(ReentrantLock[] lock){
+        for (ReentrantLock l : lock) {
+            l.lock();
+        }
+    }
+    
+    
+    private static void sblocca(ReentrantLock[] lock){
+        for (int i = lock.length - 1; i >= 0; i--) {
+            lock[i].unlock();
         }
-        return null;
     }
     
 }
\ No newline at end of file
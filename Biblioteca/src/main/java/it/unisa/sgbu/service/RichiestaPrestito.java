@@ -0,0 +1,47 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.time.LocalDate;
+
+/**
+ * @brief Singola voce di un prestito multiplo (un libro del "carrello" al banco).
+ *
+ * Oggetto immutabile: indica quale libro prestare, a chi e fino a quando.
+ */
+public final class RichiestaPrestito {
+
+    private final String isbn;
+    private final String matricola;
+    private final LocalDate dataPrevista;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] isbn ISBN del libro richiesto.
+     * @param[in] matricola Matricola dell'utente richiedente.
+     * @param[in] dataPrevista Data di scadenza del prestito.
+     */
+    public RichiestaPrestito(String isbn, String matricola, LocalDate dataPrevista) {
+        this.isbn = isbn;
+        this.matricola = matricola;
+        this.dataPrevista = dataPrevista;
+    }
+
+
+    public String getIsbn() { return isbn; }
+
+    public String getMatricola() { return matricola; }
+
+    public LocalDate getDataPrevista() { return dataPrevista; }
+
+
+    @Override
+    public String toString() {
+        return isbn + " -> " + matricola;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+/**
+ * @brief Risultato di un'importazione massiva: righe lette, importate e scartate.
+ *
+ * Il testo di toString() è pensato per l'unico record dell'audit trail
+ * che riassume l'intera importazione.
+ */
+public class RiepilogoImportazione {
+
+    private final String oggetto;
+    private final long righe;
+    private final long importate;
+    private final long scartate;
+    private final long durataNs;
+
+
+    /**
+     * @brief Costruttore.
+     *
+     * @param[in] oggetto Cosa è stato importato (es. "libri"), usato nel riepilogo.
+     * @param[in] righe Righe di dati lette (esclusa l'intestazione).
+     * @param[in] importate Righe applicate (nuovi elementi o aggiornamenti).
+     * @param[in] scartate Righe rifiutate (formato non valido o duplicati).
+     * @param[in] durataNs Durata complessiva in nanosecondi.
+     */
+    public RiepilogoImportazione(String oggetto, long righe, long importate, long scartate, long durataNs) {
+        this.oggetto = oggetto;
+        this.righe = righe;
+        this.importate = importate;
+        this.scartate = scartate;
+        this.durataNs = durataNs;
+    }
+
+
+    /** @return Le righe di dati lette. */
+    public long getRighe() {
+        return righe;
+    }
+
+
+    /** @return Le righe applicate (nuovi elementi o aggiornamenti). */
+    public long getImportate() {
+        return importate;
+    }
+
+
+    /** @return Le righe scartate (riportate nel file degli scarti). */
+    public long getScartate() {
+        return scartate;
+    }
+
+
+    /** @return Le righe che corrispondevano a elementi già presenti e identici. */
+    public long getInvariate() {
+        return righe - importate - scartate;
+    }
+
+
+    /** @return La durata dell'importazione in millisecondi. */
+    public long getDurataMs() {
+        return durataNs / 1_000_000;
+    }
+
+
+    /** @return Le righe elaborate al secondo. */
+    public double getRighePerSecondo() {
+        return (durataNs == 0) ? 0 : righe * 1e9 / durataNs;
+    }
+
+
+    @Override
+    public String toString() {
+        String invariate = (getInvariate() > 0) ? String.format(", %,d invariate", getInvariate()) : "";
+        return String.format("IMPORTAZIONE %s: %,d righe, %,d importate%s, %,d scartate in %,d ms (%,.0f righe/s)",
+                oggetto, righe, importate, invariate, scartate, getDurataMs(), getRighePerSecondo());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @brief Test Unitari per le classi CredenzialiCifrate e RegistroCredenziali.
+ * Si usa un costo basso (ITERAZIONI) per non rallentare la suite.
+ */
+public class CredenzialiCifrateTest {
+    
+    private static final int ITERAZIONI = 1000;
+    
+    /**
+     * @brief Verifica della password: corretta, errata, null.
+     */
+    @Test
+    public void testVerifica() {
+        CredenzialiCifrate c = new CredenzialiCifrate("admin", "password", ITERAZIONI);
+        
+        assertEquals("admin", c.getUser());
+        assertEquals(ITERAZIONI, c.getIterazioni());
+        assertTrue(c.verifica("password"));
+        assertFalse(c.verifica("Password"), "Il confronto distingue maiuscole e minuscole");
+        assertFalse(c.verifica(""));
+        assertFalse(c.verifica(null));
+        
+        assertThrows(IllegalArgumentException.class, () -> new CredenzialiCifrate("admin", "password", 0));
+    }
+    
+    /**
+     * @brief Il sale è casuale: la stessa password dà hash diversi, entrambi verificabili.
+     * La password non deve comparire nella forma serializzata.
+     */
+    @Test
+    public void testSaleESerializzazione() throws Exception {
+        CredenzialiCifrate a = new CredenzialiCifrate("admin", "segretissima", ITERAZIONI);
+        CredenzialiCifrate b = new CredenzialiCifrate("admin", "segretissima", ITERAZIONI);
+        
+        byte[] byteA = serializza(a);
+        assertNotEquals(new String(byteA, "ISO-8859-1"), new String(serializza(b), "ISO-8859-1"));
+        assertFalse(new String(byteA, "ISO-8859-1").contains("segretissima"));
+        
+        CredenzialiCifrate letta;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(byteA))) {
+            letta = (CredenzialiCifrate) in.readObject();
+        }
+        assertTrue(letta.verifica("segretissima"));
+        assertFalse(letta.verifica("altra"));
+    }
+    
+    /**
+     * @brief Registro con più operatori: inserimento, sostituzione, rimozione.
+     */
+    @Test
+    public void testRegistro() {
+        RegistroCredenziali r = new RegistroCredenziali();
+        r.aggiungi("admin", "password", ITERAZIONI);
+        r.aggiungi("mrossi", "prestiti", ITERAZIONI);
+        
+        assertEquals(2, r.dimensione());
+        assertTrue(r.get("mrossi").verifica("prestiti"));
+        assertNull(r.get("MROSSI"));
+        
+        r.aggiungi("mrossi", "nuova", ITERAZIONI);
+        assertEquals(2, r.dimensione());
+        assertFalse(r.get("mrossi").verifica("prestiti"));
+        assertTrue(r.get("mrossi").verifica("nuova"));
+        
+        assertTrue(r.rimuovi("mrossi"));
+        assertFalse(r.rimuovi("mrossi"));
+        assertEquals(1, r.getAccount().size());
+    }
+    
+    private static byte[] serializza(Object o) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(o);
+        }
+        return buffer.toByteArray();
+    }
+}
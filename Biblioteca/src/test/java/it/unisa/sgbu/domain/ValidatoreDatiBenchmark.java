@@ -0,0 +1,110 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.domain;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.regex.Pattern;
+
+/**
+ * @brief Costo di una validazione: nanosecondi e byte allocati per chiamata,
+ * confrontati con le espressioni regolari (String.matches() e Pattern precompilato).
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * I byte allocati sono misurati sul thread (se la JVM lo consente): per ValidatoreDati
+ * devono essere 0. Ogni misura alterna input validi e non validi.
+ *
+ * Argomenti opzionali: [chiamate per misura] (default: 5000000).
+ */
+public class ValidatoreDatiBenchmark {
+
+    private static final String[] ISBN = {"978-0-13-468599-1", "9780134685991", "978-0-13-4685A9-1", "0-13-468599-7"};
+    private static final String[] MATRICOLE = {"0612700001", "0612700002", "061270000", "06127000A1"};
+    private static final String[] EMAIL = {"mario.rossi@studenti.unisa.it", "l.verdi@unisa.it", "mario.rossi@unisa", "@unisa.it"};
+    private static final String[] NOMI = {"Mario", "De Luca", "D'Amico", "Mario2"};
+
+    private static final Pattern P_ISBN = Pattern.compile("^[0-9-]{13,17}$");
+    private static final Pattern P_MATRICOLA = Pattern.compile("^\\d{10}$");
+    private static final Pattern P_EMAIL = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9]+(?:\\.[a-zA-Z0-9]+)*\\.[a-zA-Z]{2,}$");
+    private static final Pattern P_NOME = Pattern.compile("^[a-zA-Z\\s']+$");
+
+    private static int accettati;   // impedisce al JIT di eliminare le chiamate
+
+    private interface Validazione {
+        boolean esegui(String s);
+    }
+
+    public static void main(String[] args) {
+        int chiamate = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        final ValidatoreDati semplice = new ValidatoreDati();
+        final ValidatoreDati rigoroso = new ValidatoreDati(true);
+
+        System.out.printf("Chiamate per misura: %,d%n", chiamate);
+        System.out.printf("%-10s %-24s %9s %11s%n", "campo", "implementazione", "ns/chiam.", "byte/chiam.");
+        for (int giro = 0; giro < 2; giro++) {   // il primo giro è riscaldamento
+            boolean stampa = giro == 1;
+            misura("isbn", "ValidatoreDati", ISBN, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return semplice.validaISBN(s); }
+            });
+            misura("isbn", "ValidatoreDati+checksum", ISBN, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return rigoroso.validaISBN(s); }
+            });
+            misura("isbn", "Pattern", ISBN, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return P_ISBN.matcher(s).matches(); }
+            });
+            misura("isbn", "String.matches", ISBN, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return s.matches("^[0-9-]{13,17}$"); }
+            });
+            misura("matricola", "ValidatoreDati", MATRICOLE, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return semplice.validaMatricola(s); }
+            });
+            misura("matricola", "Pattern", MATRICOLE, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return P_MATRICOLA.matcher(s).matches(); }
+            });
+            misura("email", "ValidatoreDati", EMAIL, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return semplice.validaEmail(s); }
+            });
+            misura("email", "Pattern", EMAIL, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return P_EMAIL.matcher(s).matches(); }
+            });
+            misura("nome", "ValidatoreDati", NOMI, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return semplice.validaNomeCognome(s, s); }
+            });
+            misura("nome", "Pattern", NOMI, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return P_NOME.matcher(s).matches() && P_NOME.matcher(s).matches(); }
+            });
+            misura("anno", "ValidatoreDati", NOMI, chiamate, stampa, new Validazione() {
+                public boolean esegui(String s) { return semplice.validaAnnoPubblicazione(1990 + s.length()); }
+            });
+        }
+        if (accettati == 42) System.out.println();
+    }
+
+    private static void misura(String campo, String nome, String[] input, int chiamate, boolean stampa, Validazione v) {
+        long allocatiPrima = allocati();
+        long inizio = System.nanoTime();
+        int ok = 0;
+        for (int i = 0; i < chiamate; i++) {
+            if (v.esegui(input[i & 3])) ok++;
+        }
+        long durata = System.nanoTime() - inizio;
+        long allocatiDopo = allocati();
+        accettati += ok;
+        if (stampa) {
+            String perChiamata = (allocatiPrima < 0) ? "n/d" : String.format("%.1f", (allocatiDopo - allocatiPrima) / (double) chiamate);
+            System.out.printf("%-10s %-24s %9.1f %11s%n", campo, nome, durata / (double) chiamate, perChiamata);
+        }
+    }
+
+    // Byte allocati dal thread corrente, -1 se la JVM non li misura
+    private static long allocati() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -6,6 +6,8 @@
 package it.unisa.sgbu.domain;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,6 +62,11 @@ public class ValidatoreDatiTest {
         assertFalse(validatore.validaMatricola("ABC1234567"), "Matricola con lettere deve fallire");
         assertFalse(validatore.validaMatricola(null), "Matricola null deve fallire");
         assertFalse(validatore.validaMatricola(""), "Matricola vuota deve fallire");
+        
+        // Chiave numerica: reversibile grazie alla lunghezza fissa
+        assertEquals(123456789L, ValidatoreDati.chiaveMatricola("0123456789"));
+        assertEquals(-1, ValidatoreDati.chiaveMatricola("123456789"));
+        assertEquals(-1, ValidatoreDati.chiaveMatricola("ABC1234567"));
     }
     
     /**
@@ -115,4 +122,92 @@ public class ValidatoreDatiTest {
         assertFalse(validatore.validaNomeCognome(null, "Rossi"), "Null non ammesso");
     }
     
+    /**
+     * @brief Test checksum ISBN: ISBN-10 e ISBN-13, con o senza trattini, e codici di errore distinti.
+     */
+    @Test
+    public void testChecksumISBN() {
+        ValidatoreDati rigoroso = new ValidatoreDati(true);
+        
+        // Casi Validi
+        assertTrue(rigoroso.validaISBN("978-0-13-468599-1"));
+        assertTrue(rigoroso.validaISBN("9780134685991"));
+        assertTrue(rigoroso.validaISBN("0-13-468599-7"), "ISBN-10 con trattini");
+        assertTrue(rigoroso.validaISBN("080442957X"), "ISBN-10 con cifra di controllo X");
+        
+        // Casi Invalidi
+        assertFalse(rigoroso.validaISBN("978-0-13-468599-2"), "Cifra di controllo errata");
+        assertFalse(rigoroso.validaISBN("0134685997124"), "Accettato solo dal formato base");
+        assertFalse(rigoroso.validaISBN("X804429570"), "X ammessa solo come ultima cifra");
+        assertFalse(rigoroso.validaISBN("97801346859910"), "Troppe cifre");
+        
+        Libro sbagliato = new Libro("978-0-13-468599-2", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 1);
+        Libro malformato = new Libro("978-0-13-4685A9-1", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 1);
+        assertEquals(ValidatoreDati.Errore.ISBN_CHECKSUM, rigoroso.validaLibro(sbagliato));
+        assertEquals(ValidatoreDati.Errore.ISBN_FORMATO, rigoroso.validaLibro(malformato));
+        assertNull(validatore.validaLibro(sbagliato), "Senza verifica conta solo il formato");
+        
+        assertEquals("9780134685991", ValidatoreDati.canonicoISBN("978-0-13-468599-1"));
+        assertEquals("080442957X", ValidatoreDati.canonicoISBN("0-8044-2957-x"));
+        assertNull(ValidatoreDati.canonicoISBN("978-0-13-468599-2"));
+    }
+    
+    /**
+     * @brief Test chiave canonica ISBN: stesso long per le grafie equivalenti, -1 senza forma canonica.
+     */
+    @Test
+    public void testChiaveISBN() {
+        long chiave = 9780134685991L;
+        assertEquals(chiave, ValidatoreDati.chiaveISBN("978-0-13-468599-1"));
+        assertEquals(chiave, ValidatoreDati.chiaveISBN("9780134685991"));
+        assertEquals(chiave, ValidatoreDati.chiaveISBN("0-13-468599-7"), "ISBN-10 convertito in ISBN-13");
+        assertEquals(9780804429573L, ValidatoreDati.chiaveISBN("080442957x"));
+        assertEquals(9780134685992L, ValidatoreDati.chiaveISBN("978-0-13-468599-2"), "Cifra di controllo non verificata");
+        
+        assertEquals(-1, ValidatoreDati.chiaveISBN("0-13-468599-8"), "ISBN-10 con cifra di controllo errata");
+        assertEquals(-1, ValidatoreDati.chiaveISBN("123456789X123"), "X ammessa solo come ultima cifra");
+        assertEquals(-1, ValidatoreDati.chiaveISBN("ISBN-123"));
+        assertEquals(-1, ValidatoreDati.chiaveISBN("97801346859910"));
+        assertEquals(-1, ValidatoreDati.chiaveISBN(null));
+    }
+    
+    /**
+     * @brief Test validazione a blocchi: per ogni elemento il primo errore, null se valido.
+     */
+    @Test
+    public void testValidaUtenti() {
+        ValidatoreDati.Errore[] esiti = validatore.validaUtenti(Arrays.asList(
+                new Utente("0123456789", "Mario", "Rossi", "mario.rossi@unisa.it"),
+                new Utente("012345678", "Mario", "Rossi", "mario.rossi@unisa.it"),
+                new Utente("0123456789", "Mario", "Rossi", "mario.rossi@unisa"),
+                new Utente("0123456789", "Mario2", "Rossi", "mario.rossi@unisa.it"),
+                new Utente("0123456789", "Mario", "", "mario.rossi@unisa.it")));
+        
+        assertEquals(Arrays.asList(null, ValidatoreDati.Errore.MATRICOLA_NON_VALIDA, ValidatoreDati.Errore.EMAIL_NON_VALIDA,
+                ValidatoreDati.Errore.NOME_NON_VALIDO, ValidatoreDati.Errore.COGNOME_NON_VALIDO), Arrays.asList(esiti));
+    }
+    
+    /**
+     * @brief Test equivalenza: i controlli carattere per carattere accettano esattamente
+     * ciò che accettavano le espressioni regolari dei requisiti.
+     */
+    @Test
+    public void testEquivalenzaEspressioniRegolari() {
+        Pattern isbn = Pattern.compile("^[0-9-]{13,17}$");
+        Pattern matricola = Pattern.compile("^\\d{10}$");
+        Pattern email = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9]+(?:\\.[a-zA-Z0-9]+)*\\.[a-zA-Z]{2,}$");
+        Pattern nome = Pattern.compile("^[a-zA-Z\\s']+$");
+        
+        String[] casi = {"", "a", "0123456789", "01234567890", "012345678a", "978-0-13-468599-1", "978-0-13-468599-1-00",
+            "-------------", "mario.rossi@unisa.it", "a@b.c", "a@b.co", "a@b.c2", "a@b..co", "a@.co", "@b.co", "a@b.co.",
+            "a@b@c.it", "a+b%c_d-e.f@x1.y2.zz", "a@bb", "a b@c.it", "Mario", "De Luca", "D'Amico", "Mario\tRossi",
+            "Mar1o", "M\u00fcller", "O'\n", "\u0663\u0663\u0663\u0663\u0663\u0663\u0663\u0663\u0663\u0663"};
+        for (String c : casi) {
+            assertEquals(isbn.matcher(c).matches(), validatore.validaISBN(c), "ISBN: " + c);
+            assertEquals(matricola.matcher(c).matches(), validatore.validaMatricola(c), "Matricola: " + c);
+            assertEquals(email.matcher(c).matches(), validatore.validaEmail(c), "Email: " + c);
+            assertEquals(nome.matcher(c).matches(), validatore.validaNomeCognome(c, "Rossi"), "Nome: " + c);
+        }
+    }
+    
 }
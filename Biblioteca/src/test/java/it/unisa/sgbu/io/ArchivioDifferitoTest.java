@@ -0,0 +1,244 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.service.Catalogo;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ArchivioDifferitoTest {
+
+    private ArchivioInMemoria disco;
+    private ArchivioDifferito archivio;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Il decoratore scrive su un archivio in memoria che registra ogni scrittura;
+     * l'intervallo è lungo, così le scritture avvengono solo su richiesta esplicita.
+     */
+    @BeforeEach
+    public void setUp() {
+        disco = new ArchivioInMemoria();
+        archivio = new ArchivioDifferito(disco, 60_000);
+    }
+
+
+    /**
+     * @brief Test accorpamento: più salvataggi dello stesso file producono una sola scrittura.
+     */
+    @Test
+    public void testAccorpamento() {
+        assertTrue(archivio.salvaStato("v1", "libri.dat"));
+        assertTrue(archivio.salvaStato("v2", "libri.dat"));
+        assertTrue(archivio.salvaStato("v3", "libri.dat"));
+        assertTrue(archivio.salvaStato("u1", "utenti.dat"));
+
+        assertEquals(0, disco.scritture.size(), "Nessuna scrittura prima del flush");
+        assertEquals(2, archivio.getProfonditaCoda());
+
+        assertTrue(archivio.awaitDurable(5, TimeUnit.SECONDS));
+        assertEquals(2, disco.scritture.size());
+        assertEquals("v3", disco.contenuto.get("libri.dat"), "Deve essere scritto solo l'ultimo stato");
+        assertEquals(2, archivio.getSalvataggiAccorpati());
+        assertEquals(2, archivio.getScrittureEseguite());
+        assertEquals(0, archivio.getProfonditaCoda());
+    }
+
+
+    /**
+     * @brief Test lettura: gli stati non ancora scritti sono visibili a caricaStato().
+     */
+    @Test
+    public void testCaricaStatoInAttesa() {
+        disco.salvaStato("vecchio", "libri.dat");
+        archivio.salvaStato("nuovo", "libri.dat");
+
+        assertEquals("nuovo", archivio.caricaStato("libri.dat"));
+        assertTrue(archivio.verificaEsistenzaFile("libri.dat"));
+        assertFalse(archivio.verificaEsistenzaFile("fantasma.dat"));
+    }
+
+
+    /**
+     * @brief Test scrittura a tempo: senza flush, lo stato arriva su disco allo scadere dell'intervallo.
+     */
+    @Test
+    public void testScritturaATempo() throws InterruptedException {
+        ArchivioDifferito veloce = new ArchivioDifferito(disco, 20);
+        veloce.salvaStato("dato", "x.dat");
+
+        long scadenza = System.currentTimeMillis() + 5000;
+        while (!"dato".equals(disco.contenuto.get("x.dat")) && System.currentTimeMillis() < scadenza) {
+            Thread.sleep(10);
+        }
+        assertEquals("dato", disco.contenuto.get("x.dat"));
+        veloce.chiudi();
+    }
+
+
+    /**
+     * @brief Test errori: una scrittura fallita è riportata da awaitDurable() e dalle metriche.
+     */
+    @Test
+    public void testScritturaFallita() {
+        disco.fallisci = true;
+        archivio.salvaStato("dato", "x.dat");
+
+        assertFalse(archivio.awaitDurable(5, TimeUnit.SECONDS));
+        assertEquals(1, archivio.getScrittureFallite());
+    }
+
+
+    /**
+     * @brief Test eccezione in scrittura: è contata come scrittura fallita, senza nuovi tentativi.
+     */
+    @Test
+    public void testEccezioneInScrittura() {
+        disco.eccezioniDaLanciare = 1;
+        archivio.salvaStato("dato", "x.dat");
+
+        assertFalse(archivio.awaitDurable(5, TimeUnit.SECONDS));
+        assertNull(disco.contenuto.get("x.dat"));
+        assertEquals(1, archivio.getScrittureFallite());
+        assertEquals(0, archivio.getProfonditaCoda());
+    }
+
+
+    /**
+     * @brief Test istantanea: si salva lo stato del momento della chiamata, non quello della scrittura.
+     */
+    @Test
+    public void testIstantaneaAlMomentoDellaChiamata() {
+        List<String> dati = new ArrayList<>();
+        dati.add("primo");
+        archivio.salvaStato(dati, "lista.dat");
+        dati.add("secondo");
+
+        assertEquals(1, ((List<?>) archivio.caricaStato("lista.dat")).size(), "Lo stato in attesa non vede le modifiche successive");
+        assertTrue(archivio.awaitDurable(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("primo"), disco.contenuto.get("lista.dat"));
+        assertNotSame(dati, disco.contenuto.get("lista.dat"));
+    }
+
+
+    /**
+     * @brief Test su disco: il catalogo codificato alla chiamata è scritto da FileArchivio così com'è.
+     */
+    @Test
+    public void testCatalogoSuFileArchivio() {
+        File cartella = new File("./test_differito/");
+        ArchivioDifferito suDisco = new ArchivioDifferito(new FileArchivio(cartella.getPath(), null), 60_000);
+        try {
+            Catalogo catalogo = new Catalogo();
+            catalogo.aggiungiLibro(new Libro("978-0134685991", "Effective Java", Collections.singletonList("Joshua Bloch"), 2018, 5));
+            suDisco.salvaStato(catalogo, "libri.dat");
+            catalogo.aggiungiLibro(new Libro("978-0132350884", "Clean Code", Collections.singletonList("Robert C. Martin"), 2008, 3));
+
+            assertTrue(suDisco.awaitDurable(5, TimeUnit.SECONDS));
+            Object letto = new FileArchivio(cartella.getPath(), null).caricaStato("libri.dat");
+            assertTrue(letto instanceof Catalogo);
+            assertEquals(1, ((Catalogo) letto).getLibri().size(), "Su disco va lo stato del momento del salvataggio");
+        } finally {
+            suDisco.chiudi();
+            File[] file = cartella.listFiles();
+            if (file != null) {
+                for (File f : file) f.delete();
+            }
+            cartella.delete();
+        }
+    }
+
+
+    /**
+     * @brief Test oggetto non serializzabile: il salvataggio è rifiutato subito.
+     */
+    @Test
+    public void testOggettoNonCodificabile() {
+        assertFalse(archivio.salvaStato(new Object(), "x.dat"));
+        assertEquals(0, archivio.getProfonditaCoda());
+    }
+
+
+    /**
+     * @brief Test chiusura: chiudi() scrive tutto, poi i salvataggi diventano sincroni.
+     */
+    @Test
+    public void testChiudi() {
+        archivio.salvaStato("a", "a.dat");
+        assertTrue(archivio.chiudi());
+        assertEquals("a", disco.contenuto.get("a.dat"));
+
+        archivio.salvaStato("b", "b.dat");
+        assertEquals("b", disco.contenuto.get("b.dat"), "Dopo la chiusura la scrittura deve essere immediata");
+        assertTrue(archivio.riepilogo().contains("1 scritture"));
+    }
+
+
+    /**
+     * @brief Test chiusura: con uno svuotamento programmato a lungo termine chiudi() ritorna subito.
+     */
+    @Test
+    public void testChiudiNonAttendeIntervallo() {
+        archivio.salvaStato("a", "a.dat");
+        long inizio = System.nanoTime();
+        assertTrue(archivio.chiudi());
+        long durataMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio);
+
+        assertEquals("a", disco.contenuto.get("a.dat"));
+        assertTrue(durataMs < 5_000, "chiudi() non deve attendere l'intervallo di svuotamento (" + durataMs + " ms)");
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        archivio.chiudi();
+    }
+
+
+    /**
+     * @brief Archivio fittizio in memoria, con iniezione di errori.
+     */
+    private static class ArchivioInMemoria implements IArchivioDati {
+        final Map<String, Object> contenuto = Collections.synchronizedMap(new HashMap<String, Object>());
+        final List<String> scritture = Collections.synchronizedList(new ArrayList<String>());
+        volatile boolean fallisci;
+        volatile int eccezioniDaLanciare;
+
+        @Override
+        public boolean salvaStato(Object dati, String nomeFile) {
+            if (eccezioniDaLanciare > 0) {
+                eccezioniDaLanciare--;
+                throw new java.util.ConcurrentModificationException();
+            }
+            if (fallisci) return false;
+            scritture.add(nomeFile);
+            contenuto.put(nomeFile, dati);
+            return true;
+        }
+
+        @Override
+        public Object caricaStato(String nomeFile) {
+            return contenuto.get(nomeFile);
+        }
+
+        @Override
+        public boolean verificaEsistenzaFile(String nomeFile) {
+            return contenuto.containsKey(nomeFile);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * @brief Benchmark del costo per azione dell'Audit Trail al crescere dello storico.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Per ogni fascia di dimensione del log misura il tempo medio di registraAzione():
+ * con AuditTrailSegmentato resta costante, con AuditTrail cresce linearmente
+ * perché ogni azione riscrive l'intero file.
+ *
+ * Argomenti opzionali: [record totali segmentato] [record totali legacy]
+ */
+public class AuditTrailSegmentatoBenchmark {
+
+    private static final String DIR = "./bench_audit/";
+
+    public static void main(String[] args) {
+        int totaleSegmentato = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int totaleLegacy = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        cancella(new File(DIR));
+
+        System.out.println("== AuditTrailSegmentato (append-only) ==");
+        AuditTrailSegmentato segmentato = new AuditTrailSegmentato(DIR + "seg");
+        misura(segmentato, totaleSegmentato, totaleSegmentato / 10);
+        segmentato.chiudi();
+        System.out.println("Segmenti creati: " + segmentato.elencaSegmenti().size());
+
+        System.out.println("== AuditTrail (riscrittura completa) ==");
+        AuditTrail legacy = new AuditTrail(new ArrayList<String>(), new FileArchivio(DIR + "legacy", null));
+        misura(legacy, totaleLegacy, totaleLegacy / 10);
+
+        cancella(new File(DIR));
+    }
+
+    private static void misura(ILogger logger, int totale, int fascia) {
+        // Riscaldamento JIT
+        for (int i = 0; i < Math.min(fascia, 10_000); i++) {
+            logger.registraAzione("Riscaldamento " + i);
+        }
+
+        int scritti = 0;
+        while (scritti < totale) {
+            long inizio = System.nanoTime();
+            for (int i = 0; i < fascia; i++) {
+                logger.registraAzione("NUOVO PRESTITO: ID " + (scritti + i) + " | Libro: 978-88-00000-00-0 | Utente: 0512100001");
+            }
+            long durata = System.nanoTime() - inizio;
+            scritti += fascia;
+            System.out.printf("log fino a %,10d record: %,8d ns/azione%n", scritti, durata / fascia);
+        }
+    }
+
+    private static void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
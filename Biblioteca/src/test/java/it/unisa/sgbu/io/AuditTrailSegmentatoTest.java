@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class AuditTrailSegmentatoTest {
+
+    private AuditTrailSegmentato auditTrail;
+    private final String TEST_DIR = "./test_logs_segmentati/";
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Crea un AuditTrailSegmentato su una cartella di test vuota.
+     */
+    @BeforeEach
+    public void setUp() {
+        auditTrail = new AuditTrailSegmentato(TEST_DIR);
+    }
+
+
+    /**
+     * @brief Test registrazione azione.
+     * Verifica che il record sia accodato con timestamp.
+     */
+    @Test
+    public void testRegistraAzione() {
+        auditTrail.registraAzione("Inserimento Utente Mario");
+
+        List<String> logs = auditTrail.visualizzaLog();
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0).startsWith("["), "Il log deve avere un timestamp");
+        assertTrue(logs.get(0).contains("Inserimento Utente Mario"));
+    }
+
+
+    /**
+     * @brief Test persistenza: un nuovo logger ritrova i record scritti dal precedente.
+     */
+    @Test
+    public void testPersistenzaLog() {
+        auditTrail.registraAzione("Azione 1");
+        auditTrail.registraAzione("Azione 2");
+        auditTrail.chiudi();
+
+        AuditTrailSegmentato nuovoAudit = new AuditTrailSegmentato(TEST_DIR);
+        nuovoAudit.registraAzione("Azione 3");
+
+        List<String> logs = nuovoAudit.caricaLog();
+        assertEquals(3, logs.size(), "Devo ritrovare le azioni salvate più quella nuova");
+        assertTrue(logs.get(0).contains("Azione 1"));
+        assertTrue(logs.get(2).contains("Azione 3"));
+        assertEquals(1, nuovoAudit.elencaSegmenti().size(), "Lo stesso giorno deve riprendere l'ultimo segmento");
+        nuovoAudit.chiudi();
+    }
+
+
+    /**
+     * @brief Test rotazione per dimensione.
+     * Con segmenti molto piccoli devono essere creati più file, senza perdere l'ordine.
+     */
+    @Test
+    public void testRotazionePerDimensione() {
+        AuditTrailSegmentato piccolo = new AuditTrailSegmentato(TEST_DIR, 64);
+        for (int i = 0; i < 10; i++) {
+            piccolo.registraAzione("Azione numero " + i);
+        }
+
+        assertTrue(piccolo.elencaSegmenti().size() > 1, "Il segmento deve essere ruotato");
+
+        List<String> logs = piccolo.caricaLog();
+        assertEquals(10, logs.size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(logs.get(i).endsWith("Azione numero " + i), "L'ordine cronologico deve essere mantenuto");
+        }
+        piccolo.chiudi();
+    }
+
+
+    /**
+     * @brief Test Robustezza (Input null, vuoti o multiriga).
+     */
+    @Test
+    public void testInputNonValidi() {
+        auditTrail.registraAzione(null);
+        auditTrail.registraAzione("");
+        assertEquals(0, auditTrail.visualizzaLog().size(), "Input null o vuoti non devono generare log");
+
+        auditTrail.registraAzione("Riga 1\nRiga 2");
+        assertEquals(1, auditTrail.visualizzaLog().size(), "Un record deve occupare una sola riga");
+    }
+
+
+    /**
+     * @brief Test migrazione dal vecchio formato "audit_log.dat".
+     */
+    @Test
+    public void testImportaDaArchivio() {
+        IArchivioDati archivio = new FileArchivio(TEST_DIR, null);
+        List<String> vecchi = new ArrayList<>();
+        vecchi.add("[2024-01-01 10:00:00] Vecchia azione 1");
+        vecchi.add("[2024-01-01 10:05:00] Vecchia azione 2");
+        archivio.salvaStato(vecchi, AuditTrail.NOME_FILE_LOG);
+
+        assertEquals(2, auditTrail.importaDaArchivio(archivio));
+        auditTrail.registraAzione("Nuova azione");
+
+        List<String> logs = auditTrail.caricaLog();
+        assertEquals(3, logs.size());
+        assertEquals("[2024-01-01 10:00:00] Vecchia azione 1", logs.get(0));
+
+        // Seconda importazione: i segmenti esistono già, non deve duplicare
+        assertEquals(0, auditTrail.importaDaArchivio(archivio));
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        auditTrail.chiudi();
+        cancella(new File(TEST_DIR));
+    }
+
+    private void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CaricatoreParalleloTest {
+
+    private CaricatoreParallelo caricatore;
+    private final String TEST_DIR = "./test_caricatore/";
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     */
+    @BeforeEach
+    public void setUp() {
+        caricatore = new CaricatoreParallelo(CaricatoreParallelo.THREAD_DEFAULT);
+    }
+
+
+    /**
+     * @brief Test parallelismo: due fasi che si attendono a vicenda devono concludersi entrambe.
+     * Con un'esecuzione sequenziale la prima fase resterebbe bloccata fino al timeout.
+     */
+    @Test
+    public void testFasiConcorrenti() throws Exception {
+        final CountDownLatch barriera = new CountDownLatch(2);
+        Callable<Boolean> fase = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                barriera.countDown();
+                return barriera.await(5, TimeUnit.SECONDS);
+            }
+        };
+
+        Future<Boolean> a = caricatore.avvia("a", fase);
+        Future<Boolean> b = caricatore.avvia("b", fase);
+
+        assertTrue(caricatore.attendi(a));
+        assertTrue(caricatore.attendi(b));
+    }
+
+
+    /**
+     * @brief Test caricamento file: i risultati coincidono con quelli di un caricamento sequenziale.
+     */
+    @Test
+    public void testCaricaDaArchivio() throws Exception {
+        FileArchivio archivio = new FileArchivio(TEST_DIR, null);
+        List<String> libri = new ArrayList<>();
+        libri.add("Libro");
+        archivio.salvaStato(libri, "libri.dat");
+        archivio.salvaStato("utenti", "utenti.dat");
+
+        Future<Object> l = caricatore.carica(archivio, "libri.dat");
+        Future<Object> u = caricatore.carica(archivio, "utenti.dat");
+        Future<Object> assente = caricatore.carica(archivio, "prestiti.dat");
+
+        assertEquals(libri, caricatore.attendi(l));
+        assertEquals("utenti", caricatore.attendi(u));
+        assertNull(caricatore.attendi(assente));
+    }
+
+
+    /**
+     * @brief Test misure: ogni fase, parallela o sequenziale, ha la sua durata nel riepilogo.
+     */
+    @Test
+    public void testTempiFasi() throws Exception {
+        Future<String> lenta = caricatore.avvia("lenta", new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                Thread.sleep(50);
+                return "ok";
+            }
+        });
+        long inizio = System.nanoTime();
+        caricatore.registraFase("sequenziale", inizio);
+        caricatore.attendi(lenta);
+
+        Map<String, Long> tempi = caricatore.getTempi();
+        assertTrue(tempi.get("lenta") >= 50, "La durata deve essere misurata dentro la fase");
+        assertTrue(tempi.containsKey("sequenziale"));
+
+        String riepilogo = caricatore.riepilogo();
+        assertTrue(riepilogo.contains("lenta"));
+        assertTrue(riepilogo.contains("più lenta: lenta"));
+    }
+
+
+    /**
+     * @brief Test errori: attendi() rilancia l'eccezione originale della fase.
+     */
+    @Test
+    public void testEccezioneFase() {
+        Future<Object> guasta = caricatore.avvia("guasta", new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                throw new IOException("disco non disponibile");
+            }
+        });
+
+        IOException e = assertThrows(IOException.class, () -> caricatore.attendi(guasta));
+        assertEquals("disco non disponibile", e.getMessage());
+        assertTrue(caricatore.getTempi().get("guasta") >= 0, "Anche una fase fallita ha una durata");
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        caricatore.chiudi();
+        File d = new File(TEST_DIR);
+        File[] figli = d.listFiles();
+        if (figli != null) {
+            for (File f : figli) f.delete();
+        }
+        d.delete();
+    }
+}
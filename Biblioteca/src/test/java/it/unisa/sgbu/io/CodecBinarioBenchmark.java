@@ -0,0 +1,108 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.service.Catalogo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief Confronto tra CodecBinario e serializzazione Java su un catalogo di grandi dimensioni.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Per ciascun formato misura dimensione del file, tempo di scrittura e tempo medio di
+ * caricamento (dopo alcune iterazioni di riscaldamento).
+ *
+ * Argomenti opzionali: [numero libri] [iterazioni misurate]
+ */
+public class CodecBinarioBenchmark {
+
+    private static final String DIR = "./bench_codec/";
+
+    public static void main(String[] args) throws Exception {
+        int numeroLibri = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterazioni = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        new File(DIR).mkdirs();
+        Catalogo catalogo = generaCatalogo(numeroLibri);
+        File binario = new File(DIR, "libri.bin");
+        File serializzato = new File(DIR, "libri.ser");
+
+        long inizio = System.nanoTime();
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(binario), 64 * 1024)) {
+            CodecBinario.scrivi(catalogo, out);
+        }
+        long scritturaBinario = System.nanoTime() - inizio;
+
+        inizio = System.nanoTime();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serializzato)))) {
+            oos.writeObject(catalogo);
+        }
+        long scritturaSerializzato = System.nanoTime() - inizio;
+
+        catalogo = null;
+
+        // Riscaldamento JIT su entrambi i percorsi
+        for (int i = 0; i < 2; i++) {
+            caricaBinario(binario);
+            caricaSerializzato(serializzato);
+        }
+
+        long totaleBinario = 0, totaleSerializzato = 0;
+        for (int i = 0; i < iterazioni; i++) {
+            totaleBinario += caricaBinario(binario);
+            totaleSerializzato += caricaSerializzato(serializzato);
+        }
+
+        System.out.printf("Libri: %,d%n", numeroLibri);
+        System.out.printf("%-22s %14s %12s %12s%n", "formato", "byte", "scrittura", "caricamento");
+        System.out.printf("%-22s %,14d %9d ms %9d ms%n", "CodecBinario", binario.length(),
+                scritturaBinario / 1_000_000, totaleBinario / iterazioni / 1_000_000);
+        System.out.printf("%-22s %,14d %9d ms %9d ms%n", "ObjectOutputStream", serializzato.length(),
+                scritturaSerializzato / 1_000_000, totaleSerializzato / iterazioni / 1_000_000);
+        System.out.printf("Dimensione: %.1fx  Caricamento: %.1fx%n",
+                (double) serializzato.length() / binario.length(), (double) totaleSerializzato / totaleBinario);
+
+        binario.delete();
+        serializzato.delete();
+        new File(DIR).delete();
+    }
+
+    private static Catalogo generaCatalogo(int n) {
+        Catalogo c = new Catalogo();
+        for (int i = 0; i < n; i++) {
+            List<String> autori = new ArrayList<>();
+            autori.add("Autore " + (i % 5000));
+            if (i % 3 == 0) autori.add("Coautore " + (i % 700));
+            c.aggiungiLibro(new Libro(String.format("978-88-%07d-0", i), "Titolo del libro numero " + i, autori, 1950 + i % 75, 1 + i % 4));
+        }
+        return c;
+    }
+
+    private static long caricaBinario(File f) throws Exception {
+        long inizio = System.nanoTime();
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(f), 64 * 1024)) {
+            CodecBinario.leggi(in);
+        }
+        return System.nanoTime() - inizio;
+    }
+
+    private static long caricaSerializzato(File f) throws Exception {
+        long inizio = System.nanoTime();
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            ois.readObject();
+        }
+        return System.nanoTime() - inizio;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CodecBinarioTest {
+
+    private Catalogo catalogo;
+    private Anagrafica anagrafica;
+    private RegistroPrestiti registro;
+    private final String TEST_DIR = "./test_codec/";
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Crea un piccolo archivio con due libri, due utenti, un prestito in corso e uno chiuso in ritardo.
+     */
+    @BeforeEach
+    public void setUp() {
+        catalogo = new Catalogo();
+        anagrafica = new Anagrafica();
+        registro = new RegistroPrestiti(catalogo, anagrafica);
+
+        catalogo.aggiungiLibro(new Libro("978-0-13-468599-1", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 3));
+        catalogo.aggiungiLibro(new Libro("ISBN-UTF8", "Perché l'età è così?", Arrays.asList("Niccolò", "Zoë"), 1999, 1));
+        anagrafica.aggiungiUtente(new Utente("0512100001", "Mario", "Rossi", "m.rossi@studenti.unisa.it"));
+        anagrafica.aggiungiUtente(new Utente("0512100002", "Anna", "Bianchi", "a.bianchi@studenti.unisa.it"));
+
+        registro.registraPrestito("978-0-13-468599-1", "0512100001", LocalDate.now().plusDays(30));
+        Prestito chiuso = registro.registraPrestito("ISBN-UTF8", "0512100002", LocalDate.now().minusDays(2));
+        registro.registraRestituzione(chiuso.getIdPrestito(), LocalDate.now());
+    }
+
+
+    /**
+     * @brief Test andata e ritorno del Catalogo, inclusi caratteri non ASCII e copie disponibili.
+     */
+    @Test
+    public void testCatalogo() throws IOException {
+        Catalogo letto = (Catalogo) rileggi(catalogo);
+
+        Libro l = letto.getLibro("978-0-13-468599-1");
+        assertEquals("Effective Java", l.getTitolo());
+        assertEquals(3, l.getCopieTotali());
+        assertEquals(2, l.getCopieDisponibili(), "La disponibilità deve riflettere il prestito in corso");
+        assertEquals(2018, l.getAnno());
+
+        Libro utf = letto.getLibro("ISBN-UTF8");
+        assertEquals("Perché l'età è così?", utf.getTitolo());
+        assertEquals(Arrays.asList("Niccolò", "Zoë"), utf.getAutore());
+    }
+
+
+    /**
+     * @brief Test Anagrafica: vengono salvati solo i dati anagrafici, senza copie dei prestiti.
+     */
+    @Test
+    public void testAnagrafica() throws IOException {
+        Anagrafica letta = (Anagrafica) rileggi(anagrafica);
+
+        Utente u = letta.getUtente("0512100001");
+        assertEquals("Mario", u.getNome());
+        assertEquals("m.rossi@studenti.unisa.it", u.getEmail());
+        assertEquals(0, u.getNumeroPrestitiAttivi(), "I prestiti sono ricostruiti da RegistroPrestiti.ricollega()");
+    }
+
+
+    /**
+     * @brief Test RegistroPrestiti: prestiti per riferimento e ricollegamento alle istanze canoniche.
+     */
+    @Test
+    public void testRegistroRicollegato() throws IOException {
+        // Secondo prestito dello stesso libro
+        registro.registraPrestito("978-0-13-468599-1", "0512100002", LocalDate.now().plusDays(10));
+
+        Catalogo c = (Catalogo) rileggi(catalogo);
+        Anagrafica a = (Anagrafica) rileggi(anagrafica);
+        RegistroPrestiti letto = (RegistroPrestiti) rileggi(registro);
+        assertEquals(3, letto.getStoricoPrestiti().size());
+        assertEquals(4, letto.getProssimoId(), "La sequenza degli ID deve essere salvata nel file");
+
+        Prestito p1 = letto.trovaPrestito(1);
+        assertNull(p1.getLibro(), "Prima del ricollegamento il prestito conosce solo le chiavi");
+        assertEquals("978-0-13-468599-1", p1.getIsbn());
+        assertEquals("0512100001", p1.getMatricola());
+
+        letto.setCatalogo(c);
+        letto.setAnagrafica(a);
+        assertEquals(0, letto.ricollega());
+
+        Prestito p3 = letto.trovaPrestito(3);
+        assertSame(c.getLibro("978-0-13-468599-1"), p1.getLibro(), "Il prestito deve puntare al libro del Catalogo");
+        assertSame(p1.getLibro(), p3.getLibro());
+        assertSame(a.getUtente("0512100001"), p1.getUtente());
+        assertEquals(LocalDate.now().plusDays(30), p1.getDataPrevistaRestituzione());
+        assertNull(p1.getDataEffettivaRestituzione());
+
+        Prestito chiuso = letto.trovaPrestito(2);
+        assertEquals(LocalDate.now(), chiuso.getDataEffettivaRestituzione());
+        assertTrue(chiuso.isInRitardo());
+
+        // I prestiti in corso sono ricollegati agli utenti dell'Anagrafica
+        assertTrue(p1.getUtente().getPrestitiAttivi().contains(p1));
+        assertFalse(chiuso.getUtente().getPrestitiAttivi().contains(chiuso));
+
+        // La restituzione aggiorna la disponibilità del libro nel Catalogo
+        assertEquals(1, c.getLibro("978-0-13-468599-1").getCopieDisponibili());
+        assertTrue(letto.registraRestituzione(1, LocalDate.now()));
+        assertEquals(2, c.getLibro("978-0-13-468599-1").getCopieDisponibili());
+    }
+
+
+    /**
+     * @brief Test dimensione: il file dei prestiti non contiene più le copie di libri e utenti.
+     */
+    @Test
+    public void testRegistroCompatto() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        CodecBinario.scrivi(registro, buf);
+        ByteArrayOutputStream bufCatalogo = new ByteArrayOutputStream();
+        CodecBinario.scrivi(catalogo, bufCatalogo);
+
+        assertTrue(buf.size() < bufCatalogo.size(), "Due prestiti devono occupare meno dei due libri a cui fanno riferimento");
+    }
+
+
+    /**
+     * @brief Test delle primitive varint sui valori limite.
+     */
+    @Test
+    public void testVarInt() throws IOException {
+        int[] valori = {0, 1, -1, 63, -64, 127, 128, 300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        for (int v : valori) CodecBinario.scriviVarIntConSegno(out, v);
+        CodecBinario.scriviVarInt(out, 127);
+        CodecBinario.scriviStringa(out, null);
+        CodecBinario.scriviData(out, null);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+        for (int v : valori) assertEquals(v, CodecBinario.leggiVarIntConSegno(in));
+        assertEquals(127, CodecBinario.leggiVarInt(in));
+        assertNull(CodecBinario.leggiStringa(in));
+        assertNull(CodecBinario.leggiData(in));
+    }
+
+
+    /**
+     * @brief Test FileArchivio: formato binario più compatto e lettura dei file in formato precedente.
+     */
+    @Test
+    public void testFileArchivioCompatibilita() throws IOException {
+        FileArchivio archivio = new FileArchivio(TEST_DIR, null);
+        assertTrue(archivio.salvaStato(catalogo, "libri.dat"));
+
+        // File scritto come nelle versioni precedenti (serializzazione Java)
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File(TEST_DIR, "libri_legacy.dat")))) {
+            oos.writeObject(catalogo);
+        }
+
+        assertTrue(new File(TEST_DIR, "libri.dat").length() < new File(TEST_DIR, "libri_legacy.dat").length(),
+                "Il formato binario deve essere più compatto della serializzazione Java");
+
+        Catalogo binario = (Catalogo) archivio.caricaStato("libri.dat");
+        Catalogo legacy = (Catalogo) archivio.caricaStato("libri_legacy.dat");
+        assertEquals(2, binario.getLibri().size());
+        assertEquals(2, legacy.getLibri().size());
+        assertEquals("Effective Java", legacy.getLibro("978-0-13-468599-1").getTitolo());
+    }
+
+
+    /**
+     * @brief Test robustezza: un file binario troncato non deve essere caricato.
+     */
+    @Test
+    public void testFileTroncato() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        CodecBinario.scrivi(catalogo, buf);
+        byte[] completo = buf.toByteArray();
+
+        new File(TEST_DIR).mkdirs();
+        try (FileOutputStream out = new FileOutputStream(new File(TEST_DIR, "troncato.dat"))) {
+            out.write(completo, 0, completo.length - 5);
+        }
+        assertNull(new FileArchivio(TEST_DIR, null).caricaStato("troncato.dat"));
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        File d = new File(TEST_DIR);
+        File[] figli = d.listFiles();
+        if (figli != null) {
+            for (File f : figli) f.delete();
+        }
+        d.delete();
+    }
+
+    private Object rileggi(Object dati) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        CodecBinario.scrivi(dati, buf);
+        return CodecBinario.leggi(new ByteArrayInputStream(buf.toByteArray()));
+    }
+}
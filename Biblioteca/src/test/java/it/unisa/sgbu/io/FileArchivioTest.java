@@ -6,6 +6,8 @@
 package it.unisa.sgbu.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
@@ -101,12 +103,83 @@ public class FileArchivioTest {
         assertTrue(archivio.verificaEsistenzaFile(TEST_FILE), "Il file deve esistere dopo il salvataggio");
     }
     
+    /**
+     * @brief Test dell'impronta usata per riconoscere le modifiche di un file.
+     */
+    @Test
+    public void testImpronta() {
+        
+        archivio.salvaStato("Versione 1", TEST_FILE);
+        String prima = archivio.impronta(TEST_FILE);
+        
+        assertNotNull(prima);
+        assertEquals(prima, archivio.impronta(TEST_FILE), "Senza modifiche l'impronta non cambia");
+        
+        // Stesso contenuto e stessa dimensione: il file è comunque un altro
+        archivio.salvaStato("Versione 2", TEST_FILE);
+        assertNotEquals(prima, archivio.impronta(TEST_FILE), "Un salvataggio deve cambiare l'impronta");
+        assertNotEquals(archivio.impronta(TEST_FILE), archivio.impronta("fantasma.dat"));
+    }
+    
+    /**
+     * @brief Test salvataggio atomico.
+     * Nessun file temporaneo resta su disco e la versione sostituita è conservata come ".bak".
+     */
+    @Test
+    public void testGenerazionePrecedente() {
+        
+        archivio.salvaStato("Versione 1", TEST_FILE);
+        assertFalse(new File(TEST_DIR, TEST_FILE + FileArchivio.SUFFISSO_PRECEDENTE).exists(), "Al primo salvataggio non c'è una generazione precedente");
+        
+        archivio.salvaStato("Versione 2", TEST_FILE);
+        assertFalse(new File(TEST_DIR, TEST_FILE + FileArchivio.SUFFISSO_TEMPORANEO).exists(), "Il file temporaneo deve essere rinominato");
+        assertEquals("Versione 2", archivio.caricaStato(TEST_FILE));
+        assertEquals("Versione 1", archivio.caricaStato(TEST_FILE + FileArchivio.SUFFISSO_PRECEDENTE));
+    }
+    
+    /**
+     * @brief Test checksum: un byte alterato nel file principale fa caricare la generazione precedente.
+     */
+    @Test
+    public void testChecksumErratoUsaGenerazionePrecedente() throws IOException {
+        
+        archivio.salvaStato("Versione 1", TEST_FILE);
+        archivio.salvaStato("Versione 2", TEST_FILE);
+        
+        try (RandomAccessFile raf = new RandomAccessFile(new File(TEST_DIR, TEST_FILE), "rw")) {
+            raf.seek(raf.length() - FileArchivio.DIMENSIONE_CODA - 2);
+            int b = raf.read();
+            raf.seek(raf.length() - FileArchivio.DIMENSIONE_CODA - 2);
+            raf.write(b ^ 0x01);
+        }
+        
+        assertEquals("Versione 1", archivio.caricaStato(TEST_FILE), "Deve essere caricata la generazione precedente");
+    }
+    
+    /**
+     * @brief Test file troncato (es. interruzione di corrente): viene caricata la generazione precedente.
+     */
+    @Test
+    public void testFileTroncatoUsaGenerazionePrecedente() throws IOException {
+        
+        List<String> v1 = new ArrayList<>();
+        v1.add("Versione 1");
+        archivio.salvaStato(v1, TEST_FILE);
+        archivio.salvaStato(new ArrayList<String>(), TEST_FILE);
+        
+        try (RandomAccessFile raf = new RandomAccessFile(new File(TEST_DIR, TEST_FILE), "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        
+        assertEquals(v1, archivio.caricaStato(TEST_FILE));
+    }
+    
     // Pulizia: cancello i file creati dopo ogni test per lasciare l'ambiente pulito
     @AfterEach
     public void tearDown() {
-        File f = new File(TEST_DIR + TEST_FILE);
-        if (f.exists()) {
-            f.delete();
+        File[] figli = new File(TEST_DIR).listFiles();
+        if (figli != null) {
+            for (File f : figli) f.delete();
         }
         File d = new File(TEST_DIR);
         if (d.exists()) {
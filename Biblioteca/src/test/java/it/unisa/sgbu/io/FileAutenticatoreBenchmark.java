@@ -0,0 +1,120 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.CredenzialiCifrate;
+import it.unisa.sgbu.domain.RegistroCredenziali;
+import java.io.File;
+
+/**
+ * @brief Benchmark del throughput di login di FileAutenticatore al variare del costo PBKDF2.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Confronta:
+ * - il comportamento precedente: file riletto a ogni login e password in chiaro confrontata con equals();
+ * - login con password errata o operatore sconosciuto: sempre un calcolo PBKDF2 completo
+ *   (è anche il costo del primo login di ogni operatore);
+ * - login ripetuti con la password corretta (come l'autenticazione HTTP Basic a ogni richiesta),
+ *   che dopo la prima verifica costano un digest SHA-256.
+ *
+ * Il registro contiene [account] operatori: quelli misurati hanno il costo indicato, gli altri
+ * costo 1 (la ricerca per username non dipende dal costo, e crearli costerebbe minuti).
+ *
+ * Argomenti opzionali: [account] [costi separati da virgola] [ms per misura]
+ */
+public class FileAutenticatoreBenchmark {
+
+    private static final String DIR = "./bench_auth/";
+    private static final String FILE = "credenziali.dat";
+    private static final int MISURATI = 8;
+
+    public static void main(String[] args) {
+        int account = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String[] costi = (args.length > 1 ? args[1] : "1000,10000,100000," + CredenzialiCifrate.ITERAZIONI_DEFAULT).split(",");
+        long durataMs = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+        cancella(new File(DIR));
+        FileArchivio archivio = new FileArchivio(DIR, null);
+
+        System.out.println("== Prima: file riletto a ogni login, password in chiaro ==");
+        archivio.salvaStato(new Credenziali("admin", "password"), FILE);
+        misura("login corretto", durataMs, new Login() {
+            @Override
+            public boolean esegui(int i) {
+                Object dati = archivio.caricaStato(FILE);
+                Credenziali c = (Credenziali) dati;
+                return "admin".equals(c.getUser()) && "password".equals(c.getPassword());
+            }
+        });
+
+        for (String testo : costi) {
+            int costo = Integer.parseInt(testo.trim());
+            RegistroCredenziali registro = new RegistroCredenziali();
+            for (int i = 0; i < account; i++) {
+                registro.aggiungi("operatore" + i, "password" + i, (i < MISURATI) ? costo : 1);
+            }
+            archivio.salvaStato(registro, FILE);
+
+            final FileAutenticatore autenticatore = new FileAutenticatore(FILE, archivio);
+            System.out.printf("== Registro cifrato: %,d account, %,d iterazioni ==%n", account, costo);
+            misura("password errata", durataMs, new Login() {
+                @Override
+                public boolean esegui(int i) {
+                    return !autenticatore.verificaCredenziali("operatore" + (i % MISURATI), "sbagliata");
+                }
+            });
+            misura("operatore sconosciuto", durataMs, new Login() {
+                @Override
+                public boolean esegui(int i) {
+                    return !autenticatore.verificaCredenziali("sconosciuto" + i, "password");
+                }
+            });
+            misura("login corretto ripetuto", durataMs, new Login() {
+                @Override
+                public boolean esegui(int i) {
+                    int k = i % MISURATI;
+                    return autenticatore.verificaCredenziali("operatore" + k, "password" + k);
+                }
+            });
+            System.out.printf("file letto %d volte%n", autenticatore.getCaricamenti());
+        }
+
+        cancella(new File(DIR));
+    }
+
+    private interface Login {
+        boolean esegui(int i);
+    }
+
+    private static void misura(String nome, long durataMs, Login login) {
+        // Riscaldamento JIT (e prime verifiche, per il login corretto)
+        long fine = System.nanoTime() + durataMs * 1_000_000L / 4;
+        for (int i = 0; System.nanoTime() < fine; i++) {
+            login.esegui(i);
+        }
+
+        int eseguiti = 0;
+        long inizio = System.nanoTime();
+        fine = inizio + durataMs * 1_000_000L;
+        long adesso;
+        do {
+            if (!login.esegui(eseguiti)) throw new IllegalStateException("Esito inatteso: " + nome);
+            eseguiti++;
+            adesso = System.nanoTime();
+        } while (adesso < fine);
+        double secondi = (adesso - inizio) / 1e9;
+        System.out.printf("%-26s %,12.1f login/s  (%,12.0f ns/login)%n", nome, eseguiti / secondi, (adesso - inizio) / (double) eseguiti);
+    }
+
+    private static void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
@@ -6,6 +6,7 @@
 package it.unisa.sgbu.io;
 
 import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.RegistroCredenziali;
 import java.io.File;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
@@ -21,6 +22,7 @@ public class FileAutenticatoreTest {
     private IArchivioDati archivio;
     private final String TEST_DIR = "./test_auth/";
     private final String FILE_CREDENZIALI = "credenziali_test.dat";
+    private static final int ITERAZIONI = 1000;   // costo PBKDF2 basso, per la velocità dei test
     
     
     /**
@@ -88,11 +90,87 @@ public class FileAutenticatoreTest {
         assertFalse(esito, "Se il file non esiste, il login deve fallire per sicurezza");
     }
     
+    /**
+     * @brief Test File con più operatori e password cifrate (RegistroCredenziali).
+     */
+    @Test
+    public void testVerificaCredenziali_RegistroCifrato() {
+        RegistroCredenziali r = new RegistroCredenziali();
+        r.aggiungi("admin", "password", ITERAZIONI);
+        r.aggiungi("mrossi", "prestiti", ITERAZIONI);
+        archivio.salvaStato(r, FILE_CREDENZIALI);
+        
+        assertTrue(autenticatore.verificaCredenziali("admin", "password"));
+        assertTrue(autenticatore.verificaCredenziali("mrossi", "prestiti"));
+        assertFalse(autenticatore.verificaCredenziali("mrossi", "password"));
+        assertFalse(autenticatore.verificaCredenziali("pippo", "prestiti"));
+        
+        // Dopo una verifica riuscita, una password diversa deve comunque fallire
+        assertTrue(autenticatore.verificaCredenziali("mrossi", "prestiti"));
+        assertFalse(autenticatore.verificaCredenziali("mrossi", "prestiti "));
+    }
+    
+    /**
+     * @brief Il file viene letto una sola volta finché non cambia.
+     */
+    @Test
+    public void testVerificaCredenziali_CaricamentoUnico() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(autenticatore.verificaCredenziali("admin", "password"));
+            assertFalse(autenticatore.verificaCredenziali("admin", "sbagliata"));
+        }
+        assertEquals(1, autenticatore.getCaricamenti());
+    }
+    
+    /**
+     * @brief Una modifica del file (cambio password) viene rilevata alla verifica successiva.
+     */
+    @Test
+    public void testVerificaCredenziali_RicaricaDopoModifica() {
+        assertTrue(autenticatore.verificaCredenziali("admin", "password"));
+        
+        RegistroCredenziali r = new RegistroCredenziali();
+        r.aggiungi("admin", "nuova", ITERAZIONI);
+        archivio.salvaStato(r, FILE_CREDENZIALI);
+        
+        assertFalse(autenticatore.verificaCredenziali("admin", "password"), "La vecchia password non vale più");
+        assertTrue(autenticatore.verificaCredenziali("admin", "nuova"));
+        assertEquals(2, autenticatore.getCaricamenti());
+        
+        // Il file rimosso (anche la generazione precedente) disattiva l'accesso
+        new File(TEST_DIR + FILE_CREDENZIALI).delete();
+        new File(TEST_DIR + FILE_CREDENZIALI + FileArchivio.SUFFISSO_PRECEDENTE).delete();
+        assertFalse(autenticatore.verificaCredenziali("admin", "nuova"));
+    }
+    
+    /**
+     * @brief Conversione all'avvio di un file in chiaro: su disco non deve restare la password.
+     */
+    @Test
+    public void testMigraFormatoPrecedente() {
+        // Secondo salvataggio in chiaro: anche la generazione precedente contiene la password
+        archivio.salvaStato(new Credenziali("admin", "password"), FILE_CREDENZIALI);
+        File bak = new File(TEST_DIR + FILE_CREDENZIALI + FileArchivio.SUFFISSO_PRECEDENTE);
+        assertTrue(bak.exists());
+        
+        assertTrue(FileAutenticatore.migraFormatoPrecedente((FileArchivio) archivio, FILE_CREDENZIALI, ITERAZIONI));
+        assertTrue(archivio.caricaStato(FILE_CREDENZIALI) instanceof RegistroCredenziali);
+        assertFalse(bak.exists(), "La copia in chiaro deve essere eliminata");
+        
+        assertTrue(autenticatore.verificaCredenziali("admin", "password"));
+        assertFalse(autenticatore.verificaCredenziali("admin", "sbagliata"));
+        
+        // Un file già cifrato non viene riscritto
+        assertFalse(FileAutenticatore.migraFormatoPrecedente((FileArchivio) archivio, FILE_CREDENZIALI, ITERAZIONI));
+    }
+    
     @AfterEach
     public void tearDown() {
         // Pulizia file
         File f = new File(TEST_DIR + FILE_CREDENZIALI);
         if (f.exists()) f.delete();
+        File bak = new File(TEST_DIR + FILE_CREDENZIALI + FileArchivio.SUFFISSO_PRECEDENTE);
+        if (bak.exists()) bak.delete();
         File d = new File(TEST_DIR);
         if (d.exists()) d.delete();
     }
@@ -0,0 +1,270 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class GiornaleMutazioniTest {
+
+    private GiornaleMutazioni giornale;
+    private final String TEST_DIR = "./test_giornale/";
+    private List<Mutazione> lette;
+    private Consumer<Mutazione> raccogli;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Crea un giornale vuoto (senza fsync per record, per velocità) e un consumatore che raccoglie le mutazioni rilette.
+     */
+    @BeforeEach
+    public void setUp() {
+        giornale = new GiornaleMutazioni(TEST_DIR, 1000, false);
+        giornale.recupera();
+        lette = new ArrayList<>();
+        raccogli = new Consumer<Mutazione>() {
+            @Override
+            public void accept(Mutazione m) {
+                lette.add(m);
+            }
+        };
+    }
+
+
+    /**
+     * @brief Test andata e ritorno di tutti i tipi di mutazione.
+     */
+    @Test
+    public void testRegistraERiproduci() {
+        Libro l = new Libro("ISBN-123", "Titolo", Arrays.asList("Autore A", "Autore B"), 2020, 3);
+        Utente u = new Utente("MATR-001", "Mario", "Rossi", "mario@test.it");
+        Prestito p = new Prestito(7, l, u, LocalDate.of(2024, 1, 10), LocalDate.of(2024, 2, 10));
+
+        giornale.registra(Mutazione.aggiuntaLibro(l));
+        giornale.registra(Mutazione.modificaLibro("ISBN-123", l));
+        giornale.registra(Mutazione.aggiuntaUtente(u));
+        giornale.registra(Mutazione.prestito(p));
+        giornale.registra(Mutazione.restituzione(7, LocalDate.of(2024, 2, 1)));
+        giornale.registra(Mutazione.rimozioneUtente("MATR-001"));
+        giornale.registra(Mutazione.rimozioneLibro("ISBN-123"));
+        giornale.chiudi();
+
+        GiornaleMutazioni riaperto = new GiornaleMutazioni(TEST_DIR, 1000, false);
+        riaperto.recupera();
+        assertEquals(7, riaperto.riproduci(raccogli));
+        riaperto.chiudi();
+
+        assertEquals(TipoMutazione.AGGIUNTA_LIBRO, lette.get(0).getTipo());
+        assertEquals("Titolo", lette.get(0).getLibro().getTitolo());
+        assertEquals(2, lette.get(0).getLibro().getAutore().size());
+        assertEquals(3, lette.get(0).getLibro().getCopieTotali());
+        assertEquals("ISBN-123", lette.get(1).getChiave());
+        assertEquals("mario@test.it", lette.get(2).getUtente().getEmail());
+
+        Mutazione prestito = lette.get(3);
+        assertEquals(7, prestito.getIdPrestito());
+        assertEquals("ISBN-123", prestito.getIsbn());
+        assertEquals("MATR-001", prestito.getMatricola());
+        assertEquals(LocalDate.of(2024, 2, 10), prestito.getDataPrevista());
+
+        assertEquals(LocalDate.of(2024, 2, 1), lette.get(4).getDataEffettiva());
+        assertEquals(TipoMutazione.RIMOZIONE_LIBRO, lette.get(6).getTipo());
+    }
+
+
+    /**
+     * @brief Test lotto: più mutazioni viaggiano in un unico record e tornano nello stesso ordine.
+     */
+    @Test
+    public void testLotto() {
+        giornale.registra(Mutazione.lotto(Arrays.asList(
+                Mutazione.restituzione(1, LocalDate.of(2024, 3, 1)),
+                Mutazione.restituzione(2, LocalDate.of(2024, 3, 1)),
+                Mutazione.rimozioneLibro("ISBN-123"))));
+        giornale.chiudi();
+
+        GiornaleMutazioni riaperto = new GiornaleMutazioni(TEST_DIR, 1000, false);
+        riaperto.recupera();
+        assertEquals(1, riaperto.riproduci(raccogli));
+        riaperto.chiudi();
+
+        List<Mutazione> voci = lette.get(0).getVoci();
+        assertEquals(TipoMutazione.LOTTO, lette.get(0).getTipo());
+        assertEquals(3, voci.size());
+        assertEquals(2, voci.get(1).getIdPrestito());
+        assertEquals("ISBN-123", voci.get(2).getChiave());
+    }
+
+
+    /**
+     * @brief Test robustezza: un record troncato in coda (crash durante la scrittura) viene ignorato.
+     */
+    @Test
+    public void testCodaTroncata() throws IOException {
+        giornale.registra(Mutazione.rimozioneLibro("A"));
+        giornale.registra(Mutazione.rimozioneLibro("B"));
+        giornale.chiudi();
+
+        File segmento = unicoSegmento();
+        try (RandomAccessFile raf = new RandomAccessFile(segmento, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        GiornaleMutazioni riaperto = new GiornaleMutazioni(TEST_DIR, 1000, false);
+        riaperto.recupera();
+        assertEquals(1, riaperto.riproduci(raccogli), "Solo il record integro deve essere riletto");
+        assertEquals("A", lette.get(0).getChiave());
+        riaperto.chiudi();
+    }
+
+
+    /**
+     * @brief Test pubblicazione snapshot: i segmenti compattati non vengono più riletti.
+     */
+    @Test
+    public void testPubblicaSnapshot() throws IOException {
+        giornale.registra(Mutazione.rimozioneLibro("VECCHIO"));
+        long fino = giornale.ruota();
+        giornale.registra(Mutazione.rimozioneLibro("NUOVO"));
+
+        // Senza il file ".nuovo" la pubblicazione deve essere rifiutata
+        assertFalse(giornale.pubblicaSnapshot(fino, Arrays.asList("libri.dat")));
+
+        scriviFile("libri.dat" + GiornaleMutazioni.SUFFISSO_SNAPSHOT_NUOVO);
+        assertTrue(giornale.pubblicaSnapshot(fino, Arrays.asList("libri.dat")));
+        assertTrue(new File(TEST_DIR, "libri.dat").exists());
+        assertEquals(fino, giornale.getGenerazioneCompattata());
+
+        assertEquals(1, giornale.riproduci(raccogli));
+        assertEquals("NUOVO", lette.get(0).getChiave());
+    }
+
+
+    /**
+     * @brief Test compattazione in background tramite un Compattatore.
+     */
+    @Test
+    public void testCompattaInBackground() throws IOException {
+        GiornaleMutazioni piccolo = new GiornaleMutazioni(TEST_DIR + "bg", 2, false);
+        piccolo.recupera();
+        piccolo.registra(Mutazione.rimozioneLibro("A"));
+        assertFalse(piccolo.richiedeCompattazione());
+        piccolo.registra(Mutazione.rimozioneLibro("B"));
+        assertTrue(piccolo.richiedeCompattazione());
+
+        final List<Long> richieste = new ArrayList<>();
+        piccolo.compatta(new GiornaleMutazioni.Compattatore() {
+            @Override
+            public List<String> compatta(long finoAGenerazione) {
+                richieste.add(finoAGenerazione);
+                try {
+                    scriviFile("bg/snap.dat" + GiornaleMutazioni.SUFFISSO_SNAPSHOT_NUOVO);
+                } catch (IOException e) {
+                    return null;
+                }
+                return Arrays.asList("snap.dat");
+            }
+        });
+        piccolo.registra(Mutazione.rimozioneLibro("C"));
+        piccolo.attendiCompattazione();
+
+        assertEquals(1, richieste.size());
+        assertEquals(richieste.get(0).longValue(), piccolo.getGenerazioneCompattata());
+        assertEquals(1, piccolo.riproduci(raccogli), "Dopo la compattazione resta solo la mutazione successiva");
+        assertEquals("C", lette.get(0).getChiave());
+        piccolo.chiudi();
+    }
+
+
+    /**
+     * @brief Test recupero: una pubblicazione interrotta prima delle rinomine viene completata all'avvio.
+     */
+    @Test
+    public void testRecuperaPubblicazioneInterrotta() throws IOException {
+        giornale.registra(Mutazione.rimozioneLibro("A"));
+        long fino = giornale.ruota();
+        giornale.chiudi();
+
+        // Simulo un crash dopo la scrittura dello stato ma prima delle rinomine
+        scriviFile("libri.dat" + GiornaleMutazioni.SUFFISSO_SNAPSHOT_NUOVO);
+        try (FileOutputStream out = new FileOutputStream(new File(TEST_DIR + GiornaleMutazioni.CARTELLA_GIORNALE, "stato"))) {
+            out.write(("PUBBLICAZIONE " + fino + " libri.dat").getBytes("UTF-8"));
+        }
+
+        GiornaleMutazioni riaperto = new GiornaleMutazioni(TEST_DIR, 1000, false);
+        riaperto.recupera();
+        assertTrue(new File(TEST_DIR, "libri.dat").exists(), "La rinomina deve essere completata");
+        assertFalse(new File(TEST_DIR, "libri.dat" + GiornaleMutazioni.SUFFISSO_SNAPSHOT_NUOVO).exists());
+        assertEquals(0, riaperto.riproduci(raccogli), "Le mutazioni già nello snapshot non vanno rieseguite");
+        riaperto.chiudi();
+    }
+
+
+    /**
+     * @brief Test chiusura: dopo chiudi() l'attesa del compattatore ritorna subito senza segnalare errori.
+     */
+    @Test
+    public void testAttendiDopoChiusura() {
+        giornale.chiudi();
+        PrintStream originale = System.err;
+        ByteArrayOutputStream errori = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errori));
+        try {
+            giornale.attendiCompattazione();
+            giornale.chiudi();
+        } finally {
+            System.setErr(originale);
+        }
+        assertEquals(0, errori.size(), "Nessun errore atteso dopo la chiusura");
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        giornale.chiudi();
+        cancella(new File(TEST_DIR));
+    }
+
+    private File unicoSegmento() {
+        File[] segmenti = new File(TEST_DIR, GiornaleMutazioni.CARTELLA_GIORNALE).listFiles();
+        for (File f : segmenti) {
+            if (f.getName().endsWith(".wal")) return f;
+        }
+        fail("Nessun segmento trovato");
+        return null;
+    }
+
+    private void scriviFile(String nome) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(TEST_DIR, nome))) {
+            out.write(1);
+        }
+    }
+
+    private void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class LettoreCsvTest {
+
+    /**
+     * @brief Test lettura: BOM, virgolette, separatori e a capo nei campi, CRLF e righe vuote.
+     */
+    @Test
+    public void testLeggiRiga() throws IOException {
+        String csv = "\uFEFFa;b;c\r\n\r\n\"x;y\";\"di \"\"lui\"\"\";\"riga1\nriga2\"\nultimo;;";
+        LettoreCsv lettore = new LettoreCsv(new StringReader(csv));
+
+        assertEquals(Arrays.asList("a", "b", "c"), lettore.leggiRiga());
+        assertEquals(1, lettore.getRiga());
+        assertEquals(Arrays.asList("x;y", "di \"lui\"", "riga1\nriga2"), lettore.leggiRiga());
+        assertEquals(3, lettore.getRiga());
+        assertEquals(Arrays.asList("ultimo", "", ""), lettore.leggiRiga());
+        assertEquals(5, lettore.getRiga());
+        assertNull(lettore.leggiRiga());
+    }
+
+
+    /**
+     * @brief Test andata e ritorno con ScrittoreCsv, e errore sulle virgolette non chiuse.
+     */
+    @Test
+    public void testScrittoreEVirgoletteNonChiuse() throws IOException {
+        List<String> campi = Arrays.asList("semplice", "con;separatore", "con \"virgolette\"", "a\ncapo", null, "");
+        StringWriter testo = new StringWriter();
+        ScrittoreCsv scrittore = new ScrittoreCsv(testo);
+        scrittore.scriviRiga(campi);
+        scrittore.scriviRiga("fine");
+
+        LettoreCsv lettore = new LettoreCsv(new StringReader(testo.toString()));
+        assertEquals(Arrays.asList("semplice", "con;separatore", "con \"virgolette\"", "a\ncapo", "", ""), lettore.leggiRiga());
+        assertEquals(Arrays.asList("fine"), lettore.leggiRiga());
+
+        LettoreCsv troncato = new LettoreCsv(new StringReader("a;\"non chiuso\n"));
+        assertThrows(IOException.class, troncato::leggiRiga);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.io;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class StoricoPrestitiTest {
+
+    private StoricoPrestiti storico;
+    private final String TEST_DIR = "./test_storico_prestiti/";
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     */
+    @BeforeEach
+    public void setUp() {
+        storico = new StoricoPrestiti(TEST_DIR, true);
+    }
+
+
+    private static Prestito chiuso(int id, LocalDate restituzione) {
+        Prestito p = new Prestito(id, "ISBN-" + id, "MATR-001", restituzione.minusDays(40), restituzione.minusDays(10));
+        p.chiudiPrestito(restituzione);
+        return p;
+    }
+
+
+    /**
+     * @brief Test segmenti mensili: ogni prestito finisce nel mese della restituzione
+     * e la lettura per intervallo legge solo i mesi richiesti.
+     */
+    @Test
+    public void testSegmentiMensili() {
+        assertTrue(storico.archivia(1, chiuso(1, LocalDate.of(2024, 1, 15))));
+        assertTrue(storico.archivia(2, chiuso(2, LocalDate.of(2024, 2, 3))));
+        assertTrue(storico.archivia(3, chiuso(3, LocalDate.of(2024, 2, 28))));
+        assertFalse(storico.archivia(4, new Prestito(4, "ISBN-4", "MATR-001", LocalDate.now(), LocalDate.now())),
+                "Un prestito in corso non va nello storico");
+        assertEquals(2, storico.elencaSegmenti().size());
+
+        final List<Integer> febbraio = new ArrayList<>();
+        int n = storico.scorri(YearMonth.of(2024, 2), YearMonth.of(2024, 2), null, p -> febbraio.add(p.getIdPrestito()));
+        assertEquals(2, n);
+        assertEquals(2, febbraio.get(0).intValue());
+
+        final List<Prestito> letti = new ArrayList<>();
+        storico.scorri(null, null, p -> p.getIdPrestito() == 3, letti::add);
+        assertEquals(1, letti.size());
+        assertEquals("ISBN-3", letti.get(0).getIsbn());
+        assertEquals(LocalDate.of(2024, 2, 28), letti.get(0).getDataEffettivaRestituzione());
+        assertTrue(letti.get(0).isInRitardo());
+    }
+
+
+    /**
+     * @brief Test idempotenza: dopo la riapertura le sequenze già archiviate vengono ignorate,
+     * anche se l'ultima riga è stata troncata da un crash.
+     */
+    @Test
+    public void testSequenzaDopoRiapertura() throws IOException {
+        storico.archivia(1, chiuso(1, LocalDate.of(2024, 3, 1)));
+        storico.archivia(2, chiuso(2, LocalDate.of(2024, 3, 2)));
+        storico.chiudi();
+
+        // Record parziale in coda, come dopo un crash durante la scrittura
+        File segmento = storico.elencaSegmenti().get(0);
+        try (FileOutputStream fos = new FileOutputStream(segmento, true)) {
+            fos.write("3\t3\tISBN-3\tMA".getBytes(StandardCharsets.UTF_8));
+        }
+
+        StoricoPrestiti riaperto = new StoricoPrestiti(TEST_DIR, true);
+        assertEquals(2, riaperto.getUltimaSequenza());
+        assertTrue(riaperto.archivia(2, chiuso(2, LocalDate.of(2024, 3, 2))), "Sequenza già presente: nessuna scrittura");
+        assertTrue(riaperto.archivia(3, chiuso(3, LocalDate.of(2024, 3, 3))));
+
+        List<Integer> id = new ArrayList<>();
+        riaperto.scorri(p -> id.add(p.getIdPrestito()));
+        assertEquals(Arrays.asList(1, 2, 3), id);
+        riaperto.chiudi();
+    }
+
+
+    /**
+     * @brief Test compressione: i mesi conclusi diventano archivi GZIP, uniti a eventuali
+     * restituzioni tardive, e restano leggibili.
+     */
+    @Test
+    public void testComprimiMesiChiusi() {
+        storico.archivia(1, chiuso(1, LocalDate.of(2024, 1, 10)));
+        storico.archivia(2, chiuso(2, LocalDate.of(2024, 5, 10)));
+        assertEquals(1, storico.comprimiMesiChiusi(YearMonth.of(2024, 5)));
+
+        // Restituzione di gennaio registrata dopo la compressione
+        storico.archivia(3, chiuso(3, LocalDate.of(2024, 1, 20)));
+        assertEquals(1, storico.comprimiMesiChiusi(YearMonth.of(2024, 5)));
+
+        List<String> nomi = new ArrayList<>();
+        for (File f : storico.elencaSegmenti()) nomi.add(f.getName());
+        assertEquals(Arrays.asList("prestiti-202401.log.gz", "prestiti-202405.log"), nomi);
+
+        List<Integer> gennaio = new ArrayList<>();
+        storico.scorri(YearMonth.of(2024, 1), YearMonth.of(2024, 1), null, p -> gennaio.add(p.getIdPrestito()));
+        assertEquals(Arrays.asList(1, 3), gennaio);
+
+        // La sequenza compressa non si perde alla riapertura
+        storico.chiudi();
+        assertEquals(3, new StoricoPrestiti(TEST_DIR, true).getUltimaSequenza());
+    }
+
+
+    /**
+     * @brief Test integrazione con il RegistroPrestiti: le restituzioni lasciano la memoria
+     * e un registro ricaricato dallo stesso snapshot non duplica lo storico.
+     */
+    @Test
+    public void testRegistroSpostaChiusi() throws IOException {
+        Catalogo catalogo = new Catalogo();
+        Anagrafica anagrafica = new Anagrafica();
+        catalogo.aggiungiLibro(new Libro("ISBN-123", "Libro Test", Collections.singletonList("Autore"), 2020, 2));
+        anagrafica.aggiungiUtente(new Utente("MATR-001", "Mario", "Rossi", "email@test.it"));
+        RegistroPrestiti registro = new RegistroPrestiti(catalogo, anagrafica);
+
+        // Snapshot con un prestito chiuso rimasto in memoria (registro senza storico)
+        Prestito primo = registro.registraPrestito("ISBN-123", "MATR-001", LocalDate.now().plusDays(30));
+        registro.registraPrestito("ISBN-123", "MATR-001", LocalDate.now().plusDays(30));
+        registro.registraRestituzione(primo.getIdPrestito(), LocalDate.now());
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        CodecBinario.scrivi(registro, snapshot);
+
+        for (int avvio = 0; avvio < 2; avvio++) {
+            RegistroPrestiti caricato = (RegistroPrestiti) CodecBinario.leggi(new ByteArrayInputStream(snapshot.toByteArray()));
+            caricato.setCatalogo(catalogo);
+            caricato.setAnagrafica(anagrafica);
+            caricato.setStorico(storico);
+
+            assertEquals(1, caricato.archiviaChiusi());
+            assertEquals(1, caricato.getStoricoPrestiti().size(), "In memoria resta solo il prestito in corso");
+            assertNull(caricato.trovaPrestito(primo.getIdPrestito()));
+        }
+
+        List<Prestito> chiusi = new ArrayList<>();
+        assertEquals(1, storico.scorri(chiusi::add), "Il secondo avvio non deve duplicare il record");
+        assertEquals(primo.getIdPrestito(), chiusi.get(0).getIdPrestito());
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        storico.chiudi();
+        File d = new File(TEST_DIR, StoricoPrestiti.CARTELLA_STORICO);
+        File[] figli = d.listFiles();
+        if (figli != null) {
+            for (File f : figli) f.delete();
+        }
+        d.delete();
+        new File(TEST_DIR).delete();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.server;
+
+import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.gui.GUIController;
+import it.unisa.sgbu.io.ArchivioDifferito;
+import it.unisa.sgbu.io.AuditTrailSegmentato;
+import it.unisa.sgbu.io.FileArchivio;
+import it.unisa.sgbu.io.FileAutenticatore;
+import it.unisa.sgbu.io.GiornaleMutazioni;
+import it.unisa.sgbu.io.IArchivioDati;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @brief Generatore di carico locale per ServerHttp: throughput e latenza con più postazioni.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test,
+ * che include javafx-base; non serve un display). Avvia il server in-process su una porta libera
+ * e su una cartella temporanea, con giornale delle mutazioni e audit trail come in MainServer,
+ * poi ogni client simula una postazione che alterna ricerche e pagine del catalogo (70%),
+ * prestiti (15%) e restituzioni (15%) sui propri utenti.
+ *
+ * Per ogni configurazione stampa richieste/s, latenza p50/p95/p99/max e risposte non 2xx.
+ * Ogni richiesta verifica le credenziali (HTTP Basic), quindi il costo dell'autenticazione è incluso.
+ *
+ * Argomenti opzionali: [client separati da virgola] [richieste per client] [thread del server]
+ * (default: 1,4,16 e 2000 e numero di processori x 2).
+ */
+public class ServerHttpBenchmark {
+
+    private static final int LIBRI = 20000;
+    private static final int UTENTI_PER_CLIENT = 50;
+    private static final String[] PAROLE = {"java", "reti", "sistemi", "guida", "analisi", "fisica", "storia", "basi"};
+    private static final String CREDENZIALI = "Basic " + Base64.getEncoder().encodeToString("admin:password".getBytes(StandardCharsets.UTF_8));
+
+    public static void main(String[] args) throws Exception {
+        String[] client = (args.length > 0 ? args[0] : "1,4,16").split(",");
+        int richieste = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int thread = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+
+        int massimoClient = 0;
+        for (String c : client) massimoClient = Math.max(massimoClient, Integer.parseInt(c.trim()));
+
+        File cartella = Files.createTempDirectory("sgbu-http").toFile();
+        String dati = cartella.getPath() + File.separator;
+        IArchivioDati archivio = new ArchivioDifferito(new FileArchivio(dati, null));
+        archivio.salvaStato(new Credenziali("admin", "password"), "credenziali.dat");
+        FileAutenticatore autenticatore = new FileAutenticatore("credenziali.dat", archivio);
+
+        Catalogo catalogo = new Catalogo();
+        Anagrafica anagrafica = new Anagrafica();
+        for (int i = 0; i < LIBRI; i++) {
+            catalogo.aggiungiLibro(new Libro(isbn(i), PAROLE[i % PAROLE.length] + " volume " + i,
+                    Arrays.asList("Autore " + (i % 97)), 1950 + i % 70, 3));
+        }
+        for (int i = 0; i < massimoClient * UTENTI_PER_CLIENT; i++) {
+            anagrafica.aggiungiUtente(new Utente(matricola(i), "Nome", "Cognome", "utente" + i + "@test.it"));
+        }
+        AuditTrailSegmentato logger = new AuditTrailSegmentato(dati);
+        GiornaleMutazioni giornale = new GiornaleMutazioni(dati, GiornaleMutazioni.SOGLIA_COMPATTAZIONE_DEFAULT, true);
+        giornale.recupera();
+        GUIController controller = new GUIController(archivio, logger, giornale, autenticatore, catalogo, anagrafica,
+                new RegistroPrestiti(catalogo, anagrafica), new ValidatoreDati());
+
+        ServerHttp server = new ServerHttp(controller, autenticatore);
+        server.avvia(0, thread, 256);
+        String base = "http://localhost:" + server.getPorta();
+        System.out.printf("Server: %d thread, %,d libri%n", thread, LIBRI);
+
+        esegui(base, 2, Math.min(500, richieste)); // riscaldamento JIT
+        System.out.printf("%8s %12s %10s %10s %10s %10s %8s%n", "client", "richieste/s", "p50", "p95", "p99", "max", "non 2xx");
+        for (String c : client) {
+            esegui(base, Integer.parseInt(c.trim()), richieste);
+        }
+
+        server.ferma(1);
+        controller.chiudiSistema();
+        cancella(cartella);
+    }
+
+    private static void esegui(final String base, int numeroClient, final int richieste) throws InterruptedException {
+        final long[][] latenze = new long[numeroClient][richieste];
+        final AtomicInteger errori = new AtomicInteger();
+        Thread[] postazioni = new Thread[numeroClient];
+        for (int c = 0; c < numeroClient; c++) {
+            final int indice = c;
+            postazioni[c] = new Thread(() -> {
+                Random r = new Random(indice);
+                Deque<Long> aperti = new ArrayDeque<>();
+                String scadenza = LocalDate.now().plusDays(30).toString();
+                for (int i = 0; i < richieste; i++) {
+                    long t = System.nanoTime();
+                    try {
+                        int tipo = r.nextInt(100);
+                        Risposta risposta;
+                        if (tipo < 15 || (tipo < 30 && aperti.isEmpty())) {
+                            String corpo = "{\"isbn\":\"" + isbn(r.nextInt(LIBRI)) + "\",\"matricola\":\""
+                                    + matricola(indice * UTENTI_PER_CLIENT + r.nextInt(UTENTI_PER_CLIENT))
+                                    + "\",\"scadenza\":\"" + scadenza + "\"}";
+                            risposta = invia(base + "/api/prestiti", corpo);
+                            if (risposta.stato == 201) {
+                                for (Object p : (List<?>) risposta.corpo) aperti.add((Long) ((Map<?, ?>) p).get("id"));
+                            }
+                        } else if (tipo < 30) {
+                            risposta = invia(base + "/api/restituzioni", "{\"id\":" + aperti.poll() + "}");
+                        } else if (tipo < 65) {
+                            risposta = invia(base + "/api/libri?q=" + PAROLE[r.nextInt(PAROLE.length)] + "%20volume%20" + r.nextInt(1000), null);
+                        } else {
+                            risposta = invia(base + "/api/libri?inizio=" + r.nextInt(LIBRI) + "&quanti=20", null);
+                        }
+                        // 409 su un prestito è un esito atteso (limite utente o copie esaurite)
+                        if (risposta.stato >= 300 && risposta.stato != 409) errori.incrementAndGet();
+                    } catch (IOException e) {
+                        errori.incrementAndGet();
+                    }
+                    latenze[indice][i] = System.nanoTime() - t;
+                }
+            });
+        }
+
+        long inizio = System.nanoTime();
+        for (Thread t : postazioni) t.start();
+        for (Thread t : postazioni) t.join();
+        long durata = System.nanoTime() - inizio;
+
+        long[] tutte = new long[numeroClient * richieste];
+        for (int c = 0; c < numeroClient; c++) System.arraycopy(latenze[c], 0, tutte, c * richieste, richieste);
+        Arrays.sort(tutte);
+        System.out.printf("%8d %12.0f %7.2f ms %7.2f ms %7.2f ms %7.2f ms %8d%n", numeroClient,
+                tutte.length / (durata / 1e9), percentile(tutte, 50), percentile(tutte, 95), percentile(tutte, 99),
+                tutte[tutte.length - 1] / 1e6, errori.get());
+    }
+
+    private static final class Risposta {
+        int stato;
+        Object corpo;
+    }
+
+    private static Risposta invia(String url, String json) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+        c.setRequestProperty("Authorization", CREDENZIALI);
+        if (json != null) {
+            c.setRequestMethod("POST");
+            c.setDoOutput(true);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Risposta r = new Risposta();
+        r.stato = c.getResponseCode();
+        // Il corpo va letto per intero, così la connessione torna nel pool keep-alive
+        try (InputStream in = (r.stato >= 400) ? c.getErrorStream() : c.getInputStream()) {
+            ByteArrayOutputStream letti = new ByteArrayOutputStream();
+            byte[] blocco = new byte[8192];
+            for (int n; (n = in.read(blocco)) != -1; ) letti.write(blocco, 0, n);
+            if (json != null) r.corpo = Json.leggi(new String(letti.toByteArray(), StandardCharsets.UTF_8));
+        }
+        return r;
+    }
+
+    private static double percentile(long[] ordinati, int p) {
+        int i = (int) Math.ceil(p / 100.0 * ordinati.length) - 1;
+        return ordinati[Math.max(0, i)] / 1e6;
+    }
+
+    private static String isbn(int i) {
+        return String.format("978-%010d", i);
+    }
+
+    private static String matricola(int i) {
+        return String.format("05121%05d", i);
+    }
+
+    private static void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
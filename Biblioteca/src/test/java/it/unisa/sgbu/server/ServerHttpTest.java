@@ -0,0 +1,189 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.server;
+
+import it.unisa.sgbu.domain.Credenziali;
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.gui.GUIController;
+import it.unisa.sgbu.io.AuditTrailSegmentato;
+import it.unisa.sgbu.io.FileArchivio;
+import it.unisa.sgbu.io.FileAutenticatore;
+import it.unisa.sgbu.io.IArchivioDati;
+import it.unisa.sgbu.service.Anagrafica;
+import it.unisa.sgbu.service.Catalogo;
+import it.unisa.sgbu.service.RegistroPrestiti;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ServerHttpTest {
+
+    private ServerHttp server;
+    private AuditTrailSegmentato logger;
+    private final String TEST_DIR = "./test_server_http/";
+    private final String SCADENZA = LocalDate.now().plusDays(30).toString();
+
+    private int stato;
+    private Object corpo;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Avvia il server su una porta libera con un libro da 1 copia, uno da 2 e un utente.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        IArchivioDati archivio = new FileArchivio(TEST_DIR, null);
+        archivio.salvaStato(new Credenziali("admin", "password"), "credenziali.dat");
+        FileAutenticatore autenticatore = new FileAutenticatore("credenziali.dat", archivio);
+
+        Catalogo catalogo = new Catalogo();
+        Anagrafica anagrafica = new Anagrafica();
+        catalogo.aggiungiLibro(new Libro("978-0000000001", "Guida a Java", Arrays.asList("Rossi"), 2020, 1));
+        catalogo.aggiungiLibro(new Libro("978-0000000002", "Reti di calcolatori", Arrays.asList("Bianchi"), 2018, 2));
+        anagrafica.aggiungiUtente(new Utente("0512100001", "Mario", "Rossi", "mario@test.it"));
+        logger = new AuditTrailSegmentato(TEST_DIR);
+
+        GUIController controller = new GUIController(archivio, logger, autenticatore, catalogo, anagrafica,
+                new RegistroPrestiti(catalogo, anagrafica), new ValidatoreDati());
+        server = new ServerHttp(controller, autenticatore);
+        server.avvia(0, 4, 16);
+    }
+
+
+    /**
+     * @brief Test autenticazione: senza credenziali o con password errata la risposta è 401.
+     */
+    @Test
+    public void testAutenticazione() throws IOException {
+        richiesta("GET", "/api/libri", null, null);
+        assertEquals(401, stato);
+        richiesta("GET", "/api/libri", null, "admin:sbagliata");
+        assertEquals(401, stato);
+        richiesta("GET", "/api/libri", null, "admin:password");
+        assertEquals(200, stato);
+        assertEquals(2, ((List<?>) corpo).size());
+    }
+
+
+    /**
+     * @brief Test ricerca, prestito multiplo "tutto o niente", prestiti dell'utente e restituzione.
+     */
+    @Test
+    public void testPrestitiERestituzioni() throws IOException {
+        richiesta("GET", "/api/libri?q=java&campo=Titolo", null, "admin:password");
+        assertEquals(200, stato);
+        assertEquals("978-0000000001", mappa(((List<?>) corpo).get(0)).get("isbn"));
+
+        // Il primo libro ha una sola copia: il lotto è rifiutato per intero
+        String voce1 = "{\"isbn\":\"978-0000000001\",\"matricola\":\"0512100001\",\"scadenza\":\"" + SCADENZA + "\"}";
+        String voce2 = "{\"isbn\":\"978-0000000002\",\"matricola\":\"0512100001\",\"scadenza\":\"" + SCADENZA + "\"}";
+        richiesta("POST", "/api/prestiti", "{\"voci\":[" + voce1 + "," + voce2 + "," + voce1 + "]}", "admin:password");
+        assertEquals(409, stato);
+        assertEquals(Arrays.asList("ANNULLATO", "ANNULLATO", "COPIE_ESAURITE"), mappa(corpo).get("esiti"));
+
+        richiesta("POST", "/api/prestiti", "{\"voci\":[" + voce1 + "," + voce2 + "]}", "admin:password");
+        assertEquals(201, stato);
+        List<?> creati = (List<?>) corpo;
+        assertEquals(2, creati.size());
+        long id = (Long) mappa(creati.get(0)).get("id");
+
+        richiesta("GET", "/api/prestiti?matricola=0512100001", null, "admin:password");
+        assertEquals(2, ((List<?>) corpo).size());
+
+        richiesta("POST", "/api/restituzioni", "{\"id\":[" + id + "]}", "admin:password");
+        assertEquals(200, stato);
+        richiesta("POST", "/api/restituzioni", "{\"id\":" + id + "}", "admin:password");
+        assertEquals(409, stato, "Un prestito già chiuso non può essere restituito di nuovo");
+        assertEquals(Arrays.asList("GIA_RESTITUITO"), mappa(corpo).get("esiti"));
+    }
+
+
+    /**
+     * @brief Test richieste non valide: JSON malformato, formati errati, duplicati e metodi non ammessi.
+     */
+    @Test
+    public void testRichiesteNonValide() throws IOException {
+        richiesta("POST", "/api/prestiti", "{\"isbn\":", "admin:password");
+        assertEquals(400, stato);
+
+        richiesta("POST", "/api/prestiti", "{\"isbn\":\"ISBN-1\",\"matricola\":\"0512100001\",\"scadenza\":\"" + SCADENZA + "\"}", "admin:password");
+        assertEquals(400, stato, "ISBN non valido nel formato");
+
+        richiesta("POST", "/api/utenti", "{\"matricola\":\"0512100001\",\"nome\":\"Luigi\",\"cognome\":\"Verdi\",\"email\":\"l@test.it\"}", "admin:password");
+        assertEquals(409, stato);
+        richiesta("POST", "/api/utenti", "{\"matricola\":\"0512100002\",\"nome\":\"Luigi\",\"cognome\":\"Verdi\",\"email\":\"l@test.it\"}", "admin:password");
+        assertEquals(201, stato);
+
+        richiesta("DELETE", "/api/libri", null, "admin:password");
+        assertEquals(405, stato);
+        richiesta("GET", "/api/libri?quanti=abc", null, "admin:password");
+        assertEquals(400, stato);
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        server.ferma(0);
+        logger.chiudi();
+        cancella(new File(TEST_DIR));
+    }
+
+    private void richiesta(String metodo, String percorso, String json, String credenziali) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL("http://localhost:" + server.getPorta() + percorso).openConnection();
+        c.setRequestMethod(metodo);
+        if (credenziali != null) {
+            c.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(credenziali.getBytes(StandardCharsets.UTF_8)));
+        }
+        if (json != null) {
+            c.setDoOutput(true);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        stato = c.getResponseCode();
+        InputStream in = (stato >= 400) ? c.getErrorStream() : c.getInputStream();
+        ByteArrayOutputStream letti = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream i = in) {
+                byte[] blocco = new byte[4096];
+                for (int n; (n = i.read(blocco)) != -1; ) letti.write(blocco, 0, n);
+            }
+        }
+        String testo = new String(letti.toByteArray(), StandardCharsets.UTF_8);
+        corpo = testo.isEmpty() ? null : Json.leggi(testo);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mappa(Object o) {
+        return (Map<String, Object>) o;
+    }
+
+    private void cancella(File f) {
+        File[] figli = f.listFiles();
+        if (figli != null) {
+            for (File c : figli) cancella(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class AlberoOrdinatoTest {
+
+    private AlberoOrdinato<Integer> albero;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     */
+    @BeforeEach
+    public void setUp() {
+        albero = new AlberoOrdinato<>(Comparator.<Integer>naturalOrder());
+    }
+
+
+    /**
+     * @brief Test inserimento e rimozione: duplicati rifiutati, elementi assenti ignorati.
+     */
+    @Test
+    public void testAggiungiRimuovi() {
+        assertTrue(albero.aggiungi(5));
+        assertTrue(albero.aggiungi(1));
+        assertFalse(albero.aggiungi(5), "Un elemento equivalente non va inserito due volte");
+        assertEquals(2, albero.dimensione());
+
+        assertTrue(albero.rimuovi(5));
+        assertFalse(albero.rimuovi(42));
+        assertEquals(1, albero.dimensione());
+        assertEquals(Integer.valueOf(1), albero.get(0));
+    }
+
+
+    /**
+     * @brief Test pagine: confronto con una lista ordinata di riferimento dopo molte modifiche casuali.
+     */
+    @Test
+    public void testPagineCasuali() {
+        Random r = new Random(1);
+        List<Integer> riferimento = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int v = r.nextInt(3000);
+            if (r.nextInt(4) == 0) {
+                assertEquals(riferimento.remove(Integer.valueOf(v)), albero.rimuovi(v));
+            } else if (!riferimento.contains(v)) {
+                riferimento.add(v);
+                assertTrue(albero.aggiungi(v));
+            }
+        }
+        Collections.sort(riferimento);
+
+        assertEquals(riferimento, albero.tutti());
+        for (int inizio = 0; inizio < riferimento.size(); inizio += 97) {
+            int fine = Math.min(riferimento.size(), inizio + 25);
+            assertEquals(riferimento.subList(inizio, fine), albero.pagina(inizio, 25), "Pagina da " + inizio);
+            assertEquals(riferimento.get(inizio), albero.get(inizio));
+        }
+    }
+
+
+    /**
+     * @brief Test limiti: pagina oltre la fine, dimensione nulla, posizione non valida.
+     */
+    @Test
+    public void testLimiti() {
+        for (int i = 0; i < 10; i++) albero.aggiungi(i);
+
+        assertEquals(3, albero.pagina(7, 100).size());
+        assertTrue(albero.pagina(10, 5).isEmpty());
+        assertTrue(albero.pagina(0, 0).isEmpty());
+        assertEquals(Integer.valueOf(0), albero.pagina(-3, 1).get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> albero.get(10));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Utente;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @brief Memoria e costo di getUtente(): matricola come chiave String contro chiave long.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Gli utenti sono creati una volta sola; si misura la crescita dello heap dovuta alla sola mappa
+ * (HashMap e ConcurrentHashMap con chiave String, come nelle versioni precedenti, e Anagrafica
+ * con la MappaLunghi attuale), poi tempo e byte allocati per getUtente() a partire da una
+ * matricola testuale nuova, come quella di una richiesta di prestito.
+ *
+ * Argomenti opzionali: [utenti] (default: 1000000).
+ */
+public class AnagraficaMemoriaBenchmark {
+
+    private static final int RICERCHE = 2_000_000;
+
+    public static void main(String[] args) {
+        int utenti = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<Utente> elenco = new ArrayList<>(utenti);
+        for (int i = 0; i < utenti; i++) {
+            elenco.add(new Utente(String.format("%010d", 612700000L + i), "Nome", "Cognome" + i, "u" + i + "@studenti.unisa.it"));
+        }
+        String[] richieste = new String[RICERCHE];
+        for (int i = 0; i < RICERCHE; i++) {
+            richieste[i] = new String(elenco.get((int) ((i * 2654435761L) % utenti)).getMatricola());
+        }
+
+        System.out.printf("Utenti: %,d%n", utenti);
+        System.out.printf("%-34s %10s %12s %14s %14s%n", "mappa", "MB", "byte/utente", "ns/getUtente", "byte/getUtente");
+
+        long base = heapUsato();
+        Map<String, Utente> hash = new HashMap<>();
+        for (Utente u : elenco) hash.put(u.getMatricola(), u);
+        long memoria = heapUsato() - base;
+        misura("HashMap<String, Utente>", memoria, utenti, new Ricerca() {
+            @Override
+            public Utente get(String matricola) {
+                return hash.get(matricola);
+            }
+        }, richieste);
+        hash.clear();
+
+        base = heapUsato();
+        Map<String, Utente> concorrente = new ConcurrentHashMap<>();
+        for (Utente u : elenco) concorrente.put(u.getMatricola(), u);
+        memoria = heapUsato() - base;
+        misura("ConcurrentHashMap<String, Utente>", memoria, utenti, new Ricerca() {
+            @Override
+            public Utente get(String matricola) {
+                return concorrente.get(matricola);
+            }
+        }, richieste);
+        concorrente.clear();
+
+        base = heapUsato();
+        Anagrafica anagrafica = new Anagrafica();
+        for (Utente u : elenco) anagrafica.aggiungiUtente(u);
+        memoria = heapUsato() - base;
+        misura("Anagrafica (MappaLunghi)", memoria, utenti, new Ricerca() {
+            @Override
+            public Utente get(String matricola) {
+                return anagrafica.getUtente(matricola);
+            }
+        }, richieste);
+    }
+
+    private interface Ricerca {
+        Utente get(String matricola);
+    }
+
+    private static void misura(String nome, long memoria, int utenti, Ricerca ricerca, String[] richieste) {
+        double migliore = Double.MAX_VALUE;
+        long allocati = 0;
+        int trovati = 0;
+        for (int giro = 0; giro < 5; giro++) {   // i primi giri fanno da riscaldamento
+            long allocatiPrima = allocati();
+            long inizio = System.nanoTime();
+            for (String m : richieste) {
+                if (ricerca.get(m) != null) trovati++;
+            }
+            migliore = Math.min(migliore, (System.nanoTime() - inizio) / (double) richieste.length);
+            allocati = allocati() - allocatiPrima;
+        }
+        if (trovati == 0) System.out.println("(nessun utente trovato)");
+        String perRicerca = (allocati < 0) ? "n/d" : String.format("%.1f", allocati / (double) richieste.length);
+        System.out.printf("%-34s %10.1f %12d %14.1f %14s%n", nome, memoria / 1e6, memoria / utenti, migliore, perRicerca);
+    }
+
+    private static long heapUsato() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // Byte allocati dal thread corrente, -1 se la JVM non li misura
+    private static long allocati() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
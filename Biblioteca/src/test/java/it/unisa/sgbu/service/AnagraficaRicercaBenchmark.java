@@ -0,0 +1,129 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Utente;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @brief Confronto tra gli indici dell'Anagrafica (cognome ordinato, email) e la scansione completa.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * La scansione di riferimento è quella usata in precedenza da cercaUtente(): ogni cognome
+ * (o email) convertito in minuscolo a ogni query. Per i cognomi misura anche la scansione
+ * attuale di cercaUtente() (testo contenuto, senza creare stringhe), che resta lineare.
+ *
+ * Argomenti opzionali: [utenti] [ripetizioni per query] (default: 200000 e 20).
+ */
+public class AnagraficaRicercaBenchmark {
+
+    private static final String[] COGNOMI = {
+        "Rossi", "Bianchi", "Esposito", "Romano", "Colombo", "Ricci", "Marino", "Greco",
+        "Bruno", "Gallo", "Conti", "De Luca", "Mancini", "Costa", "Giordano", "Rizzo"
+    };
+
+    // {tipo, argomenti}: P = prefisso, I = intervallo [da, a), E = email
+    private static final String[][] QUERY = {
+        {"P", "r"}, {"P", "ross"}, {"P", "rossiqu"}, {"P", "de l"}, {"P", "zz"},
+        {"I", "Ga", "Gb"}, {"I", "C", "D"}, {"E", "u123456@studenti.unisa.it"}, {"E", "Nessuno@Studenti.Unisa.It"}
+    };
+
+    public static void main(String[] args) {
+        int numeroUtenti = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int ripetizioni = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Anagrafica anagrafica = generaAnagrafica(numeroUtenti);
+        long inizio = System.nanoTime();
+        anagrafica.cercaCognomePrefisso("x"); // costruisce la vista ordinata
+        long costruzione = System.nanoTime() - inizio;
+
+        for (int giro = 0; giro < 3; giro++) {   // riscaldamento JIT
+            for (String[] q : QUERY) {
+                scansione(anagrafica, q);
+                indice(anagrafica, q);
+            }
+        }
+
+        System.out.printf("Utenti: %,d  (costruzione vista ordinata: %d ms)%n", numeroUtenti, costruzione / 1_000_000);
+        System.out.printf("%-30s %10s %14s %14s %14s %9s%n", "query", "risultati", "scansione", "cercaUtente", "indice", "speedup");
+        for (String[] q : QUERY) {
+            int risultati = 0;
+            long lineare = 0, attuale = 0, conIndice = 0;
+            for (int i = 0; i < ripetizioni; i++) {
+                long t = System.nanoTime();
+                risultati = scansione(anagrafica, q).size();
+                lineare += System.nanoTime() - t;
+
+                if (q[0].equals("P")) {
+                    t = System.nanoTime();
+                    anagrafica.cercaUtente(q[1], "Cognome");
+                    attuale += System.nanoTime() - t;
+                }
+
+                t = System.nanoTime();
+                int n = indice(anagrafica, q).size();
+                conIndice += System.nanoTime() - t;
+                if (n != risultati) throw new IllegalStateException("Risultati diversi per " + descrivi(q));
+            }
+            String colonnaAttuale = q[0].equals("P") ? String.format("%11.3f ms", attuale / 1e6 / ripetizioni) : "-";
+            System.out.printf("%-30s %,10d %11.3f ms %14s %11.3f ms %8.0fx%n", descrivi(q), risultati,
+                    lineare / 1e6 / ripetizioni, colonnaAttuale, conIndice / 1e6 / ripetizioni,
+                    (double) lineare / Math.max(1, conIndice));
+        }
+    }
+
+    private static String descrivi(String[] q) {
+        switch (q[0]) {
+            case "P": return "prefisso \"" + q[1] + "\"";
+            case "I": return "intervallo [" + q[1] + ", " + q[2] + ")";
+            default: return "email " + q[1];
+        }
+    }
+
+    // Come la vecchia cercaUtente(): minuscole calcolate per ogni utente a ogni query
+    private static List<Utente> scansione(Anagrafica a, String[] q) {
+        List<Utente> risultati = new ArrayList<>();
+        for (Utente u : a.getUtenti()) {
+            String cognome = u.getCognome().toLowerCase();
+            boolean trovato;
+            if (q[0].equals("P")) {
+                trovato = cognome.startsWith(q[1].toLowerCase());
+            } else if (q[0].equals("I")) {
+                trovato = cognome.compareTo(q[1].toLowerCase()) >= 0 && cognome.compareTo(q[2].toLowerCase()) < 0;
+            } else {
+                trovato = u.getEmail().toLowerCase(Locale.ROOT).equals(q[1].toLowerCase(Locale.ROOT));
+            }
+            if (trovato) risultati.add(u);
+        }
+        return risultati;
+    }
+
+    private static List<Utente> indice(Anagrafica a, String[] q) {
+        if (q[0].equals("P")) return a.cercaCognomePrefisso(q[1]);
+        if (q[0].equals("I")) return a.cercaCognomeIntervallo(q[1], q[2]);
+        return a.cercaUtente(q[1], "Email");
+    }
+
+    private static Anagrafica generaAnagrafica(int n) {
+        Random r = new Random(7);
+        Anagrafica a = new Anagrafica();
+        List<Utente> blocco = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            // Cognome di base più due lettere: 16 * 676 cognomi distinti
+            String cognome = COGNOMI[r.nextInt(COGNOMI.length)] + (char) ('a' + r.nextInt(26)) + (char) ('a' + r.nextInt(26));
+            blocco.add(new Utente(String.format("%010d", 612700000L + i), "Nome" + (i % 100), cognome, "u" + i + "@studenti.unisa.it"));
+            if (blocco.size() == 10_000) {
+                a.aggiornaUtenti(blocco);
+                blocco.clear();
+            }
+        }
+        a.aggiornaUtenti(blocco);
+        return a;
+    }
+}
@@ -6,6 +6,12 @@
 package it.unisa.sgbu.service;
 
 import it.unisa.sgbu.domain.Utente;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
@@ -167,4 +173,115 @@ public class AnagraficaTest {
         assertEquals("Rossi", lista.get(1).getCognome(), "Il secondo deve essere Rossi");
         assertEquals("Verdi", lista.get(2).getCognome(), "Il terzo deve essere Verdi");
     }
+    
+    /**
+     * @brief Test chiave numerica della matricola.
+     * Gli zeri iniziali distinguono le matricole; quelle non di 10 cifre restano utilizzabili,
+     * anche dopo un salvataggio con la serializzazione Java.
+     */
+    @Test
+    public void testMatricolaNumerica() throws IOException, ClassNotFoundException {
+        Utente senzaZero = new Utente("1234567890", "Anna", "Neri", "anna@email.it");
+        Utente corta = new Utente("12345", "Ugo", "Gialli", "ugo@email.it");
+        assertTrue(anagrafica.aggiungiUtente(u1));       // "0123456789"
+        assertTrue(anagrafica.aggiungiUtente(senzaZero));
+        assertTrue(anagrafica.aggiungiUtente(corta));
+        
+        assertSame(u1, anagrafica.getUtente("0123456789"));
+        assertNull(anagrafica.getUtente("123456789"), "Senza lo zero iniziale è un'altra matricola");
+        assertSame(corta, anagrafica.getUtente("12345"));
+        assertEquals(3, anagrafica.getUtenti().size());
+        
+        // La matricola corta diventa di 10 cifre: passa alla mappa numerica
+        Utente corretta = new Utente("0000012345", "Ugo", "Gialli", "ugo@email.it");
+        assertTrue(anagrafica.modificaUtente("12345", corretta));
+        assertNull(anagrafica.getUtente("12345"));
+        assertSame(corretta, anagrafica.getUtente("0000012345"));
+        assertFalse(anagrafica.modificaUtente("0000012345", new Utente("1234567890", "Ugo", "Gialli", "ugo@email.it")),
+                "Matricola già occupata");
+        
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(anagrafica);
+        }
+        Anagrafica letta;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            letta = (Anagrafica) in.readObject();
+        }
+        assertEquals(3, letta.getUtenti().size());
+        assertEquals("Mario", letta.getUtente("0123456789").getNome());
+        assertTrue(letta.rimuoviUtente("0000012345"));
+        assertEquals("Neri", letta.visualizzaPrimi(1).get(0).getCognome());
+    }
+    
+    /**
+     * @brief Test indice per email.
+     * Ricerca esatta senza distinzione maiuscole/minuscole e vincolo di unicità su inserimento e modifica.
+     */
+    @Test
+    public void testEmailUnica() {
+        assertTrue(anagrafica.aggiungiUtente(u1)); // mario@email.it
+        assertTrue(anagrafica.aggiungiUtente(u2)); // luigi@email.it
+        
+        assertSame(u1, anagrafica.getUtentePerEmail(" Mario@Email.IT "));
+        assertEquals(1, anagrafica.cercaUtente("luigi@email.it", "Email").size());
+        assertNull(anagrafica.getUtentePerEmail("anna@email.it"));
+        
+        assertFalse(anagrafica.aggiungiUtente(new Utente("1111111111", "Mario", "Bianchi", "MARIO@email.it")),
+                "Email già usata da un altro utente");
+        assertFalse(anagrafica.modificaUtente("9876543210", new Utente("9876543210", "Luigi", "Verdi", "mario@email.it")),
+                "La modifica non può prendere l'email di un altro utente");
+        
+        // Il titolare può cambiare l'email: quella vecchia si libera
+        assertTrue(anagrafica.modificaUtente("0123456789", new Utente("0123456789", "Mario", "Rossi", "m.rossi@email.it")));
+        assertNull(anagrafica.getUtentePerEmail("mario@email.it"));
+        assertEquals("Rossi", anagrafica.getUtentePerEmail("m.rossi@email.it").getCognome());
+        assertTrue(anagrafica.aggiungiUtente(new Utente("1111111111", "Mario", "Bianchi", "mario@email.it")));
+        
+        assertTrue(anagrafica.rimuoviUtente("1111111111"));
+        assertNull(anagrafica.getUtentePerEmail("mario@email.it"));
+        
+        Anagrafica.Aggiornamento[] esiti = anagrafica.aggiornaUtenti(Arrays.asList(
+                new Utente("2222222222", "Anna", "Neri", "luigi@email.it"),
+                new Utente("3333333333", "Ugo", "Gialli", "ugo@email.it")));
+        assertEquals(Anagrafica.Aggiornamento.EMAIL_IN_USO, esiti[0]);
+        assertEquals(Anagrafica.Aggiornamento.INSERITO, esiti[1]);
+        assertNull(anagrafica.getUtente("2222222222"));
+    }
+    
+    /**
+     * @brief Test ricerca per prefisso e intervallo di cognome.
+     * I risultati sono ordinati e seguono le modifiche all'anagrafica.
+     */
+    @Test
+    public void testCercaCognome() {
+        anagrafica.aggiungiUtente(new Utente("0000000001", "Anna", "Rossini", "a@r.it"));
+        anagrafica.aggiungiUtente(new Utente("0000000002", "Bruno", "rossi", "b@r.it"));
+        anagrafica.aggiungiUtente(new Utente("0000000003", "Carla", "Russo", "c@r.it"));
+        anagrafica.aggiungiUtente(new Utente("0000000004", "Dario", "Bianchi", "d@b.it"));
+        anagrafica.aggiungiUtente(new Utente("0000000005", "Elena", "Ross", "e@r.it"));
+        
+        List<Utente> ros = anagrafica.cercaCognomePrefisso("ROS");
+        assertEquals(3, ros.size());
+        assertEquals("Ross", ros.get(0).getCognome());
+        assertEquals("rossi", ros.get(1).getCognome());
+        assertEquals("Rossini", ros.get(2).getCognome());
+        assertTrue(anagrafica.cercaCognomePrefisso("Verdi").isEmpty());
+        assertEquals(5, anagrafica.cercaCognomePrefisso("").size());
+        
+        // Intervallo [da, a): "Russo" è escluso, "Bianchi" precede
+        assertEquals(3, anagrafica.cercaCognomeIntervallo("C", "russo").size());
+        assertEquals(5, anagrafica.cercaCognomeIntervallo("B", "S").size());
+        assertTrue(anagrafica.cercaCognomeIntervallo("S", "B").isEmpty());
+        
+        anagrafica.modificaUtente("0000000003", new Utente("0000000003", "Carla", "Rossetti", "c@r.it"));
+        anagrafica.rimuoviUtente("0000000001");
+        ros = anagrafica.cercaCognomePrefisso("ros");
+        assertEquals(3, ros.size());
+        assertEquals("Ross", ros.get(0).getCognome());
+        assertEquals("Rossetti", ros.get(1).getCognome());
+        
+        // La ricerca per testo contenuto resta invariata
+        assertEquals(3, anagrafica.cercaUtente("OSS", "Cognome").size());
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @brief Memoria e tempo di accesso della mappa ISBN -> Libro: chiavi String contro chiavi long.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * I libri sono creati una volta sola; si misura la crescita dello heap dovuta alla sola mappa
+ * (la ConcurrentHashMap&lt;String, Libro&gt; usata in precedenza dal catalogo, con la String
+ * dell'ISBN condivisa con il libro, e la MappaLunghi&lt;Libro&gt; attuale), poi il tempo di
+ * getLibro() a partire da un ISBN testuale nuovo (come uno digitato), compreso il calcolo
+ * dell'hash o della chiave canonica.
+ *
+ * Argomenti opzionali: [libri] (default: 1000000; servono circa 1 GB di heap).
+ */
+public class CatalogoMemoriaBenchmark {
+
+    private static final int RICERCHE = 2_000_000;
+
+    public static void main(String[] args) {
+        int libri = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<Libro> elenco = new ArrayList<>(libri);
+        String[] richieste = new String[RICERCHE];
+        for (int i = 0; i < libri; i++) {
+            elenco.add(new Libro(String.format("978-%010d", i), "Titolo " + i, Arrays.asList("Autore"), 2000, 1));
+        }
+        for (int i = 0; i < RICERCHE; i++) {
+            // Copia, come un ISBN digitato: la String non condivide l'hash già calcolato con quella della mappa
+            richieste[i] = new String(elenco.get((int) ((i * 2654435761L) % libri)).getISBN());
+        }
+
+        long base = heapUsato();
+        Map<String, Libro> perStringa = new ConcurrentHashMap<>();
+        for (Libro l : elenco) {
+            perStringa.put(l.getISBN(), l);
+        }
+        long conStringhe = heapUsato() - base;
+
+        base = heapUsato();
+        MappaLunghi<Libro> perCodice = new MappaLunghi<>();
+        for (Libro l : elenco) {
+            perCodice.put(ValidatoreDati.chiaveISBN(l.getISBN()), l);
+        }
+        long conLong = heapUsato() - base;
+
+        System.out.printf("Libri: %,d%n", libri);
+        System.out.printf("%-40s %10s %12s %14s%n", "mappa", "MB", "byte/libro", "ns/getLibro");
+        stampa("ConcurrentHashMap<String, Libro>", conStringhe, libri, misuraStringhe(perStringa, richieste));
+        stampa("MappaLunghi<Libro> (chiave canonica)", conLong, libri, misuraLong(perCodice, richieste));
+    }
+
+    private static void stampa(String nome, long byteUsati, int libri, double ns) {
+        System.out.printf("%-40s %10.1f %12d %14.1f%n", nome, byteUsati / 1e6, byteUsati / libri, ns);
+    }
+
+    private static double misuraStringhe(Map<String, Libro> mappa, String[] richieste) {
+        double migliore = Double.MAX_VALUE;
+        int trovati = 0;
+        for (int giro = 0; giro < 5; giro++) {   // i primi giri fanno da riscaldamento
+            long inizio = System.nanoTime();
+            for (String isbn : richieste) {
+                if (mappa.get(isbn) != null) trovati++;
+            }
+            migliore = Math.min(migliore, (System.nanoTime() - inizio) / (double) richieste.length);
+        }
+        if (trovati == 0) System.out.println("(nessun libro trovato)");
+        return migliore;
+    }
+
+    private static double misuraLong(MappaLunghi<Libro> mappa, String[] richieste) {
+        double migliore = Double.MAX_VALUE;
+        int trovati = 0;
+        for (int giro = 0; giro < 5; giro++) {
+            long inizio = System.nanoTime();
+            for (String isbn : richieste) {
+                if (mappa.get(ValidatoreDati.chiaveISBN(isbn)) != null) trovati++;
+            }
+            migliore = Math.min(migliore, (System.nanoTime() - inizio) / (double) richieste.length);
+        }
+        if (trovati == 0) System.out.println("(nessun libro trovato)");
+        return migliore;
+    }
+
+    private static long heapUsato() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
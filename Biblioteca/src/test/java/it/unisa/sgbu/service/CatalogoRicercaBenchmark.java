@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @brief Confronto tra la ricerca con indice a trigrammi e la scansione lineare del Catalogo.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Per ogni dimensione del catalogo misura il tempo di costruzione dell'indice e il tempo
+ * medio per query dei due metodi, su query di lunghezza diversa per titolo, autore e ISBN.
+ *
+ * Argomenti opzionali: [dimensioni separate da virgola] [ripetizioni per query]
+ * (default: 100000,1000000 e 5). Per 1M libri servono circa 2 GB di heap (-Xmx2g).
+ */
+public class CatalogoRicercaBenchmark {
+
+    private static final String[] PAROLE = {
+        "storia", "della", "guida", "pratica", "introduzione", "al", "linguaggio", "java",
+        "manuale", "di", "fisica", "chimica", "letteratura", "italiana", "moderna", "arte",
+        "programmazione", "reti", "sistemi", "operativi", "basi", "dati", "teoria", "analisi"
+    };
+    private static final String[] COGNOMI = {
+        "Rossi", "Bianchi", "Esposito", "Romano", "Colombo", "Ricci", "Marino", "Greco",
+        "Bruno", "Gallo", "Conti", "De Luca", "Mancini", "Costa", "Giordano", "Rizzo"
+    };
+
+    private static final String[][] QUERY = {
+        {"Titolo", "ja"}, {"Titolo", "java"}, {"Titolo", "guida pratica"}, {"Titolo", "operativi 12"},
+        {"Autore", "ricci"}, {"Autore", "de luca 4"}, {"ISBN", "978-88-00123"}, {"Titolo", "inesistente"}
+    };
+
+    public static void main(String[] args) {
+        String[] dimensioni = (args.length > 0 ? args[0] : "100000,1000000").split(",");
+        int ripetizioni = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (String d : dimensioni) {
+            esegui(Integer.parseInt(d.trim()), ripetizioni);
+        }
+    }
+
+    private static void esegui(int numeroLibri, int ripetizioni) {
+        Catalogo catalogo = generaCatalogo(numeroLibri);
+
+        long inizio = System.nanoTime();
+        catalogo.ricerca("x", "Titolo"); // costruisce l'indice
+        long costruzione = System.nanoTime() - inizio;
+
+        // Riscaldamento JIT su entrambi i percorsi
+        for (String[] q : QUERY) {
+            catalogo.ricerca(q[1], q[0]);
+            catalogo.ricercaLineare(q[1], q[0]);
+        }
+
+        System.out.printf("Libri: %,d  (costruzione indice: %d ms)%n", numeroLibri, costruzione / 1_000_000);
+        System.out.printf("%-8s %-16s %10s %14s %14s %9s%n", "campo", "query", "risultati", "lineare", "indice", "speedup");
+
+        for (String[] q : QUERY) {
+            int risultati = 0;
+            long lineare = 0, indice = 0;
+            for (int i = 0; i < ripetizioni; i++) {
+                long t = System.nanoTime();
+                risultati = catalogo.ricercaLineare(q[1], q[0]).size();
+                lineare += System.nanoTime() - t;
+
+                t = System.nanoTime();
+                int n = catalogo.ricerca(q[1], q[0]).size();
+                indice += System.nanoTime() - t;
+                if (n != risultati) throw new IllegalStateException("Risultati diversi per " + q[1]);
+            }
+            System.out.printf("%-8s %-16s %,10d %11.3f ms %11.3f ms %8.1fx%n", q[0], "\"" + q[1] + "\"", risultati,
+                    lineare / 1e6 / ripetizioni, indice / 1e6 / ripetizioni, (double) lineare / Math.max(1, indice));
+        }
+        System.out.println();
+    }
+
+    private static Catalogo generaCatalogo(int n) {
+        Random r = new Random(7);
+        Catalogo c = new Catalogo();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            int parole = 2 + r.nextInt(4);
+            for (int k = 0; k < parole; k++) {
+                if (k > 0) sb.append(' ');
+                sb.append(PAROLE[r.nextInt(PAROLE.length)]);
+            }
+            sb.append(' ').append(i % 1000);
+
+            List<String> autori = new ArrayList<>();
+            autori.add(COGNOMI[r.nextInt(COGNOMI.length)] + " " + (i % 97));
+            if (i % 4 == 0) autori.add(COGNOMI[r.nextInt(COGNOMI.length)]);
+            c.aggiungiLibro(new Libro(String.format("978-88-%07d-0", i), sb.toString(), autori, 1950 + i % 75, 1));
+        }
+        return c;
+    }
+}
@@ -158,4 +158,81 @@ public class CatalogoTest {
         assertEquals("Effective Java", ordinata.get(2).getTitolo());
     }
     
+    /**
+     * @brief Test Paginazione.
+     * La vista ordinata segue le modifiche: un titolo cambiato si sposta nella posizione corretta.
+     */
+    @Test
+    public void testVisualizzaPagina() {
+        catalogo.aggiungiLibro(l1); // E
+        catalogo.aggiungiLibro(l3); // D
+        catalogo.aggiungiLibro(l2); // C
+        
+        assertEquals("Clean Code", catalogo.visualizzaPrimi(1).get(0).getTitolo());
+        assertEquals("Effective Java", catalogo.visualizzaPagina(2, 10).get(0).getTitolo());
+        assertEquals(1, catalogo.visualizzaPagina(2, 10).size());
+        
+        // "Clean Code" diventa "Zen of Code": passa in fondo
+        catalogo.modificaLibro(l2.getISBN(), new Libro(l2.getISBN(), "Zen of Code", l2.getAutore(), 2008, 3));
+        assertEquals("Design Patterns", catalogo.visualizzaPrimi(1).get(0).getTitolo());
+        assertEquals("Zen of Code", catalogo.visualizzaPagina(2, 1).get(0).getTitolo());
+        
+        catalogo.rimuoviLibro(l3.getISBN());
+        assertEquals(2, catalogo.visualizzaOrdinata().size());
+        assertEquals("Effective Java", catalogo.visualizzaPrimi(1).get(0).getTitolo());
+    }
+    
+    /**
+     * @brief Test ISBN canonico.
+     * Grafie diverse dello stesso ISBN (trattini, ISBN-10) individuano lo stesso libro;
+     * i codici senza forma canonica restano utilizzabili così come sono scritti.
+     */
+    @Test
+    public void testIsbnCanonico() {
+        catalogo.aggiungiLibro(l1); // "978-0134685991"
+        
+        assertSame(l1, catalogo.getLibro("9780134685991"));
+        assertSame(l1, catalogo.getLibro("978-0-13-468599-1"));
+        assertSame(l1, catalogo.getLibro("0-13-468599-7"), "ISBN-10 equivalente");
+        assertFalse(catalogo.aggiungiLibro(new Libro("9780134685991", "Copia", l1.getAutore(), 2018, 1)),
+                "Stesso ISBN scritto diversamente: duplicato");
+        
+        Libro vecchioCodice = new Libro("ISBN-123", "Vecchio Codice", l1.getAutore(), 1990, 1);
+        assertTrue(catalogo.aggiungiLibro(vecchioCodice));
+        assertSame(vecchioCodice, catalogo.getLibro("ISBN-123"));
+        assertEquals(2, catalogo.getLibri().size());
+        
+        // Modifica che cambia solo la grafia, poi rimozione con un'altra grafia
+        Libro l1Mod = new Libro("9780134685991", "Effective Java 3rd Edition", l1.getAutore(), 2018, 5);
+        assertTrue(catalogo.modificaLibro("978-0-13-468599-1", l1Mod));
+        assertSame(l1Mod, catalogo.getLibro("978-0134685991"));
+        assertEquals(1, catalogo.ricerca("3rd", "Titolo").size());
+        
+        assertTrue(catalogo.rimuoviLibro("0134685997"));
+        assertNull(catalogo.getLibro("9780134685991"));
+        assertTrue(catalogo.ricerca("Effective", "Titolo").isEmpty());
+        assertEquals(1, catalogo.getLibri().size());
+    }
+    
+    /**
+     * @brief Test caricamento da salvataggio.
+     * Un libro salvato con una grafia equivalente a quella di un altro non viene perso.
+     */
+    @Test
+    public void testCaricaLibro() {
+        assertTrue(catalogo.caricaLibro(l1));
+        Libro doppione = new Libro("9780134685991", "Effective Java (doppione)", l1.getAutore(), 2018, 1);
+        assertTrue(catalogo.caricaLibro(doppione));
+        assertFalse(catalogo.caricaLibro(doppione), "ISBN identico già presente");
+        assertEquals(1, catalogo.segnalaEquivalentiCaricati());
+        assertEquals(0, catalogo.segnalaEquivalentiCaricati(), "Il conteggio è azzerato dopo la segnalazione");
+        
+        assertSame(l1, catalogo.getLibro("978-0134685991"));
+        assertSame(doppione, catalogo.getLibro("9780134685991"));
+        assertEquals(2, catalogo.getLibri().size());
+        
+        assertTrue(catalogo.rimuoviLibro("9780134685991"));
+        assertSame(l1, catalogo.getLibro("9780134685991"), "Resta il libro con la chiave canonica");
+    }
+    
 }
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief Esportazione in streaming del catalogo: tempo, byte prodotti e memoria per formato.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Il testo è scritto in un Writer che conta i caratteri e li scarta, così la misura riguarda
+ * solo l'esportatore. Per ogni formato riporta i byte allocati per riga (misurati sul thread,
+ * se la JVM lo consente) e la crescita dello heap dopo l'esportazione: entrambi devono restare
+ * costanti al crescere del catalogo, perché non si costruiscono copie intermedie.
+ *
+ * Argomenti opzionali: [libri] (default: 1000000; servono circa 1 GB di heap).
+ */
+public class EsportatoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int libri = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Catalogo catalogo = new Catalogo();
+        List<Libro> blocco = new ArrayList<>(10_000);
+        for (int i = 0; i < libri; i++) {
+            blocco.add(new Libro(String.format("978-%010d", i), "Storia della letteratura; volume " + i,
+                    Arrays.asList("Rossi " + (i % 97), "Bianchi"), 1950 + i % 70, 1 + i % 5));
+            if (blocco.size() == 10_000) {
+                catalogo.aggiungiLibri(blocco);
+                blocco.clear();
+            }
+        }
+        catalogo.aggiungiLibri(blocco);
+        Esportatore esportatore = new Esportatore(catalogo, new Anagrafica(), new RegistroPrestiti(catalogo, new Anagrafica()));
+
+        // Riscaldamento JIT
+        for (Esportatore.Formato f : Esportatore.Formato.values()) {
+            esportatore.esportaLibri(new Contatore(), f, null);
+        }
+
+        System.out.printf("Libri: %,d%n", libri);
+        System.out.printf("%7s %9s %12s %10s %11s %13s%n", "formato", "tempo", "righe/s", "MB", "byte/riga", "heap dopo");
+        for (Esportatore.Formato f : Esportatore.Formato.values()) {
+            Contatore out = new Contatore();
+            long heapPrima = heapUsato();
+            long allocatiPrima = allocati();
+            long inizio = System.nanoTime();
+            long righe = esportatore.esportaLibri(out, f, null);
+            long durata = System.nanoTime() - inizio;
+            long allocatiDopo = allocati();
+            long heapDopo = heapUsato();
+            String perRiga = (allocatiPrima < 0) ? "n/d" : String.valueOf((allocatiDopo - allocatiPrima) / righe);
+            System.out.printf("%7s %6d ms %12.0f %10.1f %11s %+10d KB%n", f, durata / 1_000_000, righe * 1e9 / durata,
+                    out.caratteri / 1e6, perRiga, (heapDopo - heapPrima) >> 10);
+        }
+    }
+
+    private static long heapUsato() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // Byte allocati dal thread corrente, -1 se la JVM non li misura
+    private static long allocati() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * @brief Writer che conta i caratteri ricevuti e li scarta.
+     */
+    private static final class Contatore extends Writer {
+        long caratteri;
+
+        @Override
+        public void write(char[] testo, int da, int quanti) {
+            caratteri += quanti;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
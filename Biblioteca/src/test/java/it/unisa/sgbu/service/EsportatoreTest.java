@@ -0,0 +1,143 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.io.StoricoPrestiti;
+import it.unisa.sgbu.server.Json;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class EsportatoreTest {
+
+    private Catalogo catalogo;
+    private Anagrafica anagrafica;
+    private RegistroPrestiti registro;
+    private StoricoPrestiti storico;
+    private Esportatore esportatore;
+    private final String TEST_DIR = "./test_esportatore/";
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Tre libri e due utenti; un prestito in corso, uno scaduto e uno restituito,
+     * quest'ultimo già spostato nello storico su disco.
+     */
+    @BeforeEach
+    public void setUp() {
+        catalogo = new Catalogo();
+        anagrafica = new Anagrafica();
+        registro = new RegistroPrestiti(catalogo, anagrafica);
+        storico = new StoricoPrestiti(TEST_DIR, false);
+        registro.setStorico(storico);
+
+        catalogo.aggiungiLibro(new Libro("978-0134685991", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 2));
+        catalogo.aggiungiLibro(new Libro("978-0201633610", "Design Patterns; \"GoF\"", Arrays.asList("Gamma", "Helm"), 1994, 1));
+        catalogo.aggiungiLibro(new Libro("978-0132350884", "Clean Code", Arrays.asList("Robert C. Martin"), 2008, 1));
+        anagrafica.aggiungiUtente(new Utente("0612700001", "Mario", "Rossi", "mario.rossi@studenti.unisa.it"));
+        anagrafica.aggiungiUtente(new Utente("0612700002", "Luigi", "Verdi", "luigi.verdi@studenti.unisa.it"));
+
+        LocalDate oggi = LocalDate.now();
+        registro.registraPrestito("978-0201633610", "0612700001", oggi.plusDays(30));
+        registro.ripristinaPrestito(50, "978-0134685991", "0612700002", oggi.minusDays(40), oggi.minusDays(10));
+        Prestito restituito = registro.registraPrestito("978-0132350884", "0612700002", oggi.plusDays(30));
+        registro.registraRestituzione(restituito.getIdPrestito(), oggi);
+
+        esportatore = new Esportatore(catalogo, anagrafica, registro);
+    }
+
+
+    /**
+     * @brief Test CSV dei libri: il file esportato è reimportabile e il filtro seleziona i non disponibili.
+     */
+    @Test
+    public void testLibriCsvReimportabile() throws IOException {
+        StringWriter out = new StringWriter();
+        assertEquals(3, esportatore.esportaLibri(out, Esportatore.Formato.CSV, null));
+        assertTrue(out.toString().startsWith("isbn;titolo;autori;anno;copie;disponibili\n"));
+
+        Catalogo copia = new Catalogo();
+        RiepilogoImportazione r = new ImportatoreLibri(copia, new ValidatoreDati()).importa(new StringReader(out.toString()), null, null);
+        assertEquals(3, r.getImportate());
+        Libro dp = copia.getLibro("978-0201633610");
+        assertEquals("Design Patterns; \"GoF\"", dp.getTitolo());
+        assertEquals(Arrays.asList("Gamma", "Helm"), dp.getAutore());
+
+        StringWriter nonDisponibili = new StringWriter();
+        assertEquals(1, esportatore.esportaLibri(nonDisponibili, Esportatore.Formato.CSV, Esportatore.LIBRI_NON_DISPONIBILI));
+        assertTrue(nonDisponibili.toString().contains("978-0201633610"));
+    }
+
+
+    /**
+     * @brief Test JSON Lines degli utenti: un oggetto per riga, con numeri non racchiusi tra virgolette.
+     */
+    @Test
+    public void testUtentiJsonl() throws IOException {
+        StringWriter out = new StringWriter();
+        assertEquals(2, esportatore.esportaUtenti(out, Esportatore.Formato.JSONL, null));
+
+        String[] righe = out.toString().split("\n");
+        assertEquals(2, righe.length);
+        for (String riga : righe) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> u = (Map<String, Object>) Json.leggi(riga);
+            assertEquals(Arrays.asList(Esportatore.COLONNE_UTENTI), new ArrayList<>(u.keySet()));
+            assertEquals(1L, u.get("prestiti"));
+        }
+    }
+
+
+    /**
+     * @brief Test prestiti: in corso dal registro, restituiti dallo storico su disco, con i filtri.
+     */
+    @Test
+    public void testPrestitiConFiltri() throws IOException {
+        assertEquals(2, registro.getStoricoPrestiti().size(), "Il prestito restituito è solo su disco");
+
+        StringWriter tutti = new StringWriter();
+        assertEquals(3, esportatore.esportaPrestiti(tutti, Esportatore.Formato.JSONL, null));
+        List<Object> restituzioni = new ArrayList<>();
+        for (String riga : tutti.toString().split("\n")) {
+            restituzioni.add(((Map<?, ?>) Json.leggi(riga)).get("restituzione"));
+        }
+        assertEquals(2, restituzioni.indexOf(LocalDate.now().toString()), "Lo storico segue i prestiti in corso");
+
+        StringWriter inRitardo = new StringWriter();
+        assertEquals(1, esportatore.esportaPrestiti(inRitardo, Esportatore.Formato.CSV, Esportatore.PRESTITI_IN_RITARDO));
+        assertTrue(inRitardo.toString().contains("\n50;978-0134685991;0612700002;"));
+
+        assertEquals(2, esportatore.esportaPrestiti(new StringWriter(), Esportatore.Formato.CSV, Esportatore.PRESTITI_ATTIVI));
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        storico.chiudi();
+        File d = new File(TEST_DIR, StoricoPrestiti.CARTELLA_STORICO);
+        File[] figli = d.listFiles();
+        if (figli != null) {
+            for (File f : figli) f.delete();
+        }
+        d.delete();
+        new File(TEST_DIR).delete();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.ValidatoreDati;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @brief Importazione massiva di libri da CSV: tempo, righe/s e memoria al variare dei thread.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Il CSV è generato al volo da un Reader, quindi la sorgente non occupa memoria: la crescita
+ * dello heap misurata è quella del catalogo più il lavoro di un blocco. Circa una riga su cento
+ * è volutamente non valida, per esercitare il rapporto degli scarti (qui scartato).
+ *
+ * Argomenti opzionali: [righe] [thread separati da virgola] [righe per blocco]
+ * (default: 1000000, 1,numero di processori e 10000). Per 1M righe servono circa 1 GB di heap.
+ */
+public class ImportatoreLibriBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int righe = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] thread = (args.length > 1 ? args[1] : "1," + Runtime.getRuntime().availableProcessors()).split(",");
+        int blocco = args.length > 2 ? Integer.parseInt(args[2]) : ImportatoreLibri.BLOCCO_DEFAULT;
+
+        // Riscaldamento JIT
+        new ImportatoreLibri(new Catalogo(), new ValidatoreDati(), 2, blocco).importa(new CsvGenerato(50_000), null, null);
+
+        System.out.printf("Righe: %,d  (blocco: %,d)%n", righe, blocco);
+        System.out.printf("%7s %10s %12s %11s %11s %14s%n", "thread", "tempo", "righe/s", "importate", "scartate", "heap catalogo");
+        for (String t : thread) {
+            Catalogo catalogo = new Catalogo();
+            long heapPrima = heapUsato();
+            RiepilogoImportazione r = new ImportatoreLibri(catalogo, new ValidatoreDati(), Integer.parseInt(t.trim()), blocco)
+                    .importa(new CsvGenerato(righe), null, null);
+            long heapDopo = heapUsato();
+            System.out.printf("%7s %7d ms %12.0f %,11d %,11d %11d MB%n", t.trim(), r.getDurataMs(), r.getRighePerSecondo(),
+                    r.getImportate(), r.getScartate(), (heapDopo - heapPrima) >> 20);
+            if (catalogo.getLibri().size() != r.getImportate()) throw new IllegalStateException("Catalogo incoerente");
+        }
+    }
+
+    private static long heapUsato() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * @brief CSV di libri prodotto riga per riga, senza mai materializzare il file.
+     */
+    private static final class CsvGenerato extends Reader {
+        private final int righe;
+        private int prossima;
+        private String corrente = "isbn;titolo;autori;anno;copie\n";
+        private int pos;
+
+        CsvGenerato(int righe) {
+            this.righe = righe;
+        }
+
+        @Override
+        public int read(char[] destinazione, int da, int quanti) {
+            int scritti = 0;
+            while (scritti < quanti) {
+                if (pos == corrente.length()) {
+                    if (prossima == righe) break;
+                    corrente = riga(prossima++);
+                    pos = 0;
+                }
+                int n = Math.min(quanti - scritti, corrente.length() - pos);
+                corrente.getChars(pos, pos + n, destinazione, da + scritti);
+                pos += n;
+                scritti += n;
+            }
+            return (scritti == 0) ? -1 : scritti;
+        }
+
+        private static String riga(int i) {
+            String isbn = (i % 100 == 99) ? "ISBN-" + i : String.format("978-%010d", i);
+            return isbn + ";\"Storia della letteratura; volume " + i + "\";Rossi " + (i % 97) + "|Bianchi;"
+                    + (1950 + i % 70) + ";" + (1 + i % 5) + "\n";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
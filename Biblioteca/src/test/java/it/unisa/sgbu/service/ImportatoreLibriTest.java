@@ -0,0 +1,100 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.io.LettoreCsv;
+import it.unisa.sgbu.io.Mutazione;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ImportatoreLibriTest {
+
+    private Catalogo catalogo;
+    private ImportatoreLibri importatore;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Catalogo con un libro già presente; blocchi da 2 righe e 3 thread, per attraversare più blocchi.
+     */
+    @BeforeEach
+    public void setUp() {
+        catalogo = new Catalogo();
+        catalogo.aggiungiLibro(new Libro("978-0134685991", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 5));
+        importatore = new ImportatoreLibri(catalogo, new ValidatoreDati(), 3, 2);
+    }
+
+
+    /**
+     * @brief Test importazione: righe valide inserite, rifiuti e duplicati nel rapporto con riga e motivo.
+     */
+    @Test
+    public void testImportaConScarti() throws IOException {
+        String csv = "isbn;titolo;autori;anno;copie\r\n"
+                + "978-0132350884;Clean Code;Robert C. Martin;2008;3\r\n"
+                + "978-0201633610;\"Design Patterns; Elements\";Gamma|Helm| Johnson ;1994;2\n"
+                + "ISBN-1;Titolo;Autore;2000;1\n"
+                + "978-0134685991;Effective Java;Joshua Bloch;2018;5\n"
+                + "\n"
+                + "978-0596009205;\"Head First\nJava\";Sierra;duemila;1\n"
+                + "978-0132350884;Clean Code (copia);Martin;2008;1\n"
+                + "978-0262033848;Introduction to Algorithms;Cormen;2009;4\n";
+        StringWriter scarti = new StringWriter();
+        final List<Mutazione> notificati = new ArrayList<>();
+
+        RiepilogoImportazione r = importatore.importa(new StringReader(csv), scarti, notificati::addAll);
+
+        assertEquals(7, r.getRighe(), "Intestazione e righe vuote non sono dati");
+        assertEquals(3, r.getImportate());
+        assertEquals(4, r.getScartate());
+        assertEquals(4, catalogo.getLibri().size());
+        assertEquals(3, notificati.size());
+        assertEquals(Arrays.asList("Gamma", "Helm", "Johnson"), catalogo.getLibro("978-0201633610").getAutore());
+        assertEquals("Design Patterns; Elements", catalogo.getLibro("978-0201633610").getTitolo());
+        assertEquals(1, catalogo.ricerca("algorithms", "Titolo").size());
+
+        LettoreCsv rapporto = new LettoreCsv(new StringReader(scarti.toString()));
+        assertEquals("riga", rapporto.leggiRiga().get(0));
+        List<String> motivi = new ArrayList<>();
+        List<String> righe = new ArrayList<>();
+        for (List<String> riga; (riga = rapporto.leggiRiga()) != null; ) {
+            righe.add(riga.get(0));
+            motivi.add(riga.get(1));
+        }
+        assertEquals(Arrays.asList("4", "5", "7", "9"), righe);
+        assertEquals(Arrays.asList("ISBN non valido", "ISBN già presente", "Anno non numerico", "ISBN già presente"), motivi);
+    }
+
+
+    /**
+     * @brief Test blocco grande: indice e vista ordinata già costruiti vengono ricostruiti e restano coerenti.
+     */
+    @Test
+    public void testBloccoGrandeRicostruisceViste() throws IOException {
+        assertEquals(1, catalogo.visualizzaOrdinata().size());
+        assertEquals(1, catalogo.ricerca("java", "Titolo").size());
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            csv.append(String.format("978-%010d;Volume %d di java;Autore;2000;1%n", i, i));
+        }
+        RiepilogoImportazione r = new ImportatoreLibri(catalogo, new ValidatoreDati()).importa(new StringReader(csv.toString()), null, null);
+
+        assertEquals(3000, r.getImportate());
+        assertEquals(3001, catalogo.visualizzaOrdinata().size());
+        assertEquals(3001, catalogo.ricerca("java", "Titolo").size());
+    }
+}
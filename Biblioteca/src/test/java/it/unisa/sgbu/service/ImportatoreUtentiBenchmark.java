@@ -0,0 +1,87 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.ValidatoreDati;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * @brief Importazione massiva di utenti da CSV: righe/s e scarti al variare dei thread.
+ *
+ * Non è un test JUnit: si esegue a mano (es. dall'IDE o con exec:java sul classpath di test).
+ * Ogni giro importa due volte lo stesso CSV generato nella stessa anagrafica: la prima passata
+ * inserisce, la seconda trova solo righe invariate (il caso di un'immatricolazione ricaricata).
+ * Circa una riga su cento ha l'email non valida e una su duecento ripete l'email della precedente.
+ *
+ * Argomenti opzionali: [righe] [thread separati da virgola] [righe per blocco]
+ * (default: 500000, 1,numero di processori e 10000).
+ */
+public class ImportatoreUtentiBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int righe = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        String[] thread = (args.length > 1 ? args[1] : "1," + Runtime.getRuntime().availableProcessors()).split(",");
+        int blocco = args.length > 2 ? Integer.parseInt(args[2]) : ImportatoreUtenti.BLOCCO_DEFAULT;
+
+        // Riscaldamento JIT
+        new ImportatoreUtenti(new Anagrafica(), new ValidatoreDati(), 2, blocco).importa(new CsvGenerato(50_000), null, null);
+
+        System.out.printf("Righe: %,d  (blocco: %,d)%n", righe, blocco);
+        System.out.printf("%7s %9s %7s %12s %11s %11s %11s%n", "thread", "passata", "tempo", "righe/s", "importate", "invariate", "scartate");
+        for (String t : thread) {
+            Anagrafica anagrafica = new Anagrafica();
+            ImportatoreUtenti importatore = new ImportatoreUtenti(anagrafica, new ValidatoreDati(), Integer.parseInt(t.trim()), blocco);
+            for (String passata : new String[]{"prima", "seconda"}) {
+                RiepilogoImportazione r = importatore.importa(new CsvGenerato(righe), null, null);
+                System.out.printf("%7s %9s %4d ms %12.0f %,11d %,11d %,11d%n", t.trim(), passata, r.getDurataMs(),
+                        r.getRighePerSecondo(), r.getImportate(), r.getInvariate(), r.getScartate());
+            }
+        }
+    }
+
+    /**
+     * @brief CSV di immatricolazioni prodotto riga per riga, senza mai materializzare il file.
+     */
+    private static final class CsvGenerato extends Reader {
+        private final int righe;
+        private int prossima;
+        private String corrente = "matricola;nome;cognome;email\n";
+        private int pos;
+
+        CsvGenerato(int righe) {
+            this.righe = righe;
+        }
+
+        @Override
+        public int read(char[] destinazione, int da, int quanti) {
+            int scritti = 0;
+            while (scritti < quanti) {
+                if (pos == corrente.length()) {
+                    if (prossima == righe) break;
+                    corrente = riga(prossima++);
+                    pos = 0;
+                }
+                int n = Math.min(quanti - scritti, corrente.length() - pos);
+                corrente.getChars(pos, pos + n, destinazione, da + scritti);
+                pos += n;
+                scritti += n;
+            }
+            return (scritti == 0) ? -1 : scritti;
+        }
+
+        private static String riga(int i) {
+            int numeroEmail = (i % 200 == 199) ? i - 1 : i;
+            String email = (i % 100 == 49) ? "studente" + i : "s" + numeroEmail + "@studenti.unisa.it";
+            return String.format("%010d", i) + ";Nome" + (char) ('a' + i % 26) + ";Cognome " + (char) ('a' + i % 23)
+                    + ";" + email + "\n";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
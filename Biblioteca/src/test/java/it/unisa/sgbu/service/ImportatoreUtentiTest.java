@@ -0,0 +1,112 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import it.unisa.sgbu.domain.Prestito;
+import it.unisa.sgbu.domain.Utente;
+import it.unisa.sgbu.domain.ValidatoreDati;
+import it.unisa.sgbu.io.LettoreCsv;
+import it.unisa.sgbu.io.Mutazione;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ImportatoreUtentiTest {
+
+    private Anagrafica anagrafica;
+    private ImportatoreUtenti importatore;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Anagrafica con tre utenti già registrati; blocchi da 2 righe e 3 thread, per attraversare più blocchi.
+     */
+    @BeforeEach
+    public void setUp() {
+        anagrafica = new Anagrafica();
+        anagrafica.aggiungiUtente(new Utente("0612700001", "Mario", "Rossi", "mario.rossi@studenti.unisa.it"));
+        anagrafica.aggiungiUtente(new Utente("0612700002", "Luigi", "Verdi", "luigi.verdi@studenti.unisa.it"));
+        anagrafica.aggiungiUtente(new Utente("0612700009", "Sara", "Gallo", "sara.gallo@studenti.unisa.it"));
+        importatore = new ImportatoreUtenti(anagrafica, new ValidatoreDati(), 3, 2);
+    }
+
+
+    /**
+     * @brief Test importazione: inserimenti, aggiornamenti, righe invariate e duplicati nel file e in anagrafica.
+     */
+    @Test
+    public void testImportaConDuplicati() throws IOException {
+        String csv = "matricola;nome;cognome;email\n"
+                + "0612700003;Anna;Bianchi;anna.bianchi@studenti.unisa.it\n"
+                + "0612700001;Mario;Rossi;mario.rossi@studenti.unisa.it\n"
+                + "0612700002;Luigi;Verdi;l.verdi@studenti.unisa.it\n"
+                + "0612700003;Anna Maria;Bianchi;am.bianchi@studenti.unisa.it\n"
+                + "0612700004;Carla;Neri;ANNA.BIANCHI@studenti.unisa.it\n"
+                + "0612700005;Paolo;Gialli;Sara.Gallo@studenti.unisa.it\n"
+                + "12345;Dario;Blu;dario.blu@studenti.unisa.it\n"
+                + "0612700006;Dario;Blu2;dario.blu@studenti.unisa.it\n"
+                + "0612700007;Elena;Viola;elena.viola\n"
+                + "0612700008;Franco;Rosa;luigi.verdi@studenti.unisa.it\n";
+        StringWriter scarti = new StringWriter();
+        final List<Mutazione> notificati = new ArrayList<>();
+
+        RiepilogoImportazione r = importatore.importa(new StringReader(csv), scarti, notificati::addAll);
+
+        assertEquals(10, r.getRighe());
+        assertEquals(3, r.getImportate(), "Anna e Franco inseriti, Luigi aggiornato");
+        assertEquals(1, r.getInvariate(), "Mario è identico a quello registrato");
+        assertEquals(6, r.getScartate());
+        assertEquals(3, notificati.size());
+        assertEquals(5, anagrafica.getUtenti().size());
+        assertEquals("l.verdi@studenti.unisa.it", anagrafica.getUtente("0612700002").getEmail());
+        assertEquals("Anna", anagrafica.getUtente("0612700003").getNome(), "Vale la prima occorrenza della matricola");
+        assertNotNull(anagrafica.getUtente("0612700008"), "L'email lasciata libera da Luigi è riutilizzabile");
+
+        LettoreCsv rapporto = new LettoreCsv(new StringReader(scarti.toString()));
+        rapporto.leggiRiga();
+        List<String> righe = new ArrayList<>();
+        List<String> motivi = new ArrayList<>();
+        for (List<String> riga; (riga = rapporto.leggiRiga()) != null; ) {
+            righe.add(riga.get(0));
+            motivi.add(riga.get(1));
+        }
+        assertEquals(Arrays.asList("5", "6", "7", "8", "9", "10"), righe);
+        assertEquals(Arrays.asList("Matricola ripetuta (riga 2)", "Email ripetuta (riga 2)",
+                "Email già usata dalla matricola 0612700009", "Matricola non valida",
+                "Nome o cognome non validi", "Email non valida"), motivi);
+    }
+
+
+    /**
+     * @brief Test aggiornamento: l'utente sostituito cede i prestiti in corso al nuovo.
+     */
+    @Test
+    public void testAggiornamentoConservaPrestiti() throws IOException {
+        Utente mario = anagrafica.getUtente("0612700001");
+        Libro libro = new Libro("978-0134685991", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 5);
+        Prestito p = new Prestito(1, libro, mario, LocalDate.now(), LocalDate.now().plusDays(30));
+        mario.aggiungiPrestito(p);
+        assertEquals(3, anagrafica.visualizzaOrdinata().size());
+
+        importatore.importa(new StringReader("0612700001;Mario;Rossi;m.rossi@studenti.unisa.it\n"), null, null);
+
+        Utente aggiornato = anagrafica.getUtente("0612700001");
+        assertNotSame(mario, aggiornato);
+        assertEquals(1, aggiornato.getNumeroPrestitiAttivi());
+        assertSame(aggiornato, p.getUtente());
+        assertEquals(3, anagrafica.visualizzaOrdinata().size());
+        assertSame(aggiornato, anagrafica.visualizzaOrdinata().get(1));
+    }
+}
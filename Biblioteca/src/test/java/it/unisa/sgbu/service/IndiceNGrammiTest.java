@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import it.unisa.sgbu.domain.Libro;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class IndiceNGrammiTest {
+
+    private Catalogo catalogo;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     * Catalogo con titoli e autori che condividono molti trigrammi.
+     */
+    @BeforeEach
+    public void setUp() {
+        catalogo = new Catalogo();
+        catalogo.aggiungiLibro(new Libro("978-0134685991", "Effective Java", Arrays.asList("Joshua Bloch"), 2018, 5));
+        catalogo.aggiungiLibro(new Libro("978-0132350884", "Clean Code", Arrays.asList("Robert C. Martin"), 2008, 3));
+        catalogo.aggiungiLibro(new Libro("111-2223334445", "Design Patterns", Arrays.asList("Gamma", "Helm"), 1994, 2));
+        catalogo.aggiungiLibro(new Libro("ISBN-X", "Java Concurrency in Practice", Arrays.asList("Brian Goetz", "Doug Lea"), 2006, 1));
+    }
+
+
+    /**
+     * @brief Test semantica: maiuscole ignorate su titolo/autore, query che attraversa più parole.
+     */
+    @Test
+    public void testSottostringa() {
+        assertEquals(2, catalogo.ricerca("JAVA", "Titolo").size());
+        assertEquals(1, catalogo.ricerca("ive jav", "Titolo").size(), "La query può contenere spazi");
+        assertEquals(1, catalogo.ricerca("goetz", "Autore").size());
+        assertTrue(catalogo.ricerca("Javaa", "Titolo").isEmpty(), "Tutti i trigrammi presenti non bastano: serve la sottostringa");
+        assertEquals(1, catalogo.ricerca("ISBN-X", "ISBN").size());
+        assertTrue(catalogo.ricerca("isbn-x", "ISBN").isEmpty(), "L'ISBN è confrontato così com'è");
+    }
+
+
+    /**
+     * @brief Test query corte (meno di un trigramma) e vuote.
+     */
+    @Test
+    public void testQueryCorte() {
+        assertEquals(4, catalogo.ricerca("", "Titolo").size());
+        assertEquals(2, catalogo.ricerca("ja", "Titolo").size());
+        assertEquals(2, catalogo.ricerca("H", "Autore").size(), "Joshua Bloch e Helm");
+    }
+
+
+    /**
+     * @brief Test aggiornamento incrementale: modifica e rimozione si riflettono nella ricerca.
+     */
+    @Test
+    public void testAggiornamento() {
+        catalogo.ricerca("code", "Titolo"); // costruisce l'indice
+
+        assertTrue(catalogo.modificaLibro("978-0132350884",
+                new Libro("978-0132350884", "Clean Architecture", Arrays.asList("Robert C. Martin"), 2017, 3)));
+        assertTrue(catalogo.ricerca("clean code", "Titolo").isEmpty());
+        assertEquals(1, catalogo.ricerca("architecture", "Titolo").size());
+
+        assertTrue(catalogo.rimuoviLibro("ISBN-X"));
+        assertTrue(catalogo.ricerca("concurrency", "Titolo").isEmpty());
+        assertTrue(catalogo.ricerca("Lea", "Autore").isEmpty());
+
+        catalogo.aggiungiLibro(new Libro("ISBN-Y", "Java Puzzlers", Arrays.asList("Joshua Bloch"), 2005, 1));
+        assertEquals(2, catalogo.ricerca("bloch", "Autore").size());
+    }
+
+
+    /**
+     * @brief Test equivalenza con la scansione lineare su dati casuali, con molte modifiche.
+     */
+    @Test
+    public void testEquivalenzaConRicercaLineare() {
+        Random r = new Random(42);
+        String[] parole = {"Storia", "della", "Java", "guida", "Età", "Perché", "arte", "del", "codice", "Rete"};
+        for (int i = 0; i < 2000; i++) {
+            String titolo = parole[r.nextInt(parole.length)] + " " + parole[r.nextInt(parole.length)] + " " + i;
+            catalogo.aggiungiLibro(new Libro("ISBN-" + i, titolo, Arrays.asList("Autore " + r.nextInt(50)), 2000, 1));
+        }
+        catalogo.ricerca("x", "Titolo");
+
+        // Rimozioni e nuovi inserimenti: l'indice deve riassegnare gli id senza perdere libri
+        for (int i = 0; i < 2000; i++) {
+            if (i % 3 != 0) catalogo.rimuoviLibro("ISBN-" + i);
+        }
+        for (int i = 2000; i < 2100; i++) {
+            catalogo.aggiungiLibro(new Libro("ISBN-" + i, "Rete del codice " + i, Arrays.asList("Autore " + r.nextInt(50)), 2000, 1));
+        }
+
+        String[] query = {"st", "java", "età", "ia d", "del", "Ete", "autore 1", "ore 4", "isbn-1", "ISBN-19", "zz"};
+        String[] campi = {"Titolo", "Autore", "ISBN"};
+        for (String q : query) {
+            for (String campo : campi) {
+                List<Libro> attesi = catalogo.ricercaLineare(q, campo);
+                List<Libro> trovati = catalogo.ricerca(q, campo);
+                assertEquals(new HashSet<>(attesi), new HashSet<>(trovati), q + " su " + campo);
+                assertEquals(attesi.size(), trovati.size());
+            }
+        }
+    }
+}
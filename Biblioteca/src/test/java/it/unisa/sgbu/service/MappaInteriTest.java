@@ -0,0 +1,69 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MappaInteriTest {
+
+    private MappaInteri<String> mappa;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     */
+    @BeforeEach
+    public void setUp() {
+        mappa = new MappaInteri<>();
+    }
+
+
+    /**
+     * @brief Test operazioni base: inserimento, sostituzione, chiavi assenti, negative e zero.
+     */
+    @Test
+    public void testPutGet() {
+        assertNull(mappa.put(0, "zero"));
+        assertNull(mappa.put(-7, "meno sette"));
+        assertEquals("zero", mappa.put(0, "ZERO"), "put deve restituire il valore sostituito");
+
+        assertEquals("ZERO", mappa.get(0));
+        assertEquals("meno sette", mappa.get(-7));
+        assertNull(mappa.get(1));
+        assertEquals(2, mappa.dimensione());
+    }
+
+
+    /**
+     * @brief Test rimozioni: confronto con una HashMap dopo molte operazioni casuali,
+     * con ridimensionamenti e gruppi di collisioni.
+     */
+    @Test
+    public void testOperazioniCasuali() {
+        Random r = new Random(3);
+        Map<Integer, String> riferimento = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int k = r.nextInt(4000) - 1000;
+            if (r.nextInt(3) == 0) {
+                assertEquals(riferimento.remove(k), mappa.rimuovi(k));
+            } else {
+                String v = "v" + i;
+                assertEquals(riferimento.put(k, v), mappa.put(k, v));
+            }
+        }
+
+        assertEquals(riferimento.size(), mappa.dimensione());
+        for (int k = -1000; k < 3000; k++) {
+            assertEquals(riferimento.get(k), mappa.get(k), "Chiave " + k);
+        }
+    }
+}
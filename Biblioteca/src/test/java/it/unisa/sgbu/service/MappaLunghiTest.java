@@ -0,0 +1,84 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package it.unisa.sgbu.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MappaLunghiTest {
+
+    private MappaLunghi<String> mappa;
+
+
+    /**
+     * @brief Fixture di test: Configurazione iniziale.
+     */
+    @BeforeEach
+    public void setUp() {
+        mappa = new MappaLunghi<>();
+    }
+
+
+    /**
+     * @brief Test operazioni base: inserimento, sostituzione, inserimento condizionato, chiavi a 13 cifre.
+     */
+    @Test
+    public void testPutGet() {
+        assertNull(mappa.put(9780134685991L, "Effective Java"));
+        assertNull(mappa.put(0, "zero"));
+        assertEquals("zero", mappa.put(0, "ZERO"), "put deve restituire il valore sostituito");
+        assertEquals("Effective Java", mappa.putSeAssente(9780134685991L, "altro"), "putSeAssente non sostituisce");
+        assertNull(mappa.putSeAssente(9780132350884L, "Clean Code"));
+
+        assertEquals("Effective Java", mappa.get(9780134685991L));
+        assertEquals("ZERO", mappa.get(0));
+        assertNull(mappa.get(9780134685992L));
+        assertEquals(3, mappa.dimensione());
+
+        assertEquals("ZERO", mappa.rimuovi(0));
+        assertNull(mappa.rimuovi(0));
+        assertNull(mappa.get(0));
+        assertNull(mappa.put(0, "di nuovo"), "La chiave rimossa può tornare");
+        assertEquals("di nuovo", mappa.get(0));
+    }
+
+
+    /**
+     * @brief Test rimozioni e iterazione: confronto con una HashMap dopo molte operazioni casuali,
+     * con ridimensionamenti e celle rimosse riutilizzate.
+     */
+    @Test
+    public void testOperazioniCasuali() {
+        Random r = new Random(3);
+        Map<Long, String> riferimento = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            long k = 9780000000000L + r.nextInt(4000);
+            if (r.nextInt(3) == 0) {
+                assertEquals(riferimento.remove(k), mappa.rimuovi(k));
+            } else {
+                String v = "v" + i;
+                assertEquals(riferimento.put(k, v), mappa.put(k, v));
+            }
+        }
+
+        assertEquals(riferimento.size(), mappa.dimensione());
+        for (long k = 9780000000000L; k < 9780000004000L; k++) {
+            assertEquals(riferimento.get(k), mappa.get(k), "Chiave " + k);
+        }
+        Set<String> valori = new HashSet<>();
+        for (String v : mappa) {
+            valori.add(v);
+        }
+        assertEquals(new HashSet<>(riferimento.values()), valori);
+    }
+}
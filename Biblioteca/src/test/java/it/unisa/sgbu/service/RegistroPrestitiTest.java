@@ -8,9 +8,23 @@ package it.unisa.sgbu.service;
 import it.unisa.sgbu.domain.Libro;
 import it.unisa.sgbu.domain.Prestito;
 import it.unisa.sgbu.domain.Utente;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -226,4 +240,289 @@ public class RegistroPrestitiTest {
         assertEquals(1, listaU1.size(), "Utente 1 deve avere 1 prestito");
         assertEquals(0, listaU2.size(), "Utente 2 deve avere 0 prestiti");
     }
+    
+    
+    /**
+     * @brief Test del ripristino di un prestito dal giornale delle mutazioni.
+     * Verifica che l'ID originale venga mantenuto e che il ripristino sia idempotente.
+     */
+    @Test
+    public void testRipristinaPrestito() {
+        LocalDate inizio = LocalDate.now().minusDays(5);
+        LocalDate scadenza = LocalDate.now().plusDays(25);
+        
+        Prestito p = registro.ripristinaPrestito(42, "ISBN-123", "MATR-001", inizio, scadenza);
+        
+        assertNotNull(p);
+        assertEquals(42, p.getIdPrestito(), "L'ID deve essere quello registrato nel giornale");
+        assertEquals(inizio, p.getDataInizio());
+        assertEquals(0, libroTest.getCopieDisponibili());
+        
+        // Una seconda riesecuzione dello stesso record non deve duplicare il prestito
+        assertNull(registro.ripristinaPrestito(42, "ISBN-123", "MATR-001", inizio, scadenza));
+        assertEquals(1, registro.getPrestitiAttivi().size());
+    }
+    
+    
+    /**
+     * @brief Test della sequenza degli ID.
+     * Gli ID crescono sempre e non riutilizzano quelli ripristinati dal giornale.
+     */
+    @Test
+    public void testSequenzaId() {
+        Prestito p1 = registro.registraPrestito("ISBN-123", "MATR-001", LocalDate.now().plusDays(30));
+        assertEquals(1, p1.getIdPrestito());
+        assertTrue(registro.registraRestituzione(1, LocalDate.now()));
+        
+        // Un ID ripristinato più alto fa avanzare la sequenza
+        registro.ripristinaPrestito(10, "ISBN-123", "MATR-001", LocalDate.now(), LocalDate.now().plusDays(30));
+        assertTrue(registro.registraRestituzione(10, LocalDate.now()));
+        assertEquals(11, registro.getProssimoId());
+        
+        // La sequenza salvata non torna indietro
+        registro.setProssimoId(5);
+        assertEquals(11, registro.getProssimoId());
+        registro.setProssimoId(20);
+        
+        Prestito p2 = registro.registraPrestito("ISBN-123", "MATR-001", LocalDate.now().plusDays(30));
+        assertEquals(20, p2.getIdPrestito());
+        assertSame(p2, registro.trovaPrestito(20));
+        assertSame(p1, registro.trovaPrestito(1));
+    }
+    
+    
+    /**
+     * @brief Test dell'indice delle scadenze.
+     * I prestiti attivi sono ordinati per scadenza e i ritardi sono letti alla data indicata.
+     */
+    @Test
+    public void testIndiceScadenze() {
+        List<String> autori = new ArrayList<>();
+        autori.add("Autore Test");
+        catalogo.aggiungiLibro(new Libro("ISBN-456", "Secondo Libro", autori, 2021, 5));
+        anagrafica.aggiungiUtente(new Utente("MATR-002", "Luigi", "Bianchi", "l.b@test.it"));
+        
+        LocalDate oggi = LocalDate.now();
+        Prestito tra10 = registro.registraPrestito("ISBN-456", "MATR-001", oggi.plusDays(10));
+        Prestito ieri = registro.registraPrestito("ISBN-456", "MATR-001", oggi.minusDays(1));
+        Prestito tra3 = registro.registraPrestito("ISBN-456", "MATR-002", oggi.plusDays(3));
+        Prestito scaduto = registro.registraPrestito("ISBN-123", "MATR-002", oggi.minusDays(20));
+        
+        List<Prestito> attivi = registro.getPrestitiAttivi();
+        assertEquals(scaduto, attivi.get(0));
+        assertEquals(ieri, attivi.get(1));
+        assertEquals(tra3, attivi.get(2));
+        assertEquals(tra10, attivi.get(3));
+        
+        assertEquals(2, registro.contaPrestitiInRitardo(oggi));
+        List<Prestito> traUnaSettimana = registro.getPrestitiInRitardo(oggi.plusDays(7));
+        assertEquals(3, traUnaSettimana.size(), "Alla data indicata anche tra3 è scaduto");
+        assertEquals(tra3, traUnaSettimana.get(2));
+        
+        // Una restituzione esce dall'indice
+        registro.registraRestituzione(scaduto.getIdPrestito(), oggi);
+        assertEquals(1, registro.getPrestitiInRitardo().size());
+        assertEquals(ieri, registro.getPrestitiAttivi().get(0));
+        
+        // Le pagine seguono lo stesso ordine
+        assertEquals(registro.getPrestitiAttivi().subList(1, 3), registro.paginaPrestitiAttivi(1, 2));
+        assertEquals(1, registro.paginaPrestitiAttivi(2, 10).size());
+        assertTrue(registro.paginaPrestitiAttivi(3, 10).isEmpty());
+    }
+    
+    
+    /**
+     * @brief Test restituzioni dal centro di un registro con molti prestiti in corso.
+     * I prestiti restanti conservano l'ordine di inserimento, anche dopo una copia serializzata.
+     */
+    @Test
+    public void testRestituzioniDalCentro() throws Exception {
+        final int utenti = 1000;
+        catalogo.aggiungiLibro(new Libro("ISBN-456", "Secondo Libro", new ArrayList<>(), 2021, utenti * 3));
+        List<Prestito> aperti = new ArrayList<>();
+        for (int i = 0; i < utenti; i++) {
+            String matricola = String.format("MATR-%04d", i + 100);
+            anagrafica.aggiungiUtente(new Utente(matricola, "Nome", "Cognome", "u" + i + "@test.it"));
+            for (int k = 0; k < 3; k++) {
+                aperti.add(registro.registraPrestito("ISBN-456", matricola, LocalDate.now().plusDays(k + 1)));
+            }
+        }
+        
+        List<Prestito> restanti = new ArrayList<>();
+        for (Prestito p : aperti) {
+            if (p.getIdPrestito() % 3 == 1) {
+                assertTrue(registro.registraRestituzione(p.getIdPrestito(), LocalDate.now()));
+            } else {
+                restanti.add(p);
+            }
+        }
+        assertEquals(restanti.size(), registro.getPrestitiAttivi().size());
+        assertEquals(restanti, registro.getStoricoPrestiti().subList(0, restanti.size()));
+        int centro = aperti.size() / 2;
+        while (aperti.get(centro).getIdPrestito() % 3 != 1) centro++;
+        Prestito chiuso = aperti.get(centro);
+        assertNotNull(chiuso.getDataEffettivaRestituzione());
+        assertFalse(registro.registraRestituzione(chiuso.getIdPrestito(), LocalDate.now()), "Un prestito restituito non può essere chiuso di nuovo");
+        
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(registro);
+        }
+        RegistroPrestiti letto;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            letto = (RegistroPrestiti) in.readObject();
+        }
+        assertEquals(restanti.size(), letto.getPrestitiAttivi().size());
+        assertEquals(registro.getProssimoId(), letto.getProssimoId());
+        assertEquals(restanti.get(restanti.size() / 2).getIdPrestito(),
+                letto.getStoricoPrestiti().get(restanti.size() / 2).getIdPrestito());
+    }
+    
+    
+    /**
+     * @brief Test degli indici per libro e per utente.
+     * Le verifiche seguono prestiti e restituzioni senza scorrere il registro.
+     */
+    @Test
+    public void testIndiciLibroUtente() {
+        assertFalse(registro.haPrestitiAttiviLibro("ISBN-123"));
+        
+        Prestito p = registro.registraPrestito("ISBN-123", "MATR-001", LocalDate.now().plusDays(30));
+        assertTrue(registro.haPrestitiAttiviLibro("ISBN-123"));
+        assertFalse(registro.haPrestitiAttiviLibro("ISBN-INESISTENTE"));
+        assertEquals(1, registro.getPrestitiAttiviLibro("ISBN-123").size());
+        assertEquals(p, registro.getPrestitiAttiviUtente("MATR-001").get(0));
+        
+        registro.registraRestituzione(p.getIdPrestito(), LocalDate.now());
+        assertFalse(registro.haPrestitiAttiviLibro("ISBN-123"), "Dopo la restituzione il libro non è più in prestito");
+        assertFalse(registro.haPrestitiAttivi("MATR-001"));
+        assertTrue(registro.getPrestitiAttiviUtente("MATR-001").isEmpty());
+    }
+    
+    
+    /**
+     * @brief Test del prestito multiplo: un lotto valido crea tutti i prestiti,
+     * un lotto con una voce non valida non ne crea nessuno.
+     */
+    @Test
+    public void testPrestitiMultipli() {
+        catalogo.aggiungiLibro(new Libro("ISBN-456", "Secondo Libro", new ArrayList<>(), 2021, 2));
+        LocalDate scadenza = LocalDate.now().plusDays(30);
+        
+        // La seconda voce chiede la stessa unica copia di ISBN-123: il lotto è rifiutato
+        List<RichiestaPrestito> carrello = new ArrayList<>();
+        carrello.add(new RichiestaPrestito("ISBN-456", "MATR-001", scadenza));
+        carrello.add(new RichiestaPrestito("ISBN-123", "MATR-001", scadenza));
+        carrello.add(new RichiestaPrestito("ISBN-123", "MATR-001", scadenza));
+        EsitoLotto esito = registro.registraPrestiti(carrello, null);
+        assertFalse(esito.isApplicato());
+        assertEquals(EsitoVoce.ANNULLATO, esito.getEsito(0));
+        assertEquals(EsitoVoce.ANNULLATO, esito.getEsito(1));
+        assertEquals(EsitoVoce.COPIE_ESAURITE, esito.getEsito(2));
+        assertTrue(registro.getPrestitiAttivi().isEmpty(), "Nessun prestito deve essere creato");
+        assertEquals(1, libroTest.getCopieDisponibili());
+        
+        carrello.set(2, new RichiestaPrestito("ISBN-456", "MATR-001", scadenza));
+        esito = registro.registraPrestiti(carrello, null);
+        assertTrue(esito.isApplicato());
+        assertEquals(3, esito.getPrestiti().size());
+        assertEquals(3, utenteTest.getNumeroPrestitiAttivi());
+        assertEquals(0, libroTest.getCopieDisponibili());
+        
+        // Limite dell'utente raggiunto: anche un solo libro in più viene rifiutato
+        catalogo.aggiungiLibro(new Libro("ISBN-789", "Terzo Libro", new ArrayList<>(), 2022, 1));
+        esito = registro.registraPrestiti(Collections.singletonList(
+                new RichiestaPrestito("ISBN-789", "MATR-001", scadenza)), null);
+        assertEquals(EsitoVoce.LIMITE_UTENTE, esito.getEsito(0));
+        
+        // Restituzione multipla: un ID ripetuto blocca l'intero lotto
+        List<Integer> id = new ArrayList<>();
+        for (Prestito p : registro.getPrestitiAttivi()) id.add(p.getIdPrestito());
+        id.add(id.get(0));
+        esito = registro.registraRestituzioni(id, LocalDate.now());
+        assertFalse(esito.isApplicato());
+        assertEquals(EsitoVoce.GIA_RESTITUITO, esito.getEsito(3));
+        assertEquals(3, registro.getPrestitiAttivi().size());
+        
+        id.remove(3);
+        esito = registro.registraRestituzioni(id, LocalDate.now());
+        assertTrue(esito.isApplicato());
+        assertTrue(registro.getPrestitiAttivi().isEmpty());
+        assertEquals(1, libroTest.getCopieDisponibili());
+    }
+    
+    
+    /**
+     * @brief Test di carico concorrente: molte postazioni registrano prestiti e restituzioni
+     * sugli stessi libri e utenti. Nessuna copia deve essere prestata due volte
+     * e nessun utente deve superare il limite.
+     */
+    @Test
+    public void testPrestitiConcorrenti() throws Exception {
+        final int libri = 20, utenti = 30, postazioni = 8, operazioni = 3000;
+        for (int i = 0; i < libri; i++) {
+            catalogo.aggiungiLibro(new Libro("ISBN-C" + i, "Libro " + i, new ArrayList<>(), 2020, 1 + i % 3));
+        }
+        for (int i = 0; i < utenti; i++) {
+            anagrafica.aggiungiUtente(new Utente("MATR-C" + i, "Nome", "Cognome" + i, "c" + i + "@test.it"));
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(postazioni);
+        CountDownLatch via = new CountDownLatch(1);
+        AtomicInteger registrati = new AtomicInteger();
+        List<Future<?>> lavori = new ArrayList<>();
+        for (int t = 0; t < postazioni; t++) {
+            final long seme = t;
+            lavori.add(pool.submit(() -> {
+                Random rnd = new Random(seme);
+                via.await();
+                for (int k = 0; k < operazioni; k++) {
+                    int scelta = rnd.nextInt(10);
+                    if (scelta < 6) {
+                        Prestito p = registro.registraPrestito("ISBN-C" + rnd.nextInt(libri),
+                                "MATR-C" + rnd.nextInt(utenti), LocalDate.now().plusDays(rnd.nextInt(60)));
+                        if (p != null) registrati.incrementAndGet();
+                    } else if (scelta < 9) {
+                        List<Prestito> attivi = registro.getPrestitiAttiviUtente("MATR-C" + rnd.nextInt(utenti));
+                        if (!attivi.isEmpty()) {
+                            registro.registraRestituzione(attivi.get(0).getIdPrestito(), LocalDate.now());
+                        }
+                    } else {
+                        // Lettori concorrenti: viste ordinate e ricerca
+                        registro.getPrestitiInRitardo(LocalDate.now().plusDays(30));
+                        catalogo.ricerca("Libro", "Titolo");
+                    }
+                }
+                return null;
+            }));
+        }
+        via.countDown();
+        for (Future<?> f : lavori) {
+            f.get(60, TimeUnit.SECONDS);   // propaga eventuali eccezioni delle postazioni
+        }
+        pool.shutdown();
+        
+        assertTrue(registrati.get() > 0);
+        List<Prestito> attivi = registro.getPrestitiAttivi();
+        for (int i = 0; i < libri; i++) {
+            Libro l = catalogo.getLibro("ISBN-C" + i);
+            int inPrestito = registro.getPrestitiAttiviLibro(l.getISBN()).size();
+            assertTrue(l.getCopieDisponibili() >= 0, "Copie disponibili negative per " + l);
+            assertEquals(l.getCopieTotali(), l.getCopieDisponibili() + inPrestito, "Copie non coerenti per " + l);
+        }
+        int totaleUtenti = 0;
+        for (int i = 0; i < utenti; i++) {
+            Utente u = anagrafica.getUtente("MATR-C" + i);
+            int n = registro.getPrestitiAttiviUtente(u.getMatricola()).size();
+            assertTrue(n <= 3, "Limite superato per " + u);
+            assertEquals(n, u.getNumeroPrestitiAttivi());
+            totaleUtenti += n;
+        }
+        assertEquals(attivi.size(), totaleUtenti);
+        
+        Set<Integer> id = new HashSet<>();
+        for (Prestito p : registro.getStoricoPrestiti()) {
+            assertTrue(id.add(p.getIdPrestito()), "ID duplicato: " + p.getIdPrestito());
+        }
+    }
 }